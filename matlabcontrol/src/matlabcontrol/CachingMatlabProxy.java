@@ -0,0 +1,851 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Wraps around a {@link MatlabProxy} to cache the values of MATLAB variables retrieved with
+ * {@link #getVariable(String)} and {@link #getVariables(String...)}, so that retrieving a variable which has not
+ * changed does not require communicating with MATLAB. The cache is bounded by the approximate number of bytes the
+ * cached values occupy, evicting the least recently retrieved variables first. Each value returned is a copy, so
+ * modifying a returned array does not modify the cache.
+ * <br><br>
+ * Any other method of this proxy which could modify MATLAB's workspace invalidates the cache. Setting variables
+ * invalidates only those variables, every other method, including {@code invokeAndWait} and {@code invokeAsync},
+ * invalidates all variables. Asynchronous methods invalidate the cache when they are called and again once they have
+ * completed. Modifications made to MATLAB's workspace by anything other than this proxy, such as another proxy or
+ * the Command Window, are not seen by this proxy unless it is constructed to verify cached variables with MATLAB. When
+ * verifying, retrieving a cached variable still requires communicating with MATLAB to compare the version of MATLAB's
+ * workspace the variable was retrieved at with its current version, but the variable's value is only sent when it
+ * has changed. The version of MATLAB's workspace only changes with operations made through matlabcontrol by any
+ * proxy; commands entered into the Command Window are never seen. When the cache may be out of date for a reason not
+ * otherwise detected, call {@link #invalidate()}.
+ * <br><br>
+ * Variables retrieved asynchronously with {@link #getVariableAsync(String)} are neither taken from nor added to the
+ * cache.
+ * <br><br>
+ * The number of times variables were or were not found in the cache are exported over JMX; this proxy is registered
+ * with the platform MBean server under the name {@code matlabcontrol:type=MatlabVariableCache,id=<identifier>} until
+ * it is disconnected.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class CachingMatlabProxy extends MatlabProxy implements MatlabVariableCacheMBean
+{
+    private final MatlabProxy _delegate;
+    
+    private final long _maxBytes;
+    
+    private final boolean _verify;
+    
+    /**
+     * Cached variables, keyed by name, in the order in which they were least recently retrieved. All mutable state of
+     * the cache is guarded by this map.
+     */
+    private final LinkedHashMap<String, Entry> _cache = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    
+    /**
+     * Incremented every time the cache is invalidated so that a variable retrieved while the workspace was being
+     * modified is not cached.
+     */
+    private long _generation = 0;
+    
+    private long _bytes = 0;
+    
+    private long _hits = 0;
+    
+    private long _misses = 0;
+    
+    private long _evictions = 0;
+    
+    private long _invalidations = 0;
+    
+    /**
+     * The name this proxy is registered under with the platform MBean server.
+     */
+    private final ObjectName _name;
+    
+    /**
+     * Constructs the caching proxy. All methods defined in {@code MatlabProxy} will be delegated to
+     * {@code delegateProxy}.
+     * 
+     * @param delegateProxy
+     * @param maxBytes the approximate number of bytes the cached values may occupy
+     * @param verifyWithMatlab whether a cached variable is compared against the version of MATLAB's workspace before
+     * being returned
+     * @throws IllegalArgumentException if {@code maxBytes} is not positive
+     */
+    public CachingMatlabProxy(MatlabProxy delegateProxy, long maxBytes, boolean verifyWithMatlab)
+    {
+        super(delegateProxy.getIdentifier(), delegateProxy.isExistingSession());
+        
+        if(maxBytes <= 0)
+        {
+            throw new IllegalArgumentException("maximum bytes [" + maxBytes + "] must be positive");
+        }
+        
+        _delegate = delegateProxy;
+        _maxBytes = maxBytes;
+        _verify = verifyWithMatlab;
+        
+        ObjectName name;
+        try
+        {
+            name = new ObjectName("matlabcontrol:type=MatlabVariableCache,id=" +
+                    ObjectName.quote(delegateProxy.getIdentifier().toString()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(this, MatlabVariableCacheMBean.class), name);
+        }
+        catch(JMException e)
+        {
+            name = null;
+        }
+        catch(SecurityException e)
+        {
+            name = null;
+        }
+        _name = name;
+    }
+    
+    private static final class Entry
+    {
+        final Object value;
+        final long size;
+        final long version;
+        
+        Entry(Object value, long size, long version)
+        {
+            this.value = value;
+            this.size = size;
+            this.version = version;
+        }
+    }
+    
+    @Override
+    public Object getVariable(String variableName) throws MatlabInvocationException
+    {
+        return this.retrieve(new String[] { variableName }).get(variableName);
+    }
+    
+    @Override
+    public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+    {
+        return this.retrieve(variableNames);
+    }
+    
+    /**
+     * Retrieves the variables, from the cache when present and otherwise from MATLAB in one call.
+     * 
+     * @param variableNames
+     * @return copies of the values, iterating in the order the names were provided
+     * @throws MatlabInvocationException 
+     */
+    private Map<String, Object> retrieve(String[] variableNames) throws MatlabInvocationException
+    {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        
+        //A version of -1 means the version is not checked
+        long version = _verify ? _delegate.invokeAndWait(new GetWorkspaceVersion()) : -1;
+        
+        List<String> missing = new ArrayList<String>();
+        long generation;
+        synchronized(_cache)
+        {
+            for(String variableName : variableNames)
+            {
+                Entry entry = _cache.get(variableName);
+                if(entry != null && entry.version != version)
+                {
+                    //The workspace has changed since the entry was cached, so any entry may be out of date
+                    this.invalidateAllLocked();
+                    entry = null;
+                }
+                
+                if(entry == null)
+                {
+                    _misses++;
+                    missing.add(variableName);
+                }
+                else
+                {
+                    _hits++;
+                    values.put(variableName, copy(entry.value));
+                }
+            }
+            generation = _generation;
+        }
+        
+        if(!missing.isEmpty())
+        {
+            Object[] retrieved = _delegate.invokeAndWait(
+                    new GetVersionedVariables(missing.toArray(new String[missing.size()])));
+            long retrievedVersion = _verify ? (Long) retrieved[0] : -1;
+            
+            synchronized(_cache)
+            {
+                for(int i = 0; i < missing.size(); i++)
+                {
+                    Object value = retrieved[i + 1];
+                    
+                    //Only cache if the workspace was not modified through this proxy while retrieving
+                    if(generation == _generation)
+                    {
+                        this.putLocked(missing.get(i), value, retrievedVersion);
+                    }
+                    values.put(missing.get(i), copy(value));
+                }
+            }
+        }
+        
+        //Return in the order the names were provided
+        Map<String, Object> ordered = new LinkedHashMap<String, Object>();
+        for(String variableName : variableNames)
+        {
+            ordered.put(variableName, values.get(variableName));
+        }
+        
+        return ordered;
+    }
+    
+    private void putLocked(String variableName, Object value, long version)
+    {
+        long size = sizeOf(value);
+        
+        Entry previous = _cache.remove(variableName);
+        if(previous != null)
+        {
+            _bytes -= previous.size;
+        }
+        
+        if(size <= _maxBytes)
+        {
+            _cache.put(variableName, new Entry(value, size, version));
+            _bytes += size;
+            
+            Iterator<Entry> eldest = _cache.values().iterator();
+            while(_bytes > _maxBytes)
+            {
+                _bytes -= eldest.next().size;
+                eldest.remove();
+                _evictions++;
+            }
+        }
+    }
+    
+    private void invalidateLocked(String variableName)
+    {
+        _generation++;
+        
+        Entry entry = _cache.remove(variableName);
+        if(entry != null)
+        {
+            _bytes -= entry.size;
+            _invalidations++;
+        }
+    }
+    
+    private void invalidateAllLocked()
+    {
+        _generation++;
+        _invalidations += _cache.size();
+        _cache.clear();
+        _bytes = 0;
+    }
+    
+    private void invalidate(String... variableNames)
+    {
+        synchronized(_cache)
+        {
+            for(String variableName : variableNames)
+            {
+                this.invalidateLocked(variableName);
+            }
+        }
+    }
+    
+    /**
+     * Invalidates all cached variables. This is done automatically by all methods of this proxy which could modify
+     * MATLAB's workspace.
+     */
+    @Override
+    public void invalidate()
+    {
+        synchronized(_cache)
+        {
+            this.invalidateAllLocked();
+        }
+    }
+    
+    /**
+     * Invalidates all cached variables once {@code future} completes.
+     * 
+     * @param <T>
+     * @param future
+     * @return {@code future}
+     */
+    private <T> MatlabFuture<T> invalidateOnCompletion(MatlabFuture<T> future)
+    {
+        future.addCompletionListener(new MatlabFuture.CompletionListener<T>()
+        {
+            @Override
+            public void completed(MatlabFuture<T> future)
+            {
+                invalidate();
+            }
+        });
+        
+        return future;
+    }
+    
+    /**
+     * Invalidates the variable once {@code future} completes.
+     * 
+     * @param future
+     * @param variableName
+     * @return {@code future}
+     */
+    private MatlabFuture<Void> invalidateOnCompletion(MatlabFuture<Void> future, final String variableName)
+    {
+        future.addCompletionListener(new MatlabFuture.CompletionListener<Void>()
+        {
+            @Override
+            public void completed(MatlabFuture<Void> future)
+            {
+                invalidate(variableName);
+            }
+        });
+        
+        return future;
+    }
+    
+    /**
+     * The approximate number of bytes {@code value} occupies.
+     * 
+     * @param value
+     * @return 
+     */
+    private static long sizeOf(Object value)
+    {
+        long size;
+        if(value == null)
+        {
+            size = 0;
+        }
+        else if(value instanceof String)
+        {
+            size = 40 + 2L * ((String) value).length();
+        }
+        else if(value instanceof Object[])
+        {
+            Object[] array = (Object[]) value;
+            size = 16 + 8L * array.length;
+            for(Object element : array)
+            {
+                size += sizeOf(element);
+            }
+        }
+        else if(value.getClass().isArray())
+        {
+            size = 16 + (long) Array.getLength(value) * elementSize(value.getClass().getComponentType());
+        }
+        else
+        {
+            size = 16;
+        }
+        
+        return size;
+    }
+    
+    private static int elementSize(Class<?> primitiveType)
+    {
+        int size;
+        if(primitiveType.equals(double.class) || primitiveType.equals(long.class))
+        {
+            size = 8;
+        }
+        else if(primitiveType.equals(float.class) || primitiveType.equals(int.class))
+        {
+            size = 4;
+        }
+        else if(primitiveType.equals(short.class) || primitiveType.equals(char.class))
+        {
+            size = 2;
+        }
+        else
+        {
+            size = 1;
+        }
+        
+        return size;
+    }
+    
+    /**
+     * Copies arrays, including arrays nested in arrays, so that the cached value cannot be modified. All other values
+     * returned from MATLAB are immutable.
+     * 
+     * @param value
+     * @return 
+     */
+    private static Object copy(Object value)
+    {
+        Object copy;
+        if(value instanceof Object[])
+        {
+            Object[] array = ((Object[]) value).clone();
+            for(int i = 0; i < array.length; i++)
+            {
+                array[i] = copy(array[i]);
+            }
+            copy = array;
+        }
+        else if(value != null && value.getClass().isArray())
+        {
+            int length = Array.getLength(value);
+            copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+        }
+        else
+        {
+            copy = value;
+        }
+        
+        return copy;
+    }
+    
+    /**
+     * Retrieves the version of MATLAB's workspace.
+     */
+    private static final class GetWorkspaceVersion implements MatlabThreadCallable<Long>, Serializable
+    {
+        private static final long serialVersionUID = 0xB105L;
+        
+        @Override
+        public Long call(MatlabThreadProxy proxy)
+        {
+            return JMIWrapper.getWorkspaceVersion();
+        }
+    }
+    
+    /**
+     * Retrieves variables along with the version of MATLAB's workspace they were retrieved at. The version is the first
+     * element of the returned array, followed by the value of each variable.
+     */
+    private static final class GetVersionedVariables implements MatlabThreadCallable<Object[]>, Serializable
+    {
+        private static final long serialVersionUID = 0xB106L;
+        
+        private final String[] _variableNames;
+        
+        GetVersionedVariables(String[] variableNames)
+        {
+            _variableNames = variableNames;
+        }
+        
+        @Override
+        public Object[] call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            Object[] values = new Object[_variableNames.length + 1];
+            values[0] = JMIWrapper.getWorkspaceVersion();
+            for(int i = 0; i < _variableNames.length; i++)
+            {
+                values[i + 1] = proxy.getVariable(_variableNames[i]);
+            }
+            
+            return values;
+        }
+    }
+    
+    @Override
+    public long getHitCount()
+    {
+        synchronized(_cache)
+        {
+            return _hits;
+        }
+    }
+    
+    @Override
+    public long getMissCount()
+    {
+        synchronized(_cache)
+        {
+            return _misses;
+        }
+    }
+    
+    @Override
+    public double getHitRatio()
+    {
+        synchronized(_cache)
+        {
+            long total = _hits + _misses;
+            
+            return total == 0 ? 0 : (double) _hits / total;
+        }
+    }
+    
+    @Override
+    public long getEvictionCount()
+    {
+        synchronized(_cache)
+        {
+            return _evictions;
+        }
+    }
+    
+    @Override
+    public long getInvalidationCount()
+    {
+        synchronized(_cache)
+        {
+            return _invalidations;
+        }
+    }
+    
+    @Override
+    public int getCachedVariableCount()
+    {
+        synchronized(_cache)
+        {
+            return _cache.size();
+        }
+    }
+    
+    @Override
+    public long getCachedBytes()
+    {
+        synchronized(_cache)
+        {
+            return _bytes;
+        }
+    }
+    
+    @Override
+    public long getMaxBytes()
+    {
+        return _maxBytes;
+    }
+    
+    @Override
+    public boolean isVerifyingWithMatlab()
+    {
+        return _verify;
+    }
+
+    @Override
+    public void eval(String command) throws MatlabInvocationException
+    {
+        this.invalidate();
+        try
+        {
+            _delegate.eval(command);
+        }
+        finally
+        {
+            this.invalidate();
+        }
+    }
+
+    @Override
+    public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
+    {
+        this.invalidate();
+        try
+        {
+            return _delegate.returningEval(command, nargout);
+        }
+        finally
+        {
+            this.invalidate();
+        }
+    }
+
+    @Override
+    public void feval(String functionName, Object... args) throws MatlabInvocationException
+    {
+        this.invalidate();
+        try
+        {
+            _delegate.feval(functionName, args);
+        }
+        finally
+        {
+            this.invalidate();
+        }
+    }
+
+    @Override
+    public Object[] returningFeval(String functionName, int nargout, Object... args) throws MatlabInvocationException
+    {
+        this.invalidate();
+        try
+        {
+            return _delegate.returningFeval(functionName, nargout, args);
+        }
+        finally
+        {
+            this.invalidate();
+        }
+    }
+
+    @Override
+    public void setVariable(String variableName, Object value) throws MatlabInvocationException
+    {
+        this.invalidate(variableName);
+        try
+        {
+            _delegate.setVariable(variableName, value);
+        }
+        finally
+        {
+            this.invalidate(variableName);
+        }
+    }
+    
+    @Override
+    public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+    {
+        String[] variableNames = variables.keySet().toArray(new String[variables.size()]);
+        
+        this.invalidate(variableNames);
+        try
+        {
+            _delegate.setVariables(variables);
+        }
+        finally
+        {
+            this.invalidate(variableNames);
+        }
+    }
+
+    @Override
+    public int getMatlabThreadQueueDepth(MatlabThreadPriority priority) throws MatlabInvocationException
+    {
+        return _delegate.getMatlabThreadQueueDepth(priority);
+    }
+
+    @Override
+    public <U> U invokeAndWait(MatlabThreadCallable<U> callable) throws MatlabInvocationException
+    {
+        this.invalidate();
+        try
+        {
+            return _delegate.invokeAndWait(callable);
+        }
+        finally
+        {
+            this.invalidate();
+        }
+    }
+    
+    @Override
+    public <U> U invokeAndWait(MatlabThreadCallable<U> callable, long timeout, TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        this.invalidate();
+        try
+        {
+            return _delegate.invokeAndWait(callable, timeout, unit);
+        }
+        finally
+        {
+            this.invalidate();
+        }
+    }
+
+    @Override
+    public MatlabFuture<Void> evalAsync(String command)
+    {
+        this.invalidate();
+        
+        return this.invalidateOnCompletion(_delegate.evalAsync(command));
+    }
+
+    @Override
+    public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+    {
+        this.invalidate();
+        
+        return this.invalidateOnCompletion(_delegate.returningEvalAsync(command, nargout));
+    }
+
+    @Override
+    public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+    {
+        this.invalidate();
+        
+        return this.invalidateOnCompletion(_delegate.fevalAsync(functionName, args));
+    }
+
+    @Override
+    public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+    {
+        this.invalidate();
+        
+        return this.invalidateOnCompletion(_delegate.returningFevalAsync(functionName, nargout, args));
+    }
+
+    @Override
+    public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+    {
+        this.invalidate(variableName);
+        
+        return this.invalidateOnCompletion(_delegate.setVariableAsync(variableName, value), variableName);
+    }
+
+    @Override
+    public MatlabFuture<Object> getVariableAsync(String variableName)
+    {
+        return _delegate.getVariableAsync(variableName);
+    }
+
+    @Override
+    public <U> MatlabFuture<U> invokeAsync(MatlabThreadCallable<U> callable)
+    {
+        this.invalidate();
+        
+        return this.invalidateOnCompletion(_delegate.invokeAsync(callable));
+    }
+
+    @Override
+    public void addDisconnectionListener(DisconnectionListener listener)
+    {
+        _delegate.addDisconnectionListener(listener);
+    }
+
+    @Override
+    public void removeDisconnectionListener(DisconnectionListener listener)
+    {
+        _delegate.removeDisconnectionListener(listener);
+    }
+
+    /**
+     * Disconnects the delegate proxy, discards all cached variables, and unregisters this proxy from the platform
+     * MBean server.
+     * 
+     * @return 
+     */
+    @Override
+    public boolean disconnect()
+    {
+        boolean disconnected = _delegate.disconnect();
+        
+        this.invalidate();
+        if(_name != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+            }
+            catch(JMException e) { }
+            catch(SecurityException e) { }
+        }
+        
+        return disconnected;
+    }
+
+    @Override
+    public boolean isExistingSession()
+    {
+        return _delegate.isExistingSession();
+    }
+
+    @Override
+    public boolean isRunningInsideMatlab()
+    {
+        return _delegate.isRunningInsideMatlab();
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return _delegate.isConnected();
+    }
+
+    @Override
+    public Identifier getIdentifier()
+    {
+        return _delegate.getIdentifier();
+    }
+    
+    @Override
+    public long getTimeoutCount()
+    {
+        return _delegate.getTimeoutCount();
+    }
+    
+    @Override
+    public long getCancellationCount()
+    {
+        return _delegate.getCancellationCount();
+    }
+    
+    @Override
+    public Set<String> getLatencyFunctionNames()
+    {
+        return _delegate.getLatencyFunctionNames();
+    }
+    
+    @Override
+    public LatencyHistogram getLatencyHistogram(String functionName, LatencyPhase phase)
+    {
+        return _delegate.getLatencyHistogram(functionName, phase);
+    }
+    
+    @Override
+    public StartupTimes getStartupTimes()
+    {
+        return _delegate.getStartupTimes();
+    }
+
+    @Override
+    public void exit() throws MatlabInvocationException
+    {
+        this.invalidate();
+        _delegate.exit();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "[" + this.getClass().getName() + " delegateProxy=" + _delegate + "]";
+    }
+}
\ No newline at end of file
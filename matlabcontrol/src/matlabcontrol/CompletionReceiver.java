@@ -0,0 +1,64 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Receives the results of interactions with MATLAB that were started without waiting for them to complete. An instance
+ * is exported by a {@link RemoteMatlabProxy} and called from MATLAB's Java Virtual Machine once MATLAB has finished.
+ * Necessary to have this interface for RMI.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+interface CompletionReceiver extends Remote
+{
+    /**
+     * Completes the invocation identified by {@code invocationID}. Exactly one of {@code result} and
+     * {@code exception} is meaningful; if {@code exception} is not {@code null} the invocation failed.
+     * 
+     * @param invocationID
+     * @param result
+     * @param exception
+     * @throws RemoteException 
+     */
+    public void complete(long invocationID, Object result, MatlabInvocationException exception)
+            throws RemoteException;
+    
+    /**
+     * Completes several invocations at once. The arrays are parallel: the invocation identified by
+     * {@code invocationIDs[i]} is completed with {@code results[i]} and {@code exceptions[i]} as described by
+     * {@link #complete(long, Object, MatlabInvocationException)}.
+     * 
+     * @param invocationIDs
+     * @param results
+     * @param exceptions
+     * @throws RemoteException 
+     */
+    public void completeAll(long[] invocationIDs, Object[] results, MatlabInvocationException[] exceptions)
+            throws RemoteException;
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.util.concurrent.locks.LockSupport;
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+
+/**
+ * A reusable place for a thread to wait for a {@link MatlabThreadCallable} it has dispatched to MATLAB's main thread.
+ * Each thread has its own slot which it reuses for every call, so once a thread has made its first call, waiting for
+ * MATLAB allocates nothing: the slot is itself the task which is dispatched, and the waiting thread parks until MATLAB's
+ * main thread stores the result in the slot and unparks it.
+ * <br><br>
+ * A slot cannot be cancelled and so is only suitable for waiting indefinitely; waiting with a timeout requires a
+ * {@link MatlabFutureImpl}. If the waiting thread is interrupted it stops waiting and its slot is abandoned, as MATLAB
+ * may still run the callable. The thread will be given a new slot for its next call.
+ * <br><br>
+ * A slot may only be used by the thread it belongs to, except for {@link #run()} which is called on MATLAB's main
+ * thread.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class CompletionSlot extends MatlabThreadDispatcher.Task
+{
+    private static final ThreadLocal<CompletionSlot> SLOTS = new ThreadLocal<CompletionSlot>()
+    {
+        @Override
+        protected CompletionSlot initialValue()
+        {
+            return new CompletionSlot(Thread.currentThread());
+        }
+    };
+    
+    private final Thread _owner;
+    
+    //Written by the owner before being dispatched and read on MATLAB's main thread, dispatching ensures visibility
+    private MatlabThreadCallable<?> _callable;
+    private MatlabThreadProxy _proxy;
+    
+    //Written on MATLAB's main thread before _done is set and read by the owner after it observes _done
+    private Object _result;
+    private MatlabInvocationException _exception;
+    
+    private volatile boolean _done;
+    
+    private CompletionSlot(Thread owner)
+    {
+        _owner = owner;
+    }
+    
+    /**
+     * The calling thread's slot.
+     * 
+     * @return 
+     */
+    static CompletionSlot get()
+    {
+        return SLOTS.get();
+    }
+    
+    /**
+     * Prepares this slot to run {@code callable}. Once prepared, this slot is to be dispatched to MATLAB's main thread
+     * and then waited on with {@link #await(matlabcontrol.MatlabProxy.MatlabThreadCallable)}.
+     * 
+     * @param callable
+     * @param proxy the proxy {@code callable} will be given
+     */
+    void prepare(MatlabThreadCallable<?> callable, MatlabThreadProxy proxy)
+    {
+        _callable = callable;
+        _proxy = proxy;
+        _done = false;
+    }
+    
+    @Override
+    public void run()
+    {
+        try
+        {
+            _result = _callable.call(_proxy);
+        }
+        catch(MatlabInvocationException e)
+        {
+            _exception = e;
+        }
+        catch(RuntimeException e)
+        {
+            ThrowableWrapper cause = new ThrowableWrapper(e);
+            _exception = MatlabInvocationException.Reason.RUNTIME_EXCEPTION.asException(cause);
+        }
+        finally
+        {
+            _done = true;
+            LockSupport.unpark(_owner);
+        }
+    }
+    
+    /**
+     * Waits for MATLAB to run the callable this slot was prepared with, returning its result or throwing its
+     * exception.
+     * 
+     * @param <T>
+     * @param callable the callable this slot was prepared with
+     * @return
+     * @throws MatlabInvocationException 
+     */
+    @SuppressWarnings("unchecked")
+    <T> T await(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    {
+        while(!_done)
+        {
+            LockSupport.park(this);
+            
+            if(Thread.interrupted())
+            {
+                SLOTS.remove();
+                
+                throw MatlabInvocationException.Reason.INTERRRUPTED.asException(new InterruptedException());
+            }
+        }
+        
+        T result = (T) _result;
+        MatlabInvocationException exception = _exception;
+        
+        //Do not retain anything between calls
+        _callable = null;
+        _proxy = null;
+        _result = null;
+        _exception = null;
+        
+        if(exception != null)
+        {
+            throw exception;
+        }
+        
+        return result;
+    }
+}
\ No newline at end of file
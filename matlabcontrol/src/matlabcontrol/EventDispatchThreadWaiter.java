@@ -0,0 +1,355 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.awt.ActiveEvent;
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.MenuComponent;
+import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.InvocationEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.Timer;
+
+import matlabcontrol.MatlabFuture.CompletionListener;
+
+/**
+ * Waits on the AWT Event Dispatch Thread for a future to be done while continuing to dispatch events, using an
+ * {@link EventDispatchWaitStrategy}.
+ * <br><br>
+ * Events are dispatched using only public API, in the same way {@code EventQueue} dispatches them. When available,
+ * {@code java.awt.SecondaryLoop} (added in Java 7) is used to run the nested event loop, it is looked up reflectively
+ * so that this class can be loaded by the older Java versions some supported versions of MATLAB run.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class EventDispatchThreadWaiter
+{
+    /**
+     * The shortest duration, in nanoseconds, the {@code PARK} strategy parks for.
+     */
+    private static final long MIN_PARK = 1000L;
+    
+    /**
+     * The longest duration, in nanoseconds, the {@code PARK} strategy parks for before checking for events.
+     */
+    private static final long MAX_PARK = 1000000L;
+    
+    /**
+     * {@code EventQueue.createSecondaryLoop()}, {@code SecondaryLoop.enter()} and {@code SecondaryLoop.exit()}, all
+     * {@code null} if running on a version of Java prior to 7.
+     */
+    private static final Method CREATE_SECONDARY_LOOP, SECONDARY_LOOP_ENTER, SECONDARY_LOOP_EXIT;
+    static
+    {
+        Method create, enter, exit;
+        try
+        {
+            create = EventQueue.class.getMethod("createSecondaryLoop");
+            enter = create.getReturnType().getMethod("enter");
+            exit = create.getReturnType().getMethod("exit");
+        }
+        catch(NoSuchMethodException e)
+        {
+            create = null;
+            enter = null;
+            exit = null;
+        }
+        
+        CREATE_SECONDARY_LOOP = create;
+        SECONDARY_LOOP_ENTER = enter;
+        SECONDARY_LOOP_EXIT = exit;
+    }
+    
+    /**
+     * Posted to wake the event queue, it does nothing when dispatched.
+     */
+    private static final Runnable NO_OP = new Runnable()
+    {
+        @Override
+        public void run() { }
+    };
+    
+    private final EventQueue _queue;
+    
+    private volatile EventDispatchWaitStrategy _strategy = EventDispatchWaitStrategy.EVENT_LOOP;
+    
+    EventDispatchThreadWaiter(EventQueue queue)
+    {
+        _queue = queue;
+    }
+    
+    void setStrategy(EventDispatchWaitStrategy strategy)
+    {
+        _strategy = strategy;
+    }
+    
+    /**
+     * Dispatches events until {@code future} is done or the timeout elapses. Must be called on the Event Dispatch
+     * Thread.
+     * 
+     * @param <T>
+     * @param future
+     * @param timeout {@code 0} to wait until {@code future} is done
+     * @param unit
+     * @return whether {@code future} is done
+     * @throws InterruptedException 
+     */
+    <T> boolean await(MatlabFutureImpl<T> future, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        
+        EventDispatchWaitStrategy strategy = _strategy;
+        if(strategy == EventDispatchWaitStrategy.SPIN)
+        {
+            while(!future.isDone() && !expired(timeout, deadline))
+            {
+                if(_queue.peekEvent() != null)
+                {
+                    dispatch(_queue.getNextEvent());
+                }
+            }
+        }
+        else if(strategy == EventDispatchWaitStrategy.PARK)
+        {
+            this.park(future, timeout, deadline);
+        }
+        else
+        {
+            this.runEventLoop(future, timeout, unit, deadline);
+        }
+        
+        return future.isDone();
+    }
+    
+    private static boolean expired(long timeout, long deadline)
+    {
+        return timeout != 0L && deadline - System.nanoTime() <= 0L;
+    }
+    
+    private <T> void park(MatlabFutureImpl<T> future, long timeout, long deadline) throws InterruptedException
+    {
+        final Thread waiter = Thread.currentThread();
+        future.addCompletionListener(new CompletionListener<T>()
+        {
+            @Override
+            public void completed(MatlabFuture<T> future)
+            {
+                LockSupport.unpark(waiter);
+            }
+        });
+        
+        long parkTime = MIN_PARK;
+        while(!future.isDone() && !expired(timeout, deadline))
+        {
+            if(_queue.peekEvent() != null)
+            {
+                dispatch(_queue.getNextEvent());
+                parkTime = MIN_PARK;
+            }
+            else
+            {
+                LockSupport.parkNanos(timeout == 0L ? parkTime : Math.min(parkTime, deadline - System.nanoTime()));
+                parkTime = Math.min(parkTime * 2L, MAX_PARK);
+                
+                if(Thread.interrupted())
+                {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+    
+    private <T> void runEventLoop(MatlabFutureImpl<T> future, long timeout, TimeUnit unit, long deadline)
+            throws InterruptedException
+    {
+        if(CREATE_SECONDARY_LOOP != null)
+        {
+            this.runSecondaryLoop(future, timeout, unit);
+        }
+        else
+        {
+            //Blocks for the next event, an event is posted upon completion to wake it
+            future.addCompletionListener(new CompletionListener<T>()
+            {
+                @Override
+                public void completed(MatlabFuture<T> future)
+                {
+                    _queue.postEvent(new InvocationEvent(Toolkit.getDefaultToolkit(), NO_OP));
+                }
+            });
+            
+            //The timer's event wakes the loop so that the deadline is checked
+            Timer timer = startTimer(timeout, unit, new ActionListener()
+            {
+                @Override
+                public void actionPerformed(ActionEvent e) { }
+            });
+            try
+            {
+                while(!future.isDone() && !expired(timeout, deadline))
+                {
+                    dispatch(_queue.getNextEvent());
+                }
+            }
+            finally
+            {
+                if(timer != null)
+                {
+                    timer.stop();
+                }
+            }
+        }
+    }
+    
+    private <T> void runSecondaryLoop(MatlabFutureImpl<T> future, long timeout, TimeUnit unit)
+    {
+        final Object loop = invoke(CREATE_SECONDARY_LOOP, _queue);
+        final Runnable exit = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                invoke(SECONDARY_LOOP_EXIT, loop);
+            }
+        };
+        
+        //Exit from the Event Dispatch Thread, if completed before the loop is entered it will be exited once entered
+        //instead of exit being called too early and having no effect
+        future.addCompletionListener(new CompletionListener<T>()
+        {
+            @Override
+            public void completed(MatlabFuture<T> future)
+            {
+                _queue.postEvent(new InvocationEvent(Toolkit.getDefaultToolkit(), exit));
+            }
+        });
+        Timer timer = startTimer(timeout, unit, new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                invoke(SECONDARY_LOOP_EXIT, loop);
+            }
+        });
+        
+        try
+        {
+            //Does not return until exited, dispatching events in the meantime
+            if(!future.isDone())
+            {
+                invoke(SECONDARY_LOOP_ENTER, loop);
+            }
+        }
+        finally
+        {
+            if(timer != null)
+            {
+                timer.stop();
+            }
+        }
+    }
+    
+    /**
+     * Starts a timer which notifies {@code listener} on the Event Dispatch Thread once the timeout elapses.
+     * 
+     * @param timeout
+     * @param unit
+     * @param listener
+     * @return the timer, {@code null} if {@code timeout} is {@code 0}
+     */
+    private static Timer startTimer(long timeout, TimeUnit unit, ActionListener listener)
+    {
+        Timer timer = null;
+        if(timeout != 0L)
+        {
+            //Round up, the deadline has not elapsed if the timer fires before it
+            long millis = TimeUnit.NANOSECONDS.toMillis(unit.toNanos(timeout) + 999999L);
+            timer = new Timer((int) Math.min(millis, Integer.MAX_VALUE), listener);
+            timer.setRepeats(false);
+            timer.start();
+        }
+        
+        return timer;
+    }
+    
+    private static Object invoke(Method method, Object target)
+    {
+        try
+        {
+            return method.invoke(target);
+        }
+        catch(IllegalAccessException e)
+        {
+            throw new IllegalStateException("unable to call public method " + method, e);
+        }
+        catch(InvocationTargetException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            else if(e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            
+            throw new IllegalStateException(method + " failed", e.getCause());
+        }
+    }
+    
+    /**
+     * Dispatches {@code event} the way {@code EventQueue} does, using only public API. Events which are not active and
+     * whose source is neither a component nor a menu component are discarded, as they would not be delivered to any
+     * listener.
+     * 
+     * @param event 
+     */
+    private static void dispatch(AWTEvent event)
+    {
+        Object source = event.getSource();
+        if(event instanceof ActiveEvent)
+        {
+            ((ActiveEvent) event).dispatch();
+        }
+        else if(source instanceof Component)
+        {
+            ((Component) source).dispatchEvent(event);
+        }
+        else if(source instanceof MenuComponent)
+        {
+            ((MenuComponent) source).dispatchEvent(event);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * How a thread which is the AWT Event Dispatch Thread waits for MATLAB. While waiting, the Event Dispatch Thread
+ * continues to dispatch events so that the user interface stays responsive and so that MATLAB, which may itself need
+ * the Event Dispatch Thread in order to complete, does not deadlock. This only applies when running inside MATLAB.
+ * 
+ * @see MatlabProxyFactoryOptions.Builder#setEventDispatchWaitStrategy(matlabcontrol.EventDispatchWaitStrategy)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public enum EventDispatchWaitStrategy
+{
+    /**
+     * Repeatedly checks for events and for MATLAB having completed, never blocking. This has the lowest latency but
+     * keeps a processor core fully busy for the entire time MATLAB is running. This is how matlabcontrol waited on the
+     * Event Dispatch Thread prior to 4.2.0.
+     */
+    SPIN,
+    
+    /**
+     * Dispatches any events which are waiting, and if there are none parks the thread. The thread is unparked as soon
+     * as MATLAB completes. It is otherwise parked for an exponentially increasing duration, up to one millisecond,
+     * before checking for events again. Events may therefore be dispatched up to a millisecond late.
+     */
+    PARK,
+    
+    /**
+     * Runs a nested event loop which blocks until either an event arrives or MATLAB completes, and so uses no
+     * processor time while there is nothing to do. On Java 7 and later this is a {@code java.awt.SecondaryLoop}. This
+     * is the default.
+     */
+    EVENT_LOOP
+}
\ No newline at end of file
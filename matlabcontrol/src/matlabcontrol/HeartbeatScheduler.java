@@ -0,0 +1,141 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules the periodic liveness checks of every proxy and request receiver in this Java Virtual Machine on a single
+ * shared thread, instead of each having a timer thread of its own.
+ * <br><br>
+ * Checks typically make a remote method call which blocks until MATLAB responds, so the shared thread only decides when
+ * checks are due; the checks themselves run on a pool of threads. A check which is still running when it is next due
+ * is skipped rather than run again concurrently, so a session of MATLAB which does not respond occupies at most one
+ * pool thread and never delays the checks of other sessions. Pool threads are created only as checks block at the
+ * same time and exit after being idle for {@link #CHECK_THREAD_KEEP_ALIVE} milliseconds.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class HeartbeatScheduler
+{
+    /**
+     * How long an idle check thread is kept before it exits, in milliseconds.
+     */
+    static final long CHECK_THREAD_KEEP_ALIVE = 60000L;
+    
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "MLC Heartbeat");
+            thread.setDaemon(true);
+            
+            return thread;
+        }
+    });
+    
+    private static final ExecutorService CHECKERS = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            CHECK_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory()
+    {
+        private final AtomicInteger _counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "MLC Heartbeat Check-" + _counter.getAndIncrement());
+            thread.setDaemon(true);
+            
+            return thread;
+        }
+    });
+    
+    private HeartbeatScheduler() { }
+    
+    /**
+     * Runs {@code check} every {@code period} milliseconds, starting one period from now, until the returned future is
+     * cancelled. An exception thrown by {@code check} does not stop it from being run again. The check is never run
+     * concurrently with itself; if it is still running when next due, that run is skipped. Cancelling the returned
+     * future does not interrupt a run in progress.
+     * 
+     * @param check
+     * @param period
+     * @return 
+     */
+    static ScheduledFuture<?> schedule(final Runnable check, long period)
+    {
+        final AtomicBoolean running = new AtomicBoolean(false);
+        final Runnable run = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    check.run();
+                }
+                //Printed so that the failure is not silently lost on the pool thread
+                catch(RuntimeException e)
+                {
+                    e.printStackTrace();
+                }
+                finally
+                {
+                    running.set(false);
+                }
+            }
+        };
+        
+        return SCHEDULER.scheduleWithFixedDelay(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if(running.compareAndSet(false, true))
+                {
+                    try
+                    {
+                        CHECKERS.execute(run);
+                    }
+                    catch(RejectedExecutionException e)
+                    {
+                        running.set(false);
+                    }
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+}
\ No newline at end of file
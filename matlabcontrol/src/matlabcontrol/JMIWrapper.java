@@ -25,13 +25,14 @@ package matlabcontrol;
 import com.mathworks.jmi.Matlab;
 import com.mathworks.jmi.NativeMatlab;
 
-import java.awt.AWTEvent;
 import java.awt.EventQueue;
 import java.awt.Toolkit;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import matlabcontrol.MatlabProxy.MatlabThreadCallable;
 import matlabcontrol.MatlabProxy.MatlabThreadProxy;
@@ -63,25 +64,82 @@ class JMIWrapper
 {
     private static final MatlabThreadOperations THREAD_OPERATIONS = new MatlabThreadOperations();
     
-    private static final EventQueue EVENT_QUEUE = Toolkit.getDefaultToolkit().getSystemEventQueue();
-    private static final Method EVENT_QUEUE_DISPATCH_METHOD;
-    static
+    /**
+     * Returned by every call of a function with no return arguments. An empty array cannot be modified, and so is
+     * shared.
+     */
+    private static final Object[] NO_RESULTS = new Object[0];
+    
+    /**
+     * Incremented before every operation on MATLAB's main thread which could modify MATLAB's workspace, which is every
+     * operation other than retrieving a variable.
+     */
+    private static final AtomicLong WORKSPACE_VERSION = new AtomicLong();
+    
+    /**
+     * Coalesces work sent to MATLAB's main thread so that a single idle callback runs many pieces of work.
+     */
+    private static final MatlabThreadDispatcher DISPATCHER = new MatlabThreadDispatcher(new Executor()
     {
-        try
-        {
-            EVENT_QUEUE_DISPATCH_METHOD = EventQueue.class.getDeclaredMethod("dispatchEvent", AWTEvent.class);
-        }
-        catch(NoSuchMethodException e)
+        @Override
+        public void execute(Runnable runnable)
         {
-            throw new IllegalStateException("java.awt.EventQueue's protected void dispatchEvent(java.awt.AWTEvent) " +
-                    "method could not be found", e);
+            Matlab.whenMatlabIdle(runnable);
         }
-        
-        EVENT_QUEUE_DISPATCH_METHOD.setAccessible(true);
-    }
+    });
+    
+    /**
+     * Dispatches events while the Event Dispatch Thread waits for MATLAB.
+     */
+    private static final EventDispatchThreadWaiter EVENT_DISPATCH_WAITER =
+            new EventDispatchThreadWaiter(Toolkit.getDefaultToolkit().getSystemEventQueue());
      
     private JMIWrapper() { }
     
+    /**
+     * The number of operations made through matlabcontrol which could have modified MATLAB's workspace. Commands
+     * entered directly into MATLAB's Command Window are not counted.
+     * 
+     * @return 
+     */
+    static long getWorkspaceVersion()
+    {
+        return WORKSPACE_VERSION.get();
+    }
+    
+    /**
+     * Sets the limits on how much work is run on MATLAB's main thread each time MATLAB becomes idle.
+     * 
+     * @param batchSize maximum number of calls run per idle callback
+     * @param batchTime maximum time in milliseconds per idle callback during which new calls will be started
+     * @see MatlabThreadDispatcher#setBatchLimits(int, long)
+     */
+    static void setMatlabThreadBatchLimits(int batchSize, long batchTime)
+    {
+        DISPATCHER.setBatchLimits(batchSize, batchTime);
+    }
+    
+    /**
+     * Sets how the Event Dispatch Thread waits for MATLAB.
+     * 
+     * @param strategy 
+     */
+    static void setEventDispatchWaitStrategy(EventDispatchWaitStrategy strategy)
+    {
+        EVENT_DISPATCH_WAITER.setStrategy(strategy);
+    }
+    
+    /**
+     * The number of calls of {@code priority} waiting to be run on MATLAB's main thread.
+     * 
+     * @param priority
+     * @return 
+     */
+    static int getMatlabThreadQueueDepth(MatlabThreadPriority priority)
+    {
+        return DISPATCHER.getQueueDepth(priority);
+    }
+    
     /**
      * Exits MATLAB without waiting for MATLAB to return, because MATLAB will not return when exiting.
      * 
@@ -118,83 +176,45 @@ class JMIWrapper
     //See MatlabProxy for the method documentation, acts as if running inside MATLAB
     //(A LocalMatlabProxy is just a thin wrapper around these methods)
     
-    static void setVariable(final String variableName, final Object value) throws MatlabInvocationException
+    static void setVariable(String variableName, Object value) throws MatlabInvocationException
     {
-        invokeAndWait(new MatlabThreadCallable<Void>()
-        {
-            @Override
-            public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
-            {
-                proxy.setVariable(variableName, value);
-                
-                return null;
-            }
-        });
+        invokeAndWait(new MatlabCallables.SetVariable(variableName, value));
     }
     
-    static Object getVariable(final String variableName) throws MatlabInvocationException
+    static Object getVariable(String variableName) throws MatlabInvocationException
     {
-        return invokeAndWait(new MatlabThreadCallable<Object>()
-        {
-            @Override
-            public Object call(MatlabThreadProxy proxy) throws MatlabInvocationException
-            {
-                return proxy.getVariable(variableName);
-            }
-        });
+        return invokeAndWait(new MatlabCallables.GetVariable(variableName));
     }
     
-    static void eval(final String command) throws MatlabInvocationException
+    static void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+    {
+        invokeAndWait(new MatlabCallables.SetVariables(variables));
+    }
+    
+    static Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+    {
+        return invokeAndWait(new MatlabCallables.GetVariables(variableNames));
+    }
+    
+    static void eval(String command) throws MatlabInvocationException
     {           
-        invokeAndWait(new MatlabThreadCallable<Void>()
-        {
-            @Override
-            public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
-            {
-                proxy.eval(command);
-                
-                return null;
-            }
-        });
+        invokeAndWait(new MatlabCallables.Eval(command));
     }
     
-    static Object[] returningEval(final String command, final int nargout) throws MatlabInvocationException
+    static Object[] returningEval(String command, int nargout) throws MatlabInvocationException
     {
-        return invokeAndWait(new MatlabThreadCallable<Object[]>()
-        {
-            @Override
-            public Object[] call(MatlabThreadProxy proxy) throws MatlabInvocationException
-            {
-                return proxy.returningEval(command, nargout);
-            }
-        });
+        return invokeAndWait(new MatlabCallables.ReturningEval(command, nargout));
     }
 
-    static void feval(final String functionName, final Object... args) throws MatlabInvocationException
+    static void feval(String functionName, Object... args) throws MatlabInvocationException
     {   
-        invokeAndWait(new MatlabThreadCallable<Void>()
-        {
-            @Override
-            public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
-            {
-                proxy.feval(functionName, args);
-                
-                return null;
-            }
-        });
+        invokeAndWait(new MatlabCallables.Feval(functionName, args));
     }
 
-    static Object[] returningFeval(final String functionName, final int nargout, final Object... args)
+    static Object[] returningFeval(String functionName, int nargout, Object... args)
             throws MatlabInvocationException
     {
-        return invokeAndWait(new MatlabThreadCallable<Object[]>()
-        {
-            @Override
-            public Object[] call(MatlabThreadProxy proxy) throws MatlabInvocationException
-            {
-                return proxy.returningFeval(functionName, nargout, args);
-            }
-        });
+        return invokeAndWait(new MatlabCallables.ReturningFeval(functionName, nargout, args));
     }
     
     /**
@@ -205,7 +225,26 @@ class JMIWrapper
      * @return
      * @throws MatlabInvocationException 
      */
-    static <T> T invokeAndWait(final MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    static <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    {
+        return invokeAndWait(callable, 0L, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Invokes the {@code callable} on the main MATLAB thread and waits up to {@code timeout} for the computation to be
+     * completed. If the timeout elapses before MATLAB has started the {@code callable} it is cancelled so that it will
+     * never run. A {@code timeout} of {@code 0} waits indefinitely. If called on MATLAB's main thread the
+     * {@code callable} is run immediately and so the timeout does not apply.
+     * 
+     * @param <T>
+     * @param callable
+     * @param timeout
+     * @param unit
+     * @return
+     * @throws MatlabInvocationException 
+     */
+    static <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+            throws MatlabInvocationException
     {
         T result;
         
@@ -223,124 +262,53 @@ class JMIWrapper
         }
         else if(EventQueue.isDispatchThread())
         {
-            final AtomicReference<MatlabReturn<T>> returnRef = new AtomicReference<MatlabReturn<T>>();
+            MatlabFutureImpl<T> future = invokeAsync(callable);
             
-            Matlab.whenMatlabIdle(new Runnable()
-            {
-                @Override
-                public void run()
-                {
-                    MatlabReturn<T> matlabReturn;
-                    
-                    try
-                    {
-                        matlabReturn = new MatlabReturn<T>(callable.call(THREAD_OPERATIONS));
-                    }
-                    catch(MatlabInvocationException e)
-                    {
-                        matlabReturn = new MatlabReturn<T>(e);
-                    }
-                    catch(RuntimeException e)
-                    {
-                        ThrowableWrapper cause = new ThrowableWrapper(e);
-                        MatlabInvocationException userCausedException =
-                                MatlabInvocationException.Reason.RUNTIME_EXCEPTION.asException(cause);
-                        matlabReturn = new MatlabReturn<T>(userCausedException);
-                    }
-                    
-                    returnRef.set(matlabReturn);
-                }
-            });
-            
-            //Pump event queue while waiting for MATLAB to complete the computation
+            //Dispatch events while waiting for MATLAB to complete the computation
             try
             {
-                while(returnRef.get() == null)
-                {
-                    if(EVENT_QUEUE.peekEvent() != null)
-                    {
-                        EVENT_QUEUE_DISPATCH_METHOD.invoke(EVENT_QUEUE, EVENT_QUEUE.getNextEvent());
-                    }
-                }
+                EVENT_DISPATCH_WAITER.await(future, timeout, unit);
             }
             catch(InterruptedException e)
             {
                 throw MatlabInvocationException.Reason.EVENT_DISPATCH_THREAD.asException(e);
             }
-            catch(IllegalAccessException e)
-            {
-                throw MatlabInvocationException.Reason.EVENT_DISPATCH_THREAD.asException(e);
-            }
-            catch(InvocationTargetException e)
+            catch(RuntimeException e)
             {
                 throw MatlabInvocationException.Reason.EVENT_DISPATCH_THREAD.asException(e);
             }
             
-            //Process return
-            MatlabReturn<T> matlabReturn = returnRef.get();
-            
-            //If exception was thrown, rethrow it
-            if(matlabReturn.exception != null)
+            //Process return, rethrowing the exception if one was thrown
+            if(future.isDone())
             {
-                throw matlabReturn.exception;
+                result = future.getResult();
             }
-            //Return data computed by MATLAB
             else
             {
-                result = matlabReturn.data;
+                result = timedOut(future, timeout, unit);
             }
         }
+        else if(timeout == 0L)
+        {
+            //Nothing can be cancelled without a timeout, so wait using the calling thread's reusable slot which,
+            //unlike a future, does not need to be allocated
+            CompletionSlot slot = CompletionSlot.get();
+            slot.prepare(callable, THREAD_OPERATIONS);
+            dispatch(slot, callable);
+            
+            result = slot.await(callable);
+        }
         else
         {
-            //Used to block the calling thread while waiting for MATLAB to finish computing
-            final ArrayBlockingQueue<MatlabReturn<T>> returnQueue = new ArrayBlockingQueue<MatlabReturn<T>>(1); 
-
-            Matlab.whenMatlabIdle(new Runnable()
-            {
-                @Override
-                public void run()
-                {
-                    MatlabReturn<T> matlabReturn;
-                    
-                    try
-                    {
-                        matlabReturn = new MatlabReturn<T>(callable.call(THREAD_OPERATIONS));
-                    }
-                    catch(MatlabInvocationException e)
-                    {
-                        matlabReturn = new MatlabReturn<T>(e);
-                    }
-                    catch(RuntimeException e)
-                    {
-                        ThrowableWrapper cause = new ThrowableWrapper(e);
-                        MatlabInvocationException userCausedException =
-                                MatlabInvocationException.Reason.RUNTIME_EXCEPTION.asException(cause);
-                        matlabReturn = new MatlabReturn<T>(userCausedException);
-                    }
-                    
-                    returnQueue.add(matlabReturn);
-                }
-            });
-
+            //Wait for MATLAB's main thread to finish computation, rethrowing the exception if one was thrown
+            MatlabFutureImpl<T> future = invokeAsync(callable);
             try
             {
-                //Wait for MATLAB's main thread to finish computation
-                MatlabReturn<T> matlabReturn = returnQueue.take();
-
-                //If exception was thrown, rethrow it
-                if(matlabReturn.exception != null)
-                {
-                    throw matlabReturn.exception;
-                }
-                //Return data computed by MATLAB
-                else
-                {
-                    result = matlabReturn.data;
-                }
+                result = future.getResult(timeout, unit);
             }
-            catch(InterruptedException e)
+            catch(TimeoutException e)
             {
-                throw MatlabInvocationException.Reason.INTERRRUPTED.asException(e);
+                result = timedOut(future, timeout, unit);
             }
         }
         
@@ -348,28 +316,122 @@ class JMIWrapper
     }
     
     /**
-     * Data returned from MATLAB or exception thrown. The two different constructors are needed as opposed to using
-     * {@code instanceof} because it is possible the user would want to <strong>return</strong> an exception. The
-     * appropriate constructor will always be used because determining which overloaded constructor (or method) is done
-     * at compile time, not run time.
+     * Handles the {@code future} not having completed within its timeout. If MATLAB has not yet started running it,
+     * it is cancelled. Otherwise, unless it has completed in the meantime, MATLAB is left to finish running it.
+     * 
+     * @param <T>
+     * @param future
+     * @param timeout
+     * @param unit
+     * @return the result of the future, only if it completed after the timeout elapsed
+     * @throws MatlabInvocationException with reason {@code CANCELLED} or {@code TIMEOUT}
+     */
+    private static <T> T timedOut(MatlabFutureImpl<T> future, long timeout, TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        String timeoutInfo = "timeout of " + timeout + " " + unit.toString().toLowerCase();
+        
+        if(future.cancel(false))
+        {
+            throw MatlabInvocationException.Reason.CANCELLED.asException(timeoutInfo);
+        }
+        else if(!future.isDone())
+        {
+            throw MatlabInvocationException.Reason.TIMEOUT.asException(timeoutInfo);
+        }
+        
+        return future.getResult();
+    }
+    
+    /**
+     * Invokes the {@code callable} on the main MATLAB thread without waiting for the computation to be completed. If
+     * called on MATLAB's main thread then the {@code callable} is run immediately, otherwise it is queued to run once
+     * MATLAB is idle.
+     * 
+     * @param <T>
+     * @param callable
+     * @return future which will be completed on MATLAB's main thread
+     */
+    static <T> MatlabFutureImpl<T> invokeAsync(MatlabThreadCallable<T> callable)
+    {
+        MatlabFutureImpl<T> future = new MatlabFutureImpl<T>();
+        MatlabThreadTask<T> task = new MatlabThreadTask<T>(callable, future);
+        
+        if(NativeMatlab.nativeIsMatlabThread())
+        {
+            task.run();
+        }
+        else
+        {
+            dispatch(task, callable);
+        }
+        
+        return future;
+    }
+    
+    /**
+     * Queues {@code task}, which will run {@code callable}, to be run on MATLAB's main thread with the priority of
+     * {@code callable}.
+     * 
+     * @param task
+     * @param callable 
      */
-    private static class MatlabReturn<T>
+    private static void dispatch(MatlabThreadDispatcher.Task task, MatlabThreadCallable<?> callable)
     {
-        final T data;
-        final MatlabInvocationException exception;
+        if(callable instanceof TimedCallable)
+        {
+            ((TimedCallable<?>) callable).dispatched();
+        }
         
-        MatlabReturn(T value)
+        DISPATCHER.dispatch(task, PrioritizedCallable.priorityOf(callable));
+    }
+    
+    /**
+     * Runs a callable on MATLAB's main thread and completes its future with the result. If the future has been
+     * cancelled before MATLAB gets to it, the callable is not run.
+     * <br><br>
+     * The future is completed with a result or an exception depending on how the callable returns, as opposed to using
+     * {@code instanceof}, because it is possible the user would want to <strong>return</strong> an exception.
+     */
+    private static class MatlabThreadTask<T> extends MatlabThreadDispatcher.Task
+    {
+        private final MatlabThreadCallable<T> _callable;
+        private final MatlabFutureImpl<T> _future;
+        
+        MatlabThreadTask(MatlabThreadCallable<T> callable, MatlabFutureImpl<T> future)
+        {
+            _callable = callable;
+            _future = future;
+        }
+        
+        @Override
+        public void run()
         {
-            this.data = value;
-            this.exception = null;
+            if(_future.start())
+            {
+                try
+                {
+                    _future.complete(_callable.call(THREAD_OPERATIONS));
+                }
+                catch(MatlabInvocationException e)
+                {
+                    _future.fail(e);
+                }
+                catch(RuntimeException e)
+                {
+                    ThrowableWrapper cause = new ThrowableWrapper(e);
+                    _future.fail(MatlabInvocationException.Reason.RUNTIME_EXCEPTION.asException(cause));
+                }
+            }
         }
         
-        MatlabReturn(MatlabInvocationException exception)
+        @Override
+        boolean isCancelled()
         {
-            this.data = null;
-            this.exception = exception;
+            return _future.isCancelled();
         }
     }
+    
     /**
      * Interacts with MATLAB on MATLAB's main thread. Interacting on MATLAB's main thread is not enforced by this class,
      * that is done by its use in {@link JMIWrapper#invokeAndWait(matlabcontrol.MatlabProxy.MatlabThreadCallable)}.
@@ -385,7 +447,30 @@ class JMIWrapper
         @Override
         public Object getVariable(String variableName) throws MatlabInvocationException
         {
-            return this.returningFeval("evalin", 1, "base", variableName)[0];
+            //Retrieving a variable does not modify the workspace
+            return this.fevalOnMatlabThread("evalin", 1, "base", variableName)[0];
+        }
+        
+        @Override
+        public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+        {
+            for(Map.Entry<String, Object> variable : variables.entrySet())
+            {
+                this.setVariable(variable.getKey(), variable.getValue());
+            }
+        }
+        
+        @Override
+        public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+        {
+            //A LinkedHashMap is serializable and iterates in the order the names were provided
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            for(String variableName : variableNames)
+            {
+                values.put(variableName, this.getVariable(variableName));
+            }
+            
+            return values;
         }
 
         @Override
@@ -408,6 +493,14 @@ class JMIWrapper
 
         @Override
         public Object[] returningFeval(String functionName, int nargout, Object... args) throws MatlabInvocationException
+        {
+            WORKSPACE_VERSION.incrementAndGet();
+            
+            return this.fevalOnMatlabThread(functionName, nargout, args);
+        }
+        
+        private Object[] fevalOnMatlabThread(String functionName, int nargout, Object... args)
+                throws MatlabInvocationException
         {
             //Functions with no arguments should be passed null, not an empty array
             if(args != null && args.length == 0)
@@ -422,7 +515,7 @@ class JMIWrapper
                 Object[] resultArray;
                 if(nargout == 0)
                 {
-                    resultArray = new Object[0];
+                    resultArray = NO_RESULTS;
                 }
                 else if(nargout == 1)
                 {
@@ -24,6 +24,8 @@ package matlabcontrol;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Methods that can be called to control MATLAB except for {@link #checkConnection()}.
@@ -42,10 +44,16 @@ interface JMIWrapperRemote extends Remote
 {
     public void exit() throws RemoteException;
     
+    public int getMatlabThreadQueueDepth(MatlabThreadPriority priority) throws RemoteException;
+    
     public void setVariable(String variableName, Object value) throws RemoteException, MatlabInvocationException;
 
     public Object getVariable(String variableName) throws RemoteException, MatlabInvocationException;
     
+    public void setVariables(Map<String, Object> variables) throws RemoteException, MatlabInvocationException;
+    
+    public Map<String, Object> getVariables(String[] variableNames) throws RemoteException, MatlabInvocationException;
+    
     public void eval(String command) throws RemoteException, MatlabInvocationException;
     
     public Object[] returningEval(String command, int nargout) throws RemoteException, MatlabInvocationException;
@@ -56,6 +64,56 @@ interface JMIWrapperRemote extends Remote
     
     public <U> U invokeAndWait(MatlabProxy.MatlabThreadCallable<U> callable) throws RemoteException, MatlabInvocationException;
     
+    /**
+     * Runs {@code callable} on MATLAB's main thread, waiting up to {@code timeout}. The timeout is enforced inside
+     * MATLAB's JVM so that work which has not yet started can be cancelled there.
+     * 
+     * @param <U>
+     * @param callable
+     * @param timeout
+     * @param unit
+     * @return
+     * @throws RemoteException
+     * @throws MatlabInvocationException 
+     */
+    public <U> U invokeAndWait(MatlabProxy.MatlabThreadCallable<U> callable, long timeout, TimeUnit unit)
+            throws RemoteException, MatlabInvocationException;
+    
+    /**
+     * Queues {@code callable} to be run on MATLAB's main thread and returns without waiting for it to run. Once it has
+     * run, {@code receiver} is notified with {@code invocationID} and the result.
+     * 
+     * @param invocationID identifies the invocation to {@code receiver}
+     * @param callable
+     * @param receiver
+     * @throws RemoteException 
+     */
+    public void invokeAsync(long invocationID, MatlabProxy.MatlabThreadCallable<?> callable, CompletionReceiver receiver)
+            throws RemoteException;
+    
+    /**
+     * Queues each of {@code callables}, in order, as if by {@link #invokeAsync(long, MatlabProxy.MatlabThreadCallable,
+     * CompletionReceiver)} with the invocation identifier at the same index of {@code invocationIDs}. Results are
+     * sent to {@code receiver} as they complete, which is not necessarily in the order they were sent.
+     * 
+     * @param invocationIDs
+     * @param callables
+     * @param receiver
+     * @throws RemoteException 
+     */
+    public void invokeAsync(long[] invocationIDs, MatlabProxy.MatlabThreadCallable<?>[] callables,
+            CompletionReceiver receiver) throws RemoteException;
+    
+    /**
+     * Cancels the asynchronous invocation identified by {@code invocationID} if MATLAB has not yet started running it.
+     * A cancelled invocation is never run and no completion is sent for it.
+     * 
+     * @param invocationID
+     * @return if cancelled, {@code false} if it has already started running, has completed, or is not known
+     * @throws RemoteException 
+     */
+    public boolean cancelAsync(long invocationID) throws RemoteException;
+    
     /**
      * This method does nothing. It is used internally to check if a connection is still active via calling this method
      * and seeing if it throws a {@code RemoteException} (if it does, the connection is no longer active).
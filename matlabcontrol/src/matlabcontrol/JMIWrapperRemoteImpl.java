@@ -22,7 +22,24 @@ package matlabcontrol;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import matlabcontrol.MatlabFuture.CompletionListener;
 
 /**
  * Passes method calls off to {@link JMIWrapper}.
@@ -38,7 +55,84 @@ import java.rmi.RemoteException;
  */
 class JMIWrapperRemoteImpl extends LocalHostRMIHelper.LocalHostRemoteObject implements JMIWrapperRemote
 {   
-    public JMIWrapperRemoteImpl() throws RemoteException { }
+    /**
+     * Sends the results of asynchronous invocations back to the receivers so that MATLAB's main thread never waits on
+     * RMI. Each wrapper sends its completions on its own, so a receiver which is slow to accept them holds up only the
+     * proxy it belongs to. Threads are created as wrappers need them and are reused once idle.
+     */
+    private static final ExecutorService COMPLETION_SENDERS = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        private final AtomicInteger _counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "MLC Completion Sender-" + _counter.getAndIncrement());
+            thread.setDaemon(true);
+            
+            return thread;
+        }
+    });
+    
+    /**
+     * Futures which have completed and whose results have not yet been sent to their receivers.
+     */
+    private final ConcurrentLinkedQueue<Completion> _completions = new ConcurrentLinkedQueue<Completion>();
+    
+    /**
+     * Whether {@link #_sendCompletions} has been given to the {@link #COMPLETION_SENDERS} and has not yet finished.
+     */
+    private final AtomicBoolean _completionSendScheduled = new AtomicBoolean(false);
+    
+    /**
+     * Sends all queued completions, one remote call per receiver. Completions which arrive while a send is in progress
+     * are sent together afterwards, so under load results are returned in batches rather than one call per result.
+     * Every completion of a proxy has the same receiver, but they are grouped by receiver regardless.
+     */
+    private final Runnable _sendCompletions = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            do
+            {
+                Map<CompletionReceiver, List<Completion>> batches =
+                        new LinkedHashMap<CompletionReceiver, List<Completion>>();
+                Completion completion;
+                while((completion = _completions.poll()) != null)
+                {
+                    List<Completion> batch = batches.get(completion.receiver);
+                    if(batch == null)
+                    {
+                        batch = new ArrayList<Completion>();
+                        batches.put(completion.receiver, batch);
+                    }
+                    batch.add(completion);
+                }
+                
+                for(Map.Entry<CompletionReceiver, List<Completion>> entry : batches.entrySet())
+                {
+                    send(entry.getKey(), entry.getValue());
+                }
+                
+                _completionSendScheduled.set(false);
+            }
+            //Completions queued after the queue was last polled but before the flag was cleared must still be sent
+            while(!_completions.isEmpty() && _completionSendScheduled.compareAndSet(false, true));
+        }
+    };
+    
+    /**
+     * Asynchronous invocations which have not yet completed, keyed by invocation identifier, so that they may be
+     * cancelled. Invocation identifiers are only unique to a proxy, and each proxy has a wrapper of its own.
+     */
+    private final ConcurrentMap<Long, MatlabFuture<?>> _pendingFutures =
+            new ConcurrentHashMap<Long, MatlabFuture<?>>();
+    
+    public JMIWrapperRemoteImpl(boolean useUnixDomainSockets) throws RemoteException
+    {
+        super(useUnixDomainSockets);
+    }
     
     @Override
     public void exit()
@@ -46,6 +140,12 @@ class JMIWrapperRemoteImpl extends LocalHostRMIHelper.LocalHostRemoteObject impl
         JMIWrapper.exit();
     }
     
+    @Override
+    public int getMatlabThreadQueueDepth(MatlabThreadPriority priority)
+    {
+        return JMIWrapper.getMatlabThreadQueueDepth(priority);
+    }
+    
     @Override
     public void eval(String command) throws MatlabInvocationException
     {
@@ -55,7 +155,7 @@ class JMIWrapperRemoteImpl extends LocalHostRMIHelper.LocalHostRemoteObject impl
     @Override
     public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
     {    
-        return JMIWrapper.returningEval(command, nargout);
+        return PrimitiveArrayCodec.encodeElements(JMIWrapper.returningEval(command, nargout));
     }
     
     @Override
@@ -67,7 +167,7 @@ class JMIWrapperRemoteImpl extends LocalHostRMIHelper.LocalHostRemoteObject impl
     @Override
     public Object[] returningFeval(String command, int nargout, Object... args) throws MatlabInvocationException
     {
-        return JMIWrapper.returningFeval(command, nargout, args);
+        return PrimitiveArrayCodec.encodeElements(JMIWrapper.returningFeval(command, nargout, args));
     }
     
     @Override
@@ -79,13 +179,185 @@ class JMIWrapperRemoteImpl extends LocalHostRMIHelper.LocalHostRemoteObject impl
     @Override
     public Object getVariable(String variableName) throws MatlabInvocationException
     {
-        return JMIWrapper.getVariable(variableName);
+        return PrimitiveArrayCodec.encode(JMIWrapper.getVariable(variableName));
+    }
+    
+    @Override
+    public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+    {
+        JMIWrapper.setVariables(variables);
     }
     
     @Override
+    public Map<String, Object> getVariables(String[] variableNames) throws MatlabInvocationException
+    {
+        return PrimitiveArrayCodec.encodeValues(JMIWrapper.getVariables(variableNames));
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
     public <T> T invokeAndWait(MatlabProxy.MatlabThreadCallable<T> callable) throws MatlabInvocationException
     {
-        return JMIWrapper.invokeAndWait(callable);
+        //The encoded form is never seen as a T, it is replaced by the array it holds when deserialized
+        return (T) PrimitiveArrayCodec.encodeResult(JMIWrapper.invokeAndWait(callable));
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T invokeAndWait(MatlabProxy.MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        return (T) PrimitiveArrayCodec.encodeResult(JMIWrapper.invokeAndWait(callable, timeout, unit));
+    }
+    
+    @Override
+    public void invokeAsync(long invocationID, MatlabProxy.MatlabThreadCallable<?> callable,
+            CompletionReceiver receiver)
+    {
+        this.invokeAsync(invocationID, JMIWrapper.invokeAsync(callable), receiver);
+    }
+    
+    @Override
+    public void invokeAsync(long[] invocationIDs, MatlabProxy.MatlabThreadCallable<?>[] callables,
+            CompletionReceiver receiver)
+    {
+        for(int i = 0; i < invocationIDs.length; i++)
+        {
+            this.invokeAsync(invocationIDs[i], JMIWrapper.invokeAsync(callables[i]), receiver);
+        }
+    }
+    
+    /**
+     * Sends the result of {@code future} to {@code receiver} once it completes, unless it is cancelled first.
+     * 
+     * @param <T>
+     * @param invocationID
+     * @param future
+     * @param receiver 
+     */
+    <T> void invokeAsync(final long invocationID, MatlabFuture<T> future, final CompletionReceiver receiver)
+    {
+        //Registered before the listener is added, as the listener is notified immediately if already complete
+        _pendingFutures.put(invocationID, future);
+        future.addCompletionListener(new CompletionListener<T>()
+        {
+            @Override
+            public void completed(MatlabFuture<T> future)
+            {
+                _pendingFutures.remove(invocationID);
+                
+                //The receiver cancelled it, so is not waiting for a completion
+                if(future.isCancelled())
+                {
+                    return;
+                }
+                
+                _completions.add(new Completion(invocationID, future, receiver));
+                
+                if(_completionSendScheduled.compareAndSet(false, true))
+                {
+                    COMPLETION_SENDERS.execute(_sendCompletions);
+                }
+            }
+        });
+    }
+    
+    private static void send(CompletionReceiver receiver, List<Completion> batch)
+    {
+        if(batch.size() == 1)
+        {
+            batch.get(0).send();
+        }
+        else
+        {
+            long[] invocationIDs = new long[batch.size()];
+            Object[] results = new Object[batch.size()];
+            MatlabInvocationException[] exceptions = new MatlabInvocationException[batch.size()];
+            for(int i = 0; i < batch.size(); i++)
+            {
+                Completion completion = batch.get(i);
+                invocationIDs[i] = completion.invocationID;
+                results[i] = completion.result;
+                exceptions[i] = completion.exception;
+            }
+            
+            try
+            {
+                receiver.completeAll(invocationIDs, results, exceptions);
+            }
+            //The receiver's JVM is no longer reachable, there is nobody to tell
+            catch(ConnectException e) { }
+            catch(ConnectIOException e) { }
+            //Most likely one of the results could not be transferred, send them individually so only it fails
+            catch(RemoteException e)
+            {
+                for(Completion completion : batch)
+                {
+                    completion.send();
+                }
+            }
+        }
+    }
+    
+    /**
+     * The result of a completed future and the receiver to send it to.
+     */
+    private static class Completion
+    {
+        final long invocationID;
+        final CompletionReceiver receiver;
+        final Object result;
+        final MatlabInvocationException exception;
+        
+        Completion(long invocationID, MatlabFuture<?> future, CompletionReceiver receiver)
+        {
+            this.invocationID = invocationID;
+            this.receiver = receiver;
+            
+            Object futureResult = null;
+            MatlabInvocationException futureException = null;
+            try
+            {
+                futureResult = PrimitiveArrayCodec.encodeResult(future.getResult());
+            }
+            catch(MatlabInvocationException e)
+            {
+                futureException = e;
+            }
+            
+            this.result = futureResult;
+            this.exception = futureException;
+        }
+        
+        void send()
+        {
+            try
+            {
+                receiver.complete(invocationID, result, exception);
+            }
+            //The receiver's JVM is no longer reachable, there is nobody to tell
+            catch(ConnectException e) { }
+            catch(ConnectIOException e) { }
+            //Most likely the result could not be transferred, let the receiver know the invocation failed
+            catch(RemoteException e)
+            {
+                MatlabInvocationException failure =
+                        MatlabInvocationException.Reason.UNMARSHAL.asException(new ThrowableWrapper(e));
+                try
+                {
+                    receiver.complete(invocationID, null, failure);
+                }
+                catch(RemoteException ex) { }
+            }
+        }
+    }
+    
+    @Override
+    public boolean cancelAsync(long invocationID)
+    {
+        MatlabFuture<?> future = _pendingFutures.remove(invocationID);
+        
+        return future != null && future.cancel(false);
     }
     
     @Override
@@ -0,0 +1,188 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the distribution of latencies recorded for one {@link LatencyPhase} of one function. So that
+ * recording is cheap, latencies are counted in buckets whose bounds are powers of two nanoseconds: bucket {@code i}
+ * counts latencies of at least 2<sup>i</sup> and less than 2<sup>i+1</sup> nanoseconds, with bucket {@code 0} also
+ * counting latencies of zero. Percentiles are therefore approximate, they are reported as the upper bound of the bucket
+ * the percentile falls in (but never more than the maximum latency recorded), and so are at most double the exact
+ * value.
+ * <br><br>
+ * The snapshot is taken while latencies may still be being recorded, so the count, total, maximum and buckets may not
+ * all reflect exactly the same set of latencies.
+ * 
+ * @see MatlabProxy#getLatencyHistogram(java.lang.String, matlabcontrol.LatencyPhase)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class LatencyHistogram implements Serializable
+{
+    private static final long serialVersionUID = 0xB100L;
+    
+    /**
+     * The number of buckets, one for each possible bit length of a non-negative {@code long}.
+     */
+    static final int BUCKET_COUNT = 64;
+    
+    private final long[] _buckets;
+    private final long _count;
+    private final long _total;
+    private final long _max;
+    
+    LatencyHistogram(long[] buckets, long count, long total, long max)
+    {
+        _buckets = buckets;
+        _count = count;
+        _total = total;
+        _max = max;
+    }
+    
+    /**
+     * The bucket which counts a latency of {@code nanos}.
+     * 
+     * @param nanos
+     * @return 
+     */
+    static int bucketOf(long nanos)
+    {
+        return (nanos <= 0L) ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+    
+    /**
+     * The number of latencies recorded.
+     * 
+     * @return 
+     */
+    public long getCount()
+    {
+        return _count;
+    }
+    
+    /**
+     * The sum of all latencies recorded.
+     * 
+     * @param unit
+     * @return 
+     */
+    public long getTotal(TimeUnit unit)
+    {
+        return unit.convert(_total, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * The mean latency, {@code 0} if no latencies have been recorded.
+     * 
+     * @param unit
+     * @return 
+     */
+    public double getMean(TimeUnit unit)
+    {
+        return (_count == 0L) ? 0D : (double) _total / _count / unit.toNanos(1L);
+    }
+    
+    /**
+     * The largest latency recorded, {@code 0} if no latencies have been recorded.
+     * 
+     * @param unit
+     * @return 
+     */
+    public long getMax(TimeUnit unit)
+    {
+        return unit.convert(_max, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * The approximate latency which {@code percentile} percent of recorded latencies do not exceed, {@code 0} if no
+     * latencies have been recorded.
+     * 
+     * @param percentile greater than {@code 0} and at most {@code 100}
+     * @param unit
+     * @return 
+     * @throws IllegalArgumentException if {@code percentile} is not greater than {@code 0} and at most {@code 100}
+     */
+    public long getPercentile(double percentile, TimeUnit unit)
+    {
+        if(!(percentile > 0D && percentile <= 100D))
+        {
+            throw new IllegalArgumentException("percentile [" + percentile + "] must be greater than 0 and at most " +
+                    "100");
+        }
+        
+        //The buckets are summed rather than using the count as they may not reflect exactly the same latencies
+        long bucketsTotal = 0L;
+        for(long bucket : _buckets)
+        {
+            bucketsTotal += bucket;
+        }
+        
+        long nanos = 0L;
+        double threshold = bucketsTotal * (percentile / 100D);
+        long counted = 0L;
+        for(int i = 0; i < _buckets.length && bucketsTotal != 0L; i++)
+        {
+            counted += _buckets[i];
+            if(counted >= threshold && _buckets[i] != 0L)
+            {
+                //The largest latency the bucket counts, which for the last bucket is not representable
+                nanos = (i == BUCKET_COUNT - 1) ? _max : Math.min((1L << (i + 1)) - 1L, _max);
+                break;
+            }
+        }
+        
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * The number of latencies counted in each bucket. Modifying the returned array has no effect on this histogram.
+     * 
+     * @return 
+     */
+    public long[] getBucketCounts()
+    {
+        return _buckets.clone();
+    }
+    
+    /**
+     * Returns a brief description of this histogram. The exact details of this representation are unspecified and are
+     * subject to change.
+     * 
+     * @return 
+     */
+    @Override
+    public String toString()
+    {
+        return "[" + this.getClass().getName() +
+                " count=" + _count + "," +
+                " meanNanos=" + (long) this.getMean(TimeUnit.NANOSECONDS) + "," +
+                " p99Nanos=" + this.getPercentile(99D, TimeUnit.NANOSECONDS) + "," +
+                " maxNanos=" + _max +
+                "]";
+    }
+}
\ No newline at end of file
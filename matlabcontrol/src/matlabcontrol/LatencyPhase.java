@@ -0,0 +1,79 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The phases into which the latency of a method which waits for MATLAB is divided when latency instrumentation is
+ * enabled.
+ * 
+ * @see MatlabProxyFactoryOptions.Builder#setLatencyInstrumentation(boolean)
+ * @see MatlabProxy#getLatencyHistogram(java.lang.String, matlabcontrol.LatencyPhase)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public enum LatencyPhase
+{
+    /**
+     * From when the method was called until it returned, as observed by the calling thread.
+     */
+    TOTAL,
+    
+    /**
+     * Everything in {@link #TOTAL} not accounted for by the other phases. When running outside MATLAB this is sending
+     * the method to MATLAB's Java Virtual Machine, unmarshalling it there, and sending the result back, along with the
+     * overhead of the remote call itself. When running inside MATLAB this is the hand-off of the result to the calling
+     * thread.
+     */
+    TRANSPORT,
+    
+    /**
+     * Marshalling the method and its arguments in the calling Java Virtual Machine. This is zero when running inside
+     * MATLAB as nothing is marshalled.
+     */
+    CLIENT_MARSHAL,
+    
+    /**
+     * From when the method was queued to run on MATLAB's main thread until MATLAB began running it. This is zero for
+     * methods called on MATLAB's main thread as they are run immediately.
+     */
+    QUEUE_WAIT,
+    
+    /**
+     * Running on MATLAB's main thread.
+     */
+    EXECUTION,
+    
+    /**
+     * Marshalling the result in MATLAB's Java Virtual Machine. This is zero when running inside MATLAB as nothing is
+     * marshalled.
+     */
+    RESULT_MARSHAL,
+    
+    /**
+     * Unmarshalling the result in the calling Java Virtual Machine. This is zero when running inside MATLAB as nothing
+     * is marshalled.
+     */
+    CLIENT_UNMARSHAL
+}
\ No newline at end of file
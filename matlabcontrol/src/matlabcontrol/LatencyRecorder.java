@@ -0,0 +1,375 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import matlabcontrol.MatlabProxy.Identifier;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+
+/**
+ * Records the latencies of a proxy's methods which wait for MATLAB, aggregated per function name into a histogram for
+ * each {@link LatencyPhase}. A method which fails is recorded only in the {@link LatencyPhase#TOTAL} histogram, as how
+ * far it got is unknown, and is counted as a failure and, if it timed out, as a timeout. Recording a latency is a
+ * handful of atomic increments and does not lock.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class LatencyRecorder implements MatlabProxyLatencyMBean
+{
+    private static final LatencyPhase[] PHASES = LatencyPhase.values();
+    
+    /**
+     * Keyed by function name.
+     */
+    private final ConcurrentMap<String, Latencies> _latencies = new ConcurrentHashMap<String, Latencies>();
+    
+    /**
+     * The name this recorder is registered under with the platform MBean server.
+     */
+    private final ObjectName _name;
+    
+    LatencyRecorder(Identifier id)
+    {
+        ObjectName name;
+        try
+        {
+            name = new ObjectName("matlabcontrol:type=MatlabProxyLatency,id=" + ObjectName.quote(id.toString()));
+        }
+        catch(JMException e)
+        {
+            name = null;
+        }
+        _name = name;
+    }
+    
+    /**
+     * Registers this recorder with the platform MBean server. Failing to do so does not prevent latencies from being
+     * recorded or queried from the proxy.
+     */
+    void register()
+    {
+        if(_name != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        new StandardMBean(this, MatlabProxyLatencyMBean.class), _name);
+            }
+            catch(JMException e) { }
+            catch(SecurityException e) { }
+        }
+    }
+    
+    /**
+     * Unregisters this recorder from the platform MBean server if it is registered.
+     */
+    void unregister()
+    {
+        if(_name != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+            }
+            catch(JMException e) { }
+            catch(SecurityException e) { }
+        }
+    }
+    
+    private Latencies getLatencies(String functionName)
+    {
+        Latencies latencies = _latencies.get(functionName);
+        if(latencies == null)
+        {
+            latencies = new Latencies();
+            
+            Latencies existing = _latencies.putIfAbsent(functionName, latencies);
+            if(existing != null)
+            {
+                latencies = existing;
+            }
+        }
+        
+        return latencies;
+    }
+    
+    /**
+     * Records the latencies of one method. The transport latency is whatever part of the total is not accounted for by
+     * the other phases. All latencies are in nanoseconds.
+     * 
+     * @param functionName
+     * @param total
+     * @param clientMarshal
+     * @param queueWait
+     * @param execution
+     * @param resultMarshal
+     * @param clientUnmarshal
+     */
+    void record(String functionName, long total, long clientMarshal, long queueWait, long execution,
+            long resultMarshal, long clientUnmarshal)
+    {
+        Histogram[] histograms = this.getLatencies(functionName)._phases;
+        
+        long transport = total - clientMarshal - queueWait - execution - resultMarshal - clientUnmarshal;
+        
+        histograms[LatencyPhase.TOTAL.ordinal()].record(total);
+        histograms[LatencyPhase.TRANSPORT.ordinal()].record(Math.max(0L, transport));
+        histograms[LatencyPhase.CLIENT_MARSHAL.ordinal()].record(clientMarshal);
+        histograms[LatencyPhase.QUEUE_WAIT.ordinal()].record(queueWait);
+        histograms[LatencyPhase.EXECUTION.ordinal()].record(execution);
+        histograms[LatencyPhase.RESULT_MARSHAL.ordinal()].record(resultMarshal);
+        histograms[LatencyPhase.CLIENT_UNMARSHAL.ordinal()].record(clientUnmarshal);
+    }
+    
+    /**
+     * Records a method which failed. Only its total latency is known.
+     * 
+     * @param functionName
+     * @param total in nanoseconds
+     * @param timedOut 
+     */
+    void recordFailure(String functionName, long total, boolean timedOut)
+    {
+        Latencies latencies = this.getLatencies(functionName);
+        
+        latencies._phases[LatencyPhase.TOTAL.ordinal()].record(total);
+        latencies._failures.incrementAndGet();
+        if(timedOut)
+        {
+            latencies._timeouts.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Records the latencies of {@code callable}, which was sent as {@code timed} and waited for starting at
+     * {@code start}. To be called once the wait has ended, whether or not it succeeded.
+     * 
+     * @param callable
+     * @param timed
+     * @param start {@link System#nanoTime()} when the method was called
+     * @param result {@code null} if the method failed
+     * @param failure the exception the method failed with, {@code null} if it succeeded or failed with an unchecked
+     * exception
+     */
+    void record(MatlabThreadCallable<?> callable, TimedCallable<?> timed, long start, TimedCallable.Result<?> result,
+            MatlabInvocationException failure)
+    {
+        String functionName = MatlabCallables.nameOf(callable);
+        long total = System.nanoTime() - start;
+        
+        if(result == null)
+        {
+            boolean timedOut = failure != null && (failure.getReason() == MatlabInvocationException.Reason.TIMEOUT ||
+                    failure.getReason() == MatlabInvocationException.Reason.CANCELLED);
+            this.recordFailure(functionName, total, timedOut);
+        }
+        else
+        {
+            this.record(functionName, total, timed.getMarshalling(), result.getQueueWait(), result.getExecution(),
+                    result.getMarshalling(), result.getUnmarshalling());
+        }
+    }
+    
+    /**
+     * A snapshot of the latencies recorded for the {@code phase} of {@code functionName}, {@code null} if none have
+     * been recorded.
+     * 
+     * @param functionName
+     * @param phase
+     * @return 
+     */
+    LatencyHistogram getHistogram(String functionName, LatencyPhase phase)
+    {
+        Latencies latencies = _latencies.get(functionName);
+        
+        LatencyHistogram histogram = null;
+        if(latencies != null)
+        {
+            histogram = latencies._phases[phase.ordinal()].snapshot();
+            
+            //Failed methods are recorded only in the total
+            if(histogram.getCount() == 0L)
+            {
+                histogram = null;
+            }
+        }
+        
+        return histogram;
+    }
+    
+    Set<String> getRecordedFunctionNames()
+    {
+        return Collections.unmodifiableSet(new TreeSet<String>(_latencies.keySet()));
+    }
+    
+    private Latencies getRecordedLatencies(String functionName)
+    {
+        Latencies latencies = _latencies.get(functionName);
+        if(latencies == null)
+        {
+            throw new IllegalArgumentException("no latencies have been recorded for [" + functionName + "]");
+        }
+        
+        return latencies;
+    }
+    
+    private LatencyHistogram getHistogram(String functionName, String phase)
+    {
+        LatencyHistogram histogram = this.getHistogram(functionName, LatencyPhase.valueOf(phase.toUpperCase()));
+        if(histogram == null)
+        {
+            throw new IllegalArgumentException("no " + phase + " latencies have been recorded for [" + functionName +
+                    "]");
+        }
+        
+        return histogram;
+    }
+    
+    private static double toMillis(long nanos)
+    {
+        return nanos / 1000000D;
+    }
+    
+    @Override
+    public String[] getFunctionNames()
+    {
+        Set<String> names = this.getRecordedFunctionNames();
+        
+        return names.toArray(new String[names.size()]);
+    }
+    
+    @Override
+    public long getCount(String functionName, String phase)
+    {
+        return this.getHistogram(functionName, phase).getCount();
+    }
+    
+    @Override
+    public double getMeanMillis(String functionName, String phase)
+    {
+        return this.getHistogram(functionName, phase).getMean(TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public double getPercentileMillis(String functionName, String phase, double percentile)
+    {
+        return toMillis(this.getHistogram(functionName, phase).getPercentile(percentile, TimeUnit.NANOSECONDS));
+    }
+    
+    @Override
+    public double getMaxMillis(String functionName, String phase)
+    {
+        return toMillis(this.getHistogram(functionName, phase).getMax(TimeUnit.NANOSECONDS));
+    }
+    
+    @Override
+    public long getFailureCount(String functionName)
+    {
+        return this.getRecordedLatencies(functionName)._failures.get();
+    }
+    
+    @Override
+    public long getTimeoutCount(String functionName)
+    {
+        return this.getRecordedLatencies(functionName)._timeouts.get();
+    }
+    
+    @Override
+    public void reset()
+    {
+        _latencies.clear();
+    }
+    
+    /**
+     * Everything recorded for one function.
+     */
+    private static final class Latencies
+    {
+        /**
+         * Indexed by {@link LatencyPhase#ordinal()}.
+         */
+        private final Histogram[] _phases = new Histogram[PHASES.length];
+        private final AtomicLong _failures = new AtomicLong();
+        private final AtomicLong _timeouts = new AtomicLong();
+        
+        Latencies()
+        {
+            for(int i = 0; i < _phases.length; i++)
+            {
+                _phases[i] = new Histogram();
+            }
+        }
+    }
+    
+    /**
+     * The mutable counterpart of {@link LatencyHistogram}.
+     */
+    private static final class Histogram
+    {
+        private final AtomicLongArray _buckets = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+        private final AtomicLong _count = new AtomicLong();
+        private final AtomicLong _total = new AtomicLong();
+        private final AtomicLong _max = new AtomicLong();
+        
+        void record(long nanos)
+        {
+            _buckets.incrementAndGet(LatencyHistogram.bucketOf(nanos));
+            _count.incrementAndGet();
+            _total.addAndGet(nanos);
+            
+            long max = _max.get();
+            while(nanos > max && !_max.compareAndSet(max, nanos))
+            {
+                max = _max.get();
+            }
+        }
+        
+        LatencyHistogram snapshot()
+        {
+            long[] buckets = new long[_buckets.length()];
+            for(int i = 0; i < buckets.length; i++)
+            {
+                buckets[i] = _buckets.get(i);
+            }
+            
+            return new LatencyHistogram(buckets, _count.get(), _total.get(), _max.get());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,638 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Opens the loopback connections RMI makes between this Java Virtual Machine and MATLAB's, and the server sockets they
+ * are accepted from. RMI itself keeps idle connections open and reuses them; this class applies the configured socket
+ * options, bounds how many connections are open at once and counts how connections are opened and reused.
+ * <br><br>
+ * Reuse is observed from the traffic on each connection: a call is reused when its RMI call message is the first thing
+ * written after a reply was read, as the first call on a new connection instead follows the protocol handshake.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class LocalHostConnectionPool implements MatlabConnectionPoolMBean
+{
+    /**
+     * How long in milliseconds opening a connection waits for another to close when the most allowed are open.
+     */
+    static final long CONNECTION_WAIT_TIMEOUT = 10000L;
+    
+    /**
+     * The first byte of an RMI call message in the stream protocol.
+     */
+    private static final int RMI_CALL = 0x50;
+    
+    private static final LocalHostConnectionPool INSTANCE = new LocalHostConnectionPool();
+    
+    private volatile Settings _settings = Settings.DEFAULT;
+    
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _closed = _lock.newCondition();
+    
+    //Guarded by _lock
+    private int _open = 0;
+    private int _peakOpen = 0;
+    
+    private final AtomicLong _openedCount = new AtomicLong();
+    private final AtomicLong _closedCount = new AtomicLong();
+    private final AtomicLong _reusedCount = new AtomicLong();
+    private final AtomicLong _waitCount = new AtomicLong();
+    private final AtomicLong _waitNanos = new AtomicLong();
+    private final AtomicLong _overflowCount = new AtomicLong();
+    
+    private final AtomicBoolean _registered = new AtomicBoolean(false);
+    
+    /**
+     * The pool through which all of this Java Virtual Machine's RMI connections are made.
+     * 
+     * @return 
+     */
+    static LocalHostConnectionPool getInstance()
+    {
+        return INSTANCE;
+    }
+    
+    Settings getSettings()
+    {
+        return _settings;
+    }
+    
+    /**
+     * Applies to connections and server sockets created from now on; the most connections allowed takes effect
+     * immediately.
+     * 
+     * @param settings 
+     */
+    void setSettings(Settings settings)
+    {
+        _lock.lock();
+        try
+        {
+            _settings = settings;
+            _closed.signalAll();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+    
+    /**
+     * Opens a connection to {@code port} on localhost, waiting if the most connections allowed are already open.
+     * 
+     * @param port
+     * @param unixDomain whether to connect over a Unix domain socket if one is listening for {@code port}
+     * @return
+     * @throws IOException 
+     */
+    Socket connect(int port, boolean unixDomain) throws IOException
+    {
+        this.register();
+        
+        Settings settings = _settings;
+        this.acquire();
+        
+        boolean connected = false;
+        try
+        {
+            Socket socket = null;
+            if(unixDomain && UnixDomainSockets.isSupported() && UnixDomainSockets.getSocketFile(port).exists())
+            {
+                try
+                {
+                    socket = UnixDomainSockets.connect(port);
+                }
+                //Fall back to TCP
+                catch(IOException e) { }
+            }
+            if(socket == null)
+            {
+                socket = new Socket();
+                socket.setTcpNoDelay(settings._tcpNoDelay);
+                socket.setKeepAlive(settings._keepAlive);
+                if(settings._sendBufferSize > 0)
+                {
+                    socket.setSendBufferSize(settings._sendBufferSize);
+                }
+                if(settings._receiveBufferSize > 0)
+                {
+                    socket.setReceiveBufferSize(settings._receiveBufferSize);
+                }
+                socket.connect(new InetSocketAddress(InetAddress.getByName("localhost"), port));
+            }
+            
+            _openedCount.incrementAndGet();
+            connected = true;
+            
+            return new PooledSocket(socket);
+        }
+        finally
+        {
+            if(!connected)
+            {
+                this.release();
+            }
+        }
+    }
+    
+    /**
+     * Creates a server socket listening on {@code port} on localhost with the configured backlog.
+     * 
+     * @param port
+     * @param unixDomain whether to also listen on a Unix domain socket where supported
+     * @return
+     * @throws IOException 
+     */
+    ServerSocket createServerSocket(int port, boolean unixDomain) throws IOException
+    {
+        Settings settings = _settings;
+        
+        ServerSocket serverSocket;
+        if(unixDomain && UnixDomainSockets.isSupported())
+        {
+            serverSocket = UnixDomainSockets.createServerSocket(port, settings._backlog);
+        }
+        else
+        {
+            serverSocket = new ServerSocket();
+            try
+            {
+                //Accepted sockets inherit the receive buffer size, which must be set before binding to take effect
+                if(settings._receiveBufferSize > 0)
+                {
+                    serverSocket.setReceiveBufferSize(settings._receiveBufferSize);
+                }
+                serverSocket.bind(new InetSocketAddress(InetAddress.getByName("localhost"), port), settings._backlog);
+            }
+            catch(IOException e)
+            {
+                serverSocket.close();
+                throw e;
+            }
+        }
+        
+        return serverSocket;
+    }
+    
+    private void acquire() throws IOException
+    {
+        _lock.lock();
+        try
+        {
+            if(_settings._maxConnections > 0 && _open >= _settings._maxConnections)
+            {
+                _waitCount.incrementAndGet();
+                long start = System.nanoTime();
+                long remaining = TimeUnit.MILLISECONDS.toNanos(CONNECTION_WAIT_TIMEOUT);
+                try
+                {
+                    while(_settings._maxConnections > 0 && _open >= _settings._maxConnections && remaining > 0)
+                    {
+                        remaining = _closed.awaitNanos(remaining);
+                    }
+                }
+                catch(InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a connection to close");
+                }
+                finally
+                {
+                    _waitNanos.addAndGet(System.nanoTime() - start);
+                }
+                
+                if(_settings._maxConnections > 0 && _open >= _settings._maxConnections)
+                {
+                    _overflowCount.incrementAndGet();
+                }
+            }
+            
+            _open++;
+            _peakOpen = Math.max(_peakOpen, _open);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+    
+    private void release()
+    {
+        _lock.lock();
+        try
+        {
+            _open--;
+            _closed.signal();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+    
+    /**
+     * Registers this pool with the platform MBean server if it has not been already. Failing to do so does not
+     * prevent connections from being made.
+     */
+    private void register()
+    {
+        if(this == INSTANCE && _registered.compareAndSet(false, true))
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        new StandardMBean(this, MatlabConnectionPoolMBean.class),
+                        new ObjectName("matlabcontrol:type=MatlabConnectionPool"));
+            }
+            catch(JMException e) { }
+            catch(SecurityException e) { }
+        }
+    }
+    
+    @Override
+    public int getMaxConnections()
+    {
+        return _settings._maxConnections;
+    }
+    
+    @Override
+    public int getOpenConnections()
+    {
+        _lock.lock();
+        try
+        {
+            return _open;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+    
+    @Override
+    public int getPeakOpenConnections()
+    {
+        _lock.lock();
+        try
+        {
+            return _peakOpen;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+    
+    @Override
+    public long getOpenedCount()
+    {
+        return _openedCount.get();
+    }
+    
+    @Override
+    public long getClosedCount()
+    {
+        return _closedCount.get();
+    }
+    
+    @Override
+    public long getReusedCount()
+    {
+        return _reusedCount.get();
+    }
+    
+    @Override
+    public long getWaitCount()
+    {
+        return _waitCount.get();
+    }
+    
+    @Override
+    public double getTotalWaitMillis()
+    {
+        return _waitNanos.get() / 1e6;
+    }
+    
+    @Override
+    public long getOverflowCount()
+    {
+        return _overflowCount.get();
+    }
+    
+    @Override
+    public void reset()
+    {
+        _lock.lock();
+        try
+        {
+            _peakOpen = _open;
+            _openedCount.set(0);
+            _closedCount.set(0);
+            _reusedCount.set(0);
+            _waitCount.set(0);
+            _waitNanos.set(0);
+            _overflowCount.set(0);
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+    
+    /**
+     * The socket options and limits of the connections. These are sent to MATLAB's Java Virtual Machine so that its
+     * connections back to this one are made the same way.
+     */
+    static final class Settings implements Serializable
+    {
+        private static final long serialVersionUID = 0xB104L;
+        
+        static final Settings DEFAULT = new Settings(50, true, true, 0, 0, 0);
+        
+        private final int _backlog;
+        private final boolean _tcpNoDelay;
+        private final boolean _keepAlive;
+        private final int _sendBufferSize;
+        private final int _receiveBufferSize;
+        private final int _maxConnections;
+        
+        /**
+         * @param backlog the most pending connections a server socket queues before refusing more
+         * @param tcpNoDelay
+         * @param keepAlive
+         * @param sendBufferSize {@code 0} for the system default
+         * @param receiveBufferSize {@code 0} for the system default
+         * @param maxConnections {@code 0} for unbounded
+         */
+        Settings(int backlog, boolean tcpNoDelay, boolean keepAlive, int sendBufferSize, int receiveBufferSize,
+                int maxConnections)
+        {
+            _backlog = backlog;
+            _tcpNoDelay = tcpNoDelay;
+            _keepAlive = keepAlive;
+            _sendBufferSize = sendBufferSize;
+            _receiveBufferSize = receiveBufferSize;
+            _maxConnections = maxConnections;
+        }
+    }
+    
+    /**
+     * Wraps a connection so that closing it releases its place in the pool, and so that calls reusing it are counted.
+     */
+    private class PooledSocket extends Socket
+    {
+        private final Socket _socket;
+        private final InputStream _in;
+        private final OutputStream _out;
+        private final AtomicBoolean _closedOnce = new AtomicBoolean(false);
+        
+        /**
+         * Whether a reply has been read since anything was last written.
+         */
+        private volatile boolean _readSinceWrite = false;
+        
+        PooledSocket(Socket socket) throws IOException
+        {
+            _socket = socket;
+            _in = new FilterInputStream(socket.getInputStream())
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    int b = super.read();
+                    if(b != -1)
+                    {
+                        _readSinceWrite = true;
+                    }
+                    
+                    return b;
+                }
+                
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException
+                {
+                    int n = super.read(b, off, len);
+                    if(n > 0)
+                    {
+                        _readSinceWrite = true;
+                    }
+                    
+                    return n;
+                }
+            };
+            _out = new FilterOutputStream(socket.getOutputStream())
+            {
+                @Override
+                public void write(int b) throws IOException
+                {
+                    this.written(b);
+                    out.write(b);
+                }
+                
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException
+                {
+                    if(len > 0)
+                    {
+                        this.written(b[off]);
+                    }
+                    out.write(b, off, len);
+                }
+                
+                private void written(int first)
+                {
+                    if(_readSinceWrite)
+                    {
+                        _readSinceWrite = false;
+                        if((first & 0xFF) == RMI_CALL)
+                        {
+                            _reusedCount.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+        
+        @Override
+        public InputStream getInputStream()
+        {
+            return _in;
+        }
+        
+        @Override
+        public OutputStream getOutputStream()
+        {
+            return _out;
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            try
+            {
+                _socket.close();
+            }
+            finally
+            {
+                if(_closedOnce.compareAndSet(false, true))
+                {
+                    _closedCount.incrementAndGet();
+                    release();
+                }
+            }
+        }
+        
+        @Override
+        public boolean isClosed()
+        {
+            return _socket.isClosed();
+        }
+        
+        @Override
+        public boolean isConnected()
+        {
+            return _socket.isConnected();
+        }
+        
+        @Override
+        public boolean isBound()
+        {
+            return _socket.isBound();
+        }
+        
+        @Override
+        public InetAddress getInetAddress()
+        {
+            return _socket.getInetAddress();
+        }
+        
+        @Override
+        public int getPort()
+        {
+            return _socket.getPort();
+        }
+        
+        @Override
+        public InetAddress getLocalAddress()
+        {
+            return _socket.getLocalAddress();
+        }
+        
+        @Override
+        public int getLocalPort()
+        {
+            return _socket.getLocalPort();
+        }
+        
+        @Override
+        public SocketAddress getRemoteSocketAddress()
+        {
+            return _socket.getRemoteSocketAddress();
+        }
+        
+        @Override
+        public SocketAddress getLocalSocketAddress()
+        {
+            return _socket.getLocalSocketAddress();
+        }
+        
+        //RMI sets TCP_NODELAY and SO_KEEPALIVE on every socket it is given, the configured options take precedence
+        
+        @Override
+        public void setTcpNoDelay(boolean on) { }
+        
+        @Override
+        public boolean getTcpNoDelay() throws SocketException
+        {
+            return _socket.getTcpNoDelay();
+        }
+        
+        @Override
+        public void setKeepAlive(boolean on) { }
+        
+        @Override
+        public boolean getKeepAlive() throws SocketException
+        {
+            return _socket.getKeepAlive();
+        }
+        
+        @Override
+        public void setSoTimeout(int timeout) throws SocketException
+        {
+            _socket.setSoTimeout(timeout);
+        }
+        
+        @Override
+        public int getSoTimeout() throws SocketException
+        {
+            return _socket.getSoTimeout();
+        }
+        
+        @Override
+        public void shutdownInput() throws IOException
+        {
+            _socket.shutdownInput();
+        }
+        
+        @Override
+        public void shutdownOutput() throws IOException
+        {
+            _socket.shutdownOutput();
+        }
+        
+        @Override
+        public String toString()
+        {
+            return _socket.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -24,7 +24,6 @@ package matlabcontrol;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.rmi.Remote;
@@ -34,8 +33,6 @@ import java.rmi.registry.Registry;
 import java.rmi.server.RMIClientSocketFactory;
 import java.rmi.server.RMIServerSocketFactory;
 import java.rmi.server.UnicastRemoteObject;
-import javax.net.ServerSocketFactory;
-import javax.net.SocketFactory;
 
 /**
  * Handles creation of RMI objects, making sure they only operate on localhost.
@@ -46,47 +43,84 @@ import javax.net.SocketFactory;
  */
 class LocalHostRMIHelper
 {
-    private static final LocalHostRMISocketFactory SOCKET_FACTORY = new LocalHostRMISocketFactory();
+    private static final LocalHostRMISocketFactory SOCKET_FACTORY = new LocalHostRMISocketFactory(false);
+    
+    /**
+     * Prefers Unix domain sockets where both Java Virtual Machines support them, otherwise uses TCP.
+     */
+    private static final LocalHostRMISocketFactory UNIX_SOCKET_FACTORY = new LocalHostRMISocketFactory(true);
+    
+    private static LocalHostRMISocketFactory getSocketFactory(boolean unixDomain)
+    {
+        return unixDomain ? UNIX_SOCKET_FACTORY : SOCKET_FACTORY;
+    }
     
     public static Registry getRegistry(int port) throws RemoteException
     {
-        return LocateRegistry.getRegistry("localhost", port, SOCKET_FACTORY);
+        return getRegistry(port, false);
+    }
+    
+    public static Registry getRegistry(int port, boolean unixDomain) throws RemoteException
+    {
+        return LocateRegistry.getRegistry("localhost", port, getSocketFactory(unixDomain));
     }
     
     public static Registry createRegistry(int port) throws RemoteException
     {
-        return LocateRegistry.createRegistry(port, SOCKET_FACTORY, SOCKET_FACTORY);
+        return createRegistry(port, false);
+    }
+    
+    public static Registry createRegistry(int port, boolean unixDomain) throws RemoteException
+    {
+        return LocateRegistry.createRegistry(port, getSocketFactory(unixDomain), getSocketFactory(unixDomain));
     }
     
     public static Remote exportObject(Remote object) throws RemoteException
     {
-        return UnicastRemoteObject.exportObject(object, 0, SOCKET_FACTORY, SOCKET_FACTORY);
+        return exportObject(object, false);
+    }
+    
+    public static Remote exportObject(Remote object, boolean unixDomain) throws RemoteException
+    {
+        return UnicastRemoteObject.exportObject(object, 0, getSocketFactory(unixDomain), getSocketFactory(unixDomain));
     }
     
     private static class LocalHostRMISocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable
     {
+        /**
+         * Whether to use Unix domain sockets when they are supported. This is sent along with the stubs of objects
+         * exported with this factory, so that the receiving Java Virtual Machine connects the same way.
+         */
+        private final boolean _unixDomain;
+        
+        LocalHostRMISocketFactory(boolean unixDomain)
+        {
+            _unixDomain = unixDomain;
+        }
+        
         @Override
         public Socket createSocket(String host, int port) throws IOException
         {
-            return SocketFactory.getDefault().createSocket(InetAddress.getByName("localhost"), port);
+            return LocalHostConnectionPool.getInstance().connect(port, _unixDomain);
         }
 
         @Override
         public ServerSocket createServerSocket(int port) throws IOException
         {
-            return ServerSocketFactory.getDefault().createServerSocket(port, 1, InetAddress.getByName("localhost"));
+            return LocalHostConnectionPool.getInstance().createServerSocket(port, _unixDomain);
         }
 
         @Override
         public boolean equals(Object o)
         {
-            return (o instanceof LocalHostRMISocketFactory);
+            return (o instanceof LocalHostRMISocketFactory) &&
+                    ((LocalHostRMISocketFactory) o)._unixDomain == _unixDomain;
         }
 
         @Override
         public int hashCode()
         {
-            return 5;
+            return _unixDomain ? 6 : 5;
         }
         
         /**
@@ -97,7 +131,7 @@ class LocalHostRMIHelper
         @Override
         public String toString()
         {
-            return "MLC localhost Socket Factory";
+            return _unixDomain ? "MLC localhost Unix Domain Socket Factory" : "MLC localhost Socket Factory";
         }
     }
     
@@ -105,7 +139,12 @@ class LocalHostRMIHelper
     {
         LocalHostRemoteObject() throws RemoteException
         {
-            super(0, SOCKET_FACTORY, SOCKET_FACTORY);
+            this(false);
+        }
+        
+        LocalHostRemoteObject(boolean unixDomain) throws RemoteException
+        {
+            super(0, getSocketFactory(unixDomain), getSocketFactory(unixDomain));
         }
     }
 }
\ No newline at end of file
@@ -22,6 +22,9 @@ package matlabcontrol;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Allows for calling MATLAB from <b>inside</b> of MATLAB.
  * 
@@ -38,10 +41,23 @@ class LocalMatlabProxy extends MatlabProxy
      * necessary. Unless a user calls {@link #disconnect()} this proxy cannot become disconnected.
      */
     private volatile boolean _isConnected = true;
+    
+    /**
+     * The timeout in milliseconds of methods which wait for MATLAB, {@code 0} if they wait indefinitely.
+     */
+    private final long _invocationTimeout;
+    
+    /**
+     * The priority of this proxy's calls on MATLAB's main thread.
+     */
+    private final MatlabThreadPriority _priority;
 
-    LocalMatlabProxy(Identifier id)
+    LocalMatlabProxy(Identifier id, MatlabProxyFactoryOptions options)
     {
-        super(id, true);
+        super(id, true, options.getLatencyInstrumentation());
+        
+        _invocationTimeout = options.getInvocationTimeout();
+        _priority = options.getMatlabThreadPriority();
     }
     
     @Override
@@ -61,98 +77,174 @@ class LocalMatlabProxy extends MatlabProxy
     {
         _isConnected = false;
         
+        if(this.getLatencyRecorder() != null)
+        {
+            this.getLatencyRecorder().unregister();
+        }
+        
         //Notify listeners
         notifyDisconnectionListeners();
         
         return true;
     }
     
-    // Methods which interact with MATLAB
-        
     @Override
-    public void exit() throws MatlabInvocationException
+    public int getMatlabThreadQueueDepth(MatlabThreadPriority priority) throws MatlabInvocationException
     {
         if(this.isConnected())
         {
-            JMIWrapper.exit();
+            return JMIWrapper.getMatlabThreadQueueDepth(priority);
         }
         else
         {
             throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
         }
     }
-
+    
+    // Methods which interact with MATLAB
+        
     @Override
-    public void eval(String command) throws MatlabInvocationException
+    public void exit() throws MatlabInvocationException
     {
         if(this.isConnected())
         {
-            JMIWrapper.eval(command);
+            JMIWrapper.exit();
         }
         else
         {
             throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
         }
     }
+
+    @Override
+    public void eval(String command) throws MatlabInvocationException
+    {
+        this.invokeAndWait(new MatlabCallables.Eval(command));
+    }
     
     @Override
     public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
     {
-        if(this.isConnected())
-        {
-            return JMIWrapper.returningEval(command, nargout);
-        }
-        else
-        {
-            throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
-        }
+        return this.invokeAndWait(new MatlabCallables.ReturningEval(command, nargout));
     }
     
     @Override
     public void feval(String functionName, Object... args) throws MatlabInvocationException
     {
-        if(this.isConnected())
-        {
-            JMIWrapper.feval(functionName, args);
-        }
-        else
-        {
-            throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
-        }
+        this.invokeFeval(functionName, 0, args);
     }
 
     @Override
     public Object[] returningFeval(String functionName, int nargout, Object... args) throws MatlabInvocationException
     {
-        if(this.isConnected())
+        return this.invokeFeval(functionName, nargout, args);
+    }
+    
+    /**
+     * Calls the function, reusing the calling thread's {@link ReusableFeval} when the call waits indefinitely, is not
+     * timed, and has the default priority. Such a call allocates nothing other than the results it returns.
+     * 
+     * @param functionName
+     * @param nargout
+     * @param args
+     * @return
+     * @throws MatlabInvocationException 
+     */
+    private Object[] invokeFeval(String functionName, int nargout, Object[] args) throws MatlabInvocationException
+    {
+        MatlabThreadCallable<Object[]> callable;
+        if(_invocationTimeout == 0L && _priority == MatlabThreadPriority.NORMAL && this.getLatencyRecorder() == null)
         {
-            return JMIWrapper.returningFeval(functionName, nargout, args);
+            callable = ReusableFeval.get(functionName, nargout, args);
         }
         else
         {
-            throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
+            callable = new MatlabCallables.ReturningFeval(functionName, nargout, args);
         }
+        
+        return this.invokeAndWait(callable);
     }
 
     @Override
     public void setVariable(String variableName, Object value) throws MatlabInvocationException
     {
-        if(this.isConnected())
-        {
-            JMIWrapper.setVariable(variableName, value);
-        }
-        else
-        {
-            throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
-        }
+        this.invokeAndWait(new MatlabCallables.SetVariable(variableName, value));
     }
     
     @Override
     public Object getVariable(String variableName) throws MatlabInvocationException
     {
+        return this.invokeAndWait(new MatlabCallables.GetVariable(variableName));
+    }
+    
+    @Override
+    public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+    {
+        this.invokeAndWait(new MatlabCallables.SetVariables(variables));
+    }
+    
+    @Override
+    public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+    {
+        return this.invokeAndWait(new MatlabCallables.GetVariables(variableNames));
+    }
+    
+    @Override
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    {
+        return this.invokeAndWait(callable, _invocationTimeout, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        if(timeout < 0L)
+        {
+            throw new IllegalArgumentException("timeout [" + timeout + "] may not be negative");
+        }
+        
         if(this.isConnected())
         {
-            return JMIWrapper.getVariable(variableName);
+            try
+            {
+                MatlabThreadCallable<T> prioritized = PrioritizedCallable.withDefault(callable, _priority);
+                
+                LatencyRecorder recorder = this.getLatencyRecorder();
+                if(recorder == null)
+                {
+                    return JMIWrapper.invokeAndWait(prioritized, timeout, unit);
+                }
+                else
+                {
+                    TimedCallable<T> timed = new TimedCallable<T>(prioritized);
+                    long start = System.nanoTime();
+                    TimedCallable.Result<T> result = null;
+                    MatlabInvocationException failure = null;
+                    try
+                    {
+                        result = JMIWrapper.invokeAndWait(timed, timeout, unit);
+                        
+                        return result.getValue();
+                    }
+                    catch(MatlabInvocationException e)
+                    {
+                        failure = e;
+                        
+                        throw e;
+                    }
+                    finally
+                    {
+                        recorder.record(callable, timed, start, result, failure);
+                    }
+                }
+            }
+            catch(MatlabInvocationException e)
+            {
+                this.recordInvocationFailure(e);
+                
+                throw e;
+            }
         }
         else
         {
@@ -161,15 +253,51 @@ class LocalMatlabProxy extends MatlabProxy
     }
     
     @Override
-    public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    public MatlabFuture<Void> evalAsync(String command)
+    {
+        return this.invokeAsync(new MatlabCallables.Eval(command));
+    }
+    
+    @Override
+    public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+    {
+        return this.invokeAsync(new MatlabCallables.ReturningEval(command, nargout));
+    }
+    
+    @Override
+    public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+    {
+        return this.invokeAsync(new MatlabCallables.Feval(functionName, args));
+    }
+    
+    @Override
+    public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+    {
+        return this.invokeAsync(new MatlabCallables.ReturningFeval(functionName, nargout, args));
+    }
+    
+    @Override
+    public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+    {
+        return this.invokeAsync(new MatlabCallables.SetVariable(variableName, value));
+    }
+    
+    @Override
+    public MatlabFuture<Object> getVariableAsync(String variableName)
+    {
+        return this.invokeAsync(new MatlabCallables.GetVariable(variableName));
+    }
+    
+    @Override
+    public <T> MatlabFuture<T> invokeAsync(MatlabThreadCallable<T> callable)
     {
         if(this.isConnected())
         {
-            return JMIWrapper.invokeAndWait(callable);
+            return JMIWrapper.invokeAsync(PrioritizedCallable.withDefault(callable, _priority));
         }
         else
         {
-            throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
+            return MatlabFutureImpl.failed(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException());
         }
     }
 }
\ No newline at end of file
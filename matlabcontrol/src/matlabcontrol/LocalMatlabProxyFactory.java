@@ -37,14 +37,23 @@ import matlabcontrol.MatlabProxyFactory.RequestCallback;
  */
 class LocalMatlabProxyFactory implements ProxyFactory
 {
-    public LocalMatlabProxyFactory(MatlabProxyFactoryOptions options) { }
+    private final MatlabProxyFactoryOptions _options;
+    
+    public LocalMatlabProxyFactory(MatlabProxyFactoryOptions options)
+    {
+        _options = options;
+    }
     
     @Override
     public LocalMatlabProxy getProxy() throws MatlabConnectionException
     {   
         JMIValidator.validateJMIMethods();
         
-        return new LocalMatlabProxy(new LocalIdentifier());
+        JMIWrapper.setMatlabThreadBatchLimits(_options.getMatlabThreadBatchSize(),
+                _options.getMatlabThreadBatchTime());
+        JMIWrapper.setEventDispatchWaitStrategy(_options.getEventDispatchWaitStrategy());
+        
+        return new LocalMatlabProxy(new LocalIdentifier(), _options);
     }
     
     @Override
@@ -56,6 +65,9 @@ class LocalMatlabProxyFactory implements ProxyFactory
         return new LocalRequest(proxy.getIdentifier());
     }
     
+    @Override
+    public void shutdown() { }
+    
     private static final class LocalIdentifier implements Identifier
     {
         private static final AtomicInteger PROXY_CREATION_COUNTER = new AtomicInteger();
@@ -23,6 +23,9 @@ package matlabcontrol;
  */
 
 import java.lang.reflect.Array;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -278,6 +281,20 @@ public final class LoggingMatlabProxy extends MatlabProxy
         });
     }
 
+    @Override
+    public int getMatlabThreadQueueDepth(final MatlabThreadPriority priority) throws MatlabInvocationException
+    {
+        return this.invoke(new ReturnThrowingInvocation<Integer>("getMatlabThreadQueueDepth(MatlabThreadPriority)",
+                priority)
+        {
+            @Override
+            public Integer invoke() throws MatlabInvocationException
+            {
+                return _delegate.getMatlabThreadQueueDepth(priority);
+            }
+        });
+    }
+    
     @Override
     public Object getVariable(final String variableName) throws MatlabInvocationException
     {
@@ -290,6 +307,33 @@ public final class LoggingMatlabProxy extends MatlabProxy
             }
         });
     }
+    
+    @Override
+    public void setVariables(final Map<String, Object> variables) throws MatlabInvocationException
+    {
+        this.invoke(new VoidThrowingInvocation("setVariables(Map)", variables)
+        {
+            @Override
+            public void invoke() throws MatlabInvocationException
+            {
+                _delegate.setVariables(variables);
+            }
+        });
+    }
+    
+    @Override
+    public Map<String, Object> getVariables(final String... variableNames) throws MatlabInvocationException
+    {
+        return this.invoke(new ReturnThrowingInvocation<Map<String, Object>>("getVariables(String...)",
+                (Object) variableNames)
+        {
+            @Override
+            public Map<String, Object> invoke() throws MatlabInvocationException
+            {
+                return _delegate.getVariables(variableNames);
+            }
+        });
+    }
 
     @Override
     public <U> U invokeAndWait(final MatlabThreadCallable<U> callable) throws MatlabInvocationException
@@ -303,6 +347,117 @@ public final class LoggingMatlabProxy extends MatlabProxy
             }
         });
     }
+    
+    @Override
+    public <U> U invokeAndWait(final MatlabThreadCallable<U> callable, final long timeout, final TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        return this.invoke(new ReturnThrowingInvocation<U>("invokeAndWait(MatlabThreadCallable, long, TimeUnit)",
+                callable, timeout, unit)
+        {
+            @Override
+            public U invoke() throws MatlabInvocationException
+            {
+                return _delegate.invokeAndWait(callable, timeout, unit);
+            }
+        });
+    }
+
+    @Override
+    public MatlabFuture<Void> evalAsync(final String command)
+    {
+        return this.invoke(new ReturnInvocation<MatlabFuture<Void>>("evalAsync(String)", command)
+        {
+            @Override
+            public MatlabFuture<Void> invoke()
+            {
+                return _delegate.evalAsync(command);
+            }
+        });
+    }
+
+    @Override
+    public MatlabFuture<Object[]> returningEvalAsync(final String command, final int nargout)
+    {
+        return this.invoke(new ReturnInvocation<MatlabFuture<Object[]>>("returningEvalAsync(String, int)", command,
+                nargout)
+        {
+            @Override
+            public MatlabFuture<Object[]> invoke()
+            {
+                return _delegate.returningEvalAsync(command, nargout);
+            }
+        });
+    }
+
+    @Override
+    public MatlabFuture<Void> fevalAsync(final String functionName, final Object... args)
+    {
+        return this.invoke(new ReturnInvocation<MatlabFuture<Void>>("fevalAsync(String, Object...)", functionName,
+                args)
+        {
+            @Override
+            public MatlabFuture<Void> invoke()
+            {
+                return _delegate.fevalAsync(functionName, args);
+            }
+        });
+    }
+
+    @Override
+    public MatlabFuture<Object[]> returningFevalAsync(final String functionName, final int nargout,
+            final Object... args)
+    {
+        return this.invoke(new ReturnInvocation<MatlabFuture<Object[]>>(
+                "returningFevalAsync(String, int, Object...)", functionName, nargout, args)
+        {
+            @Override
+            public MatlabFuture<Object[]> invoke()
+            {
+                return _delegate.returningFevalAsync(functionName, nargout, args);
+            }
+        });
+    }
+
+    @Override
+    public MatlabFuture<Void> setVariableAsync(final String variableName, final Object value)
+    {
+        return this.invoke(new ReturnInvocation<MatlabFuture<Void>>("setVariableAsync(String, Object)", variableName,
+                value)
+        {
+            @Override
+            public MatlabFuture<Void> invoke()
+            {
+                return _delegate.setVariableAsync(variableName, value);
+            }
+        });
+    }
+
+    @Override
+    public MatlabFuture<Object> getVariableAsync(final String variableName)
+    {
+        return this.invoke(new ReturnInvocation<MatlabFuture<Object>>("getVariableAsync(String)", variableName)
+        {
+            @Override
+            public MatlabFuture<Object> invoke()
+            {
+                return _delegate.getVariableAsync(variableName);
+            }
+        });
+    }
+
+    @Override
+    public <U> MatlabFuture<U> invokeAsync(final MatlabThreadCallable<U> callable)
+    {
+        return this.invoke(new ReturnInvocation<MatlabFuture<U>>("invokeAsync(MatlabThreadCallable)", callable)
+        {
+            @Override
+            public MatlabFuture<U> invoke()
+            {
+                return _delegate.invokeAsync(callable);
+            }
+        });
+    }
 
     @Override
     public void addDisconnectionListener(final DisconnectionListener listener)
@@ -395,6 +550,72 @@ public final class LoggingMatlabProxy extends MatlabProxy
             }
         });
     }
+    
+    @Override
+    public long getTimeoutCount()
+    {
+        return this.invoke(new ReturnInvocation<Long>("getTimeoutCount()")
+        {
+            @Override
+            public Long invoke()
+            {
+                return _delegate.getTimeoutCount();
+            }
+        });
+    }
+    
+    @Override
+    public long getCancellationCount()
+    {
+        return this.invoke(new ReturnInvocation<Long>("getCancellationCount()")
+        {
+            @Override
+            public Long invoke()
+            {
+                return _delegate.getCancellationCount();
+            }
+        });
+    }
+    
+    @Override
+    public Set<String> getLatencyFunctionNames()
+    {
+        return this.invoke(new ReturnInvocation<Set<String>>("getLatencyFunctionNames()")
+        {
+            @Override
+            public Set<String> invoke()
+            {
+                return _delegate.getLatencyFunctionNames();
+            }
+        });
+    }
+    
+    @Override
+    public LatencyHistogram getLatencyHistogram(final String functionName, final LatencyPhase phase)
+    {
+        return this.invoke(new ReturnInvocation<LatencyHistogram>("getLatencyHistogram(String, LatencyPhase)",
+                functionName, phase)
+        {
+            @Override
+            public LatencyHistogram invoke()
+            {
+                return _delegate.getLatencyHistogram(functionName, phase);
+            }
+        });
+    }
+    
+    @Override
+    public StartupTimes getStartupTimes()
+    {
+        return this.invoke(new ReturnInvocation<StartupTimes>("getStartupTimes()")
+        {
+            @Override
+            public StartupTimes invoke()
+            {
+                return _delegate.getStartupTimes();
+            }
+        });
+    }
 
     @Override
     public void exit() throws MatlabInvocationException
@@ -0,0 +1,337 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import matlabcontrol.internal.CallableAccess;
+
+/**
+ * {@link MatlabThreadCallable}s for each of the operations defined in {@link MatlabOperations}. They are
+ * {@link Serializable} so that they may be sent to MATLAB's Java Virtual Machine when running outside MATLAB.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class MatlabCallables
+{
+    static
+    {
+        //The extensions package creates operations through the accessor
+        CallableAccess.install(new CallableAccess.Callables()
+        {
+            @Override
+            public MatlabThreadCallable<Void> eval(String command)
+            {
+                return new Eval(command);
+            }
+            
+            @Override
+            public MatlabThreadCallable<Object[]> returningEval(String command, int nargout)
+            {
+                return new ReturningEval(command, nargout);
+            }
+            
+            @Override
+            public MatlabThreadCallable<Void> feval(String functionName, Object[] args)
+            {
+                return new Feval(functionName, args);
+            }
+            
+            @Override
+            public MatlabThreadCallable<Object[]> returningFeval(String functionName, int nargout, Object[] args)
+            {
+                return new ReturningFeval(functionName, nargout, args);
+            }
+            
+            @Override
+            public MatlabThreadCallable<Void> setVariable(String variableName, Object value)
+            {
+                return new SetVariable(variableName, value);
+            }
+            
+            @Override
+            public MatlabThreadCallable<Object> getVariable(String variableName)
+            {
+                return new GetVariable(variableName);
+            }
+        });
+    }
+    
+    private MatlabCallables() { }
+    
+    /**
+     * The name under which the latency of {@code callable} is recorded. For {@code feval}s this is the name of the
+     * function called, for the other operations it is the name of the operation, and for any other callable it is the
+     * name of its class.
+     * 
+     * @param callable
+     * @return 
+     */
+    static String nameOf(MatlabThreadCallable<?> callable)
+    {
+        if(callable instanceof PrioritizedCallable)
+        {
+            callable = ((PrioritizedCallable<?>) callable).getCallable();
+        }
+        
+        String name;
+        if(callable instanceof Feval)
+        {
+            name = ((Feval) callable)._functionName;
+        }
+        else if(callable instanceof ReturningFeval)
+        {
+            name = ((ReturningFeval) callable)._functionName;
+        }
+        else if(callable instanceof Eval || callable instanceof ReturningEval)
+        {
+            name = "eval";
+        }
+        else if(callable instanceof SetVariable)
+        {
+            name = "setVariable";
+        }
+        else if(callable instanceof GetVariable)
+        {
+            name = "getVariable";
+        }
+        else if(callable instanceof SetVariables)
+        {
+            name = "setVariables";
+        }
+        else if(callable instanceof GetVariables)
+        {
+            name = "getVariables";
+        }
+        else
+        {
+            name = callable.getClass().getName();
+        }
+        
+        return name;
+    }
+    
+    static final class Eval implements MatlabThreadCallable<Void>, Serializable
+    {
+        private static final long serialVersionUID = 0xA100L;
+        
+        private final String _command;
+        
+        Eval(String command)
+        {
+            _command = command;
+        }
+
+        @Override
+        public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            proxy.eval(_command);
+            
+            return null;
+        }
+    }
+    
+    static final class ReturningEval implements MatlabThreadCallable<Object[]>, Serializable
+    {
+        private static final long serialVersionUID = 0xA101L;
+        
+        private final String _command;
+        private final int _nargout;
+        
+        ReturningEval(String command, int nargout)
+        {
+            _command = command;
+            _nargout = nargout;
+        }
+
+        @Override
+        public Object[] call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            return proxy.returningEval(_command, _nargout);
+        }
+    }
+    
+    static final class Feval implements MatlabThreadCallable<Void>, Serializable
+    {
+        private static final long serialVersionUID = 0xA102L;
+        
+        private final String _functionName;
+        private final Object[] _args;
+        
+        Feval(String functionName, Object[] args)
+        {
+            _functionName = functionName;
+            _args = args;
+        }
+
+        @Override
+        public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            proxy.feval(_functionName, _args);
+            
+            return null;
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_functionName", _functionName);
+            fields.put("_args", PrimitiveArrayCodec.encodeElements(_args));
+            out.writeFields();
+        }
+    }
+    
+    static final class ReturningFeval implements MatlabThreadCallable<Object[]>, Serializable
+    {
+        private static final long serialVersionUID = 0xA103L;
+        
+        private final String _functionName;
+        private final int _nargout;
+        private final Object[] _args;
+        
+        ReturningFeval(String functionName, int nargout, Object[] args)
+        {
+            _functionName = functionName;
+            _nargout = nargout;
+            _args = args;
+        }
+
+        @Override
+        public Object[] call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            return proxy.returningFeval(_functionName, _nargout, _args);
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_functionName", _functionName);
+            fields.put("_nargout", _nargout);
+            fields.put("_args", PrimitiveArrayCodec.encodeElements(_args));
+            out.writeFields();
+        }
+    }
+    
+    static final class SetVariable implements MatlabThreadCallable<Void>, Serializable
+    {
+        private static final long serialVersionUID = 0xA104L;
+        
+        private final String _variableName;
+        private final Object _value;
+        
+        SetVariable(String variableName, Object value)
+        {
+            _variableName = variableName;
+            _value = value;
+        }
+
+        @Override
+        public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            proxy.setVariable(_variableName, _value);
+            
+            return null;
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_variableName", _variableName);
+            fields.put("_value", PrimitiveArrayCodec.encode(_value));
+            out.writeFields();
+        }
+    }
+    
+    static final class GetVariable implements MatlabThreadCallable<Object>, Serializable
+    {
+        private static final long serialVersionUID = 0xA105L;
+        
+        private final String _variableName;
+        
+        GetVariable(String variableName)
+        {
+            _variableName = variableName;
+        }
+
+        @Override
+        public Object call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            return proxy.getVariable(_variableName);
+        }
+    }
+    
+    static final class SetVariables implements MatlabThreadCallable<Void>, Serializable
+    {
+        private static final long serialVersionUID = 0xA106L;
+        
+        private final LinkedHashMap<String, Object> _variables;
+        
+        SetVariables(Map<String, Object> variables)
+        {
+            //Copy so that the map is serializable and iterates in the order provided
+            _variables = new LinkedHashMap<String, Object>(variables);
+        }
+
+        @Override
+        public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            proxy.setVariables(_variables);
+            
+            return null;
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_variables", PrimitiveArrayCodec.encodeValues(_variables));
+            out.writeFields();
+        }
+    }
+    
+    static final class GetVariables implements MatlabThreadCallable<Map<String, Object>>, Serializable
+    {
+        private static final long serialVersionUID = 0xA107L;
+        
+        private final String[] _variableNames;
+        
+        GetVariables(String[] variableNames)
+        {
+            _variableNames = variableNames;
+        }
+
+        @Override
+        public Map<String, Object> call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            return proxy.getVariables(_variableNames);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The management interface through which the compression of arrays sent between this Java Virtual Machine and
+ * MATLAB's is reported over JMX. It is registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabCompression} once the first compressed array is sent or received. Arrays sent are
+ * compressed by this Java Virtual Machine and arrays received were compressed by the other; comparing the ratio to the
+ * processor time shows whether compression pays off for the arrays being sent.
+ * 
+ * @see MatlabProxyFactoryOptions.Builder#setCompressionThreshold(long)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabCompressionMBean
+{
+    /**
+     * The number of compressed arrays sent.
+     * 
+     * @return 
+     */
+    public long getSentCount();
+    
+    /**
+     * The number of bytes the arrays sent compressed would have taken uncompressed.
+     * 
+     * @return 
+     */
+    public long getSentUncompressedBytes();
+    
+    /**
+     * The number of bytes the arrays sent compressed took.
+     * 
+     * @return 
+     */
+    public long getSentCompressedBytes();
+    
+    /**
+     * The uncompressed size of the arrays sent compressed divided by their compressed size, {@code 0} if none have
+     * been sent.
+     * 
+     * @return 
+     */
+    public double getSentRatio();
+    
+    /**
+     * The processor time spent compressing the arrays sent.
+     * 
+     * @return 
+     */
+    public double getSentCpuMillis();
+    
+    /**
+     * The number of compressed arrays received.
+     * 
+     * @return 
+     */
+    public long getReceivedCount();
+    
+    /**
+     * The number of bytes the arrays received compressed take uncompressed.
+     * 
+     * @return 
+     */
+    public long getReceivedUncompressedBytes();
+    
+    /**
+     * The number of bytes the arrays received compressed took.
+     * 
+     * @return 
+     */
+    public long getReceivedCompressedBytes();
+    
+    /**
+     * The uncompressed size of the arrays received compressed divided by their compressed size, {@code 0} if none
+     * have been received.
+     * 
+     * @return 
+     */
+    public double getReceivedRatio();
+    
+    /**
+     * The processor time spent decompressing the arrays received.
+     * 
+     * @return 
+     */
+    public double getReceivedCpuMillis();
+    
+    /**
+     * Discards the statistics recorded so far.
+     */
+    public void reset();
+}
\ No newline at end of file
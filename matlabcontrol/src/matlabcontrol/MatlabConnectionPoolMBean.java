@@ -0,0 +1,107 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The management interface through which the connections made between this Java Virtual Machine and MATLAB's are
+ * reported over JMX. It is registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabConnectionPool} once the first connection is made. RMI keeps idle connections open
+ * and reuses them for later calls; the counts here cover the connections this Java Virtual Machine opens, which are
+ * bounded by {@link MatlabProxyFactoryOptions.Builder#setMaxConnections(int)}.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabConnectionPoolMBean
+{
+    /**
+     * The most connections which may be open at once, {@code 0} if unbounded.
+     * 
+     * @return 
+     */
+    public int getMaxConnections();
+    
+    /**
+     * The number of connections currently open.
+     * 
+     * @return 
+     */
+    public int getOpenConnections();
+    
+    /**
+     * The largest number of connections which have been open at once.
+     * 
+     * @return 
+     */
+    public int getPeakOpenConnections();
+    
+    /**
+     * The number of connections which have been opened.
+     * 
+     * @return 
+     */
+    public long getOpenedCount();
+    
+    /**
+     * The number of connections which have been closed.
+     * 
+     * @return 
+     */
+    public long getClosedCount();
+    
+    /**
+     * The number of calls made on a connection which had already carried a call, rather than on a newly opened one.
+     * 
+     * @return 
+     */
+    public long getReusedCount();
+    
+    /**
+     * The number of times opening a connection waited because the most connections allowed were already open.
+     * 
+     * @return 
+     */
+    public long getWaitCount();
+    
+    /**
+     * The total time spent waiting to open connections.
+     * 
+     * @return 
+     */
+    public double getTotalWaitMillis();
+    
+    /**
+     * The number of connections opened beyond the most allowed because none were closed in time. Exceeding the bound
+     * rather than failing prevents calls which are waiting on each other from deadlocking.
+     * 
+     * @return 
+     */
+    public long getOverflowCount();
+    
+    /**
+     * Resets the counts and the peak to the connections currently open.
+     */
+    public void reset();
+}
\ No newline at end of file
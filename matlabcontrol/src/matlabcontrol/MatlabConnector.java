@@ -31,6 +31,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -136,7 +137,37 @@ class MatlabConnector
      */
     public static void connectFromMatlab(String receiverID, int port)
     {
-        connect(receiverID, port, false);
+        connect(receiverID, port, false, 0L, false);
+    }
+    
+    /**
+     * Called from MATLAB at launch. Creates the JMI wrapper and then sends it over RMI to the Java program running in a
+     * separate JVM.
+     * 
+     * @param receiverID the key that binds the receiver in the registry
+     * @param port the port the registry is running on
+     * @param classLoadingStartedAt when MATLAB began setting up matlabcontrol's class loading, according to
+     * {@link System#currentTimeMillis()}
+     */
+    public static void connectFromMatlab(String receiverID, int port, long classLoadingStartedAt)
+    {
+        connect(receiverID, port, false, classLoadingStartedAt, false);
+    }
+    
+    /**
+     * Called from MATLAB at launch. Creates the JMI wrapper and then sends it over RMI to the Java program running in a
+     * separate JVM.
+     * 
+     * @param receiverID the key that binds the receiver in the registry
+     * @param port the port the registry is running on
+     * @param classLoadingStartedAt when MATLAB began setting up matlabcontrol's class loading, according to
+     * {@link System#currentTimeMillis()}
+     * @param unixDomain whether the registry was created to be connected to over a Unix domain socket, otherwise it is
+     * connected to over TCP
+     */
+    public static void connectFromMatlab(String receiverID, int port, long classLoadingStartedAt, boolean unixDomain)
+    {
+        connect(receiverID, port, false, classLoadingStartedAt, unixDomain);
     }
     
     /**
@@ -146,14 +177,22 @@ class MatlabConnector
      * @param receiverID
      * @param port
      * @param existingSession 
+     * @param unixDomain
      */
-    static void connect(String receiverID, int port, boolean existingSession)
+    static void connect(String receiverID, int port, boolean existingSession, boolean unixDomain)
+    {
+        connect(receiverID, port, existingSession, 0L, unixDomain);
+    }
+    
+    private static void connect(String receiverID, int port, boolean existingSession, long classLoadingStartedAt,
+            boolean unixDomain)
     {
         _connectionInProgress.set(true);
         
         //Establish the connection on a separate thread to allow MATLAB to continue to initialize
         //(If this request is coming over RMI then MATLAB has already initialized, but this will not cause an issue.)
-        _connectionExecutor.submit(new EstablishConnectionRunnable(receiverID, port, existingSession));
+        _connectionExecutor.submit(new EstablishConnectionRunnable(receiverID, port, existingSession,
+                classLoadingStartedAt, unixDomain));
     }
     
     /**
@@ -164,6 +203,15 @@ class MatlabConnector
         private final String _receiverID;
         private final int _port;
         private final boolean _existingSession;
+        private final long _classLoadingStartedAt;
+        private final boolean _unixDomain;
+        
+        /**
+         * When the connection was requested, according to {@link System#currentTimeMillis()} and
+         * {@link System#nanoTime()} respectively.
+         */
+        private final long _connectCalledAt;
+        private final long _connectCalledNanos;
         
         /**
          * The classpath (with each classpath entry as an individual canonical path) of the most recently connected
@@ -175,16 +223,31 @@ class MatlabConnector
          */
         private static volatile String[] _previousRemoteClassPath = new String[0];
         
-        private EstablishConnectionRunnable(String receiverID, int port, boolean existingSession)
+        private EstablishConnectionRunnable(String receiverID, int port, boolean existingSession,
+                long classLoadingStartedAt, boolean unixDomain)
         {
             _receiverID = receiverID;
             _port = port;
             _existingSession = existingSession;
+            _classLoadingStartedAt = classLoadingStartedAt;
+            _unixDomain = unixDomain;
+            
+            _connectCalledAt = System.currentTimeMillis();
+            _connectCalledNanos = System.nanoTime();
         }
 
         @Override
         public void run()
         {
+            //Time each phase so that the receiver can report how long creating the proxy took
+            StartupTimes times = new StartupTimes();
+            if(_classLoadingStartedAt > 0L)
+            {
+                times.setClassLoadingStartedAt(_classLoadingStartedAt);
+                times.setDuration(StartupPhase.CLASS_LOADER_SETUP,
+                        TimeUnit.MILLISECONDS.toNanos(_connectCalledAt - _classLoadingStartedAt));
+            }
+            
             //Validate matlabcontrol can be used
             try
             {
@@ -196,6 +259,8 @@ class MatlabConnector
                 ex.printStackTrace();
                 return;
             }
+            long phaseStart = System.nanoTime();
+            times.setDuration(StartupPhase.JMI_VALIDATION, phaseStart - _connectCalledNanos);
             
             //If MATLAB was just launched
             if(!_existingSession)
@@ -214,12 +279,16 @@ class MatlabConnector
                     ex.printStackTrace();
                 }
             }
+            long phaseEnd = System.nanoTime();
+            times.setDuration(StartupPhase.BROADCAST, phaseEnd - phaseStart);
+            phaseStart = phaseEnd;
 
             //Send the remote JMI wrapper
             try
             {
                 //Get registry
-                Registry registry = LocalHostRMIHelper.getRegistry(_port);
+                //Connects the same way the factory created the registry to be connected to
+                Registry registry = LocalHostRMIHelper.getRegistry(_port, _unixDomain);
 
                 //Get the receiver from the registry, if it cannot be retrieved, retry once after waiting.
                 //The retry is attempted because the factory checks periodically to see if the receiver is bound and
@@ -258,6 +327,10 @@ class MatlabConnector
                     }
                 }
 
+                phaseEnd = System.nanoTime();
+                times.setDuration(StartupPhase.REGISTRY_LOOKUP, phaseEnd - phaseStart);
+                phaseStart = phaseEnd;
+                
                  //Hold on the to receiver
                 _receiverRef.set(receiver);
                 
@@ -286,9 +359,23 @@ class MatlabConnector
                             "classes not defined in MATLAB's Java Virtual Machine");
                     e.printStackTrace();
                 }
+                times.setDuration(StartupPhase.CLASS_PATH_SYNC, System.nanoTime() - phaseStart);
+                times.setClassPathSyncedAt(System.currentTimeMillis());
+
+                //Apply the controlling application's limits on how work is batched onto MATLAB's main thread
+                JMIWrapper.setMatlabThreadBatchLimits(receiver.getMatlabThreadBatchSize(),
+                        receiver.getMatlabThreadBatchTime());
+
+                //Send arrays back to the controlling application the same way it sends them
+                SharedMemoryTransport.setThreshold(receiver.getSharedMemoryThreshold());
+                PayloadCompression.setThreshold(receiver.getCompressionThreshold());
+
+                //Connect back to the controlling application with the same socket options and limits
+                LocalHostConnectionPool.getInstance().setSettings(receiver.getConnectionSettings());
 
                 //Create the remote JMI wrapper and then pass it over RMI to the Java application in its own JVM
-                receiver.receiveJMIWrapper(new JMIWrapperRemoteImpl(), _existingSession);
+                receiver.receiveJMIWrapper(new JMIWrapperRemoteImpl(receiver.getUseUnixDomainSockets()),
+                        _existingSession, times);
             }
             catch(RemoteException ex)
             {
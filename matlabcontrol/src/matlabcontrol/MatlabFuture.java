@@ -0,0 +1,104 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending result of an interaction with MATLAB that was started without waiting for it to complete. No thread is
+ * used while the interaction is outstanding; MATLAB signals completion when it has finished.
+ * <br><br>
+ * In addition to the methods of {@link Future}, whose {@code get} methods report a {@link MatlabInvocationException}
+ * as the cause of an {@link java.util.concurrent.ExecutionException}, the result may be retrieved with
+ * {@link #getResult()} which throws the {@code MatlabInvocationException} directly. A listener may be added which will
+ * be notified upon completion so that no thread needs to wait.
+ * <br><br>
+ * Cancelling a future that has not yet started running in MATLAB prevents it from running if the cancellation reaches
+ * MATLAB before MATLAB starts it, in which case {@code cancel} returns {@code true}. A future that is already running
+ * cannot be interrupted, and cancelling it returns {@code false}.
+ * <br><br>
+ * Implementations of this interface are unconditionally thread-safe.
+ * <br><br>
+ * <b>WARNING:</b> This interface is not intended to be implemented by users of matlabcontrol. Methods may be added to
+ * this interface, and these additions will not be considered breaking binary compatibility.
+ * 
+ * @param <T> type of the result
+ * @see MatlabProxy#invokeAsync(matlabcontrol.MatlabProxy.MatlabThreadCallable)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabFuture<T> extends Future<T>
+{
+    /**
+     * Waits if necessary for the interaction with MATLAB to complete and then returns its result.
+     * 
+     * @return result
+     * @throws MatlabInvocationException if the interaction failed or the waiting thread was interrupted
+     * @throws java.util.concurrent.CancellationException if the future was cancelled
+     */
+    public T getResult() throws MatlabInvocationException;
+    
+    /**
+     * Waits if necessary for at most {@code timeout} for the interaction with MATLAB to complete and then returns its
+     * result.
+     * 
+     * @param timeout
+     * @param unit
+     * @return result
+     * @throws MatlabInvocationException if the interaction failed or the waiting thread was interrupted
+     * @throws TimeoutException if the interaction did not complete in time
+     * @throws java.util.concurrent.CancellationException if the future was cancelled
+     */
+    public T getResult(long timeout, TimeUnit unit) throws MatlabInvocationException, TimeoutException;
+    
+    /**
+     * Adds a listener that will be notified once this future is done. If this future is already done then the listener
+     * is notified immediately on the calling thread. Otherwise the listener is notified on the thread that completes
+     * the future; for a proxy running inside MATLAB this is MATLAB's main thread, so listeners should return quickly.
+     * 
+     * @param listener 
+     */
+    public void addCompletionListener(CompletionListener<T> listener);
+    
+    /**
+     * Notified when a {@link MatlabFuture} is done, whether it completed normally, failed, or was cancelled.
+     * 
+     * @param <T> type of the result
+     * @since 4.2.0
+     * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+     */
+    public static interface CompletionListener<T>
+    {
+        /**
+         * Called once {@code future} is done. Calling {@link MatlabFuture#getResult()} on {@code future} will not
+         * block.
+         * 
+         * @param future 
+         */
+        public void completed(MatlabFuture<T> future);
+    }
+}
\ No newline at end of file
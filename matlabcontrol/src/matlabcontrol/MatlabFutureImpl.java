@@ -0,0 +1,297 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Implementation of {@link MatlabFuture}. The future is completed by whichever thread finishes the interaction with
+ * MATLAB: MATLAB's main thread when running inside MATLAB, or the RMI thread which receives the completion when
+ * running outside MATLAB.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class MatlabFutureImpl<T> implements MatlabFuture<T>
+{
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int COMPLETED = 2;
+    private static final int FAILED = 3;
+    private static final int CANCELLED = 4;
+    
+    //All guarded by this
+    private int _state = PENDING;
+    private T _result;
+    private MatlabInvocationException _exception;
+    private List<CompletionListener<T>> _listeners = new ArrayList<CompletionListener<T>>();
+    
+    /**
+     * Creates a future that has already failed with {@code exception}.
+     * 
+     * @param <T>
+     * @param exception
+     * @return 
+     */
+    static <T> MatlabFutureImpl<T> failed(MatlabInvocationException exception)
+    {
+        MatlabFutureImpl<T> future = new MatlabFutureImpl<T>();
+        future.fail(exception);
+        
+        return future;
+    }
+    
+    /**
+     * Marks this future as running. Returns {@code false} if the future has been cancelled (or has otherwise finished)
+     * in which case the computation must not be run.
+     * 
+     * @return if the computation should be run
+     */
+    synchronized boolean start()
+    {
+        boolean start = (_state == PENDING);
+        if(start)
+        {
+            _state = RUNNING;
+        }
+        
+        return start;
+    }
+    
+    /**
+     * Completes this future with {@code result} unless it is already done.
+     * 
+     * @param result
+     * @return if this call completed the future
+     */
+    boolean complete(T result)
+    {
+        return this.finish(COMPLETED, result, null);
+    }
+    
+    /**
+     * Completes this future exceptionally unless it is already done.
+     * 
+     * @param exception
+     * @return if this call completed the future
+     */
+    boolean fail(MatlabInvocationException exception)
+    {
+        return this.finish(FAILED, null, exception);
+    }
+    
+    private boolean finish(int state, T result, MatlabInvocationException exception)
+    {
+        List<CompletionListener<T>> listeners;
+        synchronized(this)
+        {
+            if(_state >= COMPLETED)
+            {
+                return false;
+            }
+            
+            _state = state;
+            _result = result;
+            _exception = exception;
+            
+            listeners = _listeners;
+            _listeners = null;
+            
+            this.notifyAll();
+        }
+        
+        //Notify listeners without holding the lock
+        for(CompletionListener<T> listener : listeners)
+        {
+            listener.completed(this);
+        }
+        
+        return true;
+    }
+    
+    @Override
+    public void addCompletionListener(CompletionListener<T> listener)
+    {
+        boolean done;
+        synchronized(this)
+        {
+            done = (_state >= COMPLETED);
+            if(!done)
+            {
+                _listeners.add(listener);
+            }
+        }
+        
+        if(done)
+        {
+            listener.completed(this);
+        }
+    }
+    
+    /**
+     * Cancels this future if it has not yet started running. A future which is running inside MATLAB cannot be
+     * cancelled, {@code mayInterruptIfRunning} is ignored.
+     * 
+     * @param mayInterruptIfRunning ignored
+     * @return if cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning)
+    {
+        boolean cancel;
+        synchronized(this)
+        {
+            cancel = (_state == PENDING);
+        }
+        
+        return cancel && this.finish(CANCELLED, null, null);
+    }
+
+    @Override
+    public synchronized boolean isCancelled()
+    {
+        return _state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone()
+    {
+        return _state >= COMPLETED;
+    }
+    
+    private synchronized void await() throws InterruptedException
+    {
+        while(_state < COMPLETED)
+        {
+            this.wait();
+        }
+    }
+    
+    private synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while(_state < COMPLETED && remaining > 0)
+        {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        
+        return _state >= COMPLETED;
+    }
+    
+    private synchronized T report() throws MatlabInvocationException
+    {
+        if(_state == CANCELLED)
+        {
+            throw new CancellationException();
+        }
+        else if(_state == FAILED)
+        {
+            throw _exception;
+        }
+        
+        return _result;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException
+    {
+        this.await();
+        
+        try
+        {
+            return this.report();
+        }
+        catch(MatlabInvocationException e)
+        {
+            throw new ExecutionException(e);
+        }
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+    {
+        if(!this.await(timeout, unit))
+        {
+            throw new TimeoutException();
+        }
+        
+        try
+        {
+            return this.report();
+        }
+        catch(MatlabInvocationException e)
+        {
+            throw new ExecutionException(e);
+        }
+    }
+
+    @Override
+    public T getResult() throws MatlabInvocationException
+    {
+        try
+        {
+            this.await();
+        }
+        catch(InterruptedException e)
+        {
+            throw MatlabInvocationException.Reason.INTERRRUPTED.asException(e);
+        }
+        
+        return this.report();
+    }
+
+    @Override
+    public T getResult(long timeout, TimeUnit unit) throws MatlabInvocationException, TimeoutException
+    {
+        try
+        {
+            if(!this.await(timeout, unit))
+            {
+                throw new TimeoutException();
+            }
+        }
+        catch(InterruptedException e)
+        {
+            throw MatlabInvocationException.Reason.INTERRRUPTED.asException(e);
+        }
+        
+        return this.report();
+    }
+    
+    @Override
+    public synchronized String toString()
+    {
+        String[] names = { "pending", "running", "completed", "failed", "cancelled" };
+        
+        return "[" + this.getClass().getName() + " state=" + names[_state] + "]";
+    }
+}
\ No newline at end of file
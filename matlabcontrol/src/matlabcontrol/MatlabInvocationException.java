@@ -43,6 +43,8 @@ public class MatlabInvocationException extends Exception
         NARGOUT_MISMATCH("Number of arguments returned did not match excepted"),
         EVENT_DISPATCH_THREAD("Issue pumping Event Dispatch Thread"),
         RUNTIME_EXCEPTION("RuntimeException occurred in MatlabThreadCallable, see cause for more information"),
+        TIMEOUT("Method did not complete before the timeout elapsed, MATLAB may still be running it"),
+        CANCELLED("Method was cancelled because the timeout elapsed before MATLAB began running it"),
         UNKNOWN("Method could not be invoked for an unknown reason, see cause for more information");
         
         private final String _message;
@@ -54,32 +56,46 @@ public class MatlabInvocationException extends Exception
         
         MatlabInvocationException asException()
         {
-            return new MatlabInvocationException(_message);
+            return new MatlabInvocationException(this, _message);
         }
         
         MatlabInvocationException asException(Throwable cause)
         {
-            return new MatlabInvocationException(_message, cause);
+            return new MatlabInvocationException(this, _message, cause);
         }
         
         MatlabInvocationException asException(String additionalInfo)
         {
-            return new MatlabInvocationException(_message + ": " + additionalInfo);
+            return new MatlabInvocationException(this, _message + ": " + additionalInfo);
         }
         
         MatlabInvocationException asException(String additionalInfo, Throwable cause)
         {
-            return new MatlabInvocationException(_message + ": " + additionalInfo, cause);
+            return new MatlabInvocationException(this, _message + ": " + additionalInfo, cause);
         }
     }
     
-    private MatlabInvocationException(String msg)
+    /**
+     * Why the method failed. May be {@code null} if this exception was sent by an older version of matlabcontrol.
+     */
+    private final Reason _reason;
+    
+    private MatlabInvocationException(Reason reason, String msg)
     {
         super(msg);
+        
+        _reason = reason;
     }
     
-    private MatlabInvocationException(String msg, Throwable cause)
+    private MatlabInvocationException(Reason reason, String msg, Throwable cause)
     {
         super(msg, cause);
+        
+        _reason = reason;
+    }
+    
+    Reason getReason()
+    {
+        return _reason;
     }
 }
\ No newline at end of file
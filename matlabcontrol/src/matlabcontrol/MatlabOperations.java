@@ -22,6 +22,8 @@ package matlabcontrol;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Map;
+
 /**
  * Operations which interact with a session of MATLAB.
  * <br><br>
@@ -131,4 +133,30 @@ public interface MatlabOperations
      * @throws MatlabInvocationException
      */
     public Object getVariable(String variableName) throws MatlabInvocationException;
+    
+    /**
+     * Sets each variable named by a key of {@code variables} to the corresponding value in MATLAB, creating variables
+     * which do not yet exist. This is equivalent to calling {@link #setVariable(String, Object)} for each entry, in the
+     * iteration order of {@code variables}, except that all of the variables are sent to MATLAB together and set
+     * without other interactions with MATLAB occurring in between. If setting a variable fails, the variables after it
+     * are not set.
+     * 
+     * @param variables variable names mapped to their values
+     * @throws MatlabInvocationException
+     * @since 4.2.0
+     */
+    public void setVariables(Map<String, Object> variables) throws MatlabInvocationException;
+    
+    /**
+     * Gets the values of each of {@code variableNames} in MATLAB. This is equivalent to calling
+     * {@link #getVariable(String)} for each name, except that all of the values are retrieved together without other
+     * interactions with MATLAB occurring in between. If any variable cannot be retrieved an exception is thrown and no
+     * values are returned.
+     * 
+     * @param variableNames
+     * @return variable names mapped to their values, iterating in the order of {@code variableNames}
+     * @throws MatlabInvocationException
+     * @since 4.2.0
+     */
+    public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException;
 }
\ No newline at end of file
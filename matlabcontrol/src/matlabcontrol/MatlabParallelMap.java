@@ -0,0 +1,583 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+
+/**
+ * Calls a MATLAB function once for each of many independent inputs, spreading the calls across multiple sessions of
+ * MATLAB. Example usage:
+ * <pre>
+ * {@code
+ * MatlabParallelMap map = new MatlabParallelMap(pool);
+ * MatlabParallelMap.Result result = map.map("fft", 1, inputs);
+ * List<Object[]> outputs = result.getOutputs();
+ * }
+ * </pre>
+ * The inputs are divided into chunks which are sent to MATLAB one chunk per call, and each session is initially
+ * assigned an equal contiguous run of chunks. Each session is kept several chunks ahead, so that the next chunk is
+ * being sent while the current one runs. A session which runs out of its own chunks takes the chunks at the end of the
+ * run of the session with the most chunks remaining, so that a slow session does not hold up the others. The outputs
+ * are returned in the order of the inputs along with how long the map took and how the work was spread across the
+ * sessions.
+ * <br><br>
+ * The inputs must be independent of one another and of the state of each session's workspace, because which session
+ * an input is sent to is not known in advance. If any call fails, the map stops sending chunks and throws the
+ * exception; chunks already sent to MATLAB are still run. This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class MatlabParallelMap
+{
+    /**
+     * The number of inputs sent to MATLAB in each call if not otherwise specified.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16;
+    
+    /**
+     * The number of chunks each session is kept ahead by if not otherwise specified.
+     */
+    public static final int DEFAULT_PIPELINE_DEPTH = 2;
+    
+    private final List<MatlabProxy> _proxies;
+    
+    /**
+     * The pooled sessions of {@link #_proxies}, {@code null} if the map was not constructed from a pool.
+     */
+    private final List<PooledSession> _sessions;
+    private final int _chunkSize;
+    private final int _pipelineDepth;
+    
+    /**
+     * Constructs a map across the sessions controlled by {@code proxies}, using the default chunk size and pipeline
+     * depth.
+     * 
+     * @param proxies
+     * @throws IllegalArgumentException if {@code proxies} is empty
+     */
+    public MatlabParallelMap(List<? extends MatlabProxy> proxies)
+    {
+        this(proxies, DEFAULT_CHUNK_SIZE, DEFAULT_PIPELINE_DEPTH);
+    }
+    
+    /**
+     * Constructs a map across the sessions controlled by {@code proxies}. Smaller chunks spread work more evenly,
+     * larger chunks send fewer messages.
+     * 
+     * @param proxies
+     * @param chunkSize the number of inputs sent to MATLAB in each call
+     * @param pipelineDepth the number of chunks each session is kept ahead by
+     * @throws IllegalArgumentException if {@code proxies} is empty or either {@code chunkSize} or
+     * {@code pipelineDepth} is not positive
+     */
+    public MatlabParallelMap(List<? extends MatlabProxy> proxies, int chunkSize, int pipelineDepth)
+    {
+        this(proxies, null, chunkSize, pipelineDepth);
+    }
+    
+    /**
+     * If {@code sessions} is not {@code null}, the map is across their tracked proxies and {@code proxies} is ignored.
+     */
+    private MatlabParallelMap(List<? extends MatlabProxy> proxies, List<PooledSession> sessions, int chunkSize,
+            int pipelineDepth)
+    {
+        if(sessions != null)
+        {
+            proxies = trackedProxies(sessions);
+        }
+        
+        if(proxies.isEmpty())
+        {
+            throw new IllegalArgumentException(sessions == null ? "at least one proxy must be provided" :
+                    "pool has no sessions which are not leased");
+        }
+        if(chunkSize < 1)
+        {
+            throw new IllegalArgumentException("chunk size [" + chunkSize + "] must be positive");
+        }
+        if(pipelineDepth < 1)
+        {
+            throw new IllegalArgumentException("pipeline depth [" + pipelineDepth + "] must be positive");
+        }
+        
+        _proxies = new ArrayList<MatlabProxy>(proxies);
+        _sessions = sessions;
+        _chunkSize = chunkSize;
+        _pipelineDepth = pipelineDepth;
+    }
+    
+    /**
+     * Constructs a map across the sessions currently in {@code pool} which are not leased, using the default chunk
+     * size and pipeline depth. Calls made by the map are taken into account when the pool chooses the least loaded
+     * session. A session leased once the map has been constructed is not sent any more chunks; if every session of
+     * the map is leased while it has chunks left to send, the map fails.
+     * 
+     * @param pool
+     * @throws IllegalArgumentException if every session in {@code pool} is leased or it has no sessions
+     */
+    public MatlabParallelMap(MatlabProxyPool pool)
+    {
+        this(pool, DEFAULT_CHUNK_SIZE, DEFAULT_PIPELINE_DEPTH);
+    }
+    
+    /**
+     * Constructs a map across the sessions currently in {@code pool} which are not leased. Calls made by the map are
+     * taken into account when the pool chooses the least loaded session. A session leased once the map has been
+     * constructed is not sent any more chunks; if every session of the map is leased while it has chunks left to send,
+     * the map fails.
+     * 
+     * @param pool
+     * @param chunkSize the number of inputs sent to MATLAB in each call
+     * @param pipelineDepth the number of chunks each session is kept ahead by
+     * @throws IllegalArgumentException if every session in {@code pool} is leased, it has no sessions, or either
+     * {@code chunkSize} or {@code pipelineDepth} is not positive
+     */
+    public MatlabParallelMap(MatlabProxyPool pool, int chunkSize, int pipelineDepth)
+    {
+        this(null, unleasedSessions(pool), chunkSize, pipelineDepth);
+    }
+    
+    private static List<PooledSession> unleasedSessions(MatlabProxyPool pool)
+    {
+        List<PooledSession> sessions = new ArrayList<PooledSession>();
+        for(PooledSession session : pool.getSessions())
+        {
+            if(!session.isLeased())
+            {
+                sessions.add(session);
+            }
+        }
+        
+        return sessions;
+    }
+    
+    private static List<MatlabProxy> trackedProxies(List<PooledSession> sessions)
+    {
+        List<MatlabProxy> proxies = new ArrayList<MatlabProxy>();
+        for(PooledSession session : sessions)
+        {
+            proxies.add(session.getTrackedProxy());
+        }
+        
+        return proxies;
+    }
+    
+    private static final class Chunk
+    {
+        final int start;
+        final Object[][] args;
+        
+        Chunk(int start, Object[][] args)
+        {
+            this.start = start;
+            this.args = args;
+        }
+    }
+    
+    private static final class Completion
+    {
+        final int session;
+        final Chunk chunk;
+        final MatlabFuture<ChunkResult> future;
+        
+        Completion(int session, Chunk chunk, MatlabFuture<ChunkResult> future)
+        {
+            this.session = session;
+            this.chunk = chunk;
+            this.future = future;
+        }
+    }
+    
+    /**
+     * Calls {@code functionName} once for each input, waiting for all calls to complete.
+     * 
+     * @param functionName
+     * @param nargout the number of outputs of each call
+     * @param inputs the arguments of each call, {@code null} for a call with no arguments
+     * @return
+     * @throws MatlabInvocationException if any call fails, or if interrupted while waiting
+     * @see MatlabProxy#returningFeval(String, int, Object...)
+     */
+    public Result map(String functionName, int nargout, List<Object[]> inputs) throws MatlabInvocationException
+    {
+        long start = System.nanoTime();
+        int sessionCount = _proxies.size();
+        int chunkCount = (inputs.size() + _chunkSize - 1) / _chunkSize;
+        
+        //Assign each session a contiguous run of chunks
+        List<ArrayDeque<Chunk>> queues = new ArrayList<ArrayDeque<Chunk>>();
+        for(int i = 0; i < sessionCount; i++)
+        {
+            queues.add(new ArrayDeque<Chunk>());
+        }
+        for(int i = 0; i < chunkCount; i++)
+        {
+            int from = i * _chunkSize;
+            int to = Math.min(from + _chunkSize, inputs.size());
+            Object[][] args = inputs.subList(from, to).toArray(new Object[to - from][]);
+            
+            queues.get((int) ((long) i * sessionCount / chunkCount)).addLast(new Chunk(from, args));
+        }
+        
+        Object[][] outputs = new Object[inputs.size()][];
+        Result result = new Result(Arrays.asList(outputs), sessionCount);
+        
+        //Completions are handled only by this thread, so no other state needs to be guarded
+        BlockingQueue<Completion> completions = new LinkedBlockingQueue<Completion>();
+        int[] inFlight = new int[sessionCount];
+        for(int i = 0; i < sessionCount; i++)
+        {
+            this.fill(i, functionName, nargout, queues, inFlight, completions, result);
+        }
+        
+        for(int remaining = chunkCount; remaining > 0; remaining--)
+        {
+            //Nothing will complete, as every session with chunks in flight has since been leased
+            if(isIdle(inFlight))
+            {
+                throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException("every session of the map " +
+                        "has been leased");
+            }
+            
+            Completion completion;
+            try
+            {
+                completion = completions.take();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw MatlabInvocationException.Reason.INTERRRUPTED.asException("interrupted while waiting for " +
+                        "results", e);
+            }
+            
+            ChunkResult chunkResult = completion.future.getResult();
+            Object[][] chunkOutputs = chunkResult._outputs;
+            System.arraycopy(chunkOutputs, 0, outputs, completion.chunk.start, chunkOutputs.length);
+            
+            int session = completion.session;
+            result._inputCounts[session] += chunkOutputs.length;
+            result._chunkCounts[session]++;
+            result._executionNanos[session] += chunkResult._executionNanos;
+            result._finishNanos[session] = System.nanoTime() - start;
+            inFlight[session]--;
+            
+            this.fill(session, functionName, nargout, queues, inFlight, completions, result);
+        }
+        result._elapsedNanos = System.nanoTime() - start;
+        
+        return result;
+    }
+    
+    private static boolean isIdle(int[] inFlight)
+    {
+        boolean idle = true;
+        for(int count : inFlight)
+        {
+            idle &= (count == 0);
+        }
+        
+        return idle;
+    }
+    
+    /**
+     * Sends chunks to the session until it is the pipeline depth ahead, taking chunks from the session with the most
+     * remaining once it has none of its own. A session which has been leased is sent nothing, and its chunks are left
+     * to be taken by the others.
+     */
+    private void fill(final int session, String functionName, int nargout, List<ArrayDeque<Chunk>> queues,
+            int[] inFlight, final BlockingQueue<Completion> completions, Result result)
+    {
+        if(_sessions != null && _sessions.get(session).isLeased())
+        {
+            return;
+        }
+        
+        while(inFlight[session] < _pipelineDepth)
+        {
+            Chunk chunk = queues.get(session).pollFirst();
+            if(chunk == null)
+            {
+                ArrayDeque<Chunk> victim = queues.get(session);
+                for(ArrayDeque<Chunk> queue : queues)
+                {
+                    if(queue.size() > victim.size())
+                    {
+                        victim = queue;
+                    }
+                }
+                
+                chunk = victim.pollLast();
+                if(chunk == null)
+                {
+                    break;
+                }
+                result._stolenCounts[session]++;
+            }
+            
+            final Chunk sent = chunk;
+            MatlabFuture<ChunkResult> future = _proxies.get(session).invokeAsync(
+                    new ChunkCallable(functionName, nargout, chunk.args));
+            future.addCompletionListener(new MatlabFuture.CompletionListener<ChunkResult>()
+            {
+                @Override
+                public void completed(MatlabFuture<ChunkResult> future)
+                {
+                    completions.add(new Completion(session, sent, future));
+                }
+            });
+            inFlight[session]++;
+        }
+    }
+    
+    /**
+     * The outputs of a map, and how the work was spread across the sessions. Sessions are identified by their index
+     * in the list of proxies the map was constructed with, or among the sessions in the pool which were not leased at
+     * the time the map was constructed.
+     * 
+     * @since 4.2.0
+     */
+    public static final class Result
+    {
+        private final List<Object[]> _outputs;
+        private final int[] _inputCounts;
+        private final int[] _chunkCounts;
+        private final int[] _stolenCounts;
+        private final long[] _executionNanos;
+        private final long[] _finishNanos;
+        private long _elapsedNanos;
+        
+        private Result(List<Object[]> outputs, int sessionCount)
+        {
+            _outputs = Collections.unmodifiableList(outputs);
+            _inputCounts = new int[sessionCount];
+            _chunkCounts = new int[sessionCount];
+            _stolenCounts = new int[sessionCount];
+            _executionNanos = new long[sessionCount];
+            _finishNanos = new long[sessionCount];
+        }
+        
+        /**
+         * The outputs of each call, in the order of the inputs.
+         * 
+         * @return unmodifiable list
+         */
+        public List<Object[]> getOutputs()
+        {
+            return _outputs;
+        }
+        
+        /**
+         * How long the map took, from being called until the last call completed.
+         * 
+         * @param unit
+         * @return 
+         */
+        public long getElapsed(TimeUnit unit)
+        {
+            return unit.convert(_elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        
+        /**
+         * The number of inputs completed per second.
+         * 
+         * @return 
+         */
+        public double getThroughput()
+        {
+            return _elapsedNanos == 0 ? 0 : _outputs.size() / (_elapsedNanos / 1e9);
+        }
+        
+        public int getSessionCount()
+        {
+            return _inputCounts.length;
+        }
+        
+        /**
+         * The number of inputs the session completed.
+         * 
+         * @param session
+         * @return 
+         */
+        public int getInputCount(int session)
+        {
+            return _inputCounts[session];
+        }
+        
+        /**
+         * The number of chunks the session completed.
+         * 
+         * @param session
+         * @return 
+         */
+        public int getChunkCount(int session)
+        {
+            return _chunkCounts[session];
+        }
+        
+        /**
+         * The number of the session's chunks which were taken from another session.
+         * 
+         * @param session
+         * @return 
+         */
+        public int getStolenChunkCount(int session)
+        {
+            return _stolenCounts[session];
+        }
+        
+        /**
+         * How long MATLAB spent running the session's calls.
+         * 
+         * @param session
+         * @param unit
+         * @return 
+         */
+        public long getExecutionTime(int session, TimeUnit unit)
+        {
+            return unit.convert(_executionNanos[session], TimeUnit.NANOSECONDS);
+        }
+        
+        /**
+         * How long after the map was called the session completed its last chunk, {@code 0} if it completed none.
+         * 
+         * @param session
+         * @param unit
+         * @return 
+         */
+        public long getFinishTime(int session, TimeUnit unit)
+        {
+            return unit.convert(_finishNanos[session], TimeUnit.NANOSECONDS);
+        }
+        
+        @Override
+        public String toString()
+        {
+            StringBuilder builder = new StringBuilder("[" + this.getClass().getName() + " inputs=" + _outputs.size() +
+                    " elapsedMillis=" + _elapsedNanos / 1e6 + " throughput=" + this.getThroughput());
+            for(int i = 0; i < _inputCounts.length; i++)
+            {
+                builder.append(" session" + i + "={inputs=" + _inputCounts[i] + " chunks=" + _chunkCounts[i] +
+                        " stolen=" + _stolenCounts[i] + " executionMillis=" + _executionNanos[i] / 1e6 +
+                        " finishMillis=" + _finishNanos[i] / 1e6 + "}");
+            }
+            builder.append("]");
+            
+            return builder.toString();
+        }
+    }
+    
+    /**
+     * Calls the function once for each input in a chunk.
+     */
+    private static final class ChunkCallable implements MatlabThreadCallable<ChunkResult>, Serializable
+    {
+        private static final long serialVersionUID = 0xB108L;
+        
+        private final String _functionName;
+        private final int _nargout;
+        private final Object[][] _args;
+        
+        ChunkCallable(String functionName, int nargout, Object[][] args)
+        {
+            _functionName = functionName;
+            _nargout = nargout;
+            _args = args;
+        }
+        
+        @Override
+        public ChunkResult call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            long start = System.nanoTime();
+            
+            Object[][] outputs = new Object[_args.length][];
+            for(int i = 0; i < _args.length; i++)
+            {
+                outputs[i] = proxy.returningFeval(_functionName, _nargout, _args[i]);
+            }
+            
+            return new ChunkResult(System.nanoTime() - start, outputs);
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_functionName", _functionName);
+            fields.put("_nargout", _nargout);
+            fields.put("_args", encodeRows(_args));
+            out.writeFields();
+        }
+    }
+    
+    /**
+     * The outputs of each call in a chunk and how long MATLAB spent running them.
+     */
+    private static final class ChunkResult implements Serializable
+    {
+        private static final long serialVersionUID = 0xB109L;
+        
+        private final long _executionNanos;
+        private final Object[][] _outputs;
+        
+        ChunkResult(long executionNanos, Object[][] outputs)
+        {
+            _executionNanos = executionNanos;
+            _outputs = outputs;
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_executionNanos", _executionNanos);
+            fields.put("_outputs", encodeRows(_outputs));
+            out.writeFields();
+        }
+    }
+    
+    private static Object[][] encodeRows(Object[][] rows)
+    {
+        Object[][] encoded = new Object[rows.length][];
+        for(int i = 0; i < rows.length; i++)
+        {
+            encoded[i] = PrimitiveArrayCodec.encodeElements(rows[i]);
+        }
+        
+        return encoded;
+    }
+}
\ No newline at end of file
@@ -22,7 +22,11 @@ package matlabcontrol;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Communicates with a running MATLAB session. This class cannot be instantiated, it may be created with a
@@ -189,15 +193,53 @@ public abstract class MatlabProxy implements MatlabOperations
      */
     private final CopyOnWriteArrayList<DisconnectionListener> _listeners;
     
+    /**
+     * The number of methods which did not complete before their timeout elapsed, including those cancelled.
+     */
+    private final AtomicLong _timeoutCount = new AtomicLong();
+    
+    /**
+     * The number of methods which were cancelled because their timeout elapsed before MATLAB began running them.
+     */
+    private final AtomicLong _cancellationCount = new AtomicLong();
+    
+    /**
+     * Records the latency of methods which wait for MATLAB, {@code null} if latency instrumentation is disabled.
+     */
+    private final LatencyRecorder _latencyRecorder;
+    
+    /**
+     * How long creating this proxy took, {@code null} if not recorded.
+     */
+    private volatile StartupTimes _startupTimes = null;
+    
     /**
      * This constructor is package private to prevent subclasses from outside of this package.
      */
     MatlabProxy(Identifier id, boolean existingSession)
+    {
+        this(id, existingSession, false);
+    }
+    
+    /**
+     * This constructor is package private to prevent subclasses from outside of this package.
+     */
+    MatlabProxy(Identifier id, boolean existingSession, boolean latencyInstrumentation)
     {
         _id = id;
         _existingSession = existingSession;
         
         _listeners = new CopyOnWriteArrayList<DisconnectionListener>();
+        
+        if(latencyInstrumentation)
+        {
+            _latencyRecorder = new LatencyRecorder(id);
+            _latencyRecorder.register();
+        }
+        else
+        {
+            _latencyRecorder = null;
+        }
     }
     
     /**
@@ -269,6 +311,136 @@ public abstract class MatlabProxy implements MatlabOperations
         }
     }
     
+    /**
+     * Records the failure of a method if it failed because its timeout elapsed.
+     * 
+     * @param e 
+     */
+    void recordInvocationFailure(MatlabInvocationException e)
+    {
+        if(e.getReason() == MatlabInvocationException.Reason.TIMEOUT)
+        {
+            _timeoutCount.incrementAndGet();
+        }
+        else if(e.getReason() == MatlabInvocationException.Reason.CANCELLED)
+        {
+            _timeoutCount.incrementAndGet();
+            _cancellationCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * The number of methods invoked on this proxy which threw a {@link MatlabInvocationException} because their
+     * timeout elapsed before MATLAB completed them. This includes methods which were cancelled.
+     * 
+     * @return number of timeouts
+     * @see MatlabProxyFactoryOptions.Builder#setInvocationTimeout(long)
+     * @since 4.2.0
+     */
+    public long getTimeoutCount()
+    {
+        return _timeoutCount.get();
+    }
+    
+    /**
+     * The number of methods invoked on this proxy which timed out before MATLAB began running them, and so were never
+     * run.
+     * 
+     * @return number of cancellations
+     * @see #getTimeoutCount() 
+     * @since 4.2.0
+     */
+    public long getCancellationCount()
+    {
+        return _cancellationCount.get();
+    }
+    
+    /**
+     * The recorder of latencies, {@code null} if latency instrumentation is disabled.
+     * 
+     * @return 
+     */
+    LatencyRecorder getLatencyRecorder()
+    {
+        return _latencyRecorder;
+    }
+    
+    /**
+     * The names of the functions for which latencies have been recorded. If latency instrumentation is disabled this
+     * is always empty.
+     * 
+     * @return unmodifiable set of function names
+     * @see MatlabProxyFactoryOptions.Builder#setLatencyInstrumentation(boolean)
+     * @since 4.2.0
+     */
+    public Set<String> getLatencyFunctionNames()
+    {
+        Set<String> names;
+        if(_latencyRecorder == null)
+        {
+            names = Collections.emptySet();
+        }
+        else
+        {
+            names = _latencyRecorder.getRecordedFunctionNames();
+        }
+        
+        return names;
+    }
+    
+    /**
+     * A snapshot of the latencies recorded for {@code phase} of the methods which waited for MATLAB to complete
+     * {@code functionName}. For {@code feval}s the function name is the name of the function called. The operations
+     * which are not {@code feval}s are recorded under the name of the operation, such as {@code eval} or
+     * {@code getVariable}, and {@link MatlabThreadCallable}s are recorded under the name of their class. Methods which
+     * failed are recorded only in {@link LatencyPhase#TOTAL} and asynchronous methods are not recorded, as described
+     * by {@link MatlabProxyLatencyMBean}.
+     * 
+     * @param functionName
+     * @param phase
+     * @return histogram, or {@code null} if no latencies have been recorded for {@code functionName} or latency
+     * instrumentation is disabled
+     * @see MatlabProxyFactoryOptions.Builder#setLatencyInstrumentation(boolean)
+     * @since 4.2.0
+     */
+    public LatencyHistogram getLatencyHistogram(String functionName, LatencyPhase phase)
+    {
+        return (_latencyRecorder == null) ? null : _latencyRecorder.getHistogram(functionName, phase);
+    }
+    
+    void setStartupTimes(StartupTimes startupTimes)
+    {
+        _startupTimes = startupTimes;
+    }
+    
+    /**
+     * How long each phase of launching or connecting to MATLAB took when this proxy was created. Only proxies created
+     * when running outside MATLAB have startup times.
+     * 
+     * @return startup times, or {@code null} if not recorded
+     * @since 4.2.0
+     */
+    public StartupTimes getStartupTimes()
+    {
+        return _startupTimes;
+    }
+    
+    /**
+     * The exit value of the MATLAB process launched for this proxy.
+     * 
+     * @return exit value, or {@code null} if MATLAB was not launched for this proxy or has not exited
+     */
+    Integer getExitValue()
+    {
+        return null;
+    }
+    
+    /**
+     * Forcibly terminates the MATLAB process launched for this proxy. Has no effect if MATLAB was not launched for this
+     * proxy or has already exited.
+     */
+    void destroyProcess() { }
+    
     /**
      * Whether this proxy is running inside of MATLAB.
      * 
@@ -326,6 +498,129 @@ public abstract class MatlabProxy implements MatlabOperations
      */
     public abstract <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException;
     
+    /**
+     * Runs the {@code callable} on MATLAB's main thread and waits up to {@code timeout} for it to return its result.
+     * If the timeout elapses before MATLAB has begun running the {@code callable} then it is cancelled and will never
+     * be run. If MATLAB has already begun running it then it will continue to completion, but its result will be
+     * discarded. In either case a {@link MatlabInvocationException} is thrown. A {@code timeout} of {@code 0} waits
+     * indefinitely. This timeout is used instead of the proxy's timeout.
+     * <br><br>
+     * If called from MATLAB's main thread the {@code callable} is run immediately and the {@code timeout} has no
+     * effect.
+     * 
+     * @param <T>
+     * @param callable
+     * @param timeout
+     * @param unit
+     * @return result of the callable
+     * @throws MatlabInvocationException
+     * @throws IllegalArgumentException if {@code timeout} is negative
+     * @see #invokeAndWait(matlabcontrol.MatlabProxy.MatlabThreadCallable) 
+     * @see MatlabProxyFactoryOptions.Builder#setInvocationTimeout(long)
+     * @since 4.2.0
+     */
+    public abstract <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+            throws MatlabInvocationException;
+    
+    /**
+     * Asynchronous version of {@link #eval(java.lang.String)}. Returns without waiting for MATLAB; the returned future
+     * is completed by MATLAB once the command has been evaluated.
+     * <br><br>
+     * Asynchronous methods never throw a {@link MatlabInvocationException}, any failure (including the proxy not being
+     * connected) is reported by the returned future. Calls made asynchronously from a given thread will be started in
+     * MATLAB in the order they were invoked. While a call is outstanding no thread is used to wait for it, so any
+     * number of calls may be outstanding simultaneously.
+     * 
+     * @param command
+     * @return future
+     * @since 4.2.0
+     */
+    public abstract MatlabFuture<Void> evalAsync(String command);
+    
+    /**
+     * Asynchronous version of {@link #returningEval(java.lang.String, int)}.
+     * 
+     * @param command
+     * @param nargout
+     * @return future
+     * @see #evalAsync(java.lang.String)
+     * @since 4.2.0
+     */
+    public abstract MatlabFuture<Object[]> returningEvalAsync(String command, int nargout);
+    
+    /**
+     * Asynchronous version of {@link #feval(java.lang.String, java.lang.Object[])}.
+     * 
+     * @param functionName
+     * @param args
+     * @return future
+     * @see #evalAsync(java.lang.String)
+     * @since 4.2.0
+     */
+    public abstract MatlabFuture<Void> fevalAsync(String functionName, Object... args);
+    
+    /**
+     * Asynchronous version of {@link #returningFeval(java.lang.String, int, java.lang.Object[])}.
+     * 
+     * @param functionName
+     * @param nargout
+     * @param args
+     * @return future
+     * @see #evalAsync(java.lang.String)
+     * @since 4.2.0
+     */
+    public abstract MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args);
+    
+    /**
+     * Asynchronous version of {@link #setVariable(java.lang.String, java.lang.Object)}.
+     * 
+     * @param variableName
+     * @param value
+     * @return future
+     * @see #evalAsync(java.lang.String)
+     * @since 4.2.0
+     */
+    public abstract MatlabFuture<Void> setVariableAsync(String variableName, Object value);
+    
+    /**
+     * Asynchronous version of {@link #getVariable(java.lang.String)}.
+     * 
+     * @param variableName
+     * @return future
+     * @see #evalAsync(java.lang.String)
+     * @since 4.2.0
+     */
+    public abstract MatlabFuture<Object> getVariableAsync(String variableName);
+    
+    /**
+     * Asynchronous version of {@link #invokeAndWait(matlabcontrol.MatlabProxy.MatlabThreadCallable)}. The
+     * {@code callable} is run on MATLAB's main thread without interruption, but the calling thread does not wait for
+     * it.
+     * <br><br>
+     * If <i>running outside MATLAB</i> the {@code callable} must be {@link java.io.Serializable}; it may not be
+     * {@link java.rmi.Remote}.
+     * 
+     * @param <T>
+     * @param callable
+     * @return future
+     * @see #evalAsync(java.lang.String)
+     * @since 4.2.0
+     */
+    public abstract <T> MatlabFuture<T> invokeAsync(MatlabThreadCallable<T> callable);
+    
+    /**
+     * The number of calls of {@code priority}, from any proxy connected to the same session of MATLAB, waiting to be
+     * run on MATLAB's main thread. This does not include calls which are waiting on a pipelined channel to be sent to
+     * MATLAB.
+     * 
+     * @param priority
+     * @return queue depth
+     * @throws MatlabInvocationException if the proxy is not connected
+     * @see MatlabThreadPriority
+     * @since 4.2.0
+     */
+    public abstract int getMatlabThreadQueueDepth(MatlabThreadPriority priority) throws MatlabInvocationException;
+    
     /**
      * Uninterrupted block of computation performed in MATLAB.
      * 
@@ -92,6 +92,20 @@ public class MatlabProxyFactory implements ProxyFactory
         return _delegateFactory.requestProxy(callback);
     }
     
+    /**
+     * Exits the sessions of MATLAB this factory launched ahead of being requested, as configured by
+     * {@link MatlabProxyFactoryOptions.Builder#setStandbySessions(int)}, and stops launching more. Proxies already
+     * provided by this factory are unaffected. Calling this method more than once has no effect. Once shut down, this
+     * factory continues to provide proxies but launches each session of MATLAB only when requested.
+     * 
+     * @since 4.2.0
+     */
+    @Override
+    public void shutdown()
+    {
+        _delegateFactory.shutdown();
+    }
+    
     /**
      * Provides the requested proxy.
      * 
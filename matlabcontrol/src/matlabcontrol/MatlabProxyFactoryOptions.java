@@ -46,6 +46,19 @@ public class MatlabProxyFactoryOptions
     private final String _licenseFile;
     private final boolean _useSingleCompThread;
     private final int _port;
+    private final int _matlabThreadBatchSize;
+    private final long _matlabThreadBatchTime;
+    private final long _invocationTimeout;
+    private final boolean _usePipelinedChannel;
+    private final boolean _latencyInstrumentation;
+    private final EventDispatchWaitStrategy _eventDispatchWaitStrategy;
+    private final MatlabThreadPriority _matlabThreadPriority;
+    private final long _sharedMemoryThreshold;
+    private final boolean _useUnixDomainSockets;
+    private final long _heartbeatPeriod;
+    private final long _compressionThreshold;
+    private final int _standbySessions;
+    private final LocalHostConnectionPool.Settings _connectionSettings;
         
     private MatlabProxyFactoryOptions(Builder options)
     {
@@ -59,6 +72,21 @@ public class MatlabProxyFactoryOptions
         _licenseFile = options._licenseFile;
         _useSingleCompThread = options._useSingleCompThread;
         _port = options._port;
+        _matlabThreadBatchSize = options._matlabThreadBatchSize;
+        _matlabThreadBatchTime = options._matlabThreadBatchTime.get();
+        _invocationTimeout = options._invocationTimeout.get();
+        _usePipelinedChannel = options._usePipelinedChannel;
+        _latencyInstrumentation = options._latencyInstrumentation;
+        _eventDispatchWaitStrategy = options._eventDispatchWaitStrategy;
+        _matlabThreadPriority = options._matlabThreadPriority;
+        _sharedMemoryThreshold = options._sharedMemoryThreshold.get();
+        _useUnixDomainSockets = options._useUnixDomainSockets;
+        _heartbeatPeriod = options._heartbeatPeriod.get();
+        _compressionThreshold = options._compressionThreshold.get();
+        _standbySessions = options._standbySessions;
+        _connectionSettings = new LocalHostConnectionPool.Settings(options._connectionBacklog, options._tcpNoDelay,
+                options._tcpKeepAlive, options._socketSendBufferSize, options._socketReceiveBufferSize,
+                options._maxConnections);
     }
 
     String getMatlabLocation()
@@ -111,6 +139,71 @@ public class MatlabProxyFactoryOptions
         return _port;
     }
     
+    int getMatlabThreadBatchSize()
+    {
+        return _matlabThreadBatchSize;
+    }
+    
+    long getMatlabThreadBatchTime()
+    {
+        return _matlabThreadBatchTime;
+    }
+    
+    long getInvocationTimeout()
+    {
+        return _invocationTimeout;
+    }
+    
+    boolean getUsePipelinedChannel()
+    {
+        return _usePipelinedChannel;
+    }
+    
+    boolean getLatencyInstrumentation()
+    {
+        return _latencyInstrumentation;
+    }
+    
+    EventDispatchWaitStrategy getEventDispatchWaitStrategy()
+    {
+        return _eventDispatchWaitStrategy;
+    }
+    
+    MatlabThreadPriority getMatlabThreadPriority()
+    {
+        return _matlabThreadPriority;
+    }
+    
+    long getSharedMemoryThreshold()
+    {
+        return _sharedMemoryThreshold;
+    }
+    
+    boolean getUseUnixDomainSockets()
+    {
+        return _useUnixDomainSockets;
+    }
+    
+    long getHeartbeatPeriod()
+    {
+        return _heartbeatPeriod;
+    }
+    
+    LocalHostConnectionPool.Settings getConnectionSettings()
+    {
+        return _connectionSettings;
+    }
+    
+    long getCompressionThreshold()
+    {
+        return _compressionThreshold;
+    }
+    
+    int getStandbySessions()
+    {
+        return _standbySessions;
+    }
+    
     /**
      * Creates instances of {@link MatlabProxyFactoryOptions}. Any and all of these properties may be left unset, if so
      * then a default will be used. Depending on how the factory operates, not all properties may be used. Currently all
@@ -141,9 +234,27 @@ public class MatlabProxyFactoryOptions
         private volatile String _licenseFile = null;
         private volatile boolean _useSingleCompThread = false;
         private volatile int _port = 2100;
+        private volatile int _matlabThreadBatchSize = MatlabThreadDispatcher.DEFAULT_BATCH_SIZE;
+        private volatile boolean _usePipelinedChannel = false;
+        private volatile boolean _latencyInstrumentation = false;
+        private volatile EventDispatchWaitStrategy _eventDispatchWaitStrategy = EventDispatchWaitStrategy.EVENT_LOOP;
+        private volatile MatlabThreadPriority _matlabThreadPriority = MatlabThreadPriority.NORMAL;
+        private volatile boolean _useUnixDomainSockets = false;
+        private volatile int _connectionBacklog = 50;
+        private volatile boolean _tcpNoDelay = true;
+        private volatile boolean _tcpKeepAlive = true;
+        private volatile int _socketSendBufferSize = 0;
+        private volatile int _socketReceiveBufferSize = 0;
+        private volatile int _maxConnections = 0;
+        private volatile int _standbySessions = 0;
         
         //Assigning to a long is not atomic, so use an AtomicLong so that a thread always sees an intended value
         private final AtomicLong _proxyTimeout = new AtomicLong(180000L);
+        private final AtomicLong _matlabThreadBatchTime = new AtomicLong(MatlabThreadDispatcher.DEFAULT_BATCH_TIME);
+        private final AtomicLong _invocationTimeout = new AtomicLong(0L);
+        private final AtomicLong _sharedMemoryThreshold = new AtomicLong(0L);
+        private final AtomicLong _heartbeatPeriod = new AtomicLong(1000L);
+        private final AtomicLong _compressionThreshold = new AtomicLong(0L);
 
         /**
          * Sets the location of the MATLAB executable or script that will launch MATLAB. If the value set cannot be
@@ -395,6 +506,387 @@ public class MatlabProxyFactoryOptions
             return this;
         }
         
+        /**
+         * Sets the maximum number of calls run on MATLAB's main thread each time MATLAB becomes idle. Calls from any
+         * number of threads are queued, and when MATLAB becomes idle queued calls are run one after another until
+         * either this limit or the limit set by {@link #setMatlabThreadBatchTime(long)} is reached. Remaining calls
+         * are run the next time MATLAB becomes idle. Larger values increase throughput when many calls are made
+         * concurrently, smaller values allow MATLAB to respond to other activity, such as the Command Window, more
+         * often. By default this property is set to {@code 64}.
+         * <br><br>
+         * This property applies to the session of MATLAB the proxy connects to, and remains in effect for that session
+         * until a proxy created by a factory with a different value connects to it.
+         * 
+         * @param batchSize
+         * @throws IllegalArgumentException if {@code batchSize} is not positive
+         */
+        public final Builder setMatlabThreadBatchSize(int batchSize)
+        {
+            if(batchSize < 1)
+            {
+                throw new IllegalArgumentException("batch size [" + batchSize + "] must be positive");
+            }
+            
+            _matlabThreadBatchSize = batchSize;
+            
+            return this;
+        }
+        
+        /**
+         * Sets the amount of time in milliseconds during which queued calls will continue to be started on MATLAB's
+         * main thread each time MATLAB becomes idle. A call that has started is never interrupted, so a single call may
+         * take longer than this amount of time. By default this property is set to {@code 50} milliseconds.
+         * 
+         * @param batchTime
+         * @throws IllegalArgumentException if {@code batchTime} is not positive
+         * @see #setMatlabThreadBatchSize(int) 
+         */
+        public final Builder setMatlabThreadBatchTime(long batchTime)
+        {
+            if(batchTime < 1L)
+            {
+                throw new IllegalArgumentException("batch time [" + batchTime + "] must be positive");
+            }
+            
+            _matlabThreadBatchTime.set(batchTime);
+            
+            return this;
+        }
+        
+        /**
+         * Sets the amount of time in milliseconds a proxy will wait for MATLAB to complete a method before the method
+         * throws a {@link MatlabInvocationException}. If MATLAB has not yet begun running the method when the timeout
+         * elapses then it is cancelled and will never be run; otherwise MATLAB will continue to run it but the result
+         * will be discarded. This timeout applies to all methods of the proxy which wait for MATLAB except
+         * {@link MatlabProxy#invokeAndWait(matlabcontrol.MatlabProxy.MatlabThreadCallable, long,
+         * java.util.concurrent.TimeUnit)}, which is given its own timeout. A value of {@code 0} means methods wait for
+         * MATLAB indefinitely. By default this property is set to {@code 0}.
+         * <br><br>
+         * Calls made from MATLAB's main thread (for instance from a MATLAB function which calls into Java) are run
+         * immediately and so are never subject to this timeout.
+         * 
+         * @param timeout
+         * @throws IllegalArgumentException if {@code timeout} is negative
+         * @see MatlabProxy#getTimeoutCount() 
+         */
+        public final Builder setInvocationTimeout(long timeout)
+        {
+            if(timeout < 0L)
+            {
+                throw new IllegalArgumentException("timeout [" + timeout + "] may not be negative");
+            }
+            
+            _invocationTimeout.set(timeout);
+            
+            return this;
+        }
+        
+        /**
+         * Sets whether a proxy running outside MATLAB sends its methods to MATLAB over a pipelined channel. By default
+         * this property is set to {@code false}, in which case each method is a separate remote call made on the
+         * calling thread, which blocks for the full round trip to MATLAB's Java Virtual Machine.
+         * <br><br>
+         * When set to {@code true}, methods are tagged with an identifier and placed in a queue. A single writer
+         * thread sends everything queued as one remote call, and results are returned as MATLAB completes them,
+         * matched to the waiting caller by their identifier. When many threads use the same proxy concurrently this
+         * replaces a round trip per method with one per batch. Methods which are given a timeout are not pipelined.
+         * 
+         * @param usePipelinedChannel 
+         */
+        public final Builder setUsePipelinedChannel(boolean usePipelinedChannel)
+        {
+            _usePipelinedChannel = usePipelinedChannel;
+            
+            return this;
+        }
+        
+        /**
+         * Sets whether the proxy records the latency of its methods which wait for MATLAB. By default this property is
+         * set to {@code false}, in which case nothing is measured.
+         * <br><br>
+         * When set to {@code true}, the latency of each method which waits for MATLAB is divided into the phases of
+         * {@link LatencyPhase} and aggregated per function name into histograms. These may be queried with
+         * {@link MatlabProxy#getLatencyHistogram(java.lang.String, matlabcontrol.LatencyPhase)} and are exported over
+         * JMX as described by {@link MatlabProxyLatencyMBean}. When running outside MATLAB methods are sent as their
+         * equivalent {@link MatlabProxy.MatlabThreadCallable} so that MATLAB's Java Virtual Machine can measure its
+         * share of the latency.
+         * 
+         * @param latencyInstrumentation 
+         */
+        public final Builder setLatencyInstrumentation(boolean latencyInstrumentation)
+        {
+            _latencyInstrumentation = latencyInstrumentation;
+            
+            return this;
+        }
+        
+        /**
+         * Sets how a proxy running inside MATLAB waits for MATLAB when it is used from the AWT Event Dispatch Thread.
+         * By default this property is set to {@link EventDispatchWaitStrategy#EVENT_LOOP}, which uses no processor
+         * time while waiting. Waiting on any other thread, and all waiting done by a proxy running outside MATLAB, is
+         * unaffected by this property.
+         * 
+         * @param strategy
+         * @throws NullPointerException if {@code strategy} is {@code null}
+         */
+        public final Builder setEventDispatchWaitStrategy(EventDispatchWaitStrategy strategy)
+        {
+            if(strategy == null)
+            {
+                throw new NullPointerException("strategy may not be null");
+            }
+            
+            _eventDispatchWaitStrategy = strategy;
+            
+            return this;
+        }
+        
+        /**
+         * Sets the priority with which the proxy's methods wait to be run on MATLAB's main thread. By default this
+         * property is set to {@link MatlabThreadPriority#NORMAL}. A {@link MatlabProxy.MatlabThreadCallable} given its
+         * own priority with {@link MatlabThreadPriority#prioritize(matlabcontrol.MatlabProxy.MatlabThreadCallable)}
+         * uses that priority instead. When running outside MATLAB, a priority other than {@code NORMAL} causes methods
+         * to be sent as their equivalent {@code MatlabThreadCallable} so that the priority accompanies them.
+         * 
+         * @param priority
+         * @throws NullPointerException if {@code priority} is {@code null}
+         */
+        public final Builder setMatlabThreadPriority(MatlabThreadPriority priority)
+        {
+            if(priority == null)
+            {
+                throw new NullPointerException("priority may not be null");
+            }
+            
+            _matlabThreadPriority = priority;
+            
+            return this;
+        }
+        
+        /**
+         * Sets the size in bytes above which arrays are passed between this Java Virtual Machine and MATLAB's through
+         * shared memory rather than through RMI. Values of such arrays are written into a memory-mapped file, and only
+         * the array's lengths and the location of its values are sent over RMI. A value of {@code 0} means shared
+         * memory is never used. By default this property is set to {@code 0}.
+         * <br><br>
+         * The memory-mapped files are kept in the temporary directory, are reused from one array to the next, and are
+         * deleted when the Java Virtual Machine which created them exits, or if it dies, by the next Java Virtual
+         * Machine to use shared memory. This property applies to the primitive arrays and multidimensional primitive
+         * arrays sent by the proxy's methods, and to this Java Virtual Machine and the session of MATLAB the proxy
+         * connects to until a proxy created by a factory with a different value connects.
+         * 
+         * @param threshold
+         * @throws IllegalArgumentException if {@code threshold} is negative
+         */
+        public final Builder setSharedMemoryThreshold(long threshold)
+        {
+            if(threshold < 0L)
+            {
+                throw new IllegalArgumentException("threshold [" + threshold + "] may not be negative");
+            }
+            
+            _sharedMemoryThreshold.set(threshold);
+            
+            return this;
+        }
+        
+        /**
+         * Sets whether the proxy communicates with MATLAB over Unix domain sockets instead of TCP loopback connections.
+         * By default this property is set to {@code false}.
+         * <br><br>
+         * When set to {@code true}, the RMI registry and the objects exported to MATLAB listen on a Unix domain socket
+         * as well as on their TCP port, and connections between the two Java Virtual Machines are made over the Unix
+         * domain socket. If the registry's port is taken by another process, the registry listens only on the Unix
+         * domain socket. Unix domain sockets require Java 16 or later; when either Java Virtual Machine does not
+         * support them, it falls back to TCP automatically.
+         * 
+         * @param useUnixDomainSockets 
+         */
+        public final Builder setUseUnixDomainSockets(boolean useUnixDomainSockets)
+        {
+            _useUnixDomainSockets = useUnixDomainSockets;
+            
+            return this;
+        }
+        
+        /**
+         * Sets how often in milliseconds a proxy running outside MATLAB checks that it is still connected to MATLAB.
+         * A check is only made when the proxy has not heard from MATLAB within this period, so a proxy in regular use
+         * makes no calls beyond its own. The checks of all proxies in a Java Virtual Machine are run by a single shared
+         * thread. If a check finds MATLAB is no longer reachable, the proxy disconnects and notifies its
+         * {@link MatlabProxy.DisconnectionListener}s. By default this property is set to {@code 1000}
+         * milliseconds.
+         * 
+         * @param period
+         * @throws IllegalArgumentException if {@code period} is not positive
+         */
+        public final Builder setHeartbeatPeriod(long period)
+        {
+            if(period < 1L)
+            {
+                throw new IllegalArgumentException("period [" + period + "] must be positive");
+            }
+            
+            _heartbeatPeriod.set(period);
+            
+            return this;
+        }
+        
+        /**
+         * Sets how many incoming connections from MATLAB, or to MATLAB when set in MATLAB's Java Virtual Machine, may
+         * be pending before further connections are refused. RMI opens a new connection whenever a call is made while
+         * all of its open connections are in use, so a burst of concurrent calls needs a backlog at least as large as
+         * the burst. By default this property is set to {@code 50}.
+         * <br><br>
+         * This property and the other connection properties apply to connections between this Java Virtual Machine and
+         * MATLAB's made once a factory with these options requests a proxy, including the connections MATLAB makes back
+         * to this Java Virtual Machine. A listening socket keeps the backlog it was created with.
+         * 
+         * @param backlog
+         * @throws IllegalArgumentException if {@code backlog} is not positive
+         */
+        public final Builder setConnectionBacklog(int backlog)
+        {
+            if(backlog < 1)
+            {
+                throw new IllegalArgumentException("backlog [" + backlog + "] must be positive");
+            }
+            
+            _connectionBacklog = backlog;
+            
+            return this;
+        }
+        
+        /**
+         * Sets whether connections disable Nagle's algorithm, sending small messages without waiting to combine them.
+         * By default this property is set to {@code true}. It does not apply to Unix domain sockets.
+         * 
+         * @param tcpNoDelay
+         */
+        public final Builder setTcpNoDelay(boolean tcpNoDelay)
+        {
+            _tcpNoDelay = tcpNoDelay;
+            
+            return this;
+        }
+        
+        /**
+         * Sets whether connections send TCP keepalive probes while idle. By default this property is set to
+         * {@code true}. It does not apply to Unix domain sockets.
+         * 
+         * @param tcpKeepAlive
+         */
+        public final Builder setTcpKeepAlive(boolean tcpKeepAlive)
+        {
+            _tcpKeepAlive = tcpKeepAlive;
+            
+            return this;
+        }
+        
+        /**
+         * Sets the sizes in bytes of the send and receive buffers of connections. A value of {@code 0} uses the
+         * operating system's default. Larger buffers allow large arrays to be sent with fewer round trips. By default
+         * both sizes are set to {@code 0}. They do not apply to Unix domain sockets.
+         * 
+         * @param sendBufferSize
+         * @param receiveBufferSize
+         * @throws IllegalArgumentException if either size is negative
+         */
+        public final Builder setSocketBufferSizes(int sendBufferSize, int receiveBufferSize)
+        {
+            if(sendBufferSize < 0 || receiveBufferSize < 0)
+            {
+                throw new IllegalArgumentException("buffer sizes [" + sendBufferSize + ", " + receiveBufferSize +
+                        "] may not be negative");
+            }
+            
+            _socketSendBufferSize = sendBufferSize;
+            _socketReceiveBufferSize = receiveBufferSize;
+            
+            return this;
+        }
+        
+        /**
+         * Sets the most connections this Java Virtual Machine keeps open to MATLAB's at once. RMI reuses idle
+         * connections for later calls and opens another only when all are in use; once this many are open, a call
+         * waits for one to close. If none closes within {@value LocalHostConnectionPool#CONNECTION_WAIT_TIMEOUT}
+         * milliseconds a connection is opened anyway, so that calls which wait on each other cannot deadlock. A value
+         * of {@code 0} means unbounded. By default this property is set to {@code 0}.
+         * <br><br>
+         * How connections are opened, reused and waited for is exported over JMX as described by
+         * {@link MatlabConnectionPoolMBean}.
+         * 
+         * @param maxConnections
+         * @throws IllegalArgumentException if {@code maxConnections} is negative
+         */
+        public final Builder setMaxConnections(int maxConnections)
+        {
+            if(maxConnections < 0)
+            {
+                throw new IllegalArgumentException("maxConnections [" + maxConnections + "] may not be negative");
+            }
+            
+            _maxConnections = maxConnections;
+            
+            return this;
+        }
+        
+        /**
+         * Sets the size in bytes above which arrays sent between this Java Virtual Machine and MATLAB's are compressed.
+         * Compression uses the JDK's deflate implementation at its fastest level, and pays off for arrays with little
+         * information in them, such as mostly zero or repetitive matrices; for other arrays it costs processor time
+         * without saving much. A value of {@code 0} means arrays are never compressed. By default this property is set
+         * to {@code 0}.
+         * <br><br>
+         * Arrays sent through shared memory, see {@link #setSharedMemoryThreshold(long)}, are not compressed. The
+         * sizes and processor time of compressed arrays in each direction are exported over JMX as described by
+         * {@link MatlabCompressionMBean}. This property applies to the same arrays, and in the same way, as the shared
+         * memory threshold.
+         * 
+         * @param threshold
+         * @throws IllegalArgumentException if {@code threshold} is negative
+         */
+        public final Builder setCompressionThreshold(long threshold)
+        {
+            if(threshold < 0L)
+            {
+                throw new IllegalArgumentException("threshold [" + threshold + "] may not be negative");
+            }
+            
+            _compressionThreshold.set(threshold);
+            
+            return this;
+        }
+        
+        /**
+         * Sets the number of sessions of MATLAB the factory keeps launched and connected, ready to be provided when a
+         * proxy is requested. Launching MATLAB takes tens of seconds; a request which is given a standby session
+         * instead completes immediately. Each session provided is replaced by launching another in the background, as
+         * is any standby session which disconnects, such as because it was closed. A standby session is provided in
+         * preference to connecting to a previously controlled session. Standby sessions begin launching when the
+         * factory is constructed and are exited when {@link MatlabProxyFactory#shutdown()} is called or, failing that,
+         * when this Java Virtual Machine shuts down. A value of {@code 0} means no sessions are kept on standby. By
+         * default this property is set to {@code 0}.
+         * <br><br>
+         * Standby sessions are configured with the class path of this Java Virtual Machine at the time they were
+         * launched. The number of standby sessions, how long they have been waiting, and how long they took to launch
+         * are exported over JMX as described by {@link MatlabStandbySessionsMBean}.
+         * 
+         * @param count
+         * @throws IllegalArgumentException if {@code count} is negative
+         */
+        public final Builder setStandbySessions(int count)
+        {
+            if(count < 0)
+            {
+                throw new IllegalArgumentException("count [" + count + "] may not be negative");
+            }
+            
+            _standbySessions = count;
+            
+            return this;
+        }
+        
         /**
          * Builds a {@code MatlabProxyFactoryOptions} instance.
          * 
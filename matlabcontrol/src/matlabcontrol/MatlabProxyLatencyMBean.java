@@ -0,0 +1,113 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The management interface through which the latencies recorded by a proxy are exported over JMX when latency
+ * instrumentation is enabled. Each proxy is registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabProxyLatency,id=<identifier>} until it is disconnected. Phases are specified by the
+ * name of a {@link LatencyPhase} and times are in milliseconds so that the operations may be invoked from generic JMX
+ * clients.
+ * <br><br>
+ * Only calls which wait for MATLAB are recorded; the asynchronous methods which return a {@link MatlabFuture} are not,
+ * and so a proxy used only asynchronously records nothing. A call which fails, such as one which times out or is
+ * interrupted, is recorded in the {@link LatencyPhase#TOTAL} phase only, as how far it got before failing is unknown.
+ * It is also counted by {@link #getFailureCount(java.lang.String)}, and if it timed out by
+ * {@link #getTimeoutCount(java.lang.String)}. The other phases therefore may have recorded fewer latencies than the
+ * total.
+ * 
+ * @see MatlabProxyFactoryOptions.Builder#setLatencyInstrumentation(boolean)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabProxyLatencyMBean
+{
+    /**
+     * The names of the functions for which latencies have been recorded.
+     * 
+     * @return 
+     */
+    public String[] getFunctionNames();
+    
+    /**
+     * The number of latencies recorded for the phase of the function.
+     * 
+     * @param functionName
+     * @param phase
+     * @return 
+     */
+    public long getCount(String functionName, String phase);
+    
+    /**
+     * The mean latency of the phase of the function.
+     * 
+     * @param functionName
+     * @param phase
+     * @return 
+     */
+    public double getMeanMillis(String functionName, String phase);
+    
+    /**
+     * The approximate latency of the phase of the function which {@code percentile} percent of recorded latencies do
+     * not exceed.
+     * 
+     * @param functionName
+     * @param phase
+     * @param percentile
+     * @return 
+     */
+    public double getPercentileMillis(String functionName, String phase, double percentile);
+    
+    /**
+     * The largest latency recorded for the phase of the function.
+     * 
+     * @param functionName
+     * @param phase
+     * @return 
+     */
+    public double getMaxMillis(String functionName, String phase);
+    
+    /**
+     * The number of calls of the function which failed, including those which timed out.
+     * 
+     * @param functionName
+     * @return 
+     */
+    public long getFailureCount(String functionName);
+    
+    /**
+     * The number of calls of the function which failed because the timeout elapsed, whether or not MATLAB had begun
+     * running them.
+     * 
+     * @param functionName
+     * @return 
+     */
+    public long getTimeoutCount(String functionName);
+    
+    /**
+     * Discards all latencies recorded so far.
+     */
+    public void reset();
+}
\ No newline at end of file
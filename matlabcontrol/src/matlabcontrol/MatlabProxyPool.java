@@ -0,0 +1,639 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import matlabcontrol.MatlabProxy.DisconnectionListener;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+
+/**
+ * Launches and owns a number of MATLAB sessions, spreading work across them. Each session of MATLAB runs all
+ * operations on a single main thread, so a single session makes use of at most one processor core; work spread
+ * across multiple sessions can make use of as many cores as there are sessions.
+ * <br><br>
+ * Work which depends on the state of a session's workspace should be done through a {@link Lease}, which provides
+ * exclusive use of one session until released: while a session is leased, it is neither leased again nor sent calls
+ * made to the pool. Work which does not, such as calling a function whose result depends only on its arguments, may be
+ * sent to the pool with {@link #invokeAndWait(MatlabProxy.MatlabThreadCallable)} or
+ * {@link #returningFeval(String, int, Object...)}. Both leases and calls go to the least loaded session which is not
+ * leased: the session with the fewest calls in flight, then the fewest calls made. When every session is leased, they
+ * wait for a lease to be released; a thread which holds a lease on every session must release one before using the
+ * pool, or it will wait forever.
+ * <br><br>
+ * A session which disconnects is removed from the pool and is not replaced unless the pool is supervised by a
+ * {@link MatlabSessionSupervisor}. The utilization of each session is exported over JMX; the pool is registered with
+ * the platform MBean server under the name {@code matlabcontrol:type=MatlabProxyPool,id=<number>} until it is shut
+ * down.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class MatlabProxyPool implements MatlabProxyPoolMBean
+{
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    
+    /**
+     * Launches sessions concurrently so that a pool takes about as long to launch as a single session does.
+     */
+    private static final ExecutorService LAUNCHER = Executors.newCachedThreadPool(new ThreadFactory()
+    {
+        private final AtomicInteger _counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "MLC Session Launcher-" + _counter.getAndIncrement());
+            thread.setDaemon(true);
+            
+            return thread;
+        }
+    });
+    
+    private final MatlabProxyFactory _factory;
+    
+    private final int _size;
+    
+    private final List<PooledSession> _sessions = new CopyOnWriteArrayList<PooledSession>();
+    
+    private final AtomicBoolean _shutdown = new AtomicBoolean(false);
+    
+    /**
+     * Notified whenever a session may have become available to lease, or the pool may have run out of sessions or been
+     * shut down.
+     */
+    private final Object _availability = new Object();
+    
+    /**
+     * The name this pool is registered under with the platform MBean server.
+     */
+    private final ObjectName _name;
+    
+    /**
+     * Launches {@code size} sessions of MATLAB using {@code factory}, returning once all have been launched. The
+     * factory should be configured to launch new sessions, not to connect to a previously controlled session, as each
+     * session may only be in the pool once. For the same reason a pool is of no use when running inside MATLAB, where
+     * every proxy controls the session it is running in.
+     * 
+     * @param factory
+     * @param size
+     * @throws MatlabConnectionException if any session could not be launched, in which case those which were launched
+     * are exited
+     * @throws IllegalArgumentException if {@code size} is not positive
+     */
+    public MatlabProxyPool(MatlabProxyFactory factory, int size) throws MatlabConnectionException
+    {
+        if(size <= 0)
+        {
+            throw new IllegalArgumentException("size [" + size + "] must be positive");
+        }
+        
+        _factory = factory;
+        _size = size;
+        
+        for(MatlabProxy proxy : launch(factory, size))
+        {
+            this.add(proxy);
+        }
+        
+        ObjectName name;
+        try
+        {
+            name = new ObjectName("matlabcontrol:type=MatlabProxyPool,id=" + POOL_COUNTER.getAndIncrement());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(this, MatlabProxyPoolMBean.class), name);
+        }
+        catch(JMException e)
+        {
+            name = null;
+        }
+        catch(SecurityException e)
+        {
+            name = null;
+        }
+        _name = name;
+    }
+    
+    /**
+     * Launches {@code count} sessions concurrently. If any cannot be launched, those which were are exited. If
+     * interrupted while waiting, the interrupt status is restored and sessions still being launched are exited once
+     * they have been.
+     * 
+     * @param factory
+     * @param count
+     * @return
+     * @throws MatlabConnectionException 
+     */
+    static List<MatlabProxy> launch(final MatlabProxyFactory factory, int count) throws MatlabConnectionException
+    {
+        List<Future<MatlabProxy>> launches = new ArrayList<Future<MatlabProxy>>();
+        for(int i = 0; i < count; i++)
+        {
+            launches.add(LAUNCHER.submit(new Callable<MatlabProxy>()
+            {
+                @Override
+                public MatlabProxy call() throws MatlabConnectionException
+                {
+                    return factory.getProxy();
+                }
+            }));
+        }
+        
+        List<MatlabProxy> proxies = new ArrayList<MatlabProxy>();
+        MatlabConnectionException failure = null;
+        int waited = 0;
+        boolean interrupted = false;
+        while(waited < launches.size() && !interrupted)
+        {
+            try
+            {
+                proxies.add(launches.get(waited).get());
+                waited++;
+            }
+            catch(ExecutionException e)
+            {
+                if(failure == null)
+                {
+                    Throwable cause = e.getCause();
+                    failure = cause instanceof MatlabConnectionException ? (MatlabConnectionException) cause :
+                            new MatlabConnectionException("MATLAB session could not be launched", cause);
+                }
+                waited++;
+            }
+            catch(InterruptedException e)
+            {
+                if(failure == null)
+                {
+                    failure = new MatlabConnectionException("Interrupted while launching MATLAB sessions", e);
+                }
+                interrupted = true;
+            }
+        }
+        
+        if(failure != null)
+        {
+            for(MatlabProxy proxy : proxies)
+            {
+                exit(proxy);
+            }
+            
+            //Cancelling a launch would not stop a session which had already started from connecting, and its proxy
+            //would then be lost, so instead each remaining launch is waited on elsewhere and its session exited
+            if(interrupted)
+            {
+                exitWhenLaunched(new ArrayList<Future<MatlabProxy>>(launches.subList(waited, launches.size())));
+                Thread.currentThread().interrupt();
+            }
+            
+            throw failure;
+        }
+        
+        return proxies;
+    }
+    
+    /**
+     * Exits each session once it has been launched, without waiting for it to be.
+     * 
+     * @param launches 
+     */
+    private static void exitWhenLaunched(final List<Future<MatlabProxy>> launches)
+    {
+        LAUNCHER.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(Future<MatlabProxy> launch : launches)
+                {
+                    try
+                    {
+                        exit(launch.get());
+                    }
+                    //The session was never launched, so there is nothing to exit
+                    catch(ExecutionException e) { }
+                    catch(InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        });
+    }
+    
+    /**
+     * Exits the session of MATLAB, or if that is not possible, disconnects from it.
+     * 
+     * @param proxy 
+     */
+    static void exit(MatlabProxy proxy)
+    {
+        try
+        {
+            proxy.exit();
+        }
+        catch(MatlabInvocationException e)
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    /**
+     * The factory used to launch the sessions of this pool.
+     * 
+     * @return 
+     */
+    MatlabProxyFactory getFactory()
+    {
+        return _factory;
+    }
+    
+    /**
+     * The number of sessions this pool was launched with.
+     * 
+     * @return 
+     */
+    int getSize()
+    {
+        return _size;
+    }
+    
+    /**
+     * The sessions currently in this pool.
+     * 
+     * @return 
+     */
+    List<PooledSession> getSessions()
+    {
+        return _sessions;
+    }
+    
+    /**
+     * Adds a session to this pool, removing it once it disconnects.
+     * 
+     * @param proxy
+     * @return 
+     */
+    PooledSession add(MatlabProxy proxy)
+    {
+        final PooledSession session = new PooledSession(proxy);
+        _sessions.add(session);
+        proxy.addDisconnectionListener(new DisconnectionListener()
+        {
+            @Override
+            public void proxyDisconnected(MatlabProxy proxy)
+            {
+                remove(session);
+            }
+        });
+        
+        //If it disconnected before the listener was added
+        if(!proxy.isConnected())
+        {
+            this.remove(session);
+        }
+        
+        this.signalAvailability();
+        
+        return session;
+    }
+    
+    /**
+     * Removes a session from this pool without exiting it.
+     * 
+     * @param session
+     * @return if the session was in this pool
+     */
+    boolean remove(PooledSession session)
+    {
+        boolean removed = _sessions.remove(session);
+        this.signalAvailability();
+        
+        return removed;
+    }
+    
+    private void signalAvailability()
+    {
+        synchronized(_availability)
+        {
+            _availability.notifyAll();
+        }
+    }
+    
+    /**
+     * The least loaded session which is not leased, waiting for one if every session is leased.
+     * 
+     * @return
+     * @throws MatlabInvocationException if the pool has no connected sessions, has been shut down, or the calling
+     * thread is interrupted while waiting
+     */
+    PooledSession leastLoaded() throws MatlabInvocationException
+    {
+        return this.leastLoaded(false);
+    }
+    
+    /**
+     * The least loaded session which is not leased, waiting for one if every session is leased.
+     * 
+     * @param lease whether to lease the session, which is done before any other thread can choose it
+     * @return
+     * @throws MatlabInvocationException if the pool has no connected sessions, has been shut down, or the calling
+     * thread is interrupted while waiting
+     */
+    private PooledSession leastLoaded(boolean lease) throws MatlabInvocationException
+    {
+        synchronized(_availability)
+        {
+            while(true)
+            {
+                if(_shutdown.get())
+                {
+                    throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException("pool has been shut down");
+                }
+                
+                if(_sessions.isEmpty())
+                {
+                    throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException("no session in the pool " +
+                            "is connected");
+                }
+                
+                PooledSession leastLoaded = null;
+                for(PooledSession session : _sessions)
+                {
+                    if(!session.isLeased() && (leastLoaded == null || session.isLessLoadedThan(leastLoaded)))
+                    {
+                        leastLoaded = session;
+                    }
+                }
+                
+                if(leastLoaded != null)
+                {
+                    if(lease)
+                    {
+                        leastLoaded.lease();
+                    }
+                    
+                    return leastLoaded;
+                }
+                
+                try
+                {
+                    _availability.wait();
+                }
+                catch(InterruptedException e)
+                {
+                    throw MatlabInvocationException.Reason.INTERRRUPTED.asException(e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Leases the least loaded session which is not leased, waiting for a lease to be released if every session is
+     * leased. Until the lease is released no other lease is given the session and calls made to the pool are sent to
+     * other sessions, so that the session's workspace is only changed through the lease. Calls the pool sent to the
+     * session before it was leased may still be completing.
+     * 
+     * @return
+     * @throws MatlabInvocationException if the pool has no connected sessions, has been shut down, or the calling
+     * thread is interrupted while waiting
+     */
+    public Lease acquire() throws MatlabInvocationException
+    {
+        return new SessionLease(this.leastLoaded(true));
+    }
+    
+    /**
+     * Invokes {@code callable} on the least loaded session which is not leased and waits for it to complete.
+     * 
+     * @param <T>
+     * @param callable
+     * @return
+     * @throws MatlabInvocationException 
+     * @see MatlabProxy#invokeAndWait(MatlabProxy.MatlabThreadCallable)
+     */
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    {
+        return this.leastLoaded().getTrackedProxy().invokeAndWait(callable);
+    }
+    
+    /**
+     * Calls the MATLAB function on the least loaded session which is not leased and waits for it to complete.
+     * 
+     * @param functionName
+     * @param nargout
+     * @param args
+     * @return
+     * @throws MatlabInvocationException 
+     * @see MatlabProxy#returningFeval(String, int, Object...)
+     */
+    public Object[] returningFeval(String functionName, int nargout, Object... args)
+            throws MatlabInvocationException
+    {
+        return this.leastLoaded().getTrackedProxy().returningFeval(functionName, nargout, args);
+    }
+    
+    /**
+     * Exits all sessions in the pool and unregisters it from the platform MBean server. Once shut down, the pool
+     * cannot be used. Calling this method more than once has no effect.
+     */
+    public void shutdown()
+    {
+        if(_shutdown.compareAndSet(false, true))
+        {
+            for(PooledSession session : _sessions)
+            {
+                exit(session.getProxy());
+            }
+            _sessions.clear();
+            this.signalAvailability();
+            
+            if(_name != null)
+            {
+                try
+                {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+                }
+                catch(JMException e) { }
+                catch(SecurityException e) { }
+            }
+        }
+    }
+    
+    /**
+     * Whether {@link #shutdown()} has been called.
+     * 
+     * @return 
+     */
+    public boolean isShutdown()
+    {
+        return _shutdown.get();
+    }
+    
+    private PooledSession find(String identifier)
+    {
+        PooledSession found = null;
+        for(PooledSession session : _sessions)
+        {
+            if(session.getProxy().getIdentifier().toString().equals(identifier))
+            {
+                found = session;
+                break;
+            }
+        }
+        
+        return found;
+    }
+    
+    @Override
+    public int getSessionCount()
+    {
+        return _sessions.size();
+    }
+    
+    @Override
+    public String[] getSessionIdentifiers()
+    {
+        List<String> identifiers = new ArrayList<String>();
+        for(PooledSession session : _sessions)
+        {
+            identifiers.add(session.getProxy().getIdentifier().toString());
+        }
+        
+        return identifiers.toArray(new String[identifiers.size()]);
+    }
+    
+    @Override
+    public double getUtilization(String identifier)
+    {
+        PooledSession session = this.find(identifier);
+        
+        return session == null ? 0 : session.getUtilization();
+    }
+    
+    @Override
+    public int getInFlightCount(String identifier)
+    {
+        PooledSession session = this.find(identifier);
+        
+        return session == null ? 0 : session.getInFlightCount();
+    }
+    
+    @Override
+    public boolean isLeased(String identifier)
+    {
+        PooledSession session = this.find(identifier);
+        
+        return session != null && session.isLeased();
+    }
+    
+    @Override
+    public long getCallCount(String identifier)
+    {
+        PooledSession session = this.find(identifier);
+        
+        return session == null ? 0 : session.getCallCount();
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "[" + this.getClass().getName() + " sessions=" + _sessions + "]";
+    }
+    
+    /**
+     * Use of a session in a {@link MatlabProxyPool} until released.
+     * <br><br>
+     * Implementations of this interface are unconditionally thread-safe.
+     * <br><br>
+     * <b>WARNING:</b> This interface is not intended to be implemented by users of matlabcontrol. Methods may be added
+     * to this interface, and these additions will not be considered breaking binary compatibility.
+     * 
+     * @since 4.2.0
+     * 
+     * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+     */
+    public static interface Lease
+    {
+        /**
+         * The proxy to the leased session. Calls made through this proxy are taken into account when the pool
+         * chooses the least loaded session once the lease has been released. Disconnecting the proxy or exiting MATLAB removes the session from the
+         * pool. The proxy should not be used once the lease has been released.
+         * 
+         * @return 
+         */
+        public MatlabProxy getProxy();
+        
+        /**
+         * Releases the lease, making the session available to other leases and to calls made to the pool. Calling
+         * this method more than once has no effect.
+         */
+        public void release();
+    }
+    
+    private final class SessionLease implements Lease
+    {
+        private final PooledSession _session;
+        
+        private final AtomicBoolean _released = new AtomicBoolean(false);
+        
+        SessionLease(PooledSession session)
+        {
+            _session = session;
+        }
+        
+        @Override
+        public MatlabProxy getProxy()
+        {
+            return _session.getTrackedProxy();
+        }
+        
+        @Override
+        public void release()
+        {
+            if(_released.compareAndSet(false, true))
+            {
+                _session.release();
+                signalAvailability();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,84 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The management interface through which the use of the sessions in a {@link MatlabProxyPool} is exported over JMX.
+ * Each pool is registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabProxyPool,id=<number>} until it is shut down. Sessions are specified by the
+ * {@code toString()} of their proxy's identifier.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabProxyPoolMBean
+{
+    /**
+     * The number of connected sessions in the pool.
+     * 
+     * @return 
+     */
+    public int getSessionCount();
+    
+    /**
+     * The identifiers of the connected sessions in the pool.
+     * 
+     * @return 
+     */
+    public String[] getSessionIdentifiers();
+    
+    /**
+     * The fraction of time since the session was added to the pool during which at least one call made through the
+     * pool was in flight, {@code 0} if there is no such session.
+     * 
+     * @param identifier
+     * @return 
+     */
+    public double getUtilization(String identifier);
+    
+    /**
+     * The number of calls made through the pool which the session has not yet completed.
+     * 
+     * @param identifier
+     * @return 
+     */
+    public int getInFlightCount(String identifier);
+    
+    /**
+     * Whether the session is leased, {@code false} if there is no such session.
+     * 
+     * @param identifier
+     * @return 
+     */
+    public boolean isLeased(String identifier);
+    
+    /**
+     * The number of calls made to the session through the pool.
+     * 
+     * @param identifier
+     * @return 
+     */
+    public long getCallCount(String identifier);
+}
\ No newline at end of file
@@ -41,8 +41,9 @@ interface MatlabSession extends Remote
      * 
      * @param receiverID
      * @param port
+     * @param unixDomain whether to connect to the registry over a Unix domain socket, otherwise over TCP
      * @throws RemoteException
      * @return if connection was established
      */
-    public boolean connectFromRMI(String receiverID, int port) throws RemoteException;
+    public boolean connectFromRMI(String receiverID, int port, boolean unixDomain) throws RemoteException;
 }
\ No newline at end of file
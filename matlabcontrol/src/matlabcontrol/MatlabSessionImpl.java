@@ -45,12 +45,12 @@ class MatlabSessionImpl implements MatlabSession
     private final String SESSION_ID = MATLAB_SESSION_PREFIX + UUID.randomUUID().toString();
 
     @Override
-    public synchronized boolean connectFromRMI(String receiverID, int port)
+    public synchronized boolean connectFromRMI(String receiverID, int port, boolean unixDomain)
     {
         boolean success = false;
         if(MatlabConnector.isAvailableForConnection())
         {
-            MatlabConnector.connect(receiverID, port, true);
+            MatlabConnector.connect(receiverID, port, true, unixDomain);
             success = true;
         }
         
@@ -73,9 +73,10 @@ class MatlabSessionImpl implements MatlabSession
      * 
      * @param receiverID
      * @param port
+     * @param unixDomain whether the session is to connect back over a Unix domain socket, otherwise over TCP
      * @return if connection was made
      */
-    static boolean connectToRunningSession(String receiverID, int port)
+    static boolean connectToRunningSession(String receiverID, int port, boolean unixDomain)
     {
         boolean establishedConnection = false;
         
@@ -89,7 +90,7 @@ class MatlabSessionImpl implements MatlabSession
                 if(name.startsWith(MATLAB_SESSION_PREFIX))
                 {
                     MatlabSession session = (MatlabSession) registry.lookup(name);
-                    if(session.connectFromRMI(receiverID, port))
+                    if(session.connectFromRMI(receiverID, port, unixDomain))
                     {
                         establishedConnection = true;
                         break;
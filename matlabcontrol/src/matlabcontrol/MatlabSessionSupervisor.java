@@ -0,0 +1,835 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import matlabcontrol.MatlabProxy.DisconnectionListener;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+
+/**
+ * Keeps a {@link MatlabProxyPool} at the number of sessions it was launched with by removing unhealthy sessions and
+ * launching replacements. Example usage:
+ * <pre>
+ * {@code
+ * MatlabProxyPool pool = new MatlabProxyPool(factory, 4);
+ * MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool);
+ * supervisor.start();
+ * Object[] result = supervisor.returningFeval("sqrt", 1, 2);
+ * }
+ * </pre>
+ * Once started, the supervisor periodically checks each session in the pool, and also checks as soon as any session
+ * disconnects. A session is removed from the pool if:
+ * <ul>
+ * <li>its MATLAB process has exited with a non-zero exit value</li>
+ * <li>it has disconnected</li>
+ * <li>its Java Virtual Machine took longer than the maximum heartbeat latency to respond several checks in a row,
+ * including not responding at all</li>
+ * </ul>
+ * A removed session is disconnected from and, if it was launched by the pool, its MATLAB process is terminated.
+ * Replacements are launched on another thread so that checks continue while MATLAB launches. After a failed launch
+ * the supervisor waits before trying again, doubling the wait after each consecutive failure up to a limit, so that a
+ * misconfigured factory does not continually launch MATLAB.
+ * <br><br>
+ * Calls made to a session which is removed or disconnects fail with the proxy no longer connected. Calls made through
+ * {@link #invokeAndWait(MatlabProxy.MatlabThreadCallable)} and {@link #returningFeval(String, int, Object...)} are
+ * instead retried on another session, as are calls which fail in any other way after which their session is no longer
+ * connected, such as when MATLAB crashes while running the call. These calls must therefore be safe to run more than
+ * once. Work which is not should be sent to the pool directly.
+ * <br><br>
+ * While running, the supervisor is registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabSessionSupervisor,id=<number>}. It stops once stopped explicitly or the pool is shut
+ * down. This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class MatlabSessionSupervisor implements MatlabSessionSupervisorMBean
+{
+    /**
+     * How often sessions are checked if not otherwise specified, in milliseconds.
+     */
+    public static final long DEFAULT_CHECK_PERIOD = 1000L;
+    
+    /**
+     * How long a session may take to respond to a check if not otherwise specified, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_HEARTBEAT_LATENCY = 5000L;
+    
+    /**
+     * How many times a call is retried if not otherwise specified.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    
+    /**
+     * The number of consecutive checks a session must be slow to respond to before it is removed.
+     */
+    private static final int SLOW_HEARTBEAT_LIMIT = 3;
+    
+    /**
+     * How long to wait after the first failed launch before launching again, in milliseconds.
+     */
+    static final long INITIAL_RELAUNCH_BACKOFF = 1000L;
+    
+    /**
+     * The longest to wait after a failed launch before launching again, in milliseconds.
+     */
+    static final long MAX_RELAUNCH_BACKOFF = 60000L;
+    
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    private final MatlabProxyPool _pool;
+    
+    private final int _target;
+    
+    private final long _checkPeriod;
+    
+    private final long _maxHeartbeatLatency;
+    
+    private final int _maxRetries;
+    
+    private final long _initialBackoff;
+    
+    private final long _maxBackoff;
+    
+    /**
+     * Runs the checks, and so is the only thread which removes sessions.
+     */
+    private final ScheduledExecutorService _checker;
+    
+    /**
+     * Launches replacement sessions.
+     */
+    private final ExecutorService _relauncher;
+    
+    /**
+     * Sends the heartbeats, so that a session which does not respond cannot hold up the checking thread.
+     */
+    private final ExecutorService _heartbeatSender;
+    
+    private final AtomicBoolean _started = new AtomicBoolean(false);
+    
+    private final AtomicBoolean _stopped = new AtomicBoolean(false);
+    
+    private final AtomicLong _retries = new AtomicLong();
+    
+    //Only accessed by the checking thread
+    
+    /**
+     * Sessions which have been checked, to each of which a disconnection listener has been added.
+     */
+    private final Set<PooledSession> _watched = new HashSet<PooledSession>();
+    
+    /**
+     * The number of consecutive checks each session has been slow to respond to.
+     */
+    private final Map<PooledSession, Integer> _slowHeartbeats = new HashMap<PooledSession, Integer>();
+    
+    /**
+     * The heartbeat in flight to each session, at most one per session.
+     */
+    private final Map<PooledSession, Heartbeat> _heartbeats = new HashMap<PooledSession, Heartbeat>();
+    
+    //All of the following are guarded by this supervisor
+    
+    private boolean _relaunching = false;
+    
+    private long _backoff = 0L;
+    
+    /**
+     * When launching may next be attempted, according to {@link System#nanoTime()}; only meaningful if
+     * {@code _backoff} is not {@code 0}.
+     */
+    private long _nextRelaunchAt = 0L;
+    
+    private long _relaunched = 0;
+    
+    private long _failedRelaunches = 0;
+    
+    private long _evictions = 0;
+    
+    private String _lastEvictionReason = null;
+    
+    /**
+     * The name this supervisor is registered under with the platform MBean server.
+     */
+    private final ObjectName _name;
+    
+    /**
+     * Constructs a supervisor of {@code pool} using the default check period, maximum heartbeat latency, and maximum
+     * number of retries. The supervisor does nothing until started.
+     * 
+     * @param pool 
+     */
+    public MatlabSessionSupervisor(MatlabProxyPool pool)
+    {
+        this(pool, DEFAULT_CHECK_PERIOD, DEFAULT_MAX_HEARTBEAT_LATENCY, DEFAULT_MAX_RETRIES);
+    }
+    
+    /**
+     * Constructs a supervisor of {@code pool}. The supervisor does nothing until started.
+     * 
+     * @param pool
+     * @param checkPeriod how often sessions are checked, in milliseconds
+     * @param maxHeartbeatLatency how long a session may take to respond to a check, in milliseconds
+     * @param maxRetries how many times a call made through the supervisor is retried on another session
+     * @throws IllegalArgumentException if {@code checkPeriod} or {@code maxHeartbeatLatency} is not positive, or if
+     * {@code maxRetries} is negative
+     */
+    public MatlabSessionSupervisor(MatlabProxyPool pool, long checkPeriod, long maxHeartbeatLatency, int maxRetries)
+    {
+        this(pool, checkPeriod, maxHeartbeatLatency, maxRetries, INITIAL_RELAUNCH_BACKOFF, MAX_RELAUNCH_BACKOFF);
+    }
+    
+    /**
+     * Constructs a supervisor of {@code pool} which waits {@code initialBackoff} milliseconds after the first failed
+     * launch, doubling up to {@code maxBackoff} milliseconds after each consecutive failure.
+     * 
+     * @param pool
+     * @param checkPeriod
+     * @param maxHeartbeatLatency
+     * @param maxRetries
+     * @param initialBackoff
+     * @param maxBackoff 
+     */
+    MatlabSessionSupervisor(MatlabProxyPool pool, long checkPeriod, long maxHeartbeatLatency, int maxRetries,
+            long initialBackoff, long maxBackoff)
+    {
+        if(checkPeriod <= 0)
+        {
+            throw new IllegalArgumentException("check period [" + checkPeriod + "] must be positive");
+        }
+        if(maxHeartbeatLatency <= 0)
+        {
+            throw new IllegalArgumentException("maximum heartbeat latency [" + maxHeartbeatLatency + "] must be " +
+                    "positive");
+        }
+        if(maxRetries < 0)
+        {
+            throw new IllegalArgumentException("maximum retries [" + maxRetries + "] may not be negative");
+        }
+        
+        _pool = pool;
+        _target = pool.getSize();
+        _checkPeriod = checkPeriod;
+        _maxHeartbeatLatency = maxHeartbeatLatency;
+        _maxRetries = maxRetries;
+        _initialBackoff = initialBackoff;
+        _maxBackoff = maxBackoff;
+        
+        int id = COUNTER.getAndIncrement();
+        _checker = Executors.newSingleThreadScheduledExecutor(new SupervisorThreadFactory("MLC Session Supervisor-" +
+                id));
+        _relauncher = Executors.newSingleThreadExecutor(new SupervisorThreadFactory("MLC Session Relauncher-" + id));
+        _heartbeatSender = Executors.newCachedThreadPool(new SupervisorThreadFactory("MLC Session Heartbeat-" + id));
+        
+        ObjectName name;
+        try
+        {
+            name = new ObjectName("matlabcontrol:type=MatlabSessionSupervisor,id=" + id);
+        }
+        catch(JMException e)
+        {
+            name = null;
+        }
+        _name = name;
+    }
+    
+    private static class SupervisorThreadFactory implements ThreadFactory
+    {
+        private final String _name;
+        
+        SupervisorThreadFactory(String name)
+        {
+            _name = name;
+        }
+        
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, _name);
+            thread.setDaemon(true);
+            
+            return thread;
+        }
+    }
+    
+    private final Runnable _check = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                check();
+            }
+            //An exception would otherwise cancel all future checks
+            catch(RuntimeException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    };
+    
+    /**
+     * Begins supervising the pool. Calling this method more than once, or after the supervisor has been stopped, has no
+     * effect.
+     */
+    public void start()
+    {
+        if(!_stopped.get() && _started.compareAndSet(false, true))
+        {
+            if(_name != null)
+            {
+                try
+                {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(
+                            new StandardMBean(this, MatlabSessionSupervisorMBean.class), _name);
+                }
+                catch(JMException e) { }
+                catch(SecurityException e) { }
+            }
+            
+            _checker.scheduleWithFixedDelay(_check, 0, _checkPeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Stops supervising the pool. Sessions are no longer checked or removed, and no more replacements are launched
+     * although a launch already in progress is completed. Calls made through the supervisor continue to be retried.
+     * Calling this method more than once has no effect.
+     */
+    public void stop()
+    {
+        if(_stopped.compareAndSet(false, true))
+        {
+            _checker.shutdown();
+            _relauncher.shutdown();
+            _heartbeatSender.shutdownNow();
+            
+            if(_started.get() && _name != null)
+            {
+                try
+                {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+                }
+                catch(JMException e) { }
+                catch(SecurityException e) { }
+            }
+        }
+    }
+    
+    /**
+     * Whether {@link #stop()} has been called, or the supervisor stopped because the pool was shut down.
+     * 
+     * @return 
+     */
+    public boolean isStopped()
+    {
+        return _stopped.get();
+    }
+    
+    /**
+     * Checks every session in the pool, removing those which are unhealthy, and then launches replacements if the
+     * pool is short of sessions.
+     */
+    void check()
+    {
+        if(_pool.isShutdown())
+        {
+            this.stop();
+            return;
+        }
+        
+        List<PooledSession> sessions = new ArrayList<PooledSession>(_pool.getSessions());
+        
+        //Sessions which have left the pool since the last check were removed by the pool when they disconnected
+        for(PooledSession session : new ArrayList<PooledSession>(_watched))
+        {
+            if(!sessions.contains(session))
+            {
+                this.forget(session);
+                this.recordEviction(session, "disconnected");
+            }
+        }
+        
+        List<PooledSession> running = new ArrayList<PooledSession>();
+        for(PooledSession session : sessions)
+        {
+            this.watch(session);
+            
+            //On Windows the launched process only starts MATLAB and then exits normally, so only a non-zero exit
+            //value means MATLAB has exited; whether it is still running is otherwise left to the heartbeat
+            Integer exitValue = session.getProxy().getExitValue();
+            if(exitValue != null && exitValue != 0)
+            {
+                this.evict(session, "MATLAB exited with code " + exitValue);
+            }
+            else
+            {
+                //A heartbeat which has completed, but was already counted as slow, has nothing more to say
+                Heartbeat heartbeat = _heartbeats.get(session);
+                if(heartbeat == null || (heartbeat._countedSlow && heartbeat._connected.isDone()))
+                {
+                    try
+                    {
+                        _heartbeats.put(session, new Heartbeat(session));
+                    }
+                    //Stopped
+                    catch(RejectedExecutionException e)
+                    {
+                        return;
+                    }
+                }
+                running.add(session);
+            }
+        }
+        
+        //All heartbeats are in flight at once, so a check waits for at most the maximum heartbeat latency
+        for(PooledSession session : running)
+        {
+            String reason = this.diagnose(session);
+            if(reason != null)
+            {
+                this.evict(session, reason);
+            }
+        }
+        
+        this.replenish();
+    }
+    
+    /**
+     * Checks the pool as soon as the session disconnects, instead of waiting for the next periodic check.
+     * 
+     * @param session 
+     */
+    private void watch(PooledSession session)
+    {
+        if(_watched.add(session))
+        {
+            session.getProxy().addDisconnectionListener(new DisconnectionListener()
+            {
+                @Override
+                public void proxyDisconnected(MatlabProxy proxy)
+                {
+                    try
+                    {
+                        _checker.execute(_check);
+                    }
+                    //Stopped
+                    catch(RejectedExecutionException e) { }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Why the session is unhealthy, according to its heartbeat.
+     * 
+     * @param session
+     * @return reason, or {@code null} if the session is healthy or its health is not yet known
+     */
+    private String diagnose(PooledSession session)
+    {
+        Heartbeat heartbeat = _heartbeats.get(session);
+        
+        //Null if the session did not respond in time
+        Boolean connected;
+        try
+        {
+            connected = heartbeat._connected.get(Math.max(0L, _maxHeartbeatLatency - heartbeat.getLatency()),
+                    TimeUnit.MILLISECONDS);
+        }
+        catch(TimeoutException e)
+        {
+            connected = null;
+        }
+        catch(ExecutionException e)
+        {
+            connected = false;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            
+            return null;
+        }
+        long latency = heartbeat.getLatency();
+        
+        String reason = null;
+        if(connected != null)
+        {
+            _heartbeats.remove(session);
+        }
+        
+        if(connected != null && !connected)
+        {
+            reason = "disconnected";
+        }
+        //A heartbeat which responds late is only counted once, however many checks it was outstanding for
+        else if(connected == null || (latency > _maxHeartbeatLatency && !heartbeat._countedSlow))
+        {
+            heartbeat._countedSlow = true;
+            
+            Integer slow = _slowHeartbeats.get(session);
+            slow = (slow == null) ? 1 : slow + 1;
+            _slowHeartbeats.put(session, slow);
+            
+            if(slow >= SLOW_HEARTBEAT_LIMIT)
+            {
+                reason = "took longer than " + _maxHeartbeatLatency + " milliseconds to respond " + slow +
+                        " times in a row, most recently " + (connected == null ? "not responding after " : "") +
+                        latency + " milliseconds";
+            }
+        }
+        else if(latency <= _maxHeartbeatLatency)
+        {
+            _slowHeartbeats.remove(session);
+        }
+        
+        return reason;
+    }
+    
+    /**
+     * Checks whether a session is connected on another thread. Only accessed by the checking thread.
+     */
+    private final class Heartbeat
+    {
+        private final long _startedAt = System.nanoTime();
+        private final Future<Boolean> _connected;
+        
+        /**
+         * Whether this heartbeat has been counted as slow.
+         */
+        private boolean _countedSlow = false;
+        
+        Heartbeat(final PooledSession session)
+        {
+            _connected = _heartbeatSender.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return session.getProxy().isConnected();
+                }
+            });
+        }
+        
+        /**
+         * Milliseconds since this heartbeat was sent.
+         * 
+         * @return 
+         */
+        long getLatency()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _startedAt);
+        }
+    }
+    
+    /**
+     * Stops tracking the session's health.
+     * 
+     * @param session 
+     */
+    private void forget(PooledSession session)
+    {
+        _watched.remove(session);
+        _slowHeartbeats.remove(session);
+        
+        Heartbeat heartbeat = _heartbeats.remove(session);
+        if(heartbeat != null)
+        {
+            heartbeat._connected.cancel(true);
+        }
+    }
+    
+    /**
+     * Removes the session from the pool, disconnects from it, and terminates its MATLAB process if the pool launched
+     * it. MATLAB is not asked to exit because an unhealthy session may never respond.
+     * 
+     * @param session
+     * @param reason 
+     */
+    private void evict(PooledSession session, String reason)
+    {
+        this.forget(session);
+        
+        if(_pool.remove(session))
+        {
+            this.recordEviction(session, reason);
+            
+            MatlabProxy proxy = session.getProxy();
+            proxy.disconnect();
+            proxy.destroyProcess();
+        }
+    }
+    
+    private synchronized void recordEviction(PooledSession session, String reason)
+    {
+        _evictions++;
+        _lastEvictionReason = session.getProxy().getIdentifier() + ": " + reason;
+    }
+    
+    /**
+     * Launches replacements for the sessions the pool is short of, unless a launch is already in progress or the
+     * supervisor is waiting after a failed launch.
+     */
+    private void replenish()
+    {
+        final int shortfall;
+        synchronized(this)
+        {
+            shortfall = _target - _pool.getSessions().size();
+            if(shortfall <= 0 || _relaunching || (_backoff != 0L && System.nanoTime() < _nextRelaunchAt))
+            {
+                return;
+            }
+            _relaunching = true;
+        }
+        
+        try
+        {
+            _relauncher.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    relaunch(shortfall);
+                }
+            });
+        }
+        //Stopped
+        catch(RejectedExecutionException e)
+        {
+            synchronized(this)
+            {
+                _relaunching = false;
+            }
+        }
+    }
+    
+    private void relaunch(int count)
+    {
+        List<MatlabProxy> proxies;
+        try
+        {
+            proxies = MatlabProxyPool.launch(_pool.getFactory(), count);
+        }
+        catch(MatlabConnectionException e)
+        {
+            proxies = null;
+        }
+        
+        synchronized(this)
+        {
+            _relaunching = false;
+            if(proxies == null)
+            {
+                _failedRelaunches++;
+                _backoff = (_backoff == 0L) ? _initialBackoff : Math.min(2 * _backoff, _maxBackoff);
+                _nextRelaunchAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_backoff);
+            }
+            else
+            {
+                _relaunched += count;
+                _backoff = 0L;
+            }
+        }
+        
+        if(proxies != null)
+        {
+            for(MatlabProxy proxy : proxies)
+            {
+                PooledSession session = _pool.add(proxy);
+                
+                //The pool may have been shut down while launching, in which case it will not exit the session
+                if(_pool.isShutdown())
+                {
+                    _pool.remove(session);
+                    MatlabProxyPool.exit(proxy);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Invokes {@code callable} on the least loaded session in the pool and waits for it to complete. If the session
+     * disconnects before the call completes, or the call fails and the session is then no longer connected, the call
+     * is retried on another session, up to the maximum number of retries. {@code callable} must therefore be safe to
+     * run more than once.
+     * 
+     * @param <T>
+     * @param callable
+     * @return
+     * @throws MatlabInvocationException if the call fails while the session remains connected, or if it cannot be
+     * completed within the maximum number of retries
+     * @see MatlabProxyPool#invokeAndWait(MatlabProxy.MatlabThreadCallable)
+     */
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    {
+        for(int retries = 0; ; retries++)
+        {
+            PooledSession session = null;
+            try
+            {
+                session = _pool.leastLoaded();
+                
+                return session.getTrackedProxy().invokeAndWait(callable);
+            }
+            catch(MatlabInvocationException e)
+            {
+                this.checkRetryable(e, session, retries);
+            }
+        }
+    }
+    
+    /**
+     * Calls the MATLAB function on the least loaded session in the pool and waits for it to complete. If the session
+     * disconnects before the call completes, or the call fails and the session is then no longer connected, the call
+     * is retried on another session, up to the maximum number of retries. The function must therefore be safe to call
+     * more than once.
+     * 
+     * @param functionName
+     * @param nargout
+     * @param args
+     * @return
+     * @throws MatlabInvocationException if the call fails while the session remains connected, or if it cannot be
+     * completed within the maximum number of retries
+     * @see MatlabProxyPool#returningFeval(String, int, Object...)
+     */
+    public Object[] returningFeval(String functionName, int nargout, Object... args)
+            throws MatlabInvocationException
+    {
+        for(int retries = 0; ; retries++)
+        {
+            PooledSession session = null;
+            try
+            {
+                session = _pool.leastLoaded();
+                
+                return session.getTrackedProxy().returningFeval(functionName, nargout, args);
+            }
+            catch(MatlabInvocationException e)
+            {
+                this.checkRetryable(e, session, retries);
+            }
+        }
+    }
+    
+    /**
+     * Throws {@code e} unless the call which failed with it should be retried. A call is retried if its session was
+     * not connected, or is no longer connected after the failure. When MATLAB crashes while running a call the call
+     * fails because its result could not be read rather than because the session was known to be disconnected.
+     * 
+     * @param e
+     * @param session the session the call was made to, {@code null} if no session was available
+     * @param retries the number of times the call has already been retried
+     * @throws MatlabInvocationException 
+     */
+    private void checkRetryable(MatlabInvocationException e, PooledSession session, int retries)
+            throws MatlabInvocationException
+    {
+        if(retries >= _maxRetries || _pool.isShutdown())
+        {
+            throw e;
+        }
+        if(e.getReason() != MatlabInvocationException.Reason.PROXY_NOT_CONNECTED &&
+                (session == null || session.getProxy().isConnected()))
+        {
+            throw e;
+        }
+        _retries.incrementAndGet();
+    }
+    
+    @Override
+    public int getTargetCount()
+    {
+        return _target;
+    }
+    
+    @Override
+    public int getSessionCount()
+    {
+        return _pool.getSessions().size();
+    }
+    
+    @Override
+    public synchronized long getEvictionCount()
+    {
+        return _evictions;
+    }
+    
+    @Override
+    public synchronized String getLastEvictionReason()
+    {
+        return _lastEvictionReason;
+    }
+    
+    @Override
+    public synchronized long getRelaunchCount()
+    {
+        return _relaunched;
+    }
+    
+    @Override
+    public synchronized long getFailedRelaunchCount()
+    {
+        return _failedRelaunches;
+    }
+    
+    @Override
+    public synchronized long getRelaunchBackoffMillis()
+    {
+        return _backoff;
+    }
+    
+    @Override
+    public long getRetryCount()
+    {
+        return _retries.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+/**
+ * The management interface through which a {@link MatlabSessionSupervisor} is exported over JMX. A supervisor is
+ * registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabSessionSupervisor,id=<number>} while it is running. Times are in milliseconds so that they may be read from generic JMX clients.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabSessionSupervisorMBean
+{
+    /**
+     * The number of sessions the supervisor keeps in the pool.
+     * 
+     * @return 
+     */
+    public int getTargetCount();
+    
+    /**
+     * The number of sessions currently in the pool.
+     * 
+     * @return 
+     */
+    public int getSessionCount();
+    
+    /**
+     * The number of sessions which have been removed from the pool because they exited, disconnected, or were slow to
+     * respond.
+     * 
+     * @return 
+     */
+    public long getEvictionCount();
+    
+    /**
+     * Why the most recently removed session was removed, {@code null} if none have been.
+     * 
+     * @return 
+     */
+    public String getLastEvictionReason();
+    
+    /**
+     * The number of sessions which have been launched to replace removed sessions.
+     * 
+     * @return 
+     */
+    public long getRelaunchCount();
+    
+    /**
+     * The number of attempts to replace removed sessions which failed.
+     * 
+     * @return 
+     */
+    public long getFailedRelaunchCount();
+    
+    /**
+     * How long the supervisor is waiting after the most recent failed attempt before attempting again, {@code 0} if
+     * the most recent attempt succeeded.
+     * 
+     * @return 
+     */
+    public long getRelaunchBackoffMillis();
+    
+    /**
+     * The number of calls which were retried on another session after the session they were made on disconnected.
+     * 
+     * @return 
+     */
+    public long getRetryCount();
+}
\ No newline at end of file
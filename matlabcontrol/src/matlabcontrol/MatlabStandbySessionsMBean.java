@@ -0,0 +1,122 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The management interface through which the standby sessions kept by a factory are exported over JMX. A factory
+ * keeping standby sessions is registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabStandbySessions,id=<number>} until this Java Virtual Machine shuts down. Times are
+ * in milliseconds so that they may be read from generic JMX clients.
+ * 
+ * @see MatlabProxyFactoryOptions.Builder#setStandbySessions(int)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabStandbySessionsMBean
+{
+    /**
+     * The number of sessions the factory keeps on standby.
+     * 
+     * @return 
+     */
+    public int getTargetCount();
+    
+    /**
+     * The number of sessions currently on standby, ready to be provided.
+     * 
+     * @return 
+     */
+    public int getStandbyCount();
+    
+    /**
+     * The number of sessions currently being launched to be kept on standby.
+     * 
+     * @return 
+     */
+    public int getLaunchingCount();
+    
+    /**
+     * How long the session which has been on standby the longest has been waiting, {@code 0} if none are on standby.
+     * 
+     * @return 
+     */
+    public double getOldestStandbyAgeMillis();
+    
+    /**
+     * The number of requests for a proxy which were provided a standby session.
+     * 
+     * @return 
+     */
+    public long getProvidedCount();
+    
+    /**
+     * The number of requests for a proxy made while no session was on standby, which launched a session of their own.
+     * 
+     * @return 
+     */
+    public long getMissedCount();
+    
+    /**
+     * The number of standby sessions which disconnected before being provided.
+     * 
+     * @return 
+     */
+    public long getDiscardedCount();
+    
+    /**
+     * The number of standby sessions which have been launched.
+     * 
+     * @return 
+     */
+    public long getLaunchCount();
+    
+    /**
+     * The number of standby sessions which could not be launched or did not connect within the proxy timeout.
+     * 
+     * @return 
+     */
+    public long getFailedLaunchCount();
+    
+    /**
+     * How long the most recently launched standby session took from being launched to being connected.
+     * 
+     * @return 
+     */
+    public double getLastLaunchMillis();
+    
+    /**
+     * How long standby sessions took on average from being launched to being connected, {@code 0} if none have been.
+     * 
+     * @return 
+     */
+    public double getMeanLaunchMillis();
+    
+    /**
+     * The longest any standby session took from being launched to being connected.
+     * 
+     * @return 
+     */
+    public double getMaxLaunchMillis();
+}
\ No newline at end of file
@@ -0,0 +1,457 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coalesces work destined for MATLAB's main thread. Instead of each piece of work being posted as its own idle
+ * callback, work is placed in a queue and a single idle callback drains as much of the queue as it is allowed to. At
+ * most one idle callback is outstanding at any time, so under concurrent load many pieces of work are run per idle
+ * callback instead of one.
+ * <br><br>
+ * Work is queued in a lane for each {@link MatlabThreadPriority}. Each piece of work run is taken from the highest
+ * priority lane with work in it, unless a lane has been passed over {@link #STARVATION_LIMIT} consecutive times while it
+ * had work in it, in which case that lane's work is run next. Within a lane work is run in the order it was dispatched.
+ * <br><br>
+ * Lanes are linked lists threaded through the work itself, so dispatching a {@link Task} does not allocate. This allows
+ * a caller which reuses its task for each call, such as {@link CompletionSlot}, to wait for MATLAB without creating any
+ * garbage.
+ * <br><br>
+ * Each drain is bounded both by the number of pieces of work run and by the amount of time spent running them. Once
+ * either limit is reached the remaining work is left in the queue and another idle callback is posted. This gives
+ * MATLAB (and anything else waiting on MATLAB's main thread, such as the Command Window) a chance to run between
+ * batches. The time limit is only checked between pieces of work; a long running piece of work is never interrupted.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ *
+ * @since 4.2.0
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class MatlabThreadDispatcher
+{
+    /**
+     * The default maximum number of pieces of work run by a single drain of the queue.
+     */
+    static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * The default maximum amount of time (in milliseconds) a single drain of the queue may continue starting work.
+     */
+    static final long DEFAULT_BATCH_TIME = 50L;
+
+    /**
+     * The number of consecutive times a lane with work in it may be passed over in favor of higher priority lanes
+     * before its work is run next.
+     */
+    static final int STARVATION_LIMIT = 16;
+
+    private static final MatlabThreadPriority[] PRIORITIES = MatlabThreadPriority.values();
+
+    /**
+     * Posts the drainer so that it is run on MATLAB's main thread once MATLAB is idle.
+     */
+    private final Executor _idleExecutor;
+
+    /**
+     * Work waiting to be run on MATLAB's main thread, indexed by {@link MatlabThreadPriority#ordinal()}.
+     */
+    private final List<Lane> _lanes = new ArrayList<Lane>(PRIORITIES.length);
+
+    /**
+     * For each lane, the number of consecutive times it has been passed over while it had work in it. Only accessed
+     * while draining, which is confined to MATLAB's main thread.
+     */
+    private final int[] _passedOver = new int[PRIORITIES.length];
+
+    /**
+     * Whether a drain of the queue has been posted and has not yet finished.
+     */
+    private final AtomicBoolean _drainScheduled = new AtomicBoolean(false);
+
+    /**
+     * Runs on MATLAB's main thread, draining the queue.
+     */
+    private final Runnable _drainer = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            drain();
+        }
+    };
+
+    private volatile int _batchSize = DEFAULT_BATCH_SIZE;
+
+    //Stored in nanoseconds as that is what the drain compares against
+    private final AtomicLong _batchTime = new AtomicLong(DEFAULT_BATCH_TIME * 1000000L);
+
+    private final AtomicLong _batchCount = new AtomicLong();
+    private final AtomicLong _taskCount = new AtomicLong();
+
+    /**
+     * Creates a dispatcher which will post its drainer using {@code idleExecutor}.
+     *
+     * @param idleExecutor must run the runnables it is given on MATLAB's main thread
+     */
+    MatlabThreadDispatcher(Executor idleExecutor)
+    {
+        _idleExecutor = idleExecutor;
+
+        for(int i = 0; i < PRIORITIES.length; i++)
+        {
+            _lanes.add(new Lane());
+        }
+    }
+
+    /**
+     * Queues {@code task} to be run on MATLAB's main thread with {@link MatlabThreadPriority#NORMAL} priority. This
+     * method does not wait for {@code task} to be run.
+     *
+     * @param task
+     */
+    void dispatch(Runnable task)
+    {
+        this.dispatch(task, MatlabThreadPriority.NORMAL);
+    }
+
+    /**
+     * Queues {@code task} to be run on MATLAB's main thread with {@code priority}. This method does not wait for
+     * {@code task} to be run.
+     *
+     * @param task
+     * @param priority
+     */
+    void dispatch(final Runnable task, MatlabThreadPriority priority)
+    {
+        this.dispatch(new Task()
+        {
+            @Override
+            public void run()
+            {
+                task.run();
+            }
+        }, priority);
+    }
+
+    /**
+     * Queues {@code task} to be run on MATLAB's main thread with {@code priority}. This method does not wait for
+     * {@code task} to be run and does not allocate. {@code task} may not be dispatched again until it has been run.
+     *
+     * @param task
+     * @param priority
+     */
+    void dispatch(Task task, MatlabThreadPriority priority)
+    {
+        _lanes.get(priority.ordinal()).add(task);
+
+        this.scheduleDrain();
+    }
+
+    private void scheduleDrain()
+    {
+        if(_drainScheduled.compareAndSet(false, true))
+        {
+            _idleExecutor.execute(_drainer);
+        }
+    }
+
+    private void drain()
+    {
+        int batchSize = _batchSize;
+        long batchTime = _batchTime.get();
+        long start = System.nanoTime();
+
+        int ran = 0;
+        try
+        {
+            while(ran < batchSize && (System.nanoTime() - start) < batchTime)
+            {
+                Task task = this.poll();
+                if(task == null)
+                {
+                    break;
+                }
+                
+                //Cancelled work is unlinked without being run or counting towards the batch
+                if(task.isCancelled())
+                {
+                    continue;
+                }
+
+                ran++;
+                task.run();
+            }
+        }
+        finally
+        {
+            _batchCount.incrementAndGet();
+            _taskCount.addAndGet(ran);
+
+            //Allow another drain to be scheduled, and then schedule one if work remains. Work dispatched after the
+            //queue was last polled but before the flag was cleared would otherwise never be run.
+            _drainScheduled.set(false);
+            if(this.getQueueDepth() != 0)
+            {
+                this.scheduleDrain();
+            }
+        }
+    }
+
+    /**
+     * Takes the next piece of work to run, {@code null} if there is none.
+     * 
+     * @return 
+     */
+    private Task poll()
+    {
+        //The most passed over lane which has reached the limit, highest priority first if tied
+        int next = -1;
+        for(int i = 0; i < PRIORITIES.length; i++)
+        {
+            if(_passedOver[i] >= STARVATION_LIMIT && (next == -1 || _passedOver[i] > _passedOver[next]))
+            {
+                next = i;
+            }
+        }
+
+        //Otherwise the highest priority lane with work in it
+        Task task = (next == -1) ? null : _lanes.get(next).poll();
+        for(int i = 0; i < PRIORITIES.length && task == null; i++)
+        {
+            next = i;
+            task = _lanes.get(i).poll();
+        }
+
+        if(task != null)
+        {
+            _passedOver[next] = 0;
+            for(int i = 0; i < PRIORITIES.length; i++)
+            {
+                if(i != next)
+                {
+                    _passedOver[i] = _lanes.get(i).isEmpty() ? 0 : _passedOver[i] + 1;
+                }
+            }
+        }
+
+        return task;
+    }
+
+    /**
+     * Sets the limits placed on a single drain of the queue.
+     *
+     * @param batchSize maximum number of pieces of work run per drain
+     * @param batchTime maximum time in milliseconds per drain during which new work will be started
+     * @throws IllegalArgumentException if {@code batchSize} or {@code batchTime} is not positive
+     */
+    void setBatchLimits(int batchSize, long batchTime)
+    {
+        if(batchSize < 1)
+        {
+            throw new IllegalArgumentException("batch size [" + batchSize + "] must be positive");
+        }
+        if(batchTime < 1)
+        {
+            throw new IllegalArgumentException("batch time [" + batchTime + "] must be positive");
+        }
+
+        _batchSize = batchSize;
+        _batchTime.set(batchTime * 1000000L);
+    }
+
+    int getBatchSize()
+    {
+        return _batchSize;
+    }
+
+    long getBatchTime()
+    {
+        return _batchTime.get() / 1000000L;
+    }
+
+    /**
+     * The number of pieces of work waiting to be run.
+     *
+     * @return
+     */
+    int getQueueDepth()
+    {
+        int depth = 0;
+        for(Lane lane : _lanes)
+        {
+            depth += lane.size();
+        }
+
+        return depth;
+    }
+
+    /**
+     * The number of pieces of work of {@code priority} waiting to be run.
+     *
+     * @param priority
+     * @return
+     */
+    int getQueueDepth(MatlabThreadPriority priority)
+    {
+        return _lanes.get(priority.ordinal()).size();
+    }
+
+    /**
+     * The number of times the queue has been drained.
+     *
+     * @return
+     */
+    long getBatchCount()
+    {
+        return _batchCount.get();
+    }
+
+    /**
+     * The number of pieces of work that have been run.
+     *
+     * @return
+     */
+    long getTaskCount()
+    {
+        return _taskCount.get();
+    }
+
+    /**
+     * Work which is linked directly into a lane when dispatched.
+     */
+    static abstract class Task implements Runnable
+    {
+        /**
+         * The task dispatched after this one to the same lane.
+         */
+        private volatile Task _next;
+        
+        /**
+         * Whether this task has been cancelled, in which case it is removed from its lane without being run. Lanes
+         * can only be unlinked by the thread draining them, so a cancelled task stays queued until the drain reaches
+         * it.
+         *
+         * @return 
+         */
+        boolean isCancelled()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * An intrusive multiple-producer single-consumer queue of tasks. Any thread may add to the lane, only the thread
+     * draining may poll it. Polling may transiently return {@code null} while the lane is not empty if a task is in the
+     * midst of being added; the drain then ends and, as the lane is not empty, another is scheduled.
+     */
+    private static final class Lane
+    {
+        /**
+         * Occupies the lane when it is otherwise empty so that the last task can be removed.
+         */
+        private final Task _stub = new Task()
+        {
+            @Override
+            public void run() { }
+        };
+
+        /**
+         * The most recently added task, or the stub.
+         */
+        private final AtomicReference<Task> _head = new AtomicReference<Task>(_stub);
+
+        /**
+         * The next task to be polled, or the stub. Only accessed by the thread draining.
+         */
+        private Task _tail = _stub;
+
+        private final AtomicInteger _size = new AtomicInteger();
+
+        void add(Task task)
+        {
+            _size.incrementAndGet();
+            this.push(task);
+        }
+
+        private void push(Task task)
+        {
+            task._next = null;
+            Task previous = _head.getAndSet(task);
+            previous._next = task;
+        }
+
+        Task poll()
+        {
+            Task tail = _tail;
+            Task next = tail._next;
+            if(tail == _stub)
+            {
+                if(next == null)
+                {
+                    return null;
+                }
+                _tail = next;
+                tail = next;
+                next = next._next;
+            }
+
+            //The tail can be removed once a task has been linked after it
+            if(next == null)
+            {
+                if(tail != _head.get())
+                {
+                    return null;
+                }
+                this.push(_stub);
+                next = tail._next;
+                if(next == null)
+                {
+                    return null;
+                }
+            }
+
+            _tail = next;
+            _size.decrementAndGet();
+
+            return tail;
+        }
+
+        boolean isEmpty()
+        {
+            return _size.get() == 0;
+        }
+
+        int size()
+        {
+            return _size.get();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+
+/**
+ * The priority with which work waits to be run on MATLAB's main thread. MATLAB has a single main thread on which all
+ * interaction with MATLAB occurs, so work from all proxies queues for it. Queued work of a higher priority is run
+ * before queued work of a lower priority; work of the same priority is run in the order it was queued. Work which is
+ * already running is never interrupted, so priority only affects the order in which queued work is started.
+ * <br><br>
+ * So that lower priority work is not starved when higher priority work is continually queued, work which has been
+ * passed over a bounded number of consecutive times is run next regardless of its priority.
+ * <br><br>
+ * A priority may be given to all work from a proxy with
+ * {@link MatlabProxyFactoryOptions.Builder#setMatlabThreadPriority(matlabcontrol.MatlabThreadPriority)}, or to an
+ * individual {@link MatlabThreadCallable} with {@link #prioritize(matlabcontrol.MatlabProxy.MatlabThreadCallable)},
+ * which takes precedence over the proxy's priority.
+ * 
+ * @see MatlabProxy#getMatlabThreadQueueDepth(matlabcontrol.MatlabThreadPriority)
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public enum MatlabThreadPriority
+{
+    /**
+     * For short requests a user is waiting on, such as those made from a user interface.
+     */
+    INTERACTIVE,
+    
+    /**
+     * The priority of work unless otherwise specified.
+     */
+    NORMAL,
+    
+    /**
+     * For long running or bulk work which no one is waiting on interactively.
+     */
+    BATCH;
+    
+    /**
+     * Returns a callable which when given to a proxy runs {@code callable} with this priority, regardless of the
+     * priority of the proxy. The returned callable is {@link java.io.Serializable}, so it can be sent to MATLAB by a
+     * proxy running outside MATLAB if {@code callable} can be.
+     * 
+     * @param <T>
+     * @param callable
+     * @return prioritized callable
+     */
+    public <T> MatlabThreadCallable<T> prioritize(MatlabThreadCallable<T> callable)
+    {
+        return new PrioritizedCallable<T>(callable, this);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The management interface through which the effectiveness of a {@link CachingMatlabProxy} is exported over JMX. Each
+ * caching proxy is registered with the platform MBean server under the name
+ * {@code matlabcontrol:type=MatlabVariableCache,id=<identifier>} until it is disconnected.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public interface MatlabVariableCacheMBean
+{
+    /**
+     * The number of variables retrieved from the cache.
+     * 
+     * @return 
+     */
+    public long getHitCount();
+    
+    /**
+     * The number of variables which were not cached and so were retrieved from MATLAB.
+     * 
+     * @return 
+     */
+    public long getMissCount();
+    
+    /**
+     * The number of hits divided by the number of variables retrieved, {@code 0} if none have been retrieved.
+     * 
+     * @return 
+     */
+    public double getHitRatio();
+    
+    /**
+     * The number of variables removed from the cache to keep it within its maximum number of bytes.
+     * 
+     * @return 
+     */
+    public long getEvictionCount();
+    
+    /**
+     * The number of cached variables removed because MATLAB's workspace could have been modified.
+     * 
+     * @return 
+     */
+    public long getInvalidationCount();
+    
+    /**
+     * The number of variables currently cached.
+     * 
+     * @return 
+     */
+    public int getCachedVariableCount();
+    
+    /**
+     * The approximate number of bytes the currently cached variables occupy.
+     * 
+     * @return 
+     */
+    public long getCachedBytes();
+    
+    /**
+     * The approximate number of bytes the cached variables may occupy.
+     * 
+     * @return 
+     */
+    public long getMaxBytes();
+    
+    /**
+     * Whether cached variables are compared against the version of MATLAB's workspace before being retrieved.
+     * 
+     * @return 
+     */
+    public boolean isVerifyingWithMatlab();
+    
+    /**
+     * Removes all variables from the cache.
+     */
+    public void invalidate();
+}
\ No newline at end of file
@@ -0,0 +1,333 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Compression of the arrays encoded by {@link PrimitiveArrayCodec}, using the JDK's deflate implementation. Arrays
+ * whose values take at least the threshold number of bytes are sent compressed, as a sequence of length-prefixed frames
+ * ending with an empty frame, so the reader knows where the compressed data ends within the serialization stream.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class PayloadCompression implements MatlabCompressionMBean
+{
+    /**
+     * The smallest number of bytes sent compressed, {@code 0} if compression is not used.
+     */
+    private static volatile long THRESHOLD = 0L;
+    
+    private static final PayloadCompression STATISTICS = new PayloadCompression();
+    
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    
+    private final Direction _sent = new Direction();
+    private final Direction _received = new Direction();
+    private final AtomicBoolean _registered = new AtomicBoolean(false);
+    
+    /**
+     * The smallest number of bytes sent compressed, {@code 0} if compression is not used.
+     * 
+     * @return 
+     */
+    static long getThreshold()
+    {
+        return THRESHOLD;
+    }
+    
+    static void setThreshold(long threshold)
+    {
+        THRESHOLD = threshold;
+    }
+    
+    /**
+     * The statistics of this Java Virtual Machine, registering them with the platform MBean server if they have not
+     * been already. Failing to register them does not prevent compression.
+     * 
+     * @return 
+     */
+    static PayloadCompression getStatistics()
+    {
+        if(STATISTICS._registered.compareAndSet(false, true))
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        new StandardMBean(STATISTICS, MatlabCompressionMBean.class),
+                        new ObjectName("matlabcontrol:type=MatlabCompression"));
+            }
+            catch(JMException e) { }
+            catch(SecurityException e) { }
+        }
+        
+        return STATISTICS;
+    }
+    
+    /**
+     * The processor time of the current thread in nanoseconds, or if that is not supported, the elapsed time.
+     * 
+     * @return 
+     */
+    static long currentTime()
+    {
+        long time = -1;
+        if(THREADS.isCurrentThreadCpuTimeSupported())
+        {
+            time = THREADS.getCurrentThreadCpuTime();
+        }
+        
+        return (time == -1) ? System.nanoTime() : time;
+    }
+    
+    void recordSent(long uncompressedBytes, long compressedBytes, long nanos)
+    {
+        _sent.record(uncompressedBytes, compressedBytes, nanos);
+    }
+    
+    void recordReceived(long uncompressedBytes, long compressedBytes, long nanos)
+    {
+        _received.record(uncompressedBytes, compressedBytes, nanos);
+    }
+    
+    @Override
+    public long getSentCount()
+    {
+        return _sent._count.get();
+    }
+    
+    @Override
+    public long getSentUncompressedBytes()
+    {
+        return _sent._uncompressedBytes.get();
+    }
+    
+    @Override
+    public long getSentCompressedBytes()
+    {
+        return _sent._compressedBytes.get();
+    }
+    
+    @Override
+    public double getSentRatio()
+    {
+        return _sent.getRatio();
+    }
+    
+    @Override
+    public double getSentCpuMillis()
+    {
+        return _sent._nanos.get() / 1e6;
+    }
+    
+    @Override
+    public long getReceivedCount()
+    {
+        return _received._count.get();
+    }
+    
+    @Override
+    public long getReceivedUncompressedBytes()
+    {
+        return _received._uncompressedBytes.get();
+    }
+    
+    @Override
+    public long getReceivedCompressedBytes()
+    {
+        return _received._compressedBytes.get();
+    }
+    
+    @Override
+    public double getReceivedRatio()
+    {
+        return _received.getRatio();
+    }
+    
+    @Override
+    public double getReceivedCpuMillis()
+    {
+        return _received._nanos.get() / 1e6;
+    }
+    
+    @Override
+    public void reset()
+    {
+        _sent.reset();
+        _received.reset();
+    }
+    
+    private static class Direction
+    {
+        private final AtomicLong _count = new AtomicLong();
+        private final AtomicLong _uncompressedBytes = new AtomicLong();
+        private final AtomicLong _compressedBytes = new AtomicLong();
+        private final AtomicLong _nanos = new AtomicLong();
+        
+        void record(long uncompressedBytes, long compressedBytes, long nanos)
+        {
+            _count.incrementAndGet();
+            _uncompressedBytes.addAndGet(uncompressedBytes);
+            _compressedBytes.addAndGet(compressedBytes);
+            _nanos.addAndGet(nanos);
+        }
+        
+        double getRatio()
+        {
+            long compressed = _compressedBytes.get();
+            
+            return (compressed == 0) ? 0 : (double) _uncompressedBytes.get() / compressed;
+        }
+        
+        void reset()
+        {
+            _count.set(0);
+            _uncompressedBytes.set(0);
+            _compressedBytes.set(0);
+            _nanos.set(0);
+        }
+    }
+    
+    /**
+     * Writes each write as a frame of its length followed by its bytes. Closing writes the empty frame which ends the
+     * compressed data, but does not close the underlying output.
+     */
+    static class FrameOutputStream extends OutputStream
+    {
+        private final DataOutput _out;
+        
+        FrameOutputStream(DataOutput out)
+        {
+            _out = out;
+        }
+        
+        @Override
+        public void write(int b) throws IOException
+        {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if(len > 0)
+            {
+                _out.writeInt(len);
+                _out.write(b, off, len);
+            }
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            _out.writeInt(0);
+        }
+    }
+    
+    /**
+     * Reads the frames written by {@link FrameOutputStream}, reaching the end of the stream at the empty frame.
+     */
+    static class FrameInputStream extends InputStream
+    {
+        private final DataInput _in;
+        
+        /**
+         * The bytes left in the current frame, {@code -1} once the empty frame has been read.
+         */
+        private int _remaining = 0;
+        
+        FrameInputStream(DataInput in)
+        {
+            _in = in;
+        }
+        
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            int n = this.read(b, 0, 1);
+            
+            return (n == -1) ? -1 : (b[0] & 0xFF);
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if(_remaining == 0)
+            {
+                _remaining = _in.readInt();
+                if(_remaining < 0)
+                {
+                    throw new StreamCorruptedException("invalid compressed frame length: " + _remaining);
+                }
+                if(_remaining == 0)
+                {
+                    _remaining = -1;
+                }
+            }
+            
+            int n = -1;
+            if(_remaining > 0 && len > 0)
+            {
+                n = Math.min(len, _remaining);
+                _in.readFully(b, off, n);
+                _remaining -= n;
+            }
+            else if(_remaining > 0)
+            {
+                n = 0;
+            }
+            
+            return n;
+        }
+        
+        /**
+         * Reads past any frames not yet read and the empty frame, so that the underlying input is positioned after the
+         * compressed data.
+         * 
+         * @throws IOException 
+         */
+        void skipToEnd() throws IOException
+        {
+            byte[] skipped = new byte[4096];
+            while(this.read(skipped, 0, skipped.length) != -1) { }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,571 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+
+/**
+ * A session of MATLAB owned by a {@link MatlabProxyPool}, tracking how heavily it is used. Calls are tracked when made
+ * through the proxy returned by {@link #getTrackedProxy()}; a call is in flight from when it is made until it has
+ * completed, including time spent waiting on MATLAB's main thread behind other calls.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+final class PooledSession
+{
+    private final MatlabProxy _proxy;
+    
+    private final TrackedProxy _trackedProxy;
+    
+    /**
+     * When this session was added to the pool, in nanoseconds.
+     */
+    private final long _addedAt;
+    
+    //All of the following are guarded by this session
+    
+    private int _inFlight = 0;
+    
+    private boolean _leased = false;
+    
+    private long _calls = 0;
+    
+    /**
+     * The total time, in nanoseconds, during which at least one call was in flight, excluding the current busy period.
+     */
+    private long _busyNanos = 0;
+    
+    /**
+     * When the current busy period began, only meaningful while a call is in flight.
+     */
+    private long _busySince = 0;
+    
+    PooledSession(MatlabProxy proxy)
+    {
+        _proxy = proxy;
+        _trackedProxy = new TrackedProxy();
+        _addedAt = System.nanoTime();
+    }
+    
+    /**
+     * The untracked proxy to the session.
+     * 
+     * @return 
+     */
+    MatlabProxy getProxy()
+    {
+        return _proxy;
+    }
+    
+    /**
+     * A proxy to the session which tracks each call made through it.
+     * 
+     * @return 
+     */
+    MatlabProxy getTrackedProxy()
+    {
+        return _trackedProxy;
+    }
+    
+    synchronized void lease()
+    {
+        _leased = true;
+    }
+    
+    synchronized void release()
+    {
+        _leased = false;
+    }
+    
+    synchronized boolean isLeased()
+    {
+        return _leased;
+    }
+    
+    /**
+     * Whether this session is less heavily loaded than {@code other}. Sessions with fewer calls in flight are less
+     * loaded, followed by those which have had fewer calls made. Whether either is leased is not considered.
+     * 
+     * @param other
+     * @return 
+     */
+    boolean isLessLoadedThan(PooledSession other)
+    {
+        int inFlight, otherInFlight;
+        long calls, otherCalls;
+        synchronized(this)
+        {
+            inFlight = _inFlight;
+            calls = _calls;
+        }
+        synchronized(other)
+        {
+            otherInFlight = other._inFlight;
+            otherCalls = other._calls;
+        }
+        
+        boolean lessLoaded;
+        if(inFlight != otherInFlight)
+        {
+            lessLoaded = inFlight < otherInFlight;
+        }
+        else
+        {
+            lessLoaded = calls < otherCalls;
+        }
+        
+        return lessLoaded;
+    }
+    
+    synchronized int getInFlightCount()
+    {
+        return _inFlight;
+    }
+    
+    synchronized long getCallCount()
+    {
+        return _calls;
+    }
+    
+    /**
+     * The fraction of time since this session was added to the pool during which at least one call was in flight.
+     * 
+     * @return 
+     */
+    synchronized double getUtilization()
+    {
+        long now = System.nanoTime();
+        
+        long busy = _busyNanos;
+        if(_inFlight > 0)
+        {
+            busy += now - _busySince;
+        }
+        long elapsed = now - _addedAt;
+        
+        return elapsed <= 0 ? 0 : Math.min(1, (double) busy / elapsed);
+    }
+    
+    private synchronized void begin()
+    {
+        if(_inFlight == 0)
+        {
+            _busySince = System.nanoTime();
+        }
+        _inFlight++;
+        _calls++;
+    }
+    
+    private synchronized void end()
+    {
+        _inFlight--;
+        if(_inFlight == 0)
+        {
+            _busyNanos += System.nanoTime() - _busySince;
+        }
+    }
+    
+    /**
+     * Ends the call once {@code future} completes.
+     * 
+     * @param <T>
+     * @param future
+     * @return {@code future}
+     */
+    private <T> MatlabFuture<T> endOnCompletion(MatlabFuture<T> future)
+    {
+        future.addCompletionListener(new MatlabFuture.CompletionListener<T>()
+        {
+            @Override
+            public void completed(MatlabFuture<T> future)
+            {
+                end();
+            }
+        });
+        
+        return future;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "[" + this.getClass().getName() + " proxy=" + _proxy + "]";
+    }
+    
+    /**
+     * Delegates to the session's proxy, tracking every call which communicates with MATLAB.
+     */
+    private final class TrackedProxy extends MatlabProxy
+    {
+        TrackedProxy()
+        {
+            super(_proxy.getIdentifier(), _proxy.isExistingSession());
+        }
+        
+        @Override
+        public void eval(String command) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                _proxy.eval(command);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                return _proxy.returningEval(command, nargout);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public void feval(String functionName, Object... args) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                _proxy.feval(functionName, args);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public Object[] returningFeval(String functionName, int nargout, Object... args)
+                throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                return _proxy.returningFeval(functionName, nargout, args);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public void setVariable(String variableName, Object value) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                _proxy.setVariable(variableName, value);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public Object getVariable(String variableName) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                return _proxy.getVariable(variableName);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                _proxy.setVariables(variables);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                return _proxy.getVariables(variableNames);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public int getMatlabThreadQueueDepth(MatlabThreadPriority priority) throws MatlabInvocationException
+        {
+            return _proxy.getMatlabThreadQueueDepth(priority);
+        }
+
+        @Override
+        public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                return _proxy.invokeAndWait(callable);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+                throws MatlabInvocationException
+        {
+            begin();
+            try
+            {
+                return _proxy.invokeAndWait(callable, timeout, unit);
+            }
+            finally
+            {
+                end();
+            }
+        }
+
+        @Override
+        public MatlabFuture<Void> evalAsync(String command)
+        {
+            begin();
+            try
+            {
+                return endOnCompletion(_proxy.evalAsync(command));
+            }
+            catch(RuntimeException e)
+            {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+        {
+            begin();
+            try
+            {
+                return endOnCompletion(_proxy.returningEvalAsync(command, nargout));
+            }
+            catch(RuntimeException e)
+            {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+        {
+            begin();
+            try
+            {
+                return endOnCompletion(_proxy.fevalAsync(functionName, args));
+            }
+            catch(RuntimeException e)
+            {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+        {
+            begin();
+            try
+            {
+                return endOnCompletion(_proxy.returningFevalAsync(functionName, nargout, args));
+            }
+            catch(RuntimeException e)
+            {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+        {
+            begin();
+            try
+            {
+                return endOnCompletion(_proxy.setVariableAsync(variableName, value));
+            }
+            catch(RuntimeException e)
+            {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public MatlabFuture<Object> getVariableAsync(String variableName)
+        {
+            begin();
+            try
+            {
+                return endOnCompletion(_proxy.getVariableAsync(variableName));
+            }
+            catch(RuntimeException e)
+            {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public <T> MatlabFuture<T> invokeAsync(MatlabThreadCallable<T> callable)
+        {
+            begin();
+            try
+            {
+                return endOnCompletion(_proxy.invokeAsync(callable));
+            }
+            catch(RuntimeException e)
+            {
+                end();
+                throw e;
+            }
+        }
+
+        @Override
+        public void addDisconnectionListener(DisconnectionListener listener)
+        {
+            _proxy.addDisconnectionListener(listener);
+        }
+
+        @Override
+        public void removeDisconnectionListener(DisconnectionListener listener)
+        {
+            _proxy.removeDisconnectionListener(listener);
+        }
+
+        @Override
+        public boolean disconnect()
+        {
+            return _proxy.disconnect();
+        }
+
+        @Override
+        public boolean isExistingSession()
+        {
+            return _proxy.isExistingSession();
+        }
+
+        @Override
+        public boolean isRunningInsideMatlab()
+        {
+            return _proxy.isRunningInsideMatlab();
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return _proxy.isConnected();
+        }
+
+        @Override
+        public Identifier getIdentifier()
+        {
+            return _proxy.getIdentifier();
+        }
+        
+        @Override
+        public long getTimeoutCount()
+        {
+            return _proxy.getTimeoutCount();
+        }
+        
+        @Override
+        public long getCancellationCount()
+        {
+            return _proxy.getCancellationCount();
+        }
+        
+        @Override
+        public Set<String> getLatencyFunctionNames()
+        {
+            return _proxy.getLatencyFunctionNames();
+        }
+        
+        @Override
+        public LatencyHistogram getLatencyHistogram(String functionName, LatencyPhase phase)
+        {
+            return _proxy.getLatencyHistogram(functionName, phase);
+        }
+        
+        @Override
+        public StartupTimes getStartupTimes()
+        {
+            return _proxy.getStartupTimes();
+        }
+
+        @Override
+        public void exit() throws MatlabInvocationException
+        {
+            _proxy.exit();
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "[" + this.getClass().getName() + " delegateProxy=" + _proxy + "]";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,870 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import matlabcontrol.internal.ArrayCodecAccess;
+
+/**
+ * Sends primitive arrays between Java Virtual Machines as length-prefixed blocks of raw little-endian values instead
+ * of through Java's default serialization, which writes arrays one element at a time. Multidimensional primitive arrays
+ * are sent as the lengths of each of their arrays followed by the values of each of their innermost arrays.
+ * <br><br>
+ * Arrays are encoded by {@link #encode(Object)} immediately before being sent, and are decoded back into arrays of the
+ * same type as they are deserialized, so neither the sender nor the receiver ever sees the encoded form. This is done
+ * automatically for the arguments and results of proxy methods sent over RMI. Classes outside of this package which
+ * hold primitive arrays reach the codec through {@link ArrayCodecAccess}.
+ * <br><br>
+ * When a shared memory threshold has been set with
+ * {@link MatlabProxyFactoryOptions.Builder#setSharedMemoryThreshold(long)}, arrays whose values take at least that
+ * many bytes have their values written into a memory-mapped file instead, and only the lengths of their arrays and the
+ * location of the values are sent.
+ * <br><br>
+ * When a compression threshold has been set with
+ * {@link MatlabProxyFactoryOptions.Builder#setCompressionThreshold(long)}, arrays whose values take at least that many
+ * bytes and which are not sent through shared memory are compressed.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+final class PrimitiveArrayCodec
+{
+    static
+    {
+        //The link and extensions packages reach the codec through the accessor
+        ArrayCodecAccess.install(new ArrayCodecAccess.Codec()
+        {
+            @Override
+            public Object encode(Object value)
+            {
+                return PrimitiveArrayCodec.encode(value);
+            }
+            
+            @Override
+            public Object encodeAsBuffer(Object array)
+            {
+                return PrimitiveArrayCodec.encodeAsBuffer(array);
+            }
+        });
+    }
+    
+    /**
+     * The most bytes converted at a time when writing or reading the values of an array.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+    
+    /**
+     * How the values of an encoded array follow its type and rank.
+     */
+    private static final byte IN_STREAM = 0, IN_SHARED_MEMORY = 1, COMPRESSED_IN_STREAM = 2;
+    
+    private PrimitiveArrayCodec() { }
+    
+    /**
+     * If {@code value} is a primitive array or a multidimensional primitive array, returns a serializable object which
+     * writes it compactly and deserializes as an equal array of the same type. Otherwise returns {@code value}.
+     * 
+     * @param value
+     * @return 
+     */
+    static Object encode(Object value)
+    {
+        Object encoded = value;
+        if(value != null && value.getClass().isArray())
+        {
+            Class<?> componentType = value.getClass();
+            int rank = 0;
+            while(componentType.isArray())
+            {
+                componentType = componentType.getComponentType();
+                rank++;
+            }
+            
+            if(componentType.isPrimitive())
+            {
+                encoded = new Encoded(value, componentType, rank);
+            }
+        }
+        
+        return encoded;
+    }
+    
+    /**
+     * If {@code array} is a one dimensional primitive array, returns a serializable object which writes it compactly
+     * and deserializes as a direct {@link ByteBuffer} holding its values in little-endian byte order, positioned at
+     * {@code 0}. The values are read from the stream or shared memory straight into the buffer, so the array never
+     * exists on the receiving Java Virtual Machine's heap. Returns {@code null} if {@code array} is {@code null}.
+     * <br><br>
+     * The values must fit in a single buffer, which for {@code double}s is {@code Integer.MAX_VALUE / 8} elements.
+     * 
+     * @param array
+     * @return 
+     * @throws IllegalArgumentException if {@code array} is not a one dimensional primitive array
+     */
+    static Object encodeAsBuffer(Object array)
+    {
+        Object encoded = null;
+        if(array != null)
+        {
+            Class<?> componentType = array.getClass().getComponentType();
+            if(componentType == null || !componentType.isPrimitive())
+            {
+                throw new IllegalArgumentException("not a one dimensional primitive array: " +
+                        array.getClass().getCanonicalName());
+            }
+            
+            Encoded buffer = new Encoded(array, componentType, 1);
+            buffer._asBuffer = true;
+            encoded = buffer;
+        }
+        
+        return encoded;
+    }
+    
+    /**
+     * Encodes the values returned from a proxy method or a {@link MatlabProxy.MatlabThreadCallable}. As well as arrays,
+     * the elements of an {@code Object[]} and the values of a {@code LinkedHashMap} are encoded, as those are what the
+     * returning proxy methods return. The returned object is always of the same type as {@code value}.
+     * 
+     * @param value
+     * @return 
+     */
+    @SuppressWarnings("unchecked")
+    static Object encodeResult(Object value)
+    {
+        Object encoded;
+        if(value != null && value.getClass().equals(Object[].class))
+        {
+            encoded = encodeElements((Object[]) value);
+        }
+        else if(value != null && value.getClass().equals(LinkedHashMap.class))
+        {
+            encoded = encodeValues((Map<String, Object>) value);
+        }
+        else
+        {
+            encoded = encode(value);
+        }
+        
+        return encoded;
+    }
+    
+    /**
+     * Returns a copy of {@code values} with each element encoded, or {@code values} if none needed to be.
+     * 
+     * @param values may be {@code null}
+     * @return 
+     */
+    static Object[] encodeElements(Object[] values)
+    {
+        Object[] encoded = values;
+        if(values != null)
+        {
+            for(int i = 0; i < values.length; i++)
+            {
+                Object element = encode(values[i]);
+                if(element != values[i])
+                {
+                    if(encoded == values)
+                    {
+                        encoded = values.clone();
+                    }
+                    encoded[i] = element;
+                }
+            }
+        }
+        
+        return encoded;
+    }
+    
+    /**
+     * Returns a copy of {@code values}, iterating in the same order, with each value encoded.
+     * 
+     * @param values may be {@code null}
+     * @return 
+     */
+    static LinkedHashMap<String, Object> encodeValues(Map<String, Object> values)
+    {
+        LinkedHashMap<String, Object> encoded = null;
+        if(values != null)
+        {
+            encoded = new LinkedHashMap<String, Object>();
+            for(Map.Entry<String, Object> entry : values.entrySet())
+            {
+                encoded.put(entry.getKey(), encode(entry.getValue()));
+            }
+        }
+        
+        return encoded;
+    }
+    
+    /**
+     * A primitive array while it is being sent. Once deserialized it is replaced by the array it holds.
+     */
+    static final class Encoded implements Externalizable
+    {
+        private static final long serialVersionUID = 0xB110L;
+        
+        private Object _array;
+        private Class<?> _componentType;
+        private int _rank;
+        
+        /**
+         * Whether the array is deserialized as a direct buffer of its values instead of as an array.
+         */
+        private boolean _asBuffer = false;
+        
+        /**
+         * For deserialization only.
+         */
+        public Encoded() { }
+        
+        Encoded(Object array, Class<?> componentType, int rank)
+        {
+            _array = array;
+            _componentType = componentType;
+            _rank = rank;
+        }
+        
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException
+        {
+            out.writeByte(typeCodeOf(_componentType));
+            out.writeInt(_rank);
+            out.writeBoolean(_asBuffer);
+            
+            long size = -1;
+            SharedMemoryTransport.Region region = null;
+            long threshold = SharedMemoryTransport.getThreshold();
+            if(threshold > 0)
+            {
+                size = sizeOf(_array, _rank);
+                if(size >= threshold && size <= SharedMemoryTransport.MAX_REGION_SIZE)
+                {
+                    try
+                    {
+                        region = SharedMemoryTransport.getSender().acquire(size);
+                    }
+                    //Shared memory is an optimization, the values can always be sent in the stream instead
+                    catch(IOException e) { }
+                }
+            }
+            
+            boolean compress = false;
+            long compressionThreshold = PayloadCompression.getThreshold();
+            if(region == null && compressionThreshold > 0)
+            {
+                size = (size == -1) ? sizeOf(_array, _rank) : size;
+                compress = (size >= compressionThreshold);
+            }
+            
+            if(compress)
+            {
+                out.writeByte(COMPRESSED_IN_STREAM);
+                ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                
+                //Favor speed, as the values are being sent to another process on the same machine
+                long start = PayloadCompression.currentTime();
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try
+                {
+                    PayloadCompression.FrameOutputStream frames = new PayloadCompression.FrameOutputStream(out);
+                    DeflaterOutputStream deflated = new DeflaterOutputStream(frames, deflater, CHUNK_SIZE);
+                    DataOutputStream data = new DataOutputStream(deflated);
+                    writeArray(data, _array, _rank, buffer, null);
+                    data.flush();
+                    deflated.finish();
+                    frames.close();
+                    
+                    PayloadCompression.getStatistics().recordSent(deflater.getBytesRead(),
+                            deflater.getBytesWritten(), PayloadCompression.currentTime() - start);
+                }
+                finally
+                {
+                    deflater.end();
+                }
+            }
+            else if(region == null)
+            {
+                out.writeByte(IN_STREAM);
+                ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                writeArray(out, _array, _rank, buffer, null);
+            }
+            else
+            {
+                out.writeByte(IN_SHARED_MEMORY);
+                out.writeUTF(region.getPath());
+                out.writeLong(region.getGeneration());
+                writeArray(out, _array, _rank, null, region.getValues());
+                region.written();
+            }
+        }
+        
+        @Override
+        public void readExternal(ObjectInput in) throws IOException
+        {
+            _componentType = componentTypeOf(in.readByte());
+            _rank = in.readInt();
+            if(_rank < 1 || _rank > 255)
+            {
+                throw new StreamCorruptedException("invalid array rank: " + _rank);
+            }
+            _asBuffer = in.readBoolean();
+            if(_asBuffer && _rank != 1)
+            {
+                throw new StreamCorruptedException("only one dimensional arrays may be read as buffers: " + _rank);
+            }
+            
+            //The class of the arrays at each depth, index 0 is the innermost
+            Class<?>[] arrayTypes = new Class<?>[_rank];
+            Class<?> arrayType = _componentType;
+            for(int i = 0; i < _rank; i++)
+            {
+                arrayType = Array.newInstance(arrayType, 0).getClass();
+                arrayTypes[i] = arrayType;
+            }
+            
+            byte mode = in.readByte();
+            if(mode == IN_SHARED_MEMORY)
+            {
+                String path = in.readUTF();
+                long generation = in.readLong();
+                ByteBuffer values = SharedMemoryTransport.openForReading(path, generation);
+                _array = readArray(in, _rank, arrayTypes, null, values);
+                SharedMemoryTransport.finishReading(path, generation);
+            }
+            else if(mode == COMPRESSED_IN_STREAM)
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                
+                long start = PayloadCompression.currentTime();
+                Inflater inflater = new Inflater();
+                try
+                {
+                    PayloadCompression.FrameInputStream frames = new PayloadCompression.FrameInputStream(in);
+                    DataInputStream data = new DataInputStream(new InflaterInputStream(frames, inflater, CHUNK_SIZE));
+                    _array = readArray(data, _rank, arrayTypes, buffer, null);
+                    frames.skipToEnd();
+                    
+                    PayloadCompression.getStatistics().recordReceived(inflater.getBytesWritten(),
+                            inflater.getBytesRead(), PayloadCompression.currentTime() - start);
+                }
+                finally
+                {
+                    inflater.end();
+                }
+            }
+            else if(mode == IN_STREAM)
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                _array = readArray(in, _rank, arrayTypes, buffer, null);
+            }
+            else
+            {
+                throw new StreamCorruptedException("invalid encoded array mode: " + mode);
+            }
+            
+            if(_array == null)
+            {
+                throw new StreamCorruptedException("encoded array may not be null");
+            }
+        }
+        
+        private Object readResolve() throws ObjectStreamException
+        {
+            return _array;
+        }
+        
+        /**
+         * Writes the lengths of {@code array} and its subarrays to {@code out}. The values are written either to
+         * {@code out} through {@code buffer}, or if it is not {@code null}, to {@code shared}.
+         */
+        private void writeArray(DataOutput out, Object array, int rank, ByteBuffer buffer, ByteBuffer shared)
+                throws IOException
+        {
+            if(array == null)
+            {
+                out.writeInt(-1);
+            }
+            else if(rank == 1)
+            {
+                out.writeInt(Array.getLength(array));
+                if(shared == null)
+                {
+                    writeValues(out, array, buffer);
+                }
+                else
+                {
+                    putValues(shared, array);
+                }
+            }
+            else
+            {
+                Object[] subarrays = (Object[]) array;
+                out.writeInt(subarrays.length);
+                for(Object subarray : subarrays)
+                {
+                    writeArray(out, subarray, rank - 1, buffer, shared);
+                }
+            }
+        }
+        
+        private Object readArray(DataInput in, int rank, Class<?>[] arrayTypes, ByteBuffer buffer,
+                ByteBuffer shared) throws IOException
+        {
+            int length = in.readInt();
+            if(length < -1)
+            {
+                throw new StreamCorruptedException("invalid array length: " + length);
+            }
+            
+            Object array;
+            if(length == -1)
+            {
+                array = null;
+            }
+            else if(rank == 1 && _asBuffer)
+            {
+                array = readBuffer(in, length, buffer, shared);
+            }
+            else if(rank == 1)
+            {
+                array = Array.newInstance(_componentType, length);
+                if(shared == null)
+                {
+                    readValues(in, array, length, buffer);
+                }
+                else
+                {
+                    getValues(shared, array, length);
+                }
+            }
+            else
+            {
+                Object[] subarrays = (Object[]) Array.newInstance(arrayTypes[rank - 2], length);
+                for(int i = 0; i < length; i++)
+                {
+                    subarrays[i] = readArray(in, rank - 1, arrayTypes, buffer, shared);
+                }
+                array = subarrays;
+            }
+            
+            return array;
+        }
+        
+        /**
+         * Reads {@code length} values into a new direct buffer, either from {@code in} through {@code buffer}, or if it
+         * is not {@code null}, from {@code shared}.
+         */
+        private ByteBuffer readBuffer(DataInput in, int length, ByteBuffer buffer, ByteBuffer shared)
+                throws IOException
+        {
+            long size = (long) length * elementSizeOf(Array.newInstance(_componentType, 0));
+            if(size > Integer.MAX_VALUE)
+            {
+                throw new StreamCorruptedException("array of " + length + " elements is too large for a buffer");
+            }
+            ByteBuffer values = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            
+            if(shared == null)
+            {
+                byte[] bytes = buffer.array();
+                while(values.hasRemaining())
+                {
+                    int count = Math.min(bytes.length, values.remaining());
+                    in.readFully(bytes, 0, count);
+                    values.put(bytes, 0, count);
+                }
+            }
+            else
+            {
+                if(shared.remaining() < size)
+                {
+                    throw new StreamCorruptedException("shared memory region is smaller than the array it holds");
+                }
+                ByteBuffer source = shared.slice();
+                source.limit((int) size);
+                values.put(source);
+                shared.position(shared.position() + (int) size);
+            }
+            
+            //Booleans are sent as bytes of 0 or 1, which is also how they are left in the buffer
+            values.clear();
+            
+            return values;
+        }
+    }
+    
+    private static byte typeCodeOf(Class<?> componentType)
+    {
+        byte code;
+        if(componentType.equals(boolean.class))
+        {
+            code = 'Z';
+        }
+        else if(componentType.equals(byte.class))
+        {
+            code = 'B';
+        }
+        else if(componentType.equals(short.class))
+        {
+            code = 'S';
+        }
+        else if(componentType.equals(char.class))
+        {
+            code = 'C';
+        }
+        else if(componentType.equals(int.class))
+        {
+            code = 'I';
+        }
+        else if(componentType.equals(long.class))
+        {
+            code = 'J';
+        }
+        else if(componentType.equals(float.class))
+        {
+            code = 'F';
+        }
+        else if(componentType.equals(double.class))
+        {
+            code = 'D';
+        }
+        else
+        {
+            throw new IllegalArgumentException("not a primitive array type: " + componentType);
+        }
+        
+        return code;
+    }
+    
+    private static Class<?> componentTypeOf(byte code) throws StreamCorruptedException
+    {
+        Class<?> componentType;
+        switch(code)
+        {
+            case 'Z': componentType = boolean.class; break;
+            case 'B': componentType = byte.class; break;
+            case 'S': componentType = short.class; break;
+            case 'C': componentType = char.class; break;
+            case 'I': componentType = int.class; break;
+            case 'J': componentType = long.class; break;
+            case 'F': componentType = float.class; break;
+            case 'D': componentType = double.class; break;
+            default: throw new StreamCorruptedException("invalid array type code: " + code);
+        }
+        
+        return componentType;
+    }
+    
+    /**
+     * The number of bytes taken by the values of {@code array} and its subarrays.
+     */
+    private static long sizeOf(Object array, int rank)
+    {
+        long size = 0;
+        if(array != null)
+        {
+            if(rank == 1)
+            {
+                size = (long) Array.getLength(array) * elementSizeOf(array);
+            }
+            else
+            {
+                for(Object subarray : (Object[]) array)
+                {
+                    size += sizeOf(subarray, rank - 1);
+                }
+            }
+        }
+        
+        return size;
+    }
+    
+    /**
+     * Puts the values of {@code array} into {@code shared} as little-endian bytes, advancing its position past them.
+     */
+    private static void putValues(ByteBuffer shared, Object array)
+    {
+        int length = Array.getLength(array);
+        if(array instanceof byte[])
+        {
+            shared.put((byte[]) array);
+        }
+        else if(array instanceof boolean[])
+        {
+            boolean[] values = (boolean[]) array;
+            for(int i = 0; i < length; i++)
+            {
+                shared.put((byte) (values[i] ? 1 : 0));
+            }
+        }
+        else
+        {
+            if(array instanceof double[])
+            {
+                shared.asDoubleBuffer().put((double[]) array);
+            }
+            else if(array instanceof float[])
+            {
+                shared.asFloatBuffer().put((float[]) array);
+            }
+            else if(array instanceof long[])
+            {
+                shared.asLongBuffer().put((long[]) array);
+            }
+            else if(array instanceof int[])
+            {
+                shared.asIntBuffer().put((int[]) array);
+            }
+            else if(array instanceof char[])
+            {
+                shared.asCharBuffer().put((char[]) array);
+            }
+            else
+            {
+                shared.asShortBuffer().put((short[]) array);
+            }
+            shared.position(shared.position() + length * elementSizeOf(array));
+        }
+    }
+    
+    /**
+     * Gets {@code length} little-endian values from {@code shared} into {@code array}, advancing its position past
+     * them.
+     */
+    private static void getValues(ByteBuffer shared, Object array, int length) throws IOException
+    {
+        if(shared.remaining() < (long) length * elementSizeOf(array))
+        {
+            throw new StreamCorruptedException("shared memory region is smaller than the array it holds");
+        }
+        
+        if(array instanceof byte[])
+        {
+            shared.get((byte[]) array);
+        }
+        else if(array instanceof boolean[])
+        {
+            boolean[] values = (boolean[]) array;
+            for(int i = 0; i < length; i++)
+            {
+                values[i] = shared.get() != 0;
+            }
+        }
+        else
+        {
+            if(array instanceof double[])
+            {
+                shared.asDoubleBuffer().get((double[]) array);
+            }
+            else if(array instanceof float[])
+            {
+                shared.asFloatBuffer().get((float[]) array);
+            }
+            else if(array instanceof long[])
+            {
+                shared.asLongBuffer().get((long[]) array);
+            }
+            else if(array instanceof int[])
+            {
+                shared.asIntBuffer().get((int[]) array);
+            }
+            else if(array instanceof char[])
+            {
+                shared.asCharBuffer().get((char[]) array);
+            }
+            else
+            {
+                shared.asShortBuffer().get((short[]) array);
+            }
+            shared.position(shared.position() + length * elementSizeOf(array));
+        }
+    }
+    
+    /**
+     * Writes the values of {@code array} as little-endian bytes, converting at most {@link #CHUNK_SIZE} bytes at a
+     * time through {@code buffer}.
+     */
+    private static void writeValues(DataOutput out, Object array, ByteBuffer buffer) throws IOException
+    {
+        int length = Array.getLength(array);
+        
+        if(array instanceof byte[])
+        {
+            out.write((byte[]) array);
+        }
+        else if(array instanceof boolean[])
+        {
+            boolean[] values = (boolean[]) array;
+            byte[] bytes = buffer.array();
+            for(int offset = 0; offset < length; offset += bytes.length)
+            {
+                int count = Math.min(bytes.length, length - offset);
+                for(int i = 0; i < count; i++)
+                {
+                    bytes[i] = (byte) (values[offset + i] ? 1 : 0);
+                }
+                out.write(bytes, 0, count);
+            }
+        }
+        else
+        {
+            int elementSize = elementSizeOf(array);
+            int perChunk = CHUNK_SIZE / elementSize;
+            for(int offset = 0; offset < length; offset += perChunk)
+            {
+                int count = Math.min(perChunk, length - offset);
+                buffer.clear();
+                if(array instanceof double[])
+                {
+                    buffer.asDoubleBuffer().put((double[]) array, offset, count);
+                }
+                else if(array instanceof float[])
+                {
+                    buffer.asFloatBuffer().put((float[]) array, offset, count);
+                }
+                else if(array instanceof long[])
+                {
+                    buffer.asLongBuffer().put((long[]) array, offset, count);
+                }
+                else if(array instanceof int[])
+                {
+                    buffer.asIntBuffer().put((int[]) array, offset, count);
+                }
+                else if(array instanceof char[])
+                {
+                    buffer.asCharBuffer().put((char[]) array, offset, count);
+                }
+                else
+                {
+                    buffer.asShortBuffer().put((short[]) array, offset, count);
+                }
+                out.write(buffer.array(), 0, count * elementSize);
+            }
+        }
+    }
+    
+    /**
+     * Reads {@code length} little-endian values into {@code array}, converting at most {@link #CHUNK_SIZE} bytes at a
+     * time through {@code buffer}.
+     */
+    private static void readValues(DataInput in, Object array, int length, ByteBuffer buffer) throws IOException
+    {
+        if(array instanceof byte[])
+        {
+            in.readFully((byte[]) array);
+        }
+        else if(array instanceof boolean[])
+        {
+            boolean[] values = (boolean[]) array;
+            byte[] bytes = buffer.array();
+            for(int offset = 0; offset < length; offset += bytes.length)
+            {
+                int count = Math.min(bytes.length, length - offset);
+                in.readFully(bytes, 0, count);
+                for(int i = 0; i < count; i++)
+                {
+                    values[offset + i] = bytes[i] != 0;
+                }
+            }
+        }
+        else
+        {
+            int elementSize = elementSizeOf(array);
+            int perChunk = CHUNK_SIZE / elementSize;
+            for(int offset = 0; offset < length; offset += perChunk)
+            {
+                int count = Math.min(perChunk, length - offset);
+                in.readFully(buffer.array(), 0, count * elementSize);
+                buffer.clear();
+                if(array instanceof double[])
+                {
+                    buffer.asDoubleBuffer().get((double[]) array, offset, count);
+                }
+                else if(array instanceof float[])
+                {
+                    buffer.asFloatBuffer().get((float[]) array, offset, count);
+                }
+                else if(array instanceof long[])
+                {
+                    buffer.asLongBuffer().get((long[]) array, offset, count);
+                }
+                else if(array instanceof int[])
+                {
+                    buffer.asIntBuffer().get((int[]) array, offset, count);
+                }
+                else if(array instanceof char[])
+                {
+                    buffer.asCharBuffer().get((char[]) array, offset, count);
+                }
+                else
+                {
+                    buffer.asShortBuffer().get((short[]) array, offset, count);
+                }
+            }
+        }
+    }
+    
+    private static int elementSizeOf(Object array)
+    {
+        int size;
+        if(array instanceof double[] || array instanceof long[])
+        {
+            size = 8;
+        }
+        else if(array instanceof float[] || array instanceof int[])
+        {
+            size = 4;
+        }
+        else if(array instanceof byte[] || array instanceof boolean[])
+        {
+            size = 1;
+        }
+        else
+        {
+            size = 2;
+        }
+        
+        return size;
+    }
+}
\ No newline at end of file
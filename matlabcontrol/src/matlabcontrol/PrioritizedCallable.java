@@ -0,0 +1,113 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.Serializable;
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+
+/**
+ * Carries the {@link MatlabThreadPriority} a {@link MatlabThreadCallable} is to be queued with to MATLAB's Java Virtual
+ * Machine.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class PrioritizedCallable<T> implements MatlabThreadCallable<T>, Serializable
+{
+    private static final long serialVersionUID = 0xB103L;
+    
+    private final MatlabThreadCallable<T> _callable;
+    private final MatlabThreadPriority _priority;
+    
+    PrioritizedCallable(MatlabThreadCallable<T> callable, MatlabThreadPriority priority)
+    {
+        _callable = callable;
+        _priority = priority;
+    }
+    
+    /**
+     * Gives {@code callable} the {@code priority} of the proxy running it, unless it has been given its own priority.
+     * {@link MatlabThreadPriority#NORMAL} is the default priority and so callables are not wrapped to give them it.
+     * 
+     * @param <T>
+     * @param callable
+     * @param priority
+     * @return 
+     */
+    static <T> MatlabThreadCallable<T> withDefault(MatlabThreadCallable<T> callable, MatlabThreadPriority priority)
+    {
+        MatlabThreadCallable<T> prioritized;
+        if(priority == MatlabThreadPriority.NORMAL || callable instanceof PrioritizedCallable)
+        {
+            prioritized = callable;
+        }
+        else
+        {
+            prioritized = new PrioritizedCallable<T>(callable, priority);
+        }
+        
+        return prioritized;
+    }
+    
+    /**
+     * The priority {@code callable} is to be queued with.
+     * 
+     * @param callable
+     * @return 
+     */
+    static MatlabThreadPriority priorityOf(MatlabThreadCallable<?> callable)
+    {
+        //A callable being timed is timed including its wait in the queue, and so is wrapped around the priority
+        if(callable instanceof TimedCallable)
+        {
+            callable = ((TimedCallable<?>) callable).getCallable();
+        }
+        
+        MatlabThreadPriority priority;
+        if(callable instanceof PrioritizedCallable)
+        {
+            priority = ((PrioritizedCallable<?>) callable)._priority;
+        }
+        else
+        {
+            priority = MatlabThreadPriority.NORMAL;
+        }
+        
+        return priority;
+    }
+    
+    MatlabThreadCallable<T> getCallable()
+    {
+        return _callable;
+    }
+
+    @Override
+    public T call(MatlabThreadProxy proxy) throws MatlabInvocationException
+    {
+        return _callable.call(proxy);
+    }
+}
\ No newline at end of file
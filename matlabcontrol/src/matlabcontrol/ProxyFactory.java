@@ -59,4 +59,10 @@ interface ProxyFactory
      * @return request
      */
     public Request requestProxy(RequestCallback callback) throws MatlabConnectionException;
+    
+    /**
+     * Releases resources held by this factory, such as sessions of MATLAB launched ahead of being requested. Proxies
+     * already provided are unaffected.
+     */
+    public void shutdown();
 }
\ No newline at end of file
@@ -27,8 +27,21 @@ import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.UnmarshalException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Allows for calling MATLAB from <strong>outside</strong> of MATLAB.
@@ -52,9 +65,21 @@ class RemoteMatlabProxy extends MatlabProxy
     private final RequestReceiver _receiver;
     
     /**
-     * A timer that periodically checks if still connected.
+     * The periodic check of whether still connected, {@code null} until {@link #init()}.
      */
-    private final Timer _connectionTimer;
+    private volatile ScheduledFuture<?> _heartbeat;
+    
+    /**
+     * The duration (in milliseconds) between checks to determine if still connected.
+     */
+    private final long _heartbeatPeriod;
+    
+    /**
+     * When, according to {@link System#nanoTime()}, MATLAB's JVM last responded to this proxy. A check to determine if
+     * still connected is only made when this is at least {@link #_heartbeatPeriod} ago, so a proxy in use makes no
+     * calls beyond its own.
+     */
+    private volatile long _lastContact = System.nanoTime();
     
     /**
      * Whether the proxy is connected. If the value is {@code false} the proxy is definitely disconnected. If the value
@@ -64,9 +89,57 @@ class RemoteMatlabProxy extends MatlabProxy
     private volatile boolean _isConnected = true;
     
     /**
-     * The duration (in milliseconds) between checks to determine if still connected.
+     * The timeout in milliseconds of methods which wait for MATLAB, {@code 0} if they wait indefinitely.
+     */
+    private final long _invocationTimeout;
+    
+    /**
+     * The priority of this proxy's calls on MATLAB's main thread.
+     */
+    private final MatlabThreadPriority _priority;
+    
+    /**
+     * The maximum number of invocations sent to MATLAB's JVM in a single remote call by the pipeline.
      */
-    private static final int CONNECTION_CHECK_PERIOD = 1000;
+    private static final int PIPELINE_BATCH_SIZE = 256;
+    
+    /**
+     * Sends invocations to MATLAB's JVM when using a pipelined channel, {@code null} otherwise.
+     */
+    private final RequestPipeline _pipeline;
+    
+    /**
+     * Receives the results of asynchronous invocations from MATLAB's JVM.
+     */
+    private final AsyncCompletionReceiver _completionReceiver = new AsyncCompletionReceiver();
+    
+    /**
+     * The exported stub of {@link #_completionReceiver}, {@code null} until the first asynchronous invocation. Guarded
+     * by {@code _completionReceiver}.
+     */
+    private CompletionReceiver _completionReceiverStub = null;
+    
+    /**
+     * Whether {@link #_completionReceiver} is exported over Unix domain sockets where supported.
+     */
+    private final boolean _useUnixDomainSockets;
+    
+    /**
+     * Asynchronous invocations which have been sent to MATLAB and not yet completed, keyed by invocation identifier.
+     */
+    private final ConcurrentMap<Long, MatlabFutureImpl<?>> _pendingFutures =
+            new ConcurrentHashMap<Long, MatlabFutureImpl<?>>();
+    
+    /**
+     * Generates identifiers for asynchronous invocations.
+     */
+    private final AtomicLong _invocationCounter = new AtomicLong();
+    
+    /**
+     * The MATLAB process launched for this proxy, {@code null} if the proxy connected to a session of MATLAB which was
+     * already running.
+     */
+    private final Process _process;
     
     /**
      * The proxy is never to be created outside of this package, it is to be constructed after a
@@ -76,14 +149,22 @@ class RemoteMatlabProxy extends MatlabProxy
      * @param receiver
      * @param id
      * @param existingSession
+     * @param process the launched MATLAB process, {@code null} if MATLAB was not launched
+     * @param options
      */
-    RemoteMatlabProxy(JMIWrapperRemote internalProxy, RequestReceiver receiver, Identifier id, boolean existingSession)
+    RemoteMatlabProxy(JMIWrapperRemote internalProxy, RequestReceiver receiver, Identifier id, boolean existingSession,
+            Process process, MatlabProxyFactoryOptions options)
     {
-        super(id, existingSession);
+        super(id, existingSession, options.getLatencyInstrumentation());
         
-        _connectionTimer = new Timer("MLC Connection Listener " + id);
         _jmiWrapper = internalProxy;
         _receiver = receiver;
+        _invocationTimeout = options.getInvocationTimeout();
+        _priority = options.getMatlabThreadPriority();
+        _pipeline = options.getUsePipelinedChannel() ? new RequestPipeline(id) : null;
+        _useUnixDomainSockets = options.getUseUnixDomainSockets();
+        _heartbeatPeriod = options.getHeartbeatPeriod();
+        _process = process;
     }
     
     /**
@@ -92,14 +173,20 @@ class RemoteMatlabProxy extends MatlabProxy
      */
     void init()
     {
-        _connectionTimer.schedule(new CheckConnectionTask(), CONNECTION_CHECK_PERIOD, CONNECTION_CHECK_PERIOD);
+        _heartbeat = HeartbeatScheduler.schedule(new CheckConnectionTask(), _heartbeatPeriod);
     }
     
-    private class CheckConnectionTask extends TimerTask
+    private class CheckConnectionTask implements Runnable
     {
         @Override
         public void run()
         {
+            //Recent calls have shown MATLAB's JVM to be reachable, there is no need to check
+            if(System.nanoTime() - _lastContact < TimeUnit.MILLISECONDS.toNanos(_heartbeatPeriod))
+            {
+                return;
+            }
+            
             if(!RemoteMatlabProxy.this.isConnected())
             {
                 //If not connected, perform disconnection so RMI thread can terminate
@@ -107,12 +194,32 @@ class RemoteMatlabProxy extends MatlabProxy
 
                 //Notify listeners
                 notifyDisconnectionListeners();
-
-                //Cancel timer, which will terminate the timer's thread
-                _connectionTimer.cancel();
             }
         }
     }
+    
+    @Override
+    Integer getExitValue()
+    {
+        return RemoteMatlabProxyFactory.getExitValue(_process);
+    }
+    
+    @Override
+    void destroyProcess()
+    {
+        if(_process != null)
+        {
+            _process.destroy();
+        }
+    }
+    
+    /**
+     * Records that MATLAB's JVM has just responded to this proxy.
+     */
+    private void contacted()
+    {
+        _lastContact = System.nanoTime();
+    }
         
     @Override
     public boolean isRunningInsideMatlab()
@@ -132,6 +239,7 @@ class RemoteMatlabProxy extends MatlabProxy
             {
                 _jmiWrapper.checkConnection();    
                 connected = true;
+                this.contacted();
             }
             catch(RemoteException e)
             {
@@ -147,7 +255,11 @@ class RemoteMatlabProxy extends MatlabProxy
     @Override
     public boolean disconnect()
     {
-        _connectionTimer.cancel();
+        ScheduledFuture<?> heartbeat = _heartbeat;
+        if(heartbeat != null)
+        {
+            heartbeat.cancel(false);
+        }
         
         //Unexport the receiver so that the RMI threads can shut down
         try
@@ -159,6 +271,38 @@ class RemoteMatlabProxy extends MatlabProxy
         //If it is not exported, that's ok because we were trying to unexport it
         catch(NoSuchObjectException e) { }
         
+        if(this.getLatencyRecorder() != null)
+        {
+            this.getLatencyRecorder().unregister();
+        }
+        
+        //Stop sending and receiving asynchronous invocations, anything still outstanding will never complete
+        if(_pipeline != null)
+        {
+            _pipeline.shutdown();
+        }
+        synchronized(_completionReceiver)
+        {
+            if(_completionReceiverStub != null)
+            {
+                try
+                {
+                    UnicastRemoteObject.unexportObject(_completionReceiver, true);
+                }
+                catch(NoSuchObjectException e) { }
+                
+                _completionReceiverStub = null;
+            }
+        }
+        for(Long invocationID : _pendingFutures.keySet())
+        {
+            MatlabFutureImpl<?> future = _pendingFutures.remove(invocationID);
+            if(future != null)
+            {
+                future.fail(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException());
+            }
+        }
+        
         return this.isConnected();
     }
     
@@ -179,54 +323,151 @@ class RemoteMatlabProxy extends MatlabProxy
         {
             try
             {
-                return invocation.invoke();
+                T result = invocation.invoke();
+                this.contacted();
+                
+                return result;
             }
-            catch(UnmarshalException e)
+            catch(RemoteException e)
             {
-                throw MatlabInvocationException.Reason.UNMARSHAL.asException(e);
+                throw this.convertRemoteException(e);
             }
-            catch(MarshalException e)
+            //Thrown by MATLAB's JVM, so it did respond
+            catch(MatlabInvocationException e)
             {
-                throw MatlabInvocationException.Reason.MARSHAL.asException(e);
+                this.contacted();
+                
+                throw e;
             }
-            catch(RemoteException e)
+        }
+    }
+    
+    /**
+     * Converts the exception thrown by a remote method into the {@code MatlabInvocationException} describing why the
+     * method failed.
+     * 
+     * @param e
+     * @return 
+     */
+    private MatlabInvocationException convertRemoteException(RemoteException e)
+    {
+        MatlabInvocationException converted;
+        if(e instanceof UnmarshalException)
+        {
+            converted = MatlabInvocationException.Reason.UNMARSHAL.asException(e);
+        }
+        else if(e instanceof MarshalException)
+        {
+            converted = MatlabInvocationException.Reason.MARSHAL.asException(e);
+        }
+        else if(this.isConnected())
+        {
+            converted = MatlabInvocationException.Reason.UNKNOWN.asException(e);
+        }
+        else
+        {
+            converted = MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException(e);
+        }
+        
+        return converted;
+    }
+    
+    @Override
+    public void setVariable(final String variableName, final Object value) throws MatlabInvocationException
+    {
+        if(this.sendsCallables())
+        {
+            this.invokeAndWait(new MatlabCallables.SetVariable(variableName, value));
+        }
+        else
+        {
+            this.invoke(new RemoteInvocation<Void>()
             {
-                if(this.isConnected())
+                @Override
+                public Void invoke() throws RemoteException, MatlabInvocationException
                 {
-                    throw MatlabInvocationException.Reason.UNKNOWN.asException(e);
+                    _jmiWrapper.setVariable(variableName, PrimitiveArrayCodec.encode(value));
+                    
+                    return null;
                 }
-                else
+            });
+        }
+    }
+    
+    @Override
+    public Object getVariable(final String variableName) throws MatlabInvocationException
+    {
+        if(this.sendsCallables())
+        {
+            return this.invokeAndWait(new MatlabCallables.GetVariable(variableName));
+        }
+        else
+        {
+            return this.invoke(new RemoteInvocation<Object>()
+            {
+                @Override
+                public Object invoke() throws RemoteException, MatlabInvocationException
                 {
-                    throw MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException(e);
+                    return _jmiWrapper.getVariable(variableName);
                 }
-            }
+            });
         }
     }
     
     @Override
-    public void setVariable(final String variableName, final Object value) throws MatlabInvocationException
+    public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
     {
-        this.invoke(new RemoteInvocation<Void>()
+        //Copy so that what is sent is serializable, regardless of the type of map provided
+        final Map<String, Object> copy = new LinkedHashMap<String, Object>(variables);
+        
+        if(this.sendsCallables())
         {
-            @Override
-            public Void invoke() throws RemoteException, MatlabInvocationException
+            this.invokeAndWait(new MatlabCallables.SetVariables(copy));
+        }
+        else
+        {
+            this.invoke(new RemoteInvocation<Void>()
             {
-                _jmiWrapper.setVariable(variableName, value);
-                
-                return null;
-            }
-        });
+                @Override
+                public Void invoke() throws RemoteException, MatlabInvocationException
+                {
+                    _jmiWrapper.setVariables(PrimitiveArrayCodec.encodeValues(copy));
+                    
+                    return null;
+                }
+            });
+        }
     }
     
     @Override
-    public Object getVariable(final String variableName) throws MatlabInvocationException
+    public Map<String, Object> getVariables(final String... variableNames) throws MatlabInvocationException
     {
-        return this.invoke(new RemoteInvocation<Object>()
+        if(this.sendsCallables())
+        {
+            return this.invokeAndWait(new MatlabCallables.GetVariables(variableNames));
+        }
+        else
+        {
+            return this.invoke(new RemoteInvocation<Map<String, Object>>()
+            {
+                @Override
+                public Map<String, Object> invoke() throws RemoteException, MatlabInvocationException
+                {
+                    return _jmiWrapper.getVariables(variableNames);
+                }
+            });
+        }
+    }
+    
+    @Override
+    public int getMatlabThreadQueueDepth(final MatlabThreadPriority priority) throws MatlabInvocationException
+    {
+        return this.invoke(new RemoteInvocation<Integer>()
         {
             @Override
-            public Object invoke() throws RemoteException, MatlabInvocationException
+            public Integer invoke() throws RemoteException, MatlabInvocationException
             {
-                return _jmiWrapper.getVariable(variableName);
+                return _jmiWrapper.getMatlabThreadQueueDepth(priority);
             }
         });
     }
@@ -249,70 +490,571 @@ class RemoteMatlabProxy extends MatlabProxy
     @Override
     public void eval(final String command) throws MatlabInvocationException
     {
-        this.invoke(new RemoteInvocation<Void>()
+        if(this.sendsCallables())
         {
-            @Override
-            public Void invoke() throws RemoteException, MatlabInvocationException
+            this.invokeAndWait(new MatlabCallables.Eval(command));
+        }
+        else
+        {
+            this.invoke(new RemoteInvocation<Void>()
             {
-                _jmiWrapper.eval(command);
-                
-                return null;
-            }
-        });
+                @Override
+                public Void invoke() throws RemoteException, MatlabInvocationException
+                {
+                    _jmiWrapper.eval(command);
+                    
+                    return null;
+                }
+            });
+        }
     }
 
     @Override
     public Object[] returningEval(final String command, final int nargout) throws MatlabInvocationException
     {
-        return this.invoke(new RemoteInvocation<Object[]>()
+        if(this.sendsCallables())
         {
-            @Override
-            public Object[] invoke() throws RemoteException, MatlabInvocationException
+            return this.invokeAndWait(new MatlabCallables.ReturningEval(command, nargout));
+        }
+        else
+        {
+            return this.invoke(new RemoteInvocation<Object[]>()
             {
-                return _jmiWrapper.returningEval(command, nargout);
-            }
-        });
+                @Override
+                public Object[] invoke() throws RemoteException, MatlabInvocationException
+                {
+                    return _jmiWrapper.returningEval(command, nargout);
+                }
+            });
+        }
     }
 
     @Override
     public void feval(final String functionName, final Object... args) throws MatlabInvocationException
     {
-        this.invoke(new RemoteInvocation<Void>()
+        if(this.sendsCallables())
         {
-            @Override
-            public Void invoke() throws RemoteException, MatlabInvocationException
+            this.invokeAndWait(new MatlabCallables.Feval(functionName, args));
+        }
+        else
+        {
+            this.invoke(new RemoteInvocation<Void>()
             {
-                _jmiWrapper.feval(functionName, args);
-                
-                return null;
-            }
-        });
+                @Override
+                public Void invoke() throws RemoteException, MatlabInvocationException
+                {
+                    _jmiWrapper.feval(functionName, PrimitiveArrayCodec.encodeElements(args));
+                    
+                    return null;
+                }
+            });
+        }
     }
     
     @Override
     public Object[] returningFeval(final String functionName, final int nargout, final Object... args)
             throws MatlabInvocationException
     {
-        return this.invoke(new RemoteInvocation<Object[]>()
+        if(this.sendsCallables())
         {
-            @Override
-            public Object[] invoke() throws RemoteException, MatlabInvocationException
+            return this.invokeAndWait(new MatlabCallables.ReturningFeval(functionName, nargout, args));
+        }
+        else
+        {
+            return this.invoke(new RemoteInvocation<Object[]>()
+            {
+                @Override
+                public Object[] invoke() throws RemoteException, MatlabInvocationException
+                {
+                    return _jmiWrapper.returningFeval(functionName, nargout,
+                            PrimitiveArrayCodec.encodeElements(args));
+                }
+            });
+        }
+    }
+    
+    /**
+     * Whether the methods which interact with MATLAB must send their equivalent {@link MatlabThreadCallable} instead
+     * of calling the corresponding method of the JMI wrapper. A timeout must be enforced inside MATLAB's JVM, the
+     * pipeline only carries callables, and both latencies and priorities are conveyed by wrapping the callable.
+     * 
+     * @return 
+     */
+    private boolean sendsCallables()
+    {
+        return _invocationTimeout != 0L || _pipeline != null || this.getLatencyRecorder() != null ||
+                _priority != MatlabThreadPriority.NORMAL;
+    }
+    
+    @Override
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    {
+        return this.invokeAndWait(callable, _invocationTimeout, TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        if(timeout < 0L)
+        {
+            throw new IllegalArgumentException("timeout [" + timeout + "] may not be negative");
+        }
+        
+        MatlabThreadCallable<T> prioritized = PrioritizedCallable.withDefault(callable, _priority);
+        
+        LatencyRecorder recorder = this.getLatencyRecorder();
+        if(recorder == null)
+        {
+            return this.sendAndWait(prioritized, timeout, unit);
+        }
+        else
+        {
+            TimedCallable<T> timed = new TimedCallable<T>(prioritized);
+            long start = System.nanoTime();
+            TimedCallable.Result<T> result = null;
+            MatlabInvocationException failure = null;
+            try
             {
-                return _jmiWrapper.returningFeval(functionName, nargout, args);
+                result = this.sendAndWait(timed, timeout, unit);
+                
+                return result.getValue();
             }
-        });
+            catch(MatlabInvocationException e)
+            {
+                failure = e;
+                
+                throw e;
+            }
+            finally
+            {
+                //Failures are recorded too, so that calls slow enough to time out are not missing from the total
+                recorder.record(callable, timed, start, result, failure);
+            }
+        }
+    }
+    
+    /**
+     * Sends {@code callable} to MATLAB's JVM and waits for it to complete.
+     * 
+     * @param <T>
+     * @param callable
+     * @param timeout non-negative, {@code 0} to wait indefinitely
+     * @param unit
+     * @return
+     * @throws MatlabInvocationException 
+     */
+    private <T> T sendAndWait(final MatlabThreadCallable<T> callable, final long timeout, final TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        //Without a timeout the callable can be pipelined, the calling thread then waits only for its result
+        if(timeout == 0L && _pipeline != null)
+        {
+            return this.sendAsync(callable).getResult();
+        }
+        
+        try
+        {
+            return this.invoke(new RemoteInvocation<T>()
+            {
+                @Override
+                public T invoke() throws RemoteException, MatlabInvocationException
+                {
+                    T result;
+                    if(timeout == 0L)
+                    {
+                        result = _jmiWrapper.invokeAndWait(callable);
+                    }
+                    else
+                    {
+                        result = _jmiWrapper.invokeAndWait(callable, timeout, unit);
+                    }
+                    
+                    return result;
+                }
+            });
+        }
+        catch(MatlabInvocationException e)
+        {
+            this.recordInvocationFailure(e);
+            
+            throw e;
+        }
     }
     
+    // Asynchronous methods which interact with MATLAB
+    
     @Override
-    public <T> T invokeAndWait(final MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    public MatlabFuture<Void> evalAsync(String command)
     {
-        return this.invoke(new RemoteInvocation<T>()
+        return this.invokeAsync(new MatlabCallables.Eval(command));
+    }
+    
+    @Override
+    public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+    {
+        return this.invokeAsync(new MatlabCallables.ReturningEval(command, nargout));
+    }
+    
+    @Override
+    public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+    {
+        return this.invokeAsync(new MatlabCallables.Feval(functionName, args));
+    }
+    
+    @Override
+    public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+    {
+        return this.invokeAsync(new MatlabCallables.ReturningFeval(functionName, nargout, args));
+    }
+    
+    @Override
+    public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+    {
+        return this.invokeAsync(new MatlabCallables.SetVariable(variableName, value));
+    }
+    
+    @Override
+    public MatlabFuture<Object> getVariableAsync(String variableName)
+    {
+        return this.invokeAsync(new MatlabCallables.GetVariable(variableName));
+    }
+    
+    @Override
+    public <T> MatlabFuture<T> invokeAsync(MatlabThreadCallable<T> callable)
+    {
+        return this.sendAsync(PrioritizedCallable.withDefault(callable, _priority));
+    }
+    
+    /**
+     * Sends {@code callable} to MATLAB's JVM without waiting for it to complete.
+     * 
+     * @param <T>
+     * @param callable
+     * @return 
+     */
+    private <T> MatlabFutureImpl<T> sendAsync(MatlabThreadCallable<T> callable)
+    {
+        Long invocationID = _invocationCounter.getAndIncrement();
+        MatlabFutureImpl<T> future = new RemoteFuture<T>(invocationID);
+        
+        if(!_isConnected)
         {
-            @Override
-            public T invoke() throws RemoteException, MatlabInvocationException
+            future.fail(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException());
+        }
+        else
+        {
+            //Register the future before sending so that the completion can never arrive before it is registered
+            _pendingFutures.put(invocationID, future);
+            
+            if(_pipeline != null)
             {
-                return _jmiWrapper.invokeAndWait(callable);
+                _pipeline.submit(invocationID, callable);
             }
-        });
+            else
+            {
+                this.send(invocationID, callable);
+            }
+        }
+        
+        return future;
+    }
+    
+    /**
+     * Sends a single asynchronous invocation to MATLAB's JVM. If it cannot be sent its future is failed.
+     * 
+     * @param invocationID
+     * @param callable 
+     */
+    private void send(Long invocationID, MatlabThreadCallable<?> callable)
+    {
+        try
+        {
+            _jmiWrapper.invokeAsync(invocationID, callable, this.getCompletionReceiverStub());
+            this.contacted();
+        }
+        catch(RemoteException e)
+        {
+            this.failPending(invocationID, this.convertRemoteException(e));
+        }
+    }
+    
+    /**
+     * The future of an asynchronous invocation sent to MATLAB's JVM. Whether the invocation has started running is
+     * only known in MATLAB's JVM, so cancelling it asks MATLAB's JVM to cancel it unless it is still waiting in the
+     * pipeline to be sent.
+     */
+    private class RemoteFuture<T> extends MatlabFutureImpl<T>
+    {
+        private final Long _invocationID;
+        
+        RemoteFuture(Long invocationID)
+        {
+            _invocationID = invocationID;
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = false;
+            if(!this.isDone())
+            {
+                if(_pipeline != null && _pipeline.withdraw(_invocationID))
+                {
+                    cancelled = true;
+                }
+                else
+                {
+                    try
+                    {
+                        cancelled = _jmiWrapper.cancelAsync(_invocationID);
+                        contacted();
+                    }
+                    //Whether it was cancelled is unknown, if MATLAB is unreachable the future will fail on disconnect
+                    catch(RemoteException e) { }
+                }
+            }
+            
+            if(cancelled)
+            {
+                _pendingFutures.remove(_invocationID);
+                super.cancel(mayInterruptIfRunning);
+            }
+            
+            return cancelled;
+        }
+    }
+    
+    private void failPending(Long invocationID, MatlabInvocationException exception)
+    {
+        MatlabFutureImpl<?> future = _pendingFutures.remove(invocationID);
+        if(future != null)
+        {
+            future.fail(exception);
+        }
+    }
+    
+    /**
+     * An invocation waiting in the pipeline to be sent.
+     */
+    private static class PipelinedRequest
+    {
+        final Long invocationID;
+        final MatlabThreadCallable<?> callable;
+        
+        PipelinedRequest(Long invocationID, MatlabThreadCallable<?> callable)
+        {
+            this.invocationID = invocationID;
+            this.callable = callable;
+        }
+    }
+    
+    /**
+     * Sends invocations to MATLAB's JVM from a single writer thread. Everything queued when the writer runs is sent
+     * back-to-back as one remote call, so concurrent callers share a round trip instead of each making their own.
+     * Results are returned through the {@link CompletionReceiver} in whatever order MATLAB completes them and are
+     * matched to their futures by invocation identifier.
+     */
+    private class RequestPipeline implements Runnable
+    {
+        private final ConcurrentLinkedQueue<PipelinedRequest> _queue = new ConcurrentLinkedQueue<PipelinedRequest>();
+        
+        /**
+         * Whether the writer has been scheduled and has not yet finished.
+         */
+        private final AtomicBoolean _writeScheduled = new AtomicBoolean(false);
+        
+        private final ExecutorService _writer;
+        
+        RequestPipeline(final Identifier id)
+        {
+            _writer = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "MLC Request Pipeline " + id);
+                    thread.setDaemon(true);
+                    
+                    return thread;
+                }
+            });
+        }
+        
+        void submit(Long invocationID, MatlabThreadCallable<?> callable)
+        {
+            _queue.add(new PipelinedRequest(invocationID, callable));
+            
+            if(_writeScheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    _writer.execute(this);
+                }
+                //The pipeline has been shut down by disconnecting, so nothing queued will ever be sent
+                catch(RejectedExecutionException e)
+                {
+                    PipelinedRequest request;
+                    while((request = _queue.poll()) != null)
+                    {
+                        failPending(request.invocationID,
+                                MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException());
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Removes the invocation from the pipeline if it has not yet been sent.
+         * 
+         * @param invocationID
+         * @return if removed
+         */
+        boolean withdraw(Long invocationID)
+        {
+            boolean withdrawn = false;
+            for(PipelinedRequest request : _queue)
+            {
+                if(request.invocationID.equals(invocationID))
+                {
+                    withdrawn = _queue.remove(request);
+                    break;
+                }
+            }
+            
+            return withdrawn;
+        }
+        
+        void shutdown()
+        {
+            _writer.shutdown();
+        }
+        
+        @Override
+        public void run()
+        {
+            do
+            {
+                List<PipelinedRequest> batch = new ArrayList<PipelinedRequest>();
+                PipelinedRequest request;
+                while((request = _queue.poll()) != null)
+                {
+                    batch.add(request);
+                    
+                    if(batch.size() == PIPELINE_BATCH_SIZE)
+                    {
+                        this.send(batch);
+                        batch.clear();
+                    }
+                }
+                
+                if(!batch.isEmpty())
+                {
+                    this.send(batch);
+                }
+                
+                _writeScheduled.set(false);
+            }
+            //Requests queued after the queue was last polled but before the flag was cleared must still be sent
+            while(!_queue.isEmpty() && _writeScheduled.compareAndSet(false, true));
+        }
+        
+        private void send(List<PipelinedRequest> batch)
+        {
+            long[] invocationIDs = new long[batch.size()];
+            MatlabThreadCallable<?>[] callables = new MatlabThreadCallable<?>[batch.size()];
+            for(int i = 0; i < batch.size(); i++)
+            {
+                invocationIDs[i] = batch.get(i).invocationID;
+                callables[i] = batch.get(i).callable;
+            }
+            
+            try
+            {
+                _jmiWrapper.invokeAsync(invocationIDs, callables, getCompletionReceiverStub());
+                contacted();
+            }
+            //A callable in the batch could not be transferred, and so none were run; send them individually so that
+            //only the ones which cannot be transferred fail
+            catch(MarshalException e)
+            {
+                this.sendIndividually(batch);
+            }
+            catch(UnmarshalException e)
+            {
+                this.sendIndividually(batch);
+            }
+            catch(RemoteException e)
+            {
+                MatlabInvocationException exception = convertRemoteException(e);
+                for(PipelinedRequest failed : batch)
+                {
+                    failPending(failed.invocationID, exception);
+                }
+            }
+        }
+        
+        private void sendIndividually(List<PipelinedRequest> batch)
+        {
+            for(PipelinedRequest request : batch)
+            {
+                RemoteMatlabProxy.this.send(request.invocationID, request.callable);
+            }
+        }
+    }
+    
+    private CompletionReceiver getCompletionReceiverStub() throws RemoteException
+    {
+        synchronized(_completionReceiver)
+        {
+            if(_completionReceiverStub == null)
+            {
+                //Do not export again once disconnect() has unexported it, for instance if the pipeline is still sending
+                if(!_isConnected)
+                {
+                    throw new NoSuchObjectException("proxy has been disconnected");
+                }
+                
+                _completionReceiverStub = (CompletionReceiver) LocalHostRMIHelper.exportObject(_completionReceiver,
+                        _useUnixDomainSockets);
+            }
+            
+            return _completionReceiverStub;
+        }
+    }
+    
+    /**
+     * Completes the futures of asynchronous invocations as MATLAB finishes them.
+     */
+    private class AsyncCompletionReceiver implements CompletionReceiver
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        public void complete(long invocationID, Object result, MatlabInvocationException exception)
+        {
+            contacted();
+            
+            MatlabFutureImpl<Object> future = (MatlabFutureImpl<Object>) _pendingFutures.remove(invocationID);
+            if(future != null)
+            {
+                if(exception != null)
+                {
+                    future.fail(exception);
+                }
+                else
+                {
+                    future.complete(result);
+                }
+            }
+        }
+        
+        @Override
+        public void completeAll(long[] invocationIDs, Object[] results, MatlabInvocationException[] exceptions)
+        {
+            for(int i = 0; i < invocationIDs.length; i++)
+            {
+                this.complete(invocationIDs[i], results[i], exceptions[i]);
+            }
+        }
     }
 }
\ No newline at end of file
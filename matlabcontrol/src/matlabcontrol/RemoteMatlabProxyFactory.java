@@ -35,9 +35,10 @@ import java.rmi.server.UnicastRemoteObject;
 import java.util.UUID;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import matlabcontrol.MatlabProxy.Identifier;
 import matlabcontrol.MatlabProxyFactory.Request;
@@ -74,19 +75,81 @@ class RemoteMatlabProxyFactory implements ProxyFactory
      */
     private volatile Registry _registry = null;
     
+    /**
+     * Sessions launched ahead of being requested, {@code null} if none are to be kept.
+     */
+    private final StandbySessions _standby;
+    
     public RemoteMatlabProxyFactory(MatlabProxyFactoryOptions options)
     {
         _options = options;
+        
+        if(options.getStandbySessions() > 0)
+        {
+            StandbySessions.Launcher launcher = new StandbySessions.Launcher()
+            {
+                @Override
+                public Request launch(RequestCallback callback) throws MatlabConnectionException
+                {
+                    return RemoteMatlabProxyFactory.this.launch(callback, false);
+                }
+            };
+            _standby = new StandbySessions(launcher, options.getStandbySessions(), options.getProxyTimeout());
+            _standby.start();
+        }
+        else
+        {
+            _standby = null;
+        }
     }
     
     @Override
     public Request requestProxy(RequestCallback requestCallback) throws MatlabConnectionException
+    {
+        Request request;
+        
+        MatlabProxy standbyProxy = (_standby == null) ? null : _standby.take();
+        if(standbyProxy != null)
+        {
+            request = new StandbyRequest(standbyProxy.getIdentifier());
+            requestCallback.proxyCreated(standbyProxy);
+        }
+        else
+        {
+            request = this.launch(requestCallback, _options.getUsePreviouslyControlledSession());
+        }
+        
+        return request;
+    }
+    
+    @Override
+    public void shutdown()
+    {
+        if(_standby != null)
+        {
+            _standby.shutdown();
+        }
+    }
+    
+    /**
+     * Connects to a previously controlled session of MATLAB if permitted and one is available, otherwise launches a
+     * new session of MATLAB.
+     * 
+     * @param requestCallback
+     * @param usePreviouslyControlled
+     * @return
+     * @throws MatlabConnectionException 
+     */
+    Request launch(RequestCallback requestCallback, boolean usePreviouslyControlled) throws MatlabConnectionException
     {
         //Unique identifier for the proxy
         RemoteIdentifier proxyID = new RemoteIdentifier();
         
         Request request;
         
+        //Apply the socket options and limits before any connection to MATLAB is made
+        LocalHostConnectionPool.getInstance().setSettings(_options.getConnectionSettings());
+        
         //Initialize the registry (does nothing if already initialized)
         initRegistry(false);
         
@@ -96,7 +159,8 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         _receivers.add(receiver);
         try
         {
-            _registry.bind(receiver.getReceiverID(), LocalHostRMIHelper.exportObject(receiver));
+            _registry.bind(receiver.getReceiverID(), LocalHostRMIHelper.exportObject(receiver,
+                    _options.getUseUnixDomainSockets()));
         }
         catch(RemoteException ex)
         {
@@ -114,8 +178,9 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         try
         {
             //If allowed to connect to a previously controlled session and a connection could be made
-            if(_options.getUsePreviouslyControlledSession() &&
-               MatlabSessionImpl.connectToRunningSession(receiver.getReceiverID(), _options.getPort()))
+            if(usePreviouslyControlled &&
+               MatlabSessionImpl.connectToRunningSession(receiver.getReceiverID(), _options.getPort(),
+                       _options.getUseUnixDomainSockets()))
             {
                 request = new RemoteRequest(proxyID, null, receiver, maintainer);
             }
@@ -139,34 +204,61 @@ class RemoteMatlabProxyFactory implements ProxyFactory
     @Override
     public MatlabProxy getProxy() throws MatlabConnectionException
     {
+        MatlabProxy standbyProxy = (_standby == null) ? null : _standby.take();
+        if(standbyProxy != null)
+        {
+            return standbyProxy;
+        }
+        
         //Request proxy
-        GetProxyRequestCallback callback = new GetProxyRequestCallback();
-        Request request = this.requestProxy(callback);
+        final GetProxyRequestCallback callback = new GetProxyRequestCallback();
+        final RemoteRequest request = (RemoteRequest) this.launch(callback,
+                _options.getUsePreviouslyControlledSession());
+        
+        //Stop waiting if MATLAB fails before connecting. On Windows the launched process may exit normally after
+        //starting MATLAB as a separate process, so only an abnormal exit is treated as a failure.
+        ScheduledFuture<?> exitCheck = HeartbeatScheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Integer exitValue = request.getExitValue();
+                if(exitValue != null && exitValue != 0)
+                {
+                    callback.processExited(exitValue);
+                }
+            }
+        }, RECEIVER_CHECK_PERIOD);
         
         try
-        {   
-            //It is possible (although very unlikely) for the proxy to have been created before the following call to
-            //sleep occurs. If this happens then the proxy will not be returned until the timeout is reached.
-            
-            //Wait until the proxy is received or until timeout
+        {
+            //Wait until the proxy is received, MATLAB exits, or the timeout elapses
             try
             {
-                Thread.sleep(_options.getProxyTimeout());
+                if(!callback.await(_options.getProxyTimeout()) && !request.cancel())
+                {
+                    //The proxy was received as the timeout elapsed, the callback is about to be notified
+                    callback.await(RECEIVER_CHECK_PERIOD);
+                }
             }
             catch(InterruptedException e)
             {
-                //If interrupted, it should be because the proxy has been returned - if not throw an exception
-                if(callback.getProxy() == null)
-                {
-                    throw new MatlabConnectionException("Thread was interrupted while waiting for MATLAB proxy", e);
-                }
+                Thread.currentThread().interrupt();
+                throw new MatlabConnectionException("Thread was interrupted while waiting for MATLAB proxy", e);
             }
-
-            //If the proxy has not be received before the timeout
+            
             if(callback.getProxy() == null)
             {
-                throw new MatlabConnectionException("MATLAB proxy could not be created in " +
-                        _options.getProxyTimeout() + " milliseconds");
+                if(callback.getExitValue() != null)
+                {
+                    throw new MatlabConnectionException("MATLAB exited with code " + callback.getExitValue() +
+                            " before the proxy could be created");
+                }
+                else
+                {
+                    throw new MatlabConnectionException("MATLAB proxy could not be created in " +
+                            _options.getProxyTimeout() + " milliseconds");
+                }
             }
 
             return callback.getProxy();
@@ -176,6 +268,10 @@ class RemoteMatlabProxyFactory implements ProxyFactory
             request.cancel();
             throw e;
         }
+        finally
+        {
+            exitCheck.cancel(false);
+        }
     }
     
     /**
@@ -192,14 +288,16 @@ class RemoteMatlabProxyFactory implements ProxyFactory
             //Create a RMI registry
             try
             {
-                _registry = LocalHostRMIHelper.createRegistry(_options.getPort());
+                _registry = LocalHostRMIHelper.createRegistry(_options.getPort(),
+                        _options.getUseUnixDomainSockets());
             }
             //If we can't create one, try to retrieve an existing one
             catch(Exception e)
             {
                 try
                 {
-                    _registry = LocalHostRMIHelper.getRegistry(_options.getPort());
+                    _registry = LocalHostRMIHelper.getRegistry(_options.getPort(),
+                            _options.getUseUnixDomainSockets());
                 }
                 catch(Exception ex)
                 {
@@ -282,16 +380,20 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         processArguments.add("-r");
         
         //Code that MATLAB will run on start. Tells MATLAB to:
+        // - Records when it began running this code, so that the time MATLAB took to boot can be determined
         // - Adds matlabcontrol to MATLAB's dynamic class path
         // - Adds matlabcontrol to Java's system class loader's class path (to work with RMI properly)
         // - Removes matlabcontrol from MATLAB's dynamic class path
-        // - Tells matlabcontrol running in MATLAB to establish the connection to this JVM
+        // - Tells matlabcontrol running in MATLAB to establish the connection to this JVM, over a Unix domain socket or
+        //   TCP as configured
         String codeLocation = Configuration.getSupportCodeLocation();
-        String runArg = "javaaddpath '" + codeLocation + "'; " + 
+        String runArg = "mlcStartupTime = java.lang.System.currentTimeMillis(); " +
+                        "javaaddpath '" + codeLocation + "'; " + 
                         MatlabClassLoaderHelper.class.getName() + ".configureClassLoading(); " +
                         "javarmpath '" + codeLocation + "'; " +
                         MatlabConnector.class.getName() + ".connectFromMatlab('" + receiver.getReceiverID() + "', " +
-                            _options.getPort() + ");";
+                            _options.getPort() + ", mlcStartupTime, " + _options.getUseUnixDomainSockets() + "); " +
+                        "clear mlcStartupTime;";
         processArguments.add(runArg);
         
         //Create process
@@ -300,7 +402,9 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         
         try
         {
+            long spawnStart = System.nanoTime();
             Process process = builder.start();
+            receiver.processSpawned(process, System.nanoTime() - spawnStart, System.currentTimeMillis());
             
             //If running under UNIX and MATLAB is hidden these streams need to be read so that MATLAB does not block
             if(_options.getHidden() && !Configuration.isWindows())
@@ -366,6 +470,18 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         
         private volatile boolean _receivedJMIWrapper = false;
         
+        /**
+         * How long MATLAB took to spawn, in nanoseconds, and when it finished spawning according to
+         * {@link System#currentTimeMillis()}. Both are {@code 0} if MATLAB was not launched.
+         */
+        private volatile long _spawnNanos = 0L;
+        private volatile long _spawnedAt = 0L;
+        
+        /**
+         * The launched MATLAB process, {@code null} if MATLAB was not launched.
+         */
+        private volatile Process _process = null;
+        
         public RemoteRequestReceiver(RequestCallback requestCallback, RemoteIdentifier proxyID,
                 String codebase, String[] canonicalPaths)
         {
@@ -377,16 +493,42 @@ class RemoteMatlabProxyFactory implements ProxyFactory
             _receiverID = "PROXY_RECEIVER_" + proxyID.getUUIDString();
         }
         
+        void processSpawned(Process process, long spawnNanos, long spawnedAt)
+        {
+            _process = process;
+            _spawnNanos = spawnNanos;
+            _spawnedAt = spawnedAt;
+        }
+        
         @Override
-        public void receiveJMIWrapper(JMIWrapperRemote jmiWrapper, boolean existingSession)
+        public void receiveJMIWrapper(JMIWrapperRemote jmiWrapper, boolean existingSession, StartupTimes times)
         {   
             //Remove self from the list of receivers
             _receivers.remove(this); 
             
+            //Send arrays to MATLAB the same way MATLAB has been told to send them back
+            SharedMemoryTransport.setThreshold(_options.getSharedMemoryThreshold());
+            PayloadCompression.setThreshold(_options.getCompressionThreshold());
+            
             //Create proxy
-            RemoteMatlabProxy proxy = new RemoteMatlabProxy(jmiWrapper, this, _proxyID, existingSession);
+            RemoteMatlabProxy proxy = new RemoteMatlabProxy(jmiWrapper, this, _proxyID, existingSession, _process,
+                    _options);
             proxy.init();
             
+            //Complete the phases that span both Java Virtual Machines
+            times.setDuration(StartupPhase.PROCESS_SPAWN, _spawnNanos);
+            if(_spawnedAt != 0L && times.getClassLoadingStartedAt() != 0L)
+            {
+                times.setDuration(StartupPhase.MATLAB_BOOT,
+                        TimeUnit.MILLISECONDS.toNanos(times.getClassLoadingStartedAt() - _spawnedAt));
+            }
+            if(times.getClassPathSyncedAt() != 0L)
+            {
+                times.setDuration(StartupPhase.PROXY_RECEIPT,
+                        TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - times.getClassPathSyncedAt()));
+            }
+            proxy.setStartupTimes(times);
+            
             //Record wrapper has been received
             _receivedJMIWrapper = true;
             
@@ -433,20 +575,54 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         {
             return _canonicalPaths;
         }
+
+        @Override
+        public int getMatlabThreadBatchSize() throws RemoteException
+        {
+            return _options.getMatlabThreadBatchSize();
+        }
+
+        @Override
+        public long getMatlabThreadBatchTime() throws RemoteException
+        {
+            return _options.getMatlabThreadBatchTime();
+        }
+
+        @Override
+        public long getSharedMemoryThreshold() throws RemoteException
+        {
+            return _options.getSharedMemoryThreshold();
+        }
+
+        @Override
+        public boolean getUseUnixDomainSockets() throws RemoteException
+        {
+            return _options.getUseUnixDomainSockets();
+        }
+
+        @Override
+        public LocalHostConnectionPool.Settings getConnectionSettings() throws RemoteException
+        {
+            return _options.getConnectionSettings();
+        }
+
+        @Override
+        public long getCompressionThreshold() throws RemoteException
+        {
+            return _options.getCompressionThreshold();
+        }
     }
     
     /**
-     * Uses a timer to ensure that a {@link RemoteRequestReceiver} stays bound to the registry.
+     * Periodically ensures that a {@link RemoteRequestReceiver} stays bound to the registry.
      */
     private class RequestMaintainer
     {
-        private final Timer _timer;
+        private final ScheduledFuture<?> _check;
         
         RequestMaintainer(final RemoteRequestReceiver receiver)
         {
-            _timer = new Timer("MLC Request Maintainer " + receiver.getReceiverID());
-            
-            _timer.schedule(new TimerTask()
+            _check = HeartbeatScheduler.schedule(new Runnable()
             {
                 @Override
                 public void run()
@@ -470,7 +646,8 @@ class RemoteMatlabProxyFactory implements ProxyFactory
                         //Bind the receiver
                         try
                         {
-                            _registry.bind(receiver.getReceiverID(), LocalHostRMIHelper.exportObject(receiver));
+                            _registry.bind(receiver.getReceiverID(), LocalHostRMIHelper.exportObject(receiver,
+                                    _options.getUseUnixDomainSockets()));
                         }
                         catch(RemoteException ex) { }
                         catch(AlreadyBoundException ex) { }
@@ -493,7 +670,8 @@ class RemoteMatlabProxyFactory implements ProxyFactory
                             //Bind the receiver
                             try
                             {
-                                _registry.bind(receiver.getReceiverID(), LocalHostRMIHelper.exportObject(receiver));
+                                _registry.bind(receiver.getReceiverID(), LocalHostRMIHelper.exportObject(receiver,
+                                        _options.getUseUnixDomainSockets()));
                             }
                             catch(RemoteException ex) { }
                             catch(AlreadyBoundException ex) { }
@@ -504,40 +682,62 @@ class RemoteMatlabProxyFactory implements ProxyFactory
                     //Shutdown maintainer once the JMI wrapper has been received
                     if(receiver.hasReceivedJMIWrapper())
                     {
-                        _timer.cancel();
+                        shutdown();
                     }
                 }
-            }, RECEIVER_CHECK_PERIOD, RECEIVER_CHECK_PERIOD);
+            }, RECEIVER_CHECK_PERIOD);
         }
         
         void shutdown()
         {
-            _timer.cancel();
+            _check.cancel(false);
         }
     }
     
+    /**
+     * Signals the thread waiting in {@link RemoteMatlabProxyFactory#getProxy()} once the proxy has been created or
+     * MATLAB has exited.
+     */
     private static class GetProxyRequestCallback implements RequestCallback
     {
-        private final Thread _requestingThread;
+        private final CountDownLatch _completion = new CountDownLatch(1);
         private volatile MatlabProxy _proxy;
-        
-        public GetProxyRequestCallback()
-        {
-            _requestingThread = Thread.currentThread();
-        }
+        private volatile Integer _exitValue;
 
         @Override
         public void proxyCreated(MatlabProxy proxy)
         {
             _proxy = proxy;
-            
-            _requestingThread.interrupt();
+            _completion.countDown();
+        }
+        
+        void processExited(int exitValue)
+        {
+            _exitValue = exitValue;
+            _completion.countDown();
+        }
+        
+        /**
+         * Waits until the proxy has been created or MATLAB has exited.
+         * 
+         * @param timeout in milliseconds
+         * @return whether either occurred before the timeout elapsed
+         * @throws InterruptedException 
+         */
+        boolean await(long timeout) throws InterruptedException
+        {
+            return _completion.await(timeout, TimeUnit.MILLISECONDS);
         }
         
         public MatlabProxy getProxy()
         {
             return _proxy;
         }
+        
+        Integer getExitValue()
+        {
+            return _exitValue;
+        }
     }
     
     private static final class RemoteIdentifier implements Identifier
@@ -584,6 +784,43 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         }
     }
     
+    /**
+     * A request which was completed immediately by providing a standby session.
+     */
+    private static class StandbyRequest implements Request
+    {
+        private final Identifier _proxyID;
+        
+        private StandbyRequest(Identifier proxyID)
+        {
+            _proxyID = proxyID;
+        }
+        
+        @Override
+        public Identifier getProxyIdentifer()
+        {
+            return _proxyID;
+        }
+        
+        @Override
+        public boolean cancel()
+        {
+            return false;
+        }
+        
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+        
+        @Override
+        public boolean isCompleted()
+        {
+            return true;
+        }
+    }
+    
     private static class RemoteRequest implements Request
     {
         private final Identifier _proxyID;
@@ -644,5 +881,36 @@ class RemoteMatlabProxyFactory implements ProxyFactory
         {
             return _receiver.hasReceivedJMIWrapper();
         }
+        
+        /**
+         * The exit value of the launched MATLAB process.
+         * 
+         * @return exit value, or {@code null} if no process was launched or it has not exited
+         */
+        Integer getExitValue()
+        {
+            return RemoteMatlabProxyFactory.getExitValue(_process);
+        }
+    }
+    
+    /**
+     * The exit value of {@code process}.
+     * 
+     * @param process may be {@code null}
+     * @return exit value, or {@code null} if {@code process} is {@code null} or has not exited
+     */
+    static Integer getExitValue(Process process)
+    {
+        Integer exitValue = null;
+        if(process != null)
+        {
+            try
+            {
+                exitValue = process.exitValue();
+            }
+            catch(IllegalThreadStateException e) { }
+        }
+        
+        return exitValue;
     }
 }
\ No newline at end of file
@@ -42,9 +42,11 @@ interface RequestReceiver extends Remote
      * 
      * @param jmiWrapper
      * @param existingSession if the session sending the jmiWrapper was running prior to the request to create the proxy
+     * @param startupTimes the durations of the phases which occurred in MATLAB's Java Virtual Machine
      * @throws RemoteException 
      */
-    public void receiveJMIWrapper(JMIWrapperRemote jmiWrapper, boolean existingSession) throws RemoteException;
+    public void receiveJMIWrapper(JMIWrapperRemote jmiWrapper, boolean existingSession, StartupTimes startupTimes)
+            throws RemoteException;
     
     /**
      * The identifier of the receiver.
@@ -69,4 +71,53 @@ interface RequestReceiver extends Remote
      * @throws RemoteException 
      */
     public String[] getClassPathAsCanonicalPaths() throws RemoteException;
+    
+    /**
+     * The maximum number of calls to run on MATLAB's main thread each time MATLAB becomes idle.
+     * 
+     * @return
+     * @throws RemoteException 
+     */
+    public int getMatlabThreadBatchSize() throws RemoteException;
+    
+    /**
+     * The maximum time in milliseconds during which calls will be started on MATLAB's main thread each time MATLAB
+     * becomes idle.
+     * 
+     * @return
+     * @throws RemoteException 
+     */
+    public long getMatlabThreadBatchTime() throws RemoteException;
+    
+    /**
+     * The smallest size in bytes of an array sent through shared memory, {@code 0} if shared memory is not used.
+     * 
+     * @return
+     * @throws RemoteException 
+     */
+    public long getSharedMemoryThreshold() throws RemoteException;
+    
+    /**
+     * Whether the remote JMI wrapper should be exported over a Unix domain socket where supported.
+     * 
+     * @return
+     * @throws RemoteException 
+     */
+    public boolean getUseUnixDomainSockets() throws RemoteException;
+    
+    /**
+     * The socket options and limits of connections between the two Java Virtual Machines.
+     * 
+     * @return
+     * @throws RemoteException 
+     */
+    public LocalHostConnectionPool.Settings getConnectionSettings() throws RemoteException;
+    
+    /**
+     * The smallest size in bytes of an array sent compressed, {@code 0} if arrays are not compressed.
+     * 
+     * @return
+     * @throws RemoteException 
+     */
+    public long getCompressionThreshold() throws RemoteException;
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+
+/**
+ * A reusable call of a MATLAB function, so that calling a function and waiting indefinitely for it allocates nothing
+ * beyond what MATLAB itself does and the array of results returned to the caller. Each thread has its own feval which
+ * it reuses for every call. MATLAB's main thread releases it for reuse as soon as it has read the call; an feval which
+ * has not been released, because MATLAB has yet to run it, is abandoned and the thread is given a new one.
+ * <br><br>
+ * This is only reused for calls which wait indefinitely. A call which waits with a timeout may be cancelled and so
+ * never run, which would cause it to be abandoned.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class ReusableFeval implements MatlabThreadCallable<Object[]>
+{
+    private static final ThreadLocal<ReusableFeval> FEVALS = new ThreadLocal<ReusableFeval>()
+    {
+        @Override
+        protected ReusableFeval initialValue()
+        {
+            return new ReusableFeval();
+        }
+    };
+    
+    //Written by the owner before _inUse is set and read on MATLAB's main thread before _inUse is cleared
+    private String _functionName;
+    private int _nargout;
+    private Object[] _args;
+    
+    private volatile boolean _inUse;
+    
+    private ReusableFeval() { }
+    
+    /**
+     * The calling thread's feval, prepared to call {@code functionName}.
+     * 
+     * @param functionName
+     * @param nargout
+     * @param args
+     * @return 
+     */
+    static ReusableFeval get(String functionName, int nargout, Object[] args)
+    {
+        ReusableFeval feval = FEVALS.get();
+        if(feval._inUse)
+        {
+            feval = new ReusableFeval();
+            FEVALS.set(feval);
+        }
+        
+        feval._functionName = functionName;
+        feval._nargout = nargout;
+        feval._args = args;
+        feval._inUse = true;
+        
+        return feval;
+    }
+
+    @Override
+    public Object[] call(MatlabThreadProxy proxy) throws MatlabInvocationException
+    {
+        String functionName = _functionName;
+        int nargout = _nargout;
+        Object[] args = _args;
+        
+        //Released before the function is called, as the function may itself call back into Java on this thread
+        _functionName = null;
+        _args = null;
+        _inUse = false;
+        
+        return proxy.returningFeval(functionName, nargout, args);
+    }
+}
\ No newline at end of file
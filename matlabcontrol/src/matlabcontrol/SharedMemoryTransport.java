@@ -0,0 +1,569 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passes large arrays between the Java Virtual Machines on this computer through memory-mapped files instead of
+ * through RMI's loopback socket. The sender writes the values into a region of a file it owns and sends only the
+ * region's path and generation; the receiver maps the same file and reads the values directly out of memory.
+ * <br><br>
+ * Each region begins with a header holding its generation and state. The sender increments the generation each time
+ * it reuses a region, and the receiver marks the region consumed once it has read it, which allows the sender to
+ * recycle it. A region whose receiver never consumes it, for instance because the receiver's Java Virtual Machine
+ * died, is reclaimed once its lease expires; a receiver which reads a region after it has been reclaimed detects the
+ * changed generation and fails rather than returning corrupt values.
+ * <br><br>
+ * A sender's regions live in a directory of their own, alongside a lock file held for as long as the sender's Java
+ * Virtual Machine is alive. The directory is deleted when the Java Virtual Machine exits normally, and directories
+ * whose lock is no longer held, left behind by a Java Virtual Machine which died, are deleted the next time any Java
+ * Virtual Machine starts sending.
+ * <br><br>
+ * On Windows a file cannot be deleted while it is mapped, and Java provides no way to unmap a file other than the
+ * mapped buffer being garbage collected. Deleting a region which is still mapped, by its sender or by a receiver, then
+ * fails and its file is left behind; such files are deleted along with their directory once it has been abandoned.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class SharedMemoryTransport
+{
+    /**
+     * The size of the header at the start of each region, the values follow it.
+     */
+    static final int HEADER_SIZE = 64;
+    
+    private static final int GENERATION_OFFSET = 0;
+    private static final int STATE_OFFSET = 8;
+    
+    /**
+     * States of a region, stored in its header.
+     */
+    private static final int LEASED = 0, WRITTEN = 1, CONSUMED = 2;
+    
+    /**
+     * Regions are created with a capacity that is a multiple of this size, so that they can be reused for arrays of
+     * similar sizes.
+     */
+    private static final long REGION_GRANULARITY = 1024 * 1024;
+    
+    /**
+     * The most bytes of values a region can hold, as a region is mapped as a single buffer.
+     */
+    static final long MAX_REGION_SIZE = Integer.MAX_VALUE - HEADER_SIZE;
+    
+    /**
+     * The most regions kept for reuse while unleased; beyond this unleased regions are deleted.
+     */
+    private static final int MAX_IDLE_REGIONS = 4;
+    
+    /**
+     * The most regions of other Java Virtual Machines kept mapped for reading.
+     */
+    private static final int MAX_MAPPED_REGIONS = 16;
+    
+    private static final long DEFAULT_LEASE = TimeUnit.SECONDS.toNanos(30);
+    
+    /**
+     * The smallest number of bytes sent through shared memory, {@code 0} if shared memory is not used.
+     */
+    private static volatile long THRESHOLD = 0L;
+    
+    /**
+     * The regions being sent from this Java Virtual Machine, created when first needed.
+     */
+    private static SharedMemoryTransport SENDER = null;
+    
+    /**
+     * Regions mapped for reading, keyed by path, least recently used first.
+     */
+    private static final Map<String, ReadMapping> MAPPED = new LinkedHashMap<String, ReadMapping>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ReadMapping> eldest)
+        {
+            return this.size() > MAX_MAPPED_REGIONS;
+        }
+    };
+    
+    private final File _directory;
+    private final FileLock _lock;
+    private final long _lease;
+    private final AtomicLong _regionCounter = new AtomicLong();
+    
+    /**
+     * Guarded by {@code this}.
+     */
+    private final List<Region> _regions = new ArrayList<Region>();
+    
+    SharedMemoryTransport(File root, long lease) throws IOException
+    {
+        if(!root.isDirectory() && !root.mkdirs())
+        {
+            throw new IOException("unable to create shared memory directory: " + root);
+        }
+        
+        _lease = lease;
+        _directory = new File(root, UUID.randomUUID().toString());
+        if(!_directory.mkdir())
+        {
+            throw new IOException("unable to create shared memory directory: " + _directory);
+        }
+        
+        //Held until this JVM exits, however it exits
+        _lock = new RandomAccessFile(new File(_directory, "owner.lock"), "rw").getChannel().lock();
+        
+        deleteAbandoned(root, _directory);
+    }
+    
+    /**
+     * The smallest number of bytes sent through shared memory, {@code 0} if shared memory is not used.
+     * 
+     * @return 
+     */
+    static long getThreshold()
+    {
+        return THRESHOLD;
+    }
+    
+    static void setThreshold(long threshold)
+    {
+        THRESHOLD = threshold;
+    }
+    
+    /**
+     * The transport which sends from this Java Virtual Machine, creating it if necessary.
+     * 
+     * @return
+     * @throws IOException 
+     */
+    static synchronized SharedMemoryTransport getSender() throws IOException
+    {
+        if(SENDER == null)
+        {
+            File root = new File(System.getProperty("java.io.tmpdir"), "matlabcontrol-shm");
+            final SharedMemoryTransport sender = new SharedMemoryTransport(root, DEFAULT_LEASE);
+            Runtime.getRuntime().addShutdownHook(new Thread("MLC Shared Memory Cleanup")
+            {
+                @Override
+                public void run()
+                {
+                    sender.close();
+                }
+            });
+            SENDER = sender;
+        }
+        
+        return SENDER;
+    }
+    
+    /**
+     * The directory this transport's regions are created in.
+     * 
+     * @return 
+     */
+    File getDirectory()
+    {
+        return _directory;
+    }
+    
+    /**
+     * Leases a region with room for at least {@code size} bytes of values. The region's generation has already been
+     * incremented, so receivers of its previous contents will no longer read it.
+     * 
+     * @param size
+     * @return
+     * @throws IOException if a new region was needed and could not be created
+     * @throws IllegalArgumentException if {@code size} is greater than {@link #MAX_REGION_SIZE}
+     */
+    synchronized Region acquire(long size) throws IOException
+    {
+        if(size > MAX_REGION_SIZE)
+        {
+            throw new IllegalArgumentException("size [" + size + "] may not exceed " + MAX_REGION_SIZE);
+        }
+        
+        long now = System.nanoTime();
+        Region chosen = null;
+        for(Region region : _regions)
+        {
+            if(region._leased && (region.getState() == CONSUMED || now - region._leasedAt > _lease))
+            {
+                region._leased = false;
+            }
+            
+            if(!region._leased && region._capacity >= size &&
+                    (chosen == null || region._capacity < chosen._capacity))
+            {
+                chosen = region;
+            }
+        }
+        
+        //Keep only a few idle regions around for reuse
+        int idle = 0;
+        for(Iterator<Region> iter = _regions.iterator(); iter.hasNext();)
+        {
+            Region region = iter.next();
+            if(!region._leased && region != chosen && ++idle > MAX_IDLE_REGIONS)
+            {
+                iter.remove();
+                region.delete();
+            }
+        }
+        
+        if(chosen == null)
+        {
+            long capacity = ((size + REGION_GRANULARITY - 1) / REGION_GRANULARITY) * REGION_GRANULARITY;
+            capacity = Math.min(capacity, MAX_REGION_SIZE);
+            File file = new File(_directory, _regionCounter.incrementAndGet() + ".region");
+            chosen = new Region(file, capacity);
+            _regions.add(chosen);
+        }
+        
+        chosen.lease(now);
+        
+        return chosen;
+    }
+    
+    /**
+     * The number of regions currently leased to receivers.
+     * 
+     * @return 
+     */
+    synchronized int getLeasedCount()
+    {
+        int count = 0;
+        for(Region region : _regions)
+        {
+            if(region._leased && region.getState() != CONSUMED)
+            {
+                count++;
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * The number of regions, leased or not, this transport has created and not yet deleted.
+     * 
+     * @return 
+     */
+    synchronized int getRegionCount()
+    {
+        return _regions.size();
+    }
+    
+    /**
+     * Deletes all regions and this transport's directory.
+     */
+    synchronized void close()
+    {
+        for(Region region : _regions)
+        {
+            region.delete();
+        }
+        _regions.clear();
+        
+        try
+        {
+            _lock.release();
+            _lock.channel().close();
+        }
+        catch(IOException e) { }
+        
+        delete(_directory);
+    }
+    
+    /**
+     * Deletes the directories in {@code root} whose owning Java Virtual Machine has died, which is known by their lock
+     * file no longer being held.
+     */
+    private static void deleteAbandoned(File root, File own)
+    {
+        File[] directories = root.listFiles();
+        if(directories != null)
+        {
+            for(File directory : directories)
+            {
+                if(directory.isDirectory() && !directory.equals(own))
+                {
+                    boolean abandoned = false;
+                    try
+                    {
+                        RandomAccessFile lockFile = new RandomAccessFile(new File(directory, "owner.lock"), "rw");
+                        try
+                        {
+                            FileLock lock = lockFile.getChannel().tryLock();
+                            if(lock != null)
+                            {
+                                lock.release();
+                                abandoned = true;
+                            }
+                        }
+                        //Held by another transport in this JVM
+                        catch(OverlappingFileLockException e) { }
+                        finally
+                        {
+                            lockFile.close();
+                        }
+                    }
+                    catch(IOException e) { }
+                    
+                    if(abandoned)
+                    {
+                        delete(directory);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void delete(File directory)
+    {
+        File[] files = directory.listFiles();
+        if(files != null)
+        {
+            for(File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+    
+    /**
+     * Maps the region at {@code path} for reading, verifying it still holds what was sent as {@code generation}.
+     * 
+     * @param path
+     * @param generation
+     * @return read-only little-endian buffer positioned at the start of the values
+     * @throws IOException if the region could not be mapped, is corrupt, or has been reclaimed
+     */
+    static ByteBuffer openForReading(String path, long generation) throws IOException
+    {
+        ReadMapping mapping;
+        synchronized(MAPPED)
+        {
+            mapping = MAPPED.get(path);
+            if(mapping == null)
+            {
+                mapping = new ReadMapping(new File(path));
+                MAPPED.put(path, mapping);
+            }
+        }
+        
+        if(mapping._header.getLong(GENERATION_OFFSET) != generation ||
+                mapping._header.getInt(STATE_OFFSET) != WRITTEN)
+        {
+            throw new StreamCorruptedException("shared memory region " + path + " was reclaimed before it was read");
+        }
+        
+        ByteBuffer buffer = mapping._region.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_SIZE);
+        
+        return buffer;
+    }
+    
+    /**
+     * Marks the region at {@code path} consumed once all of its values have been read, allowing its sender to reuse
+     * it.
+     * 
+     * @param path
+     * @param generation
+     * @throws StreamCorruptedException if the region was reclaimed while it was being read, in which case what was
+     * read may be corrupt
+     */
+    static void finishReading(String path, long generation) throws StreamCorruptedException
+    {
+        ReadMapping mapping;
+        synchronized(MAPPED)
+        {
+            mapping = MAPPED.get(path);
+        }
+        
+        if(mapping == null || mapping._header.getLong(GENERATION_OFFSET) != generation)
+        {
+            throw new StreamCorruptedException("shared memory region " + path + " was reclaimed while it was read");
+        }
+        mapping._header.putInt(STATE_OFFSET, CONSUMED);
+    }
+    
+    /**
+     * Creates {@code file} with room for {@code capacity} bytes of values and maps it.
+     */
+    private static MappedByteBuffer map(File file, long capacity) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(HEADER_SIZE + capacity);
+            
+            //The mapping remains valid once the file is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+    
+    /**
+     * A region of another Java Virtual Machine mapped for reading. The region is mapped read-only; only its header is
+     * also mapped writable, so that the region can be marked consumed.
+     */
+    private static final class ReadMapping
+    {
+        private final MappedByteBuffer _region;
+        private final MappedByteBuffer _header;
+        
+        private ReadMapping(File file) throws IOException
+        {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try
+            {
+                //Every region is created with a header and at most the largest capacity, so anything else is not a
+                //region written by a sender
+                long length = raf.length();
+                if(length < HEADER_SIZE || length > HEADER_SIZE + MAX_REGION_SIZE)
+                {
+                    throw new StreamCorruptedException("shared memory region " + file + " is corrupt, its length [" +
+                            length + "] is not between " + HEADER_SIZE + " and " + (HEADER_SIZE + MAX_REGION_SIZE));
+                }
+                _region = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            }
+            finally
+            {
+                raf.close();
+            }
+            
+            raf = new RandomAccessFile(file, "rw");
+            try
+            {
+                _header = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            }
+            finally
+            {
+                raf.close();
+            }
+        }
+    }
+    
+    /**
+     * A file, mapped into memory, that values are written into for a receiver to read.
+     */
+    static final class Region
+    {
+        private final File _file;
+        private final long _capacity;
+        private final MappedByteBuffer _buffer;
+        
+        /**
+         * The following are guarded by the transport which owns this region.
+         */
+        private long _generation = 0L;
+        private boolean _leased = false;
+        private long _leasedAt;
+        
+        private Region(File file, long capacity) throws IOException
+        {
+            _file = file;
+            _capacity = capacity;
+            _buffer = map(file, capacity);
+        }
+        
+        private void lease(long now)
+        {
+            _generation++;
+            _leased = true;
+            _leasedAt = now;
+            
+            _buffer.putInt(STATE_OFFSET, LEASED);
+            _buffer.putLong(GENERATION_OFFSET, _generation);
+        }
+        
+        private int getState()
+        {
+            return _buffer.getInt(STATE_OFFSET);
+        }
+        
+        private void delete()
+        {
+            //Invalidates the region for any receiver which still has it mapped
+            _buffer.putLong(GENERATION_OFFSET, -1L);
+            
+            //Fails on Windows while the file is mapped, which it is by this region until garbage collected
+            _file.delete();
+        }
+        
+        String getPath()
+        {
+            return _file.getAbsolutePath();
+        }
+        
+        long getGeneration()
+        {
+            return _generation;
+        }
+        
+        /**
+         * A little-endian buffer positioned at the start of the values, with room for this region's capacity.
+         * 
+         * @return 
+         */
+        ByteBuffer getValues()
+        {
+            ByteBuffer buffer = _buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(HEADER_SIZE);
+            
+            return buffer;
+        }
+        
+        /**
+         * Called once all values have been written, making them available to be read.
+         */
+        void written()
+        {
+            _buffer.putInt(STATE_OFFSET, WRITTEN);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,584 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import matlabcontrol.MatlabProxy.DisconnectionListener;
+import matlabcontrol.MatlabProxyFactory.Request;
+import matlabcontrol.MatlabProxyFactory.RequestCallback;
+
+/**
+ * Keeps a number of sessions of MATLAB launched and connected on behalf of a {@link RemoteMatlabProxyFactory} so that
+ * requests for a proxy do not have to wait for MATLAB to launch. A periodic check launches sessions until the target
+ * number are either ready or launching, and cancels launches which take longer than the proxy timeout. After a launch
+ * fails no more are started for {@link #FAILURE_RETRY_DELAY} milliseconds so that a misconfigured factory does not
+ * continually launch MATLAB.
+ * <br><br>
+ * Launching, checking and launch cancellation all run on a thread of this instance's own. The lock guarding the
+ * standby sessions is never held while launching MATLAB or communicating with it, so providing a ready session never
+ * waits on a launch or on another session.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class StandbySessions implements MatlabStandbySessionsMBean
+{
+    /**
+     * How long to wait after a launch fails before launching again, in milliseconds.
+     */
+    static final long FAILURE_RETRY_DELAY = 10000L;
+    
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    
+    /**
+     * Launches a session of MATLAB, providing it to the callback once it has connected.
+     */
+    static interface Launcher
+    {
+        public Request launch(RequestCallback callback) throws MatlabConnectionException;
+    }
+    
+    private final Launcher _launcher;
+    
+    private final int _target;
+    
+    private final long _launchTimeout;
+    
+    /**
+     * Runs the periodic check and all launches.
+     */
+    private final ScheduledExecutorService _executor;
+    
+    /**
+     * Exits the standby sessions if this Java Virtual Machine shuts down before {@link #shutdown()} is called.
+     */
+    private final Thread _shutdownHook;
+    
+    //All of the following are guarded by this instance
+    
+    /**
+     * Sessions ready to be provided, oldest first.
+     */
+    private final LinkedList<Standby> _ready = new LinkedList<Standby>();
+    
+    private final List<Launch> _launching = new ArrayList<Launch>();
+    
+    private long _lastFailure = 0;
+    
+    private long _launched = 0;
+    
+    private long _failed = 0;
+    
+    private long _provided = 0;
+    
+    private long _missed = 0;
+    
+    private long _discarded = 0;
+    
+    private long _lastLaunchNanos = 0;
+    
+    private long _totalLaunchNanos = 0;
+    
+    private long _maxLaunchNanos = 0;
+    
+    private boolean _shutdown = false;
+    
+    /**
+     * The name this instance is registered under with the platform MBean server.
+     */
+    private final ObjectName _name;
+    
+    StandbySessions(Launcher launcher, int target, long launchTimeout)
+    {
+        _launcher = launcher;
+        _target = target;
+        _launchTimeout = launchTimeout;
+        
+        final int id = COUNTER.getAndIncrement();
+        _executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "MLC Standby Sessions-" + id);
+                thread.setDaemon(true);
+                
+                return thread;
+            }
+        });
+        _shutdownHook = new Thread("MLC Standby Session Shutdown-" + id)
+        {
+            @Override
+            public void run()
+            {
+                shutdown();
+            }
+        };
+        
+        ObjectName name;
+        try
+        {
+            name = new ObjectName("matlabcontrol:type=MatlabStandbySessions,id=" + id);
+        }
+        catch(JMException e)
+        {
+            name = null;
+        }
+        _name = name;
+    }
+    
+    private static final class Standby
+    {
+        final MatlabProxy proxy;
+        final long readyAt;
+        final DisconnectionListener listener;
+        
+        Standby(MatlabProxy proxy, long readyAt, DisconnectionListener listener)
+        {
+            this.proxy = proxy;
+            this.readyAt = readyAt;
+            this.listener = listener;
+        }
+    }
+    
+    /**
+     * A session being launched. It is complete once it has either been received or failed.
+     */
+    private final class Launch implements RequestCallback
+    {
+        final long startedAt = System.nanoTime();
+        
+        /**
+         * {@code null} until the launch has begun.
+         */
+        volatile Request request;
+        
+        @Override
+        public void proxyCreated(MatlabProxy proxy)
+        {
+            received(this, proxy);
+        }
+    }
+    
+    private final Runnable _maintain = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            try
+            {
+                maintain();
+            }
+            //An exception would otherwise cancel all future checks
+            catch(RuntimeException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    };
+    
+    private final Runnable _replenish = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            replenish();
+        }
+    };
+    
+    /**
+     * Registers with the platform MBean server, begins launching sessions, and exits the standby sessions when this
+     * Java Virtual Machine shuts down unless shut down before then.
+     */
+    void start()
+    {
+        if(_name != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        new StandardMBean(this, MatlabStandbySessionsMBean.class), _name);
+            }
+            catch(JMException e) { }
+            catch(SecurityException e) { }
+        }
+        
+        try
+        {
+            Runtime.getRuntime().addShutdownHook(_shutdownHook);
+        }
+        catch(IllegalStateException e) { }
+        catch(SecurityException e) { }
+        
+        _executor.scheduleWithFixedDelay(_maintain, 0, RemoteMatlabProxyFactory.RECEIVER_CHECK_PERIOD,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Provides a standby session, removing it from standby and launching another in the background to replace it.
+     * 
+     * @return the proxy, or {@code null} if no session is ready
+     */
+    MatlabProxy take()
+    {
+        MatlabProxy proxy = null;
+        Standby standby;
+        while(proxy == null && (standby = this.pollReady()) != null)
+        {
+            standby.proxy.removeDisconnectionListener(standby.listener);
+            
+            //It may have disconnected without the listener having yet been notified
+            boolean connected = standby.proxy.isConnected();
+            synchronized(this)
+            {
+                if(connected)
+                {
+                    proxy = standby.proxy;
+                    _provided++;
+                }
+                else
+                {
+                    _discarded++;
+                }
+            }
+        }
+        
+        if(proxy == null)
+        {
+            synchronized(this)
+            {
+                _missed++;
+            }
+        }
+        this.scheduleReplenish();
+        
+        return proxy;
+    }
+    
+    private synchronized Standby pollReady()
+    {
+        return _ready.isEmpty() ? null : _ready.removeFirst();
+    }
+    
+    private void scheduleReplenish()
+    {
+        try
+        {
+            _executor.execute(_replenish);
+        }
+        //Shut down
+        catch(RejectedExecutionException e) { }
+    }
+    
+    /**
+     * Launches sessions until the target number are ready or launching, unless a launch failed recently. Only run on
+     * the executor, so launches are never started concurrently.
+     */
+    private void replenish()
+    {
+        List<Launch> launches = new ArrayList<Launch>();
+        synchronized(this)
+        {
+            long sinceFailure = (System.nanoTime() - _lastFailure) / 1000000L;
+            boolean backingOff = _failed > 0 && sinceFailure < FAILURE_RETRY_DELAY;
+            
+            //Reserve the launches so that they count towards the target while MATLAB is launched
+            while(!_shutdown && !backingOff && _ready.size() + _launching.size() < _target)
+            {
+                Launch launch = new Launch();
+                _launching.add(launch);
+                launches.add(launch);
+            }
+        }
+        
+        for(Launch launch : launches)
+        {
+            try
+            {
+                launch.request = _launcher.launch(launch);
+            }
+            catch(MatlabConnectionException e)
+            {
+                synchronized(this)
+                {
+                    _launching.remove(launch);
+                    this.failed();
+                }
+            }
+        }
+    }
+    
+    private void failed()
+    {
+        _failed++;
+        _lastFailure = System.nanoTime();
+    }
+    
+    private void received(Launch launch, final MatlabProxy proxy)
+    {
+        long now = System.nanoTime();
+        DisconnectionListener listener = new DisconnectionListener()
+        {
+            @Override
+            public void proxyDisconnected(MatlabProxy disconnected)
+            {
+                discard(proxy);
+            }
+        };
+        
+        boolean shutdown;
+        synchronized(this)
+        {
+            _launching.remove(launch);
+            
+            shutdown = _shutdown;
+            if(!shutdown)
+            {
+                long duration = now - launch.startedAt;
+                _launched++;
+                _lastLaunchNanos = duration;
+                _totalLaunchNanos += duration;
+                _maxLaunchNanos = Math.max(_maxLaunchNanos, duration);
+                
+                _ready.addLast(new Standby(proxy, now, listener));
+            }
+        }
+        
+        if(shutdown)
+        {
+            exit(proxy);
+        }
+        else
+        {
+            proxy.addDisconnectionListener(listener);
+        }
+    }
+    
+    private void discard(MatlabProxy proxy)
+    {
+        synchronized(this)
+        {
+            for(Iterator<Standby> iter = _ready.iterator(); iter.hasNext();)
+            {
+                if(iter.next().proxy == proxy)
+                {
+                    iter.remove();
+                    _discarded++;
+                }
+            }
+        }
+        
+        this.scheduleReplenish();
+    }
+    
+    /**
+     * Cancels launches which have exceeded the timeout and launches more sessions if needed.
+     */
+    void maintain()
+    {
+        List<Launch> overdue = new ArrayList<Launch>();
+        synchronized(this)
+        {
+            long now = System.nanoTime();
+            for(Launch launch : _launching)
+            {
+                if(launch.request != null && (now - launch.startedAt) / 1000000L > _launchTimeout)
+                {
+                    overdue.add(launch);
+                }
+            }
+        }
+        
+        for(Launch launch : overdue)
+        {
+            if(launch.request.cancel())
+            {
+                synchronized(this)
+                {
+                    if(_launching.remove(launch))
+                    {
+                        this.failed();
+                    }
+                }
+            }
+        }
+        
+        this.replenish();
+    }
+    
+    /**
+     * Exits all standby sessions, cancels all launches, and stops launching sessions. Sessions received after this will
+     * be exited. Calling this method more than once has no effect.
+     */
+    void shutdown()
+    {
+        List<Launch> launching;
+        List<Standby> ready;
+        synchronized(this)
+        {
+            if(_shutdown)
+            {
+                return;
+            }
+            _shutdown = true;
+            
+            launching = new ArrayList<Launch>(_launching);
+            _launching.clear();
+            ready = new ArrayList<Standby>(_ready);
+            _ready.clear();
+        }
+        
+        _executor.shutdown();
+        try
+        {
+            Runtime.getRuntime().removeShutdownHook(_shutdownHook);
+        }
+        //Already shutting down, possibly running this from the hook
+        catch(IllegalStateException e) { }
+        catch(SecurityException e) { }
+        
+        for(Launch launch : launching)
+        {
+            if(launch.request != null)
+            {
+                launch.request.cancel();
+            }
+        }
+        for(Standby standby : ready)
+        {
+            standby.proxy.removeDisconnectionListener(standby.listener);
+            exit(standby.proxy);
+        }
+        
+        if(_name != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(_name);
+            }
+            catch(JMException e) { }
+            catch(SecurityException e) { }
+        }
+    }
+    private static void exit(MatlabProxy proxy)
+    {
+        try
+        {
+            proxy.exit();
+        }
+        catch(MatlabInvocationException e)
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Override
+    public int getTargetCount()
+    {
+        return _target;
+    }
+    
+    @Override
+    public synchronized int getStandbyCount()
+    {
+        return _ready.size();
+    }
+    
+    @Override
+    public synchronized int getLaunchingCount()
+    {
+        return _launching.size();
+    }
+    
+    @Override
+    public synchronized double getOldestStandbyAgeMillis()
+    {
+        return _ready.isEmpty() ? 0 : (System.nanoTime() - _ready.getFirst().readyAt) / 1e6;
+    }
+    
+    @Override
+    public synchronized long getProvidedCount()
+    {
+        return _provided;
+    }
+    
+    @Override
+    public synchronized long getMissedCount()
+    {
+        return _missed;
+    }
+    
+    @Override
+    public synchronized long getDiscardedCount()
+    {
+        return _discarded;
+    }
+    
+    @Override
+    public synchronized long getLaunchCount()
+    {
+        return _launched;
+    }
+    
+    @Override
+    public synchronized long getFailedLaunchCount()
+    {
+        return _failed;
+    }
+    
+    @Override
+    public synchronized double getLastLaunchMillis()
+    {
+        return _lastLaunchNanos / 1e6;
+    }
+    
+    @Override
+    public synchronized double getMeanLaunchMillis()
+    {
+        return _launched == 0 ? 0 : _totalLaunchNanos / 1e6 / _launched;
+    }
+    
+    @Override
+    public synchronized double getMaxLaunchMillis()
+    {
+        return _maxLaunchNanos / 1e6;
+    }
+}
\ No newline at end of file
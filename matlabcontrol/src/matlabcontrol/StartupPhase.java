@@ -0,0 +1,80 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ * The phases into which the time taken to create a proxy by launching or connecting to MATLAB is divided. Phases
+ * which did not occur, such as launching MATLAB when connecting to a previously controlled session, take no time.
+ * 
+ * @see MatlabProxy#getStartupTimes()
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public enum StartupPhase
+{
+    /**
+     * Starting the MATLAB process.
+     */
+    PROCESS_SPAWN,
+    
+    /**
+     * From when the MATLAB process was started until MATLAB began running the code matlabcontrol told it to run on
+     * startup.
+     */
+    MATLAB_BOOT,
+    
+    /**
+     * Adding matlabcontrol to MATLAB's class path and configuring how its classes are loaded.
+     */
+    CLASS_LOADER_SETUP,
+    
+    /**
+     * Checking that MATLAB provides the methods matlabcontrol relies on, including any wait for a connection to a
+     * previous application to finish.
+     */
+    JMI_VALIDATION,
+    
+    /**
+     * Making the session of MATLAB available for later reconnection. This only occurs when MATLAB has been launched.
+     */
+    BROADCAST,
+    
+    /**
+     * Retrieving the factory's receiver from the RMI registry, including a retry if it was not yet bound.
+     */
+    REGISTRY_LOOKUP,
+    
+    /**
+     * Adding this Java Virtual Machine's class path to MATLAB's so that MATLAB can load the classes of objects sent to
+     * it.
+     */
+    CLASS_PATH_SYNC,
+    
+    /**
+     * Applying the factory's settings in MATLAB, sending the connection to this Java Virtual Machine, and creating the
+     * proxy.
+     */
+    PROXY_RECEIPT
+}
\ No newline at end of file
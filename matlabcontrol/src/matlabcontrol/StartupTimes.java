@@ -0,0 +1,159 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long each {@link StartupPhase} took when creating a proxy. Phases which occur in different Java Virtual Machines
+ * are measured by comparing the system clocks of the two, which have millisecond resolution; phases which occur
+ * entirely within one Java Virtual Machine are measured with nanosecond resolution.
+ * <br><br>
+ * This class is unconditionally thread-safe.
+ * 
+ * @see MatlabProxy#getStartupTimes()
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class StartupTimes implements Serializable
+{
+    private static final long serialVersionUID = 0xB107L;
+    
+    private static final StartupPhase[] PHASES = StartupPhase.values();
+    
+    /**
+     * Durations in nanoseconds, indexed by {@link StartupPhase#ordinal()}.
+     */
+    private final long[] _durations = new long[PHASES.length];
+    
+    /**
+     * When MATLAB began setting up matlabcontrol's class loading according to MATLAB's system clock, {@code 0} if
+     * MATLAB was not launched.
+     */
+    private long _classLoadingStartedAt = 0;
+    
+    /**
+     * When MATLAB finished synchronizing class paths according to MATLAB's system clock.
+     */
+    private long _classPathSyncedAt = 0;
+    
+    StartupTimes() { }
+    
+    synchronized void setDuration(StartupPhase phase, long nanos)
+    {
+        _durations[phase.ordinal()] = Math.max(0L, nanos);
+    }
+    
+    synchronized void setClassLoadingStartedAt(long millis)
+    {
+        _classLoadingStartedAt = millis;
+    }
+    
+    synchronized long getClassLoadingStartedAt()
+    {
+        return _classLoadingStartedAt;
+    }
+    
+    synchronized void setClassPathSyncedAt(long millis)
+    {
+        _classPathSyncedAt = millis;
+    }
+    
+    synchronized long getClassPathSyncedAt()
+    {
+        return _classPathSyncedAt;
+    }
+    
+    /**
+     * How long {@code phase} took.
+     * 
+     * @param phase
+     * @param unit
+     * @return 
+     */
+    public synchronized long getDuration(StartupPhase phase, TimeUnit unit)
+    {
+        return unit.convert(_durations[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * The sum of the durations of all phases.
+     * 
+     * @param unit
+     * @return 
+     */
+    public synchronized long getTotal(TimeUnit unit)
+    {
+        long total = 0;
+        for(long duration : _durations)
+        {
+            total += duration;
+        }
+        
+        return unit.convert(total, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * The phase which took the longest.
+     * 
+     * @return 
+     */
+    public synchronized StartupPhase getSlowestPhase()
+    {
+        StartupPhase slowest = PHASES[0];
+        for(StartupPhase phase : PHASES)
+        {
+            if(_durations[phase.ordinal()] > _durations[slowest.ordinal()])
+            {
+                slowest = phase;
+            }
+        }
+        
+        return slowest;
+    }
+    
+    /**
+     * The duration of each phase in milliseconds, in the order the phases occur.
+     * 
+     * @return 
+     */
+    @Override
+    public synchronized String toString()
+    {
+        StringBuilder builder = new StringBuilder("[" + this.getClass().getName());
+        for(StartupPhase phase : PHASES)
+        {
+            builder.append(" ");
+            builder.append(phase);
+            builder.append("=");
+            builder.append(_durations[phase.ordinal()] / 1e6);
+            builder.append("ms");
+        }
+        builder.append("]");
+        
+        return builder.toString();
+    }
+}
\ No newline at end of file
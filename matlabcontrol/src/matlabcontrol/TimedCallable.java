@@ -0,0 +1,210 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+
+/**
+ * Wraps a {@link MatlabThreadCallable} so that how long it waited for MATLAB's main thread, and how long it then ran
+ * for, are measured in the Java Virtual Machine it runs in and returned alongside its result. Both are measured with
+ * {@link System#nanoTime()} in MATLAB's Java Virtual Machine, so they are never compared against times taken in
+ * another Java Virtual Machine.
+ * <br><br>
+ * When sent between Java Virtual Machines, marshalling is also measured in each of them: this callable measures how
+ * long it took to write in the calling Java Virtual Machine, its result measures how long it took to write in MATLAB's
+ * Java Virtual Machine and sends that along with itself, and the result measures how long it took to read in the
+ * calling Java Virtual Machine. Each is a duration measured within a single Java Virtual Machine.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class TimedCallable<T> implements MatlabThreadCallable<TimedCallable.Result<T>>, Serializable
+{
+    private static final long serialVersionUID = 0xB101L;
+    
+    private final MatlabThreadCallable<T> _callable;
+    
+    /**
+     * When this callable was queued to run on MATLAB's main thread. Not sent, as it is only meaningful in the Java
+     * Virtual Machine it was taken in.
+     */
+    private transient long _dispatchTime;
+    
+    /**
+     * Whether this callable was queued, as opposed to being run immediately on MATLAB's main thread.
+     */
+    private transient boolean _dispatched = false;
+    
+    /**
+     * How long writing this callable took in the Java Virtual Machine which sent it, {@code 0} if it was not sent. It
+     * may be written on a thread other than the one waiting for it, such as when pipelined.
+     */
+    private transient volatile long _marshalling;
+    
+    TimedCallable(MatlabThreadCallable<T> callable)
+    {
+        _callable = callable;
+    }
+    
+    /**
+     * The callable being measured.
+     * 
+     * @return 
+     */
+    MatlabThreadCallable<T> getCallable()
+    {
+        return _callable;
+    }
+    
+    /**
+     * Called when this callable is queued to run on MATLAB's main thread.
+     */
+    void dispatched()
+    {
+        _dispatchTime = System.nanoTime();
+        _dispatched = true;
+    }
+    
+    /**
+     * How long marshalling this callable took in nanoseconds, {@code 0} if it was not marshalled.
+     * 
+     * @return 
+     */
+    long getMarshalling()
+    {
+        return _marshalling;
+    }
+    
+    @Override
+    public Result<T> call(MatlabThreadProxy proxy) throws MatlabInvocationException
+    {
+        long start = System.nanoTime();
+        T value = _callable.call(proxy);
+        long end = System.nanoTime();
+        
+        return new Result<T>(value, _dispatched ? start - _dispatchTime : 0L, end - start);
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        long start = System.nanoTime();
+        out.defaultWriteObject();
+        _marshalling = System.nanoTime() - start;
+    }
+    
+    /**
+     * The result of the measured callable and how long it took, in nanoseconds.
+     */
+    static final class Result<T> implements Serializable
+    {
+        private static final long serialVersionUID = 0xB102L;
+        
+        private final T _value;
+        private final long _queueWait;
+        private final long _execution;
+        
+        /**
+         * How long writing this result took in MATLAB's Java Virtual Machine, which is only known once its fields have
+         * been written and so is sent after them.
+         */
+        private transient long _marshalling;
+        
+        /**
+         * How long reading this result took in the Java Virtual Machine which received it.
+         */
+        private transient long _unmarshalling;
+        
+        private Result(T value, long queueWait, long execution)
+        {
+            _value = value;
+            _queueWait = queueWait;
+            _execution = execution;
+        }
+        
+        T getValue()
+        {
+            return _value;
+        }
+        
+        long getQueueWait()
+        {
+            return _queueWait;
+        }
+        
+        long getExecution()
+        {
+            return _execution;
+        }
+        
+        /**
+         * How long marshalling this result took in nanoseconds, {@code 0} if it was not marshalled.
+         * 
+         * @return 
+         */
+        long getMarshalling()
+        {
+            return _marshalling;
+        }
+        
+        /**
+         * How long unmarshalling this result took in nanoseconds, {@code 0} if it was not marshalled.
+         * 
+         * @return 
+         */
+        long getUnmarshalling()
+        {
+            return _unmarshalling;
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            long start = System.nanoTime();
+            
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_value", PrimitiveArrayCodec.encodeResult(_value));
+            fields.put("_queueWait", _queueWait);
+            fields.put("_execution", _execution);
+            out.writeFields();
+            
+            out.writeLong(System.nanoTime() - start);
+        }
+        
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+        {
+            long start = System.nanoTime();
+            
+            in.defaultReadObject();
+            _marshalling = in.readLong();
+            
+            _unmarshalling = System.nanoTime() - start;
+        }
+    }
+}
\ No newline at end of file
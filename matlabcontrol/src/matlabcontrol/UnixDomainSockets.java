@@ -0,0 +1,616 @@
+package matlabcontrol;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unix domain sockets, which connect processes on the same computer without going through the TCP/IP stack. They are
+ * only available in Java 16 and later, and so are accessed reflectively; {@link #isSupported()} is {@code false} when
+ * running in an earlier Java Virtual Machine.
+ * <br><br>
+ * RMI requires {@link Socket}s and {@link ServerSocket}s, which cannot be created for Unix domain sockets, so the
+ * channels are adapted. A socket listening on a port {@code n} is bound to the file {@code n.sock} in a directory
+ * shared by all Java Virtual Machines on the computer, so that the port of an RMI endpoint identifies both its TCP
+ * address and its Unix domain address.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class UnixDomainSockets
+{
+    private static final File SOCKET_DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "matlabcontrol-uds");
+    
+    /**
+     * The methods needed to open Unix domain sockets, or {@code null} if they are not supported.
+     */
+    private static final Reflection REFLECTION = Reflection.load();
+    
+    private UnixDomainSockets() { }
+    
+    private static class Reflection
+    {
+        final Method addressOf;
+        final Object unixFamily;
+        final Method openSocket;
+        final Method openServerSocket;
+        final Method bind;
+        
+        private Reflection() throws Exception
+        {
+            Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+            Class<?> familyClass = Class.forName("java.net.ProtocolFamily");
+            Class<?> standardFamilyClass = Class.forName("java.net.StandardProtocolFamily");
+            
+            addressOf = addressClass.getMethod("of", String.class);
+            unixFamily = standardFamilyClass.getMethod("valueOf", String.class).invoke(null, "UNIX");
+            openSocket = SocketChannel.class.getMethod("open", familyClass);
+            openServerSocket = ServerSocketChannel.class.getMethod("open", familyClass);
+            bind = ServerSocketChannel.class.getMethod("bind", SocketAddress.class, int.class);
+        }
+        
+        static Reflection load()
+        {
+            Reflection reflection;
+            try
+            {
+                reflection = new Reflection();
+            }
+            catch(Exception e)
+            {
+                reflection = null;
+            }
+            
+            return reflection;
+        }
+        
+        SocketAddress address(File file) throws IOException
+        {
+            return (SocketAddress) invoke(addressOf, null, file.getAbsolutePath());
+        }
+        
+        Object invoke(Method method, Object target, Object... args) throws IOException
+        {
+            try
+            {
+                return method.invoke(target, args);
+            }
+            catch(InvocationTargetException e)
+            {
+                if(e.getCause() instanceof IOException)
+                {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Unix domain socket operation failed", e.getCause());
+            }
+            catch(IllegalAccessException e)
+            {
+                throw new IOException("Unix domain socket operation failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Whether Unix domain sockets can be used in this Java Virtual Machine.
+     * 
+     * @return 
+     */
+    static boolean isSupported()
+    {
+        return REFLECTION != null;
+    }
+    
+    /**
+     * The file a Unix domain socket listening on {@code port} is bound to.
+     * 
+     * @param port
+     * @return 
+     */
+    static File getSocketFile(int port)
+    {
+        return new File(SOCKET_DIRECTORY, port + ".sock");
+    }
+    
+    /**
+     * Connects to the Unix domain socket listening on {@code port}.
+     * 
+     * @param port
+     * @return
+     * @throws IOException if nothing is listening or Unix domain sockets are not supported
+     */
+    static Socket connect(int port) throws IOException
+    {
+        if(REFLECTION == null)
+        {
+            throw new IOException("Unix domain sockets are not supported");
+        }
+        
+        SocketChannel channel = (SocketChannel) REFLECTION.invoke(REFLECTION.openSocket, null, REFLECTION.unixFamily);
+        try
+        {
+            channel.connect(REFLECTION.address(getSocketFile(port)));
+            
+            return new ChannelSocket(channel, port);
+        }
+        catch(IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Creates a server socket which accepts connections on both the TCP {@code port} of localhost and the Unix domain
+     * socket for that port. If the TCP port cannot be bound but the Unix domain socket can, only the Unix domain socket
+     * is listened on, so that Java Virtual Machines which both support Unix domain sockets are unaffected by another
+     * process having taken the port. If the Unix domain socket cannot be bound, only the TCP port is listened on.
+     * 
+     * @param port the TCP port, {@code 0} for any free port
+     * @param backlog the TCP backlog
+     * @return
+     * @throws IOException if neither could be bound
+     */
+    static ServerSocket createServerSocket(int port, int backlog) throws IOException
+    {
+        ServerSocketChannel tcp = ServerSocketChannel.open();
+        try
+        {
+            tcp.socket().bind(new InetSocketAddress(InetAddress.getByName("localhost"), port), backlog);
+        }
+        catch(IOException e)
+        {
+            tcp.close();
+            if(port == 0 || REFLECTION == null)
+            {
+                throw e;
+            }
+            tcp = null;
+        }
+        
+        int boundPort = (tcp == null) ? port : tcp.socket().getLocalPort();
+        ServerSocketChannel unix = null;
+        if(REFLECTION != null)
+        {
+            try
+            {
+                unix = bind(getSocketFile(boundPort));
+            }
+            catch(IOException e)
+            {
+                if(tcp == null)
+                {
+                    throw new BindException("Unable to bind to port " + port + " over TCP or a Unix domain socket");
+                }
+            }
+        }
+        
+        return new DualServerSocket(tcp, unix, boundPort);
+    }
+    
+    private static ServerSocketChannel bind(File file) throws IOException
+    {
+        if(!SOCKET_DIRECTORY.isDirectory() && !SOCKET_DIRECTORY.mkdirs())
+        {
+            throw new IOException("Unable to create directory for Unix domain sockets: " + SOCKET_DIRECTORY);
+        }
+        
+        //A socket file left behind by a process which died is deleted, one still being listened on is in use
+        if(file.exists())
+        {
+            try
+            {
+                SocketChannel channel =
+                        (SocketChannel) REFLECTION.invoke(REFLECTION.openSocket, null, REFLECTION.unixFamily);
+                try
+                {
+                    channel.connect(REFLECTION.address(file));
+                }
+                finally
+                {
+                    channel.close();
+                }
+                throw new BindException("Unix domain socket in use: " + file);
+            }
+            catch(BindException e)
+            {
+                throw e;
+            }
+            catch(IOException e)
+            {
+                file.delete();
+            }
+        }
+        
+        ServerSocketChannel channel =
+                (ServerSocketChannel) REFLECTION.invoke(REFLECTION.openServerSocket, null, REFLECTION.unixFamily);
+        try
+        {
+            REFLECTION.invoke(REFLECTION.bind, channel, REFLECTION.address(file), 0);
+        }
+        catch(IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+        file.deleteOnExit();
+        
+        return channel;
+    }
+    
+    /**
+     * Accepts connections from a TCP server socket, a Unix domain server socket, or both.
+     */
+    private static class DualServerSocket extends ServerSocket
+    {
+        private final ServerSocketChannel _tcp;
+        private final ServerSocketChannel _unix;
+        private final int _port;
+        private final Selector _selector;
+        private volatile boolean _closed = false;
+        
+        DualServerSocket(ServerSocketChannel tcp, ServerSocketChannel unix, int port) throws IOException
+        {
+            _tcp = tcp;
+            _unix = unix;
+            _port = port;
+            
+            _selector = Selector.open();
+            if(tcp != null)
+            {
+                tcp.configureBlocking(false);
+                tcp.register(_selector, SelectionKey.OP_ACCEPT);
+            }
+            if(unix != null)
+            {
+                unix.configureBlocking(false);
+                unix.register(_selector, SelectionKey.OP_ACCEPT);
+            }
+        }
+        
+        @Override
+        public Socket accept() throws IOException
+        {
+            try
+            {
+                while(true)
+                {
+                    _selector.select();
+                    if(_closed)
+                    {
+                        throw new SocketException("Socket is closed");
+                    }
+                    
+                    for(Iterator<SelectionKey> iter = _selector.selectedKeys().iterator(); iter.hasNext();)
+                    {
+                        SelectionKey key = iter.next();
+                        iter.remove();
+                        
+                        SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+                        if(channel != null && key.channel() == _tcp)
+                        {
+                            channel.configureBlocking(true);
+                            
+                            return channel.socket();
+                        }
+                        else if(channel != null)
+                        {
+                            try
+                            {
+                                return new ChannelSocket(channel, 0);
+                            }
+                            catch(IOException e)
+                            {
+                                channel.close();
+                                throw e;
+                            }
+                        }
+                    }
+                }
+            }
+            catch(ClosedSelectorException e)
+            {
+                throw new SocketException("Socket is closed");
+            }
+        }
+        
+        @Override
+        public int getLocalPort()
+        {
+            return _port;
+        }
+        
+        @Override
+        public InetAddress getInetAddress()
+        {
+            return (_tcp == null) ? null : _tcp.socket().getInetAddress();
+        }
+        
+        @Override
+        public boolean isBound()
+        {
+            return true;
+        }
+        
+        @Override
+        public boolean isClosed()
+        {
+            return _closed;
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            if(!_closed)
+            {
+                _closed = true;
+                _selector.wakeup();
+                _selector.close();
+                if(_tcp != null)
+                {
+                    _tcp.close();
+                }
+                if(_unix != null)
+                {
+                    _unix.close();
+                    getSocketFile(_port).delete();
+                }
+            }
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "DualServerSocket[port=" + _port + ", tcp=" + (_tcp != null) + ", unix=" + (_unix != null) + "]";
+        }
+    }
+    
+    /**
+     * Adapts a connected Unix domain socket channel to a {@link Socket}. It presents itself as connected to localhost,
+     * as that is what RMI expects of the sockets it is given.
+     * <br><br>
+     * The channel is non-blocking, with reads and writes each waiting on a selector of their own, so that reads honor
+     * {@link #setSoTimeout(int)} in the same manner as a TCP socket while one thread may read as another writes.
+     */
+    private static class ChannelSocket extends Socket
+    {
+        private final SocketChannel _channel;
+        private final int _port;
+        private final Selector _readSelector;
+        private final Selector _writeSelector;
+        private final InputStream _in;
+        private final OutputStream _out;
+        private volatile int _timeout = 0;
+        
+        ChannelSocket(final SocketChannel channel, int port) throws IOException
+        {
+            _channel = channel;
+            _port = port;
+            
+            channel.configureBlocking(false);
+            _readSelector = Selector.open();
+            _writeSelector = Selector.open();
+            channel.register(_readSelector, SelectionKey.OP_READ);
+            channel.register(_writeSelector, SelectionKey.OP_WRITE);
+            
+            _in = new InputStream()
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    byte[] b = new byte[1];
+                    int n = this.read(b, 0, 1);
+                    
+                    return (n == -1) ? -1 : (b[0] & 0xFF);
+                }
+                
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException
+                {
+                    if(len == 0)
+                    {
+                        return 0;
+                    }
+                    
+                    ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                    int timeout = _timeout;
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+                    int n;
+                    while((n = channel.read(buffer)) == 0)
+                    {
+                        long wait = 0;
+                        if(timeout > 0)
+                        {
+                            wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                            if(wait <= 0)
+                            {
+                                throw new SocketTimeoutException("Read timed out");
+                            }
+                        }
+                        await(_readSelector, wait);
+                    }
+                    
+                    return n;
+                }
+                
+                @Override
+                public void close() throws IOException
+                {
+                    ChannelSocket.this.close();
+                }
+            };
+            _out = new OutputStream()
+            {
+                @Override
+                public void write(int b) throws IOException
+                {
+                    this.write(new byte[] { (byte) b }, 0, 1);
+                }
+                
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException
+                {
+                    ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                    while(buffer.hasRemaining())
+                    {
+                        if(channel.write(buffer) == 0)
+                        {
+                            await(_writeSelector, 0);
+                        }
+                    }
+                }
+                
+                @Override
+                public void close() throws IOException
+                {
+                    ChannelSocket.this.close();
+                }
+            };
+        }
+        
+        /**
+         * Waits until the channel is ready, up to {@code timeout} milliseconds or indefinitely if {@code 0}.
+         */
+        private static void await(Selector selector, long timeout) throws IOException
+        {
+            try
+            {
+                selector.select(timeout);
+                selector.selectedKeys().clear();
+            }
+            //Closing the socket closes the selectors, waking any waiting thread
+            catch(ClosedSelectorException e)
+            {
+                throw new SocketException("Socket is closed");
+            }
+        }
+        
+        @Override
+        public InputStream getInputStream()
+        {
+            return _in;
+        }
+        
+        @Override
+        public OutputStream getOutputStream()
+        {
+            return _out;
+        }
+        
+        @Override
+        public InetAddress getInetAddress()
+        {
+            try
+            {
+                return InetAddress.getByName("localhost");
+            }
+            catch(IOException e)
+            {
+                return null;
+            }
+        }
+        
+        @Override
+        public int getPort()
+        {
+            return _port;
+        }
+        
+        @Override
+        public boolean isConnected()
+        {
+            return _channel.isConnected();
+        }
+        
+        @Override
+        public boolean isClosed()
+        {
+            return !_channel.isOpen();
+        }
+        
+        //Options which only apply to TCP are ignored
+        
+        @Override
+        public void setTcpNoDelay(boolean on) { }
+        
+        @Override
+        public void setKeepAlive(boolean on) { }
+        
+        @Override
+        public void setSoTimeout(int timeout) throws SocketException
+        {
+            if(timeout < 0)
+            {
+                throw new IllegalArgumentException("timeout can't be negative");
+            }
+            _timeout = timeout;
+        }
+        
+        @Override
+        public int getSoTimeout()
+        {
+            return _timeout;
+        }
+        
+        @Override
+        public synchronized void close() throws IOException
+        {
+            try
+            {
+                _channel.close();
+            }
+            finally
+            {
+                _readSelector.close();
+                _writeSelector.close();
+            }
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "ChannelSocket[unix, port=" + _port + "]";
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,464 @@
+package matlabcontrol.extensions;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import matlabcontrol.MatlabFuture;
+import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.MatlabProxy;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import matlabcontrol.internal.ArrayCodecAccess;
+
+/**
+ * Reads numeric MATLAB variables in fixed-size chunks, so that neither MATLAB's Java Virtual Machine nor this one ever
+ * holds more than a couple of chunks of the variable at a time, regardless of how large the variable is. Example
+ * usage:
+ * <pre>
+ * {@code
+ * MatlabArrayReader reader = new MatlabArrayReader(proxy);
+ * reader.read("data", new MatlabArrayReader.ChunkHandler()
+ * {
+ *     public void handle(MatlabArrayReader.Chunk chunk)
+ *     {
+ *         process(chunk.getStart(), chunk.getReal());
+ *     }
+ * });
+ * }
+ * </pre>
+ * Elements are identified by their zero-based linear index, which is one less than MATLAB's linear index, and so are
+ * read in MATLAB's column-major order. All values are converted to {@code double}s as they are read, as
+ * {@link MatlabTypeConverter} does. While one chunk is being handled the next is already being retrieved from MATLAB.
+ * <br><br>
+ * Each chunk is retrieved separately, so the variable must not be modified while it is being read. This class is
+ * unconditionally thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabArrayReader
+{
+    /**
+     * The number of elements in a chunk if not otherwise specified, 8 MB of {@code double}s.
+     */
+    public static final int DEFAULT_CHUNK_LENGTH = 1024 * 1024;
+    
+    private final MatlabProxy _proxy;
+    private final int _chunkLength;
+    
+    /**
+     * Constructs a reader which reads chunks of {@link #DEFAULT_CHUNK_LENGTH} elements.
+     * 
+     * @param proxy 
+     */
+    public MatlabArrayReader(MatlabProxy proxy)
+    {
+        this(proxy, DEFAULT_CHUNK_LENGTH);
+    }
+    
+    /**
+     * Constructs a reader which reads chunks of at most {@code chunkLength} elements.
+     * 
+     * @param proxy
+     * @param chunkLength
+     * @throws IllegalArgumentException if {@code chunkLength} is not positive
+     */
+    public MatlabArrayReader(MatlabProxy proxy, int chunkLength)
+    {
+        if(chunkLength < 1)
+        {
+            throw new IllegalArgumentException("chunk length [" + chunkLength + "] must be positive");
+        }
+        
+        _proxy = proxy;
+        _chunkLength = chunkLength;
+    }
+    
+    /**
+     * Receives the chunks of a variable as they are read.
+     * 
+     * @since 4.2.0
+     */
+    public static interface ChunkHandler
+    {
+        /**
+         * Called once per chunk, in order. The chunk's arrays are not used by the reader once this method returns.
+         * 
+         * @param chunk
+         * @throws MatlabInvocationException to stop reading, it is thrown from the method reading the variable
+         */
+        public void handle(Chunk chunk) throws MatlabInvocationException;
+    }
+    
+    /**
+     * A contiguous range of a variable's elements.
+     * 
+     * @since 4.2.0
+     */
+    public static final class Chunk
+    {
+        private final long _start;
+        private final double[] _real;
+        private final double[] _imaginary;
+        
+        private Chunk(long start, double[] real, double[] imaginary)
+        {
+            _start = start;
+            _real = real;
+            _imaginary = imaginary;
+        }
+        
+        /**
+         * The zero-based linear index of the chunk's first element.
+         * 
+         * @return 
+         */
+        public long getStart()
+        {
+            return _start;
+        }
+        
+        /**
+         * The number of elements in the chunk.
+         * 
+         * @return 
+         */
+        public int getLength()
+        {
+            return _real.length;
+        }
+        
+        /**
+         * The real parts of the chunk's elements.
+         * 
+         * @return 
+         */
+        public double[] getReal()
+        {
+            return _real;
+        }
+        
+        /**
+         * The imaginary parts of the chunk's elements, {@code null} if the variable is real.
+         * 
+         * @return 
+         */
+        public double[] getImaginary()
+        {
+            return _imaginary;
+        }
+        
+        /**
+         * Whether the variable is real, in which case there are no imaginary parts.
+         * 
+         * @return 
+         */
+        public boolean isReal()
+        {
+            return _imaginary == null;
+        }
+    }
+    
+    /**
+     * Retrieves the length of each dimension of the variable. This is the same as MATLAB's {@code size} function.
+     * 
+     * @param variableName
+     * @return
+     * @throws MatlabInvocationException if thrown by the proxy
+     */
+    public int[] getLengths(String variableName) throws MatlabInvocationException
+    {
+        return _proxy.invokeAndWait(new GetInfoCallable(variableName)).lengths;
+    }
+    
+    /**
+     * Reads all of the variable's elements.
+     * 
+     * @param variableName
+     * @param handler
+     * @throws MatlabInvocationException if thrown by the proxy or the handler
+     */
+    public void read(String variableName, ChunkHandler handler) throws MatlabInvocationException
+    {
+        ArrayInfo info = _proxy.invokeAndWait(new GetInfoCallable(variableName));
+        this.read(variableName, info, 0, info.getNumberOfElements(), 1, handler);
+    }
+    
+    /**
+     * Reads {@code length} of the variable's elements starting at zero-based linear index {@code start}.
+     * 
+     * @param variableName
+     * @param start
+     * @param length
+     * @param handler
+     * @throws MatlabInvocationException if thrown by the proxy or the handler
+     * @throws IndexOutOfBoundsException if the range is not within the variable
+     */
+    public void read(String variableName, long start, long length, ChunkHandler handler)
+            throws MatlabInvocationException
+    {
+        ArrayInfo info = _proxy.invokeAndWait(new GetInfoCallable(variableName));
+        checkRange(start, length, info.getNumberOfElements());
+        this.read(variableName, info, start, length, 1, handler);
+    }
+    
+    /**
+     * Reads {@code count} whole columns of the variable starting at zero-based column {@code start}. Each chunk holds
+     * whole columns, at least one, so a chunk holds more than the reader's chunk length of elements only when a single
+     * column does. Variables with more than two dimensions are treated as though their trailing dimensions were
+     * collapsed into the second, as MATLAB does for {@code variableName(:, k)}.
+     * 
+     * @param variableName
+     * @param start
+     * @param count
+     * @param handler
+     * @throws MatlabInvocationException if thrown by the proxy or the handler
+     * @throws IndexOutOfBoundsException if the columns are not within the variable
+     */
+    public void readColumns(String variableName, long start, long count, ChunkHandler handler)
+            throws MatlabInvocationException
+    {
+        ArrayInfo info = _proxy.invokeAndWait(new GetInfoCallable(variableName));
+        long rows = info.lengths.length == 0 ? 0 : info.lengths[0];
+        long columns = rows == 0 ? 0 : info.getNumberOfElements() / rows;
+        checkRange(start, count, columns);
+        
+        if(rows > 0)
+        {
+            this.read(variableName, info, start * rows, count * rows, rows, handler);
+        }
+    }
+    
+    /**
+     * Reads {@code length} of the variable's elements starting at zero-based linear index {@code start} into the
+     * provided arrays starting at {@code offset}. The elements are still retrieved a chunk at a time.
+     * 
+     * @param variableName
+     * @param start
+     * @param real receives the real parts
+     * @param imaginary receives the imaginary parts, zeros if the variable is real; may be {@code null} if they are
+     * not wanted
+     * @param offset
+     * @param length
+     * @return whether the variable is real
+     * @throws MatlabInvocationException if thrown by the proxy
+     * @throws IndexOutOfBoundsException if the range is not within the variable or the arrays
+     */
+    public boolean read(String variableName, long start, final double[] real, final double[] imaginary,
+            final int offset, int length) throws MatlabInvocationException
+    {
+        if(offset < 0 || length < 0 || offset + length > real.length ||
+                (imaginary != null && offset + length > imaginary.length))
+        {
+            throw new IndexOutOfBoundsException("offset [" + offset + "] and length [" + length + "] are not " +
+                    "within the arrays");
+        }
+        
+        final long first = start;
+        ArrayInfo info = _proxy.invokeAndWait(new GetInfoCallable(variableName));
+        checkRange(start, length, info.getNumberOfElements());
+        this.read(variableName, info, start, length, 1, new ChunkHandler()
+        {
+            @Override
+            public void handle(Chunk chunk)
+            {
+                int position = offset + (int) (chunk.getStart() - first);
+                System.arraycopy(chunk.getReal(), 0, real, position, chunk.getLength());
+                if(imaginary != null && !chunk.isReal())
+                {
+                    System.arraycopy(chunk.getImaginary(), 0, imaginary, position, chunk.getLength());
+                }
+            }
+        });
+        
+        if(imaginary != null && info.isReal)
+        {
+            for(int i = offset; i < offset + length; i++)
+            {
+                imaginary[i] = 0;
+            }
+        }
+        
+        return info.isReal;
+    }
+    
+    private static void checkRange(long start, long length, long available)
+    {
+        if(start < 0 || length < 0 || start + length > available)
+        {
+            throw new IndexOutOfBoundsException("start [" + start + "] and length [" + length + "] are not " +
+                    "within the [" + available + "] available");
+        }
+    }
+    
+    /**
+     * Reads elements {@code start} through {@code start + length - 1} in chunks whose lengths are a multiple of
+     * {@code granularity}. The next chunk is requested before the current one is handled.
+     */
+    private void read(String variableName, ArrayInfo info, long start, long length, long granularity,
+            ChunkHandler handler) throws MatlabInvocationException
+    {
+        long chunkLength = Math.max(1, _chunkLength / granularity) * granularity;
+        long end = start + length;
+        
+        MatlabFuture<ChunkValues> pending = null;
+        if(length > 0)
+        {
+            pending = _proxy.invokeAsync(new GetChunkCallable(variableName, start, Math.min(chunkLength, length),
+                    info.isReal));
+        }
+        
+        try
+        {
+            for(long chunkStart = start; chunkStart < end; chunkStart += chunkLength)
+            {
+                ChunkValues values = pending.getResult();
+                
+                long nextStart = chunkStart + chunkLength;
+                pending = null;
+                if(nextStart < end)
+                {
+                    pending = _proxy.invokeAsync(new GetChunkCallable(variableName, nextStart,
+                            Math.min(chunkLength, end - nextStart), info.isReal));
+                }
+                
+                handler.handle(new Chunk(chunkStart, values.real, values.imaginary));
+            }
+        }
+        finally
+        {
+            //If the handler threw, do not leave a chunk being retrieved for nobody
+            if(pending != null)
+            {
+                pending.cancel(false);
+            }
+        }
+    }
+    
+    private static class GetInfoCallable implements MatlabThreadCallable<ArrayInfo>, Serializable
+    {
+        private final String _variableName;
+        
+        GetInfoCallable(String variableName)
+        {
+            _variableName = variableName;
+        }
+        
+        @Override
+        public ArrayInfo call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            double[] size = (double[]) proxy.returningEval("size(" + _variableName + ");", 1)[0];
+            int[] lengths = new int[size.length];
+            for(int i = 0; i < size.length; i++)
+            {
+                lengths[i] = (int) size[i];
+            }
+            
+            boolean isReal = ((boolean[]) proxy.returningEval("isreal(" + _variableName + ");", 1)[0])[0];
+            
+            return new ArrayInfo(lengths, isReal);
+        }
+    }
+    
+    private static class ArrayInfo implements Serializable
+    {
+        private final int[] lengths;
+        private final boolean isReal;
+        
+        ArrayInfo(int[] lengths, boolean isReal)
+        {
+            this.lengths = lengths;
+            this.isReal = isReal;
+        }
+        
+        long getNumberOfElements()
+        {
+            long numberOfElements = 1;
+            for(int length : lengths)
+            {
+                numberOfElements *= length;
+            }
+            
+            return numberOfElements;
+        }
+    }
+    
+    /**
+     * Retrieves elements of the variable, only that range of the variable is ever copied in MATLAB.
+     */
+    private static class GetChunkCallable implements MatlabThreadCallable<ChunkValues>, Serializable
+    {
+        private final String _variableName;
+        private final long _start;
+        private final long _length;
+        private final boolean _isReal;
+        
+        GetChunkCallable(String variableName, long start, long length, boolean isReal)
+        {
+            _variableName = variableName;
+            _start = start;
+            _length = length;
+            _isReal = isReal;
+        }
+        
+        @Override
+        public ChunkValues call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            //MATLAB's linear indices are one-based
+            String range = _variableName + "(" + (_start + 1) + ":" + (_start + _length) + ")";
+            
+            double[] real = (double[]) proxy.returningEval("double(real(" + range + "));", 1)[0];
+            double[] imaginary = null;
+            if(!_isReal)
+            {
+                imaginary = (double[]) proxy.returningEval("double(imag(" + range + "));", 1)[0];
+            }
+            
+            return new ChunkValues(real, imaginary);
+        }
+    }
+    
+    private static class ChunkValues implements Serializable
+    {
+        private final double[] real, imaginary;
+        
+        ChunkValues(double[] real, double[] imaginary)
+        {
+            this.real = real;
+            this.imaginary = imaginary;
+        }
+        
+        //Sends the values compactly, and through shared memory if enabled, as the proxy does for its own results
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("real", ArrayCodecAccess.encode(real));
+            fields.put("imaginary", ArrayCodecAccess.encode(imaginary));
+            out.writeFields();
+        }
+    }
+}
\ No newline at end of file
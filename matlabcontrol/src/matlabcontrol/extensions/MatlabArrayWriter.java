@@ -0,0 +1,423 @@
+package matlabcontrol.extensions;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import matlabcontrol.MatlabFuture;
+import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.MatlabProxy;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import matlabcontrol.internal.ArrayCodecAccess;
+
+/**
+ * Writes numeric MATLAB variables in blocks, so that the variable never has to exist as a single Java array or be sent
+ * as a single message. The variable is preallocated in MATLAB with its final dimensions and then filled a block at a
+ * time, so neither MATLAB's Java Virtual Machine nor this one holds more than a couple of blocks at once. Example usage:
+ * <pre>
+ * {@code
+ * MatlabArrayWriter writer = new MatlabArrayWriter(proxy);
+ * writer.write("data", new int[] { rows, columns }, new MatlabArrayWriter.BlockSource()
+ * {
+ *     public int fill(double[] block)
+ *     {
+ *         return readValues(block);
+ *     }
+ * });
+ * }
+ * </pre>
+ * Values are provided in MATLAB's column-major linear order and the variable is created as a real {@code double}
+ * array. While one block is being sent to MATLAB the next is already being filled.
+ * <br><br>
+ * If writing fails part way through, the variable is left in MATLAB partially filled. This class is unconditionally
+ * thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabArrayWriter
+{
+    /**
+     * The number of elements in a block if not otherwise specified, 8 MB of {@code double}s.
+     */
+    public static final int DEFAULT_BLOCK_LENGTH = 1024 * 1024;
+    
+    private final MatlabProxy _proxy;
+    private final int _blockLength;
+    
+    /**
+     * Constructs a writer which sends blocks of {@link #DEFAULT_BLOCK_LENGTH} elements.
+     * 
+     * @param proxy 
+     */
+    public MatlabArrayWriter(MatlabProxy proxy)
+    {
+        this(proxy, DEFAULT_BLOCK_LENGTH);
+    }
+    
+    /**
+     * Constructs a writer which sends blocks of at most {@code blockLength} elements.
+     * 
+     * @param proxy
+     * @param blockLength
+     * @throws IllegalArgumentException if {@code blockLength} is not positive
+     */
+    public MatlabArrayWriter(MatlabProxy proxy, int blockLength)
+    {
+        if(blockLength < 1)
+        {
+            throw new IllegalArgumentException("block length [" + blockLength + "] must be positive");
+        }
+        
+        _proxy = proxy;
+        _blockLength = blockLength;
+    }
+    
+    /**
+     * Produces the values of a variable being written.
+     * 
+     * @since 4.2.0
+     */
+    public static interface BlockSource
+    {
+        /**
+         * Fills {@code block} with the next values, starting at index {@code 0}. The same arrays are reused from one
+         * call to the next once their values have been sent.
+         * 
+         * @param block
+         * @return the number of values provided, {@code -1} once there are no more
+         * @throws MatlabInvocationException to stop writing, it is thrown from the method writing the variable
+         */
+        public int fill(double[] block) throws MatlabInvocationException;
+    }
+    
+    /**
+     * Writes the variable with values provided by {@code source}, which must provide exactly as many values as the
+     * variable has elements.
+     * 
+     * @param variableName
+     * @param lengths the length of each dimension of the variable, at least two as in MATLAB
+     * @param source
+     * @throws MatlabInvocationException if thrown by the proxy or the source
+     * @throws IllegalArgumentException if {@code source} provides a different number of values than the variable has
+     * elements, or if {@code lengths} has fewer than two dimensions or a negative length
+     */
+    public void write(String variableName, int[] lengths, BlockSource source) throws MatlabInvocationException
+    {
+        long numberOfElements = getNumberOfElements(lengths);
+        
+        String blockName = _proxy.invokeAndWait(new PreallocateCallable(variableName, lengths));
+        boolean completed = false;
+        try
+        {
+            //Two blocks, so one can be filled while the other is being sent
+            double[][] blocks = new double[2][];
+            List<MatlabFuture<Void>> pending = new ArrayList<MatlabFuture<Void>>(2);
+            pending.add(null);
+            pending.add(null);
+            
+            long written = 0;
+            for(int i = 0; ; i = 1 - i)
+            {
+                //The block may still be being sent from the last time it was filled
+                if(pending.get(i) != null)
+                {
+                    pending.set(i, null).getResult();
+                }
+                if(blocks[i] == null)
+                {
+                    blocks[i] = new double[(int) Math.min(_blockLength, Math.max(1, numberOfElements))];
+                }
+                
+                int count = source.fill(blocks[i]);
+                if(count < 0)
+                {
+                    break;
+                }
+                if(count > blocks[i].length || written + count > numberOfElements)
+                {
+                    throw new IllegalArgumentException("source provided more than the [" + numberOfElements + "] " +
+                            "values of the variable");
+                }
+                
+                if(count > 0)
+                {
+                    pending.set(i, _proxy.invokeAsync(new SetBlockCallable(variableName, blockName, written,
+                            blocks[i], count)));
+                    written += count;
+                }
+            }
+            
+            for(MatlabFuture<Void> future : pending)
+            {
+                if(future != null)
+                {
+                    future.getResult();
+                }
+            }
+            
+            if(written != numberOfElements)
+            {
+                throw new IllegalArgumentException("source provided [" + written + "] values but the variable has [" +
+                        numberOfElements + "]");
+            }
+            completed = true;
+        }
+        finally
+        {
+            this.clear(blockName, completed);
+        }
+    }
+    
+    /**
+     * Writes the variable with values provided by {@code blocks}, each block being sent as provided. The variable's
+     * values are the blocks' values one after another, and there must be exactly as many as the variable has elements.
+     * 
+     * @param variableName
+     * @param lengths the length of each dimension of the variable, at least two as in MATLAB
+     * @param blocks
+     * @throws MatlabInvocationException if thrown by the proxy
+     * @throws IllegalArgumentException if {@code blocks} provides a different number of values than the variable has
+     * elements, or if {@code lengths} has fewer than two dimensions or a negative length
+     */
+    public void write(String variableName, int[] lengths, Iterator<double[]> blocks) throws MatlabInvocationException
+    {
+        long numberOfElements = getNumberOfElements(lengths);
+        
+        String blockName = _proxy.invokeAndWait(new PreallocateCallable(variableName, lengths));
+        boolean completed = false;
+        try
+        {
+            //At most two blocks are outstanding, so no more than two are held onto at once
+            List<MatlabFuture<Void>> pending = new ArrayList<MatlabFuture<Void>>(2);
+            pending.add(null);
+            pending.add(null);
+            
+            long written = 0;
+            for(int i = 0; blocks.hasNext(); i = 1 - i)
+            {
+                if(pending.get(i) != null)
+                {
+                    pending.set(i, null).getResult();
+                }
+                
+                double[] block = blocks.next();
+                if(written + block.length > numberOfElements)
+                {
+                    throw new IllegalArgumentException("blocks provided more than the [" + numberOfElements + "] " +
+                            "values of the variable");
+                }
+                if(block.length > 0)
+                {
+                    pending.set(i, _proxy.invokeAsync(new SetBlockCallable(variableName, blockName, written, block,
+                            block.length)));
+                    written += block.length;
+                }
+            }
+            
+            for(MatlabFuture<Void> future : pending)
+            {
+                if(future != null)
+                {
+                    future.getResult();
+                }
+            }
+            
+            if(written != numberOfElements)
+            {
+                throw new IllegalArgumentException("blocks provided [" + written + "] values but the variable has [" +
+                        numberOfElements + "]");
+            }
+            completed = true;
+        }
+        finally
+        {
+            this.clear(blockName, completed);
+        }
+    }
+    
+    /**
+     * Removes the variable the blocks were sent as. A failure to do so is only thrown if writing {@code completed},
+     * otherwise it would replace the exception that stopped writing.
+     */
+    private void clear(String blockName, boolean completed) throws MatlabInvocationException
+    {
+        try
+        {
+            _proxy.eval("clear " + blockName + ";");
+        }
+        catch(MatlabInvocationException e)
+        {
+            if(completed)
+            {
+                throw e;
+            }
+        }
+    }
+    
+    /**
+     * Writes the variable with the remaining values of {@code values}, which may be a direct or memory-mapped buffer
+     * so that the values need not be on the Java heap. There must be exactly as many remaining values as the variable
+     * has elements. The buffer's position is advanced past the values written.
+     * 
+     * @param variableName
+     * @param lengths the length of each dimension of the variable, at least two as in MATLAB
+     * @param values
+     * @throws MatlabInvocationException if thrown by the proxy
+     * @throws IllegalArgumentException if {@code values} has a different number of values than the variable has
+     * elements, or if {@code lengths} has fewer than two dimensions or a negative length
+     */
+    public void write(String variableName, int[] lengths, final DoubleBuffer values) throws MatlabInvocationException
+    {
+        this.write(variableName, lengths, new BlockSource()
+        {
+            @Override
+            public int fill(double[] block)
+            {
+                int count = -1;
+                if(values.hasRemaining())
+                {
+                    count = Math.min(block.length, values.remaining());
+                    values.get(block, 0, count);
+                }
+                
+                return count;
+            }
+        });
+    }
+    
+    private static long getNumberOfElements(int[] lengths)
+    {
+        if(lengths.length < 2)
+        {
+            throw new IllegalArgumentException("MATLAB arrays have at least two dimensions, [" + lengths.length +
+                    "] were provided");
+        }
+        
+        long numberOfElements = 1;
+        for(int length : lengths)
+        {
+            if(length < 0)
+            {
+                throw new IllegalArgumentException("length [" + length + "] may not be negative");
+            }
+            numberOfElements *= length;
+        }
+        
+        return numberOfElements;
+    }
+    
+    /**
+     * Creates the variable filled with zeros, and determines a name not in use for the blocks as they are sent.
+     */
+    private static class PreallocateCallable implements MatlabThreadCallable<String>, Serializable
+    {
+        private final String _variableName;
+        private final int[] _lengths;
+        
+        PreallocateCallable(String variableName, int[] lengths)
+        {
+            _variableName = variableName;
+            _lengths = lengths;
+        }
+        
+        @Override
+        public String call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            String command = _variableName + " = zeros(";
+            for(int i = 0; i < _lengths.length; i++)
+            {
+                command += (i == 0 ? "" : ", ") + _lengths[i];
+            }
+            command += ");";
+            proxy.eval(command);
+            
+            return (String) proxy.returningEval("genvarname('" + _variableName + "_block', who);", 1)[0];
+        }
+    }
+    
+    /**
+     * Copies a block of values into the variable, starting at a zero-based linear index.
+     */
+    private static class SetBlockCallable implements MatlabThreadCallable<Void>, Serializable
+    {
+        private final String _variableName;
+        private final String _blockName;
+        private final long _start;
+        private double[] _block;
+        private final int _count;
+        
+        SetBlockCallable(String variableName, String blockName, long start, double[] block, int count)
+        {
+            _variableName = variableName;
+            _blockName = blockName;
+            _start = start;
+            _block = block;
+            _count = count;
+        }
+        
+        @Override
+        public Void call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            double[] block = _block;
+            if(block.length != _count)
+            {
+                block = new double[_count];
+                System.arraycopy(_block, 0, block, 0, _count);
+            }
+            
+            //MATLAB's linear indices are one-based
+            proxy.setVariable(_blockName, block);
+            proxy.eval(_variableName + "(" + (_start + 1) + ":" + (_start + _count) + ") = " + _blockName + ";");
+            
+            return null;
+        }
+        
+        //Sends only the values provided, compactly, and through shared memory if enabled
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            double[] block = _block;
+            if(block.length != _count)
+            {
+                block = new double[_count];
+                System.arraycopy(_block, 0, block, 0, _count);
+            }
+            
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_variableName", _variableName);
+            fields.put("_blockName", _blockName);
+            fields.put("_start", _start);
+            fields.put("_block", ArrayCodecAccess.encode(block));
+            fields.put("_count", _count);
+            out.writeFields();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,473 @@
+package matlabcontrol.extensions;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.MatlabProxy;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import matlabcontrol.internal.CallableAccess;
+
+/**
+ * Records a sequence of operations and then runs all of them in MATLAB at once. Each operation that is recorded returns
+ * a {@link Handle} which is used to retrieve that operation's result once the batch has been executed. Example usage:
+ * <pre>
+ * {@code
+ * MatlabBatch batch = new MatlabBatch();
+ * batch.setVariable("a", 5);
+ * batch.eval("b = a * 2;");
+ * MatlabBatch.Handle<Object> b = batch.getVariable("b");
+ * 
+ * MatlabBatch.Results results = batch.execute(proxy);
+ * double[] value = (double[]) results.get(b);
+ * }
+ * </pre>
+ * Executing a batch is a single call to {@link MatlabProxy#invokeAndWait(MatlabThreadCallable)}, so the operations are
+ * run one after another on MATLAB's main thread without anything else interacting with MATLAB in between. When running
+ * outside MATLAB this replaces a round trip to MATLAB's Java Virtual Machine per operation with a single round trip for
+ * the whole batch. All values sent to MATLAB and all values returned must therefore be {@link Serializable} as
+ * described in the documentation of {@code MatlabProxy}.
+ * <br><br>
+ * What happens when an operation throws a {@link MatlabInvocationException} is determined by the batch's
+ * {@link ErrorMode}. Either the remaining operations are not run, or they are run regardless. In both cases the
+ * exception is reported for that operation's handle, it does not cause {@link #execute(MatlabProxy)} to throw.
+ * <br><br>
+ * A batch may be executed any number of times, and operations may be recorded after it has been executed. This class is
+ * not thread-safe.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabBatch
+{
+    /**
+     * The same operations the proxies send, so that a recorded operation behaves exactly as calling the proxy would.
+     */
+    private static final CallableAccess.Callables CALLABLES = CallableAccess.getCallables();
+    
+    /**
+     * How a batch proceeds when one of its operations fails.
+     * 
+     * @since 4.2.0
+     */
+    public static enum ErrorMode
+    {
+        /**
+         * No operations after the failed operation are run.
+         */
+        STOP,
+        
+        /**
+         * All operations are run regardless of whether earlier operations failed.
+         */
+        CONTINUE;
+    }
+    
+    private final ErrorMode _errorMode;
+    
+    /**
+     * The operations in the order they were recorded.
+     */
+    private final List<MatlabThreadCallable<?>> _operations = new ArrayList<MatlabThreadCallable<?>>();
+    
+    /**
+     * Constructs a batch which stops running operations once one of them fails.
+     */
+    public MatlabBatch()
+    {
+        this(ErrorMode.STOP);
+    }
+    
+    /**
+     * Constructs a batch which handles failed operations as specified by {@code errorMode}.
+     * 
+     * @param errorMode 
+     * @throws NullPointerException if {@code errorMode} is {@code null}
+     */
+    public MatlabBatch(ErrorMode errorMode)
+    {
+        if(errorMode == null)
+        {
+            throw new NullPointerException("errorMode may not be null");
+        }
+        
+        _errorMode = errorMode;
+    }
+    
+    /**
+     * Records an operation which is equivalent to {@link MatlabProxy#eval(String)}.
+     * 
+     * @param command
+     * @return handle to the result
+     */
+    public Handle<Void> eval(String command)
+    {
+        return this.add(CALLABLES.eval(command));
+    }
+    
+    /**
+     * Records an operation which is equivalent to {@link MatlabProxy#returningEval(String, int)}.
+     * 
+     * @param command
+     * @param nargout
+     * @return handle to the result
+     */
+    public Handle<Object[]> returningEval(String command, int nargout)
+    {
+        return this.add(CALLABLES.returningEval(command, nargout));
+    }
+    
+    /**
+     * Records an operation which is equivalent to {@link MatlabProxy#feval(String, Object[])}.
+     * 
+     * @param functionName
+     * @param args
+     * @return handle to the result
+     */
+    public Handle<Void> feval(String functionName, Object... args)
+    {
+        return this.add(CALLABLES.feval(functionName, args));
+    }
+    
+    /**
+     * Records an operation which is equivalent to {@link MatlabProxy#returningFeval(String, int, Object[])}.
+     * 
+     * @param functionName
+     * @param nargout
+     * @param args
+     * @return handle to the result
+     */
+    public Handle<Object[]> returningFeval(String functionName, int nargout, Object... args)
+    {
+        return this.add(CALLABLES.returningFeval(functionName, nargout, args));
+    }
+    
+    /**
+     * Records an operation which is equivalent to {@link MatlabProxy#setVariable(String, Object)}.
+     * 
+     * @param variableName
+     * @param value
+     * @return handle to the result
+     */
+    public Handle<Void> setVariable(String variableName, Object value)
+    {
+        return this.add(CALLABLES.setVariable(variableName, value));
+    }
+    
+    /**
+     * Records an operation which is equivalent to {@link MatlabProxy#getVariable(String)}.
+     * 
+     * @param variableName
+     * @return handle to the result
+     */
+    public Handle<Object> getVariable(String variableName)
+    {
+        return this.add(CALLABLES.getVariable(variableName));
+    }
+    
+    /**
+     * Records an arbitrary operation. The {@code callable} is run on MATLAB's main thread in sequence with the other
+     * operations of this batch. If the batch will be executed by a proxy running outside MATLAB the {@code callable}
+     * must be {@link Serializable}.
+     * <br><br>
+     * A {@code RuntimeException} thrown by {@code callable} is not treated as a failure of the operation; it causes the
+     * entire batch to fail as described by {@link MatlabProxy#invokeAndWait(MatlabThreadCallable)}.
+     * 
+     * @param <T>
+     * @param callable
+     * @return handle to the result
+     * @throws NullPointerException if {@code callable} is {@code null}
+     */
+    public <T> Handle<T> invoke(MatlabThreadCallable<T> callable)
+    {
+        if(callable == null)
+        {
+            throw new NullPointerException("callable may not be null");
+        }
+        
+        return this.add(callable);
+    }
+    
+    private <T> Handle<T> add(MatlabThreadCallable<T> operation)
+    {
+        _operations.add(operation);
+        
+        return new Handle<T>(this, _operations.size() - 1);
+    }
+    
+    /**
+     * The number of operations recorded.
+     * 
+     * @return number of operations
+     */
+    public int size()
+    {
+        return _operations.size();
+    }
+    
+    /**
+     * Runs all recorded operations in MATLAB, in the order they were recorded, using a single call to
+     * {@link MatlabProxy#invokeAndWait(MatlabThreadCallable)}.
+     * 
+     * @param proxy
+     * @return results of the operations
+     * @throws MatlabInvocationException if thrown by the proxy; failures of individual operations are instead
+     * reported by the returned results
+     */
+    public Results execute(MatlabProxy proxy) throws MatlabInvocationException
+    {
+        MatlabThreadCallable<?>[] operations = _operations.toArray(new MatlabThreadCallable<?>[_operations.size()]);
+        BatchResult result = proxy.invokeAndWait(new BatchCallable(operations, _errorMode));
+        
+        return new Results(this, result);
+    }
+    
+    /**
+     * Returns a brief description of this batch. The exact details of this representation are unspecified and are
+     * subject to change.
+     * 
+     * @return 
+     */
+    @Override
+    public String toString()
+    {
+        return "[" + this.getClass().getName() + " size=" + _operations.size() + ", errorMode=" + _errorMode + "]";
+    }
+    
+    /**
+     * Refers to the result of an operation recorded in a {@link MatlabBatch}. A handle may only be used with the
+     * results of the batch which created it.
+     * 
+     * @param <T> type of the result
+     * @since 4.2.0
+     */
+    public static final class Handle<T>
+    {
+        private final MatlabBatch _batch;
+        private final int _index;
+        
+        private Handle(MatlabBatch batch, int index)
+        {
+            _batch = batch;
+            _index = index;
+        }
+        
+        /**
+         * Returns a brief description of this handle. The exact details of this representation are unspecified and
+         * are subject to change.
+         * 
+         * @return 
+         */
+        @Override
+        public String toString()
+        {
+            return "[" + this.getClass().getName() + " index=" + _index + "]";
+        }
+    }
+    
+    /**
+     * The results of executing a {@link MatlabBatch}.
+     * <br><br>
+     * This class is unconditionally thread-safe.
+     * 
+     * @since 4.2.0
+     */
+    public static final class Results
+    {
+        private final MatlabBatch _batch;
+        private final BatchResult _result;
+        
+        private Results(MatlabBatch batch, BatchResult result)
+        {
+            _batch = batch;
+            _result = result;
+        }
+        
+        private int indexOf(Handle<?> handle)
+        {
+            if(handle._batch != _batch)
+            {
+                throw new IllegalArgumentException(handle + " was not created by the batch that produced these " +
+                        "results");
+            }
+            if(handle._index >= _result.values.length)
+            {
+                throw new IllegalArgumentException(handle + " was recorded after the batch was executed");
+            }
+            
+            return handle._index;
+        }
+        
+        /**
+         * Returns the result of the operation referred to by {@code handle}.
+         * 
+         * @param <T>
+         * @param handle
+         * @return result of the operation
+         * @throws MatlabInvocationException the exception thrown by the operation, if it failed
+         * @throws IllegalStateException if the operation was not run because an earlier operation failed
+         * @throws IllegalArgumentException if {@code handle} does not refer to an operation in these results
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T get(Handle<T> handle) throws MatlabInvocationException
+        {
+            int index = this.indexOf(handle);
+            if(index >= _result.runCount)
+            {
+                throw new IllegalStateException(handle + " was not run because an earlier operation failed");
+            }
+            if(_result.exceptions[index] != null)
+            {
+                throw _result.exceptions[index];
+            }
+            
+            return (T) _result.values[index];
+        }
+        
+        /**
+         * Returns the exception thrown by the operation referred to by {@code handle}, or {@code null} if it did not
+         * fail (including if it was not run).
+         * 
+         * @param handle
+         * @return exception or {@code null}
+         * @throws IllegalArgumentException if {@code handle} does not refer to an operation in these results
+         */
+        public MatlabInvocationException getException(Handle<?> handle)
+        {
+            return _result.exceptions[this.indexOf(handle)];
+        }
+        
+        /**
+         * Whether the operation referred to by {@code handle} was run. An operation is not run if the batch uses
+         * {@link ErrorMode#STOP} and an earlier operation failed.
+         * 
+         * @param handle
+         * @return if run
+         * @throws IllegalArgumentException if {@code handle} does not refer to an operation in these results
+         */
+        public boolean wasRun(Handle<?> handle)
+        {
+            return this.indexOf(handle) < _result.runCount;
+        }
+        
+        /**
+         * Whether every operation was run and none of them failed.
+         * 
+         * @return if successful
+         */
+        public boolean isSuccessful()
+        {
+            boolean successful = (_result.runCount == _result.values.length);
+            for(int i = 0; successful && i < _result.runCount; i++)
+            {
+                successful = (_result.exceptions[i] == null);
+            }
+            
+            return successful;
+        }
+        
+        /**
+         * Returns a brief description of these results. The exact details of this representation are unspecified and
+         * are subject to change.
+         * 
+         * @return 
+         */
+        @Override
+        public String toString()
+        {
+            return "[" + this.getClass().getName() + " size=" + _result.values.length + ", run=" + _result.runCount +
+                    ", successful=" + this.isSuccessful() + "]";
+        }
+    }
+    
+    /**
+     * Runs the operations of a batch on MATLAB's main thread.
+     */
+    private static class BatchCallable implements MatlabThreadCallable<BatchResult>, Serializable
+    {
+        private static final long serialVersionUID = 0xC100L;
+        
+        private final MatlabThreadCallable<?>[] _operations;
+        private final ErrorMode _errorMode;
+        
+        BatchCallable(MatlabThreadCallable<?>[] operations, ErrorMode errorMode)
+        {
+            _operations = operations;
+            _errorMode = errorMode;
+        }
+        
+        @Override
+        public BatchResult call(MatlabThreadProxy proxy)
+        {
+            Object[] values = new Object[_operations.length];
+            MatlabInvocationException[] exceptions = new MatlabInvocationException[_operations.length];
+            
+            int runCount = 0;
+            while(runCount < _operations.length)
+            {
+                int i = runCount++;
+                try
+                {
+                    values[i] = _operations[i].call(proxy);
+                }
+                catch(MatlabInvocationException e)
+                {
+                    exceptions[i] = e;
+                    
+                    if(_errorMode == ErrorMode.STOP)
+                    {
+                        break;
+                    }
+                }
+            }
+            
+            return new BatchResult(values, exceptions, runCount);
+        }
+    }
+    
+    private static class BatchResult implements Serializable
+    {
+        private static final long serialVersionUID = 0xC101L;
+        
+        private final Object[] values;
+        private final MatlabInvocationException[] exceptions;
+        
+        /**
+         * The number of operations, starting from the first, that were run.
+         */
+        private final int runCount;
+        
+        BatchResult(Object[] values, MatlabInvocationException[] exceptions, int runCount)
+        {
+            this.values = values;
+            this.exceptions = exceptions;
+            this.runCount = runCount;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+package matlabcontrol.internal;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * <strong>Internal Use Only</strong>
+ * <br><br>
+ * Gives the {@code matlabcontrol.link} and {@code matlabcontrol.extensions} packages access to the package private
+ * codec which sends primitive arrays between Java Virtual Machines as blocks of raw values. This class must be public
+ * so that those packages can reach the codec, which installs itself here when it is initialized. It has been placed in
+ * the {@code matlabcontrol.internal} package to make it clear it is not intended for use by users of matlabcontrol.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class ArrayCodecAccess
+{
+    /**
+     * The operations of the codec available outside of the {@code matlabcontrol} package.
+     */
+    public static interface Codec
+    {
+        /**
+         * If {@code value} is a primitive array or a multidimensional primitive array, returns a serializable object
+         * which writes it compactly and deserializes as an equal array of the same type. Otherwise returns
+         * {@code value}.
+         * 
+         * @param value
+         * @return 
+         */
+        public Object encode(Object value);
+        
+        /**
+         * If {@code array} is a one dimensional primitive array, returns a serializable object which writes it
+         * compactly and deserializes as a direct {@link java.nio.ByteBuffer} holding its values in little-endian byte
+         * order. Returns {@code null} if {@code array} is {@code null}.
+         * 
+         * @param array
+         * @return 
+         * @throws IllegalArgumentException if {@code array} is not a one dimensional primitive array
+         */
+        public Object encodeAsBuffer(Object array);
+    }
+    
+    /**
+     * Set once, by the codec's static initializer. Guarded by this class.
+     */
+    private static Codec _codec;
+    
+    static
+    {
+        //Initializing the codec installs it
+        try
+        {
+            Class.forName("matlabcontrol.PrimitiveArrayCodec", true, ArrayCodecAccess.class.getClassLoader());
+        }
+        catch(ClassNotFoundException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private ArrayCodecAccess() { }
+    
+    /**
+     * Called by the codec when it is initialized.
+     * 
+     * @param codec
+     * @throws IllegalStateException if a codec has already been installed
+     */
+    public static synchronized void install(Codec codec)
+    {
+        if(_codec != null)
+        {
+            throw new IllegalStateException("A codec has already been installed");
+        }
+        _codec = codec;
+    }
+    
+    private static synchronized Codec getCodec()
+    {
+        return _codec;
+    }
+    
+    /**
+     * @see Codec#encode(Object)
+     */
+    public static Object encode(Object value)
+    {
+        return getCodec().encode(value);
+    }
+    
+    /**
+     * @see Codec#encodeAsBuffer(Object)
+     */
+    public static Object encodeAsBuffer(Object array)
+    {
+        return getCodec().encodeAsBuffer(array);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package matlabcontrol.internal;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+
+/**
+ * <strong>Internal Use Only</strong>
+ * <br><br>
+ * Gives the {@code matlabcontrol.extensions} package access to the package private {@link MatlabThreadCallable}s which
+ * proxies use to run each of the operations of {@link matlabcontrol.MatlabOperations}, so that those operations are
+ * sent to MATLAB in the same form regardless of which package sends them. This class must be public so that other
+ * packages can reach the callables, which install themselves here when they are initialized. It has been placed in the
+ * {@code matlabcontrol.internal} package to make it clear it is not intended for use by users of matlabcontrol.
+ * 
+ * @since 4.2.0
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public final class CallableAccess
+{
+    /**
+     * Creates the callable for each operation. Each callable is {@link java.io.Serializable}.
+     */
+    public static interface Callables
+    {
+        public MatlabThreadCallable<Void> eval(String command);
+        
+        public MatlabThreadCallable<Object[]> returningEval(String command, int nargout);
+        
+        public MatlabThreadCallable<Void> feval(String functionName, Object[] args);
+        
+        public MatlabThreadCallable<Object[]> returningFeval(String functionName, int nargout, Object[] args);
+        
+        public MatlabThreadCallable<Void> setVariable(String variableName, Object value);
+        
+        public MatlabThreadCallable<Object> getVariable(String variableName);
+    }
+    
+    /**
+     * Set once, by the callables' static initializer. Guarded by this class.
+     */
+    private static Callables _callables;
+    
+    static
+    {
+        //Initializing the callables installs them
+        try
+        {
+            Class.forName("matlabcontrol.MatlabCallables", true, CallableAccess.class.getClassLoader());
+        }
+        catch(ClassNotFoundException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private CallableAccess() { }
+    
+    /**
+     * Called by the callables when they are initialized.
+     * 
+     * @param callables
+     * @throws IllegalStateException if callables have already been installed
+     */
+    public static synchronized void install(Callables callables)
+    {
+        if(_callables != null)
+        {
+            throw new IllegalStateException("Callables have already been installed");
+        }
+        _callables = callables;
+    }
+    
+    /**
+     * The installed callables.
+     * 
+     * @return 
+     */
+    public static synchronized Callables getCallables()
+    {
+        return _callables;
+    }
+}
\ No newline at end of file
@@ -23,12 +23,15 @@ package matlabcontrol.link;
  */
 
 import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.lang.reflect.Array;
 import java.util.Collections;
 import java.util.Map;
 
 import matlabcontrol.MatlabInvocationException;
 import matlabcontrol.MatlabOperations;
+import matlabcontrol.internal.ArrayCodecAccess;
 import matlabcontrol.link.MatlabType.MatlabTypeSetter;
 import static matlabcontrol.link.ArrayUtils.*;
 
@@ -87,6 +90,14 @@ class ArrayLinearizer
         {
             return _linearArray;
         }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_linearArray", ArrayCodecAccess.encode(_linearArray));
+            fields.put("_lengths", _lengths);
+            out.writeFields();
+        }
     }
     
     /**
@@ -23,6 +23,8 @@ package matlabcontrol.link;
  */
 
 import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.Collections;
@@ -30,6 +32,7 @@ import java.util.Map;
 
 import matlabcontrol.MatlabOperations;
 import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.internal.ArrayCodecAccess;
 import matlabcontrol.link.MatlabType.MatlabTypeGetter;
 import static matlabcontrol.link.ArrayUtils.*;
 
@@ -169,6 +172,17 @@ class ArrayMultidimensionalizer
         {
             _array = array;
         }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_lengths", _lengths);
+            fields.put("_array", ArrayCodecAccess.encode(_array));
+            fields.put("_retreived", _retreived);
+            fields.put("_getRealPart", _getRealPart);
+            fields.put("_keepLinear", _keepLinear);
+            out.writeFields();
+        }
     }
     
     /**
@@ -0,0 +1,296 @@
+package matlabcontrol.link;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.lang.reflect.Array;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A full array whose values are held in {@link DoubleBuffer}s, which may be direct or memory-mapped so that the values
+ * are not on the Java heap. Values are only copied onto the heap when converted to Java arrays.
+ * 
+ * @since 4.2.0
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ * 
+ * @param <T> output array - primitive numeric array type, ex. {@code double[][][]}
+ *            (1 or more dimensions is acceptable, including for example {@code double[]})
+ */
+class DirectFullArray<T> extends BaseArray<double[], T>
+{
+    /**
+     * The lengths of each dimension of the array when represented as an array of type {@code T}.
+     */
+    private final int[] _dimensions;
+    
+    /**
+     * The total number of elements represented by this array.
+     */
+    private final int _numberOfElements;
+    
+    /**
+     * Output array type.
+     */
+    private final Class<T> _outputArrayType;
+    
+    /**
+     * The real values, positioned at {@code 0} and only read with absolute gets so that it is never modified.
+     */
+    private final DoubleBuffer _real;
+    
+    /**
+     * The imaginary values. Can be {@code null} if this array is real.
+     */
+    private final DoubleBuffer _imag;
+    
+    /**
+     * Caches if {@link #_imag} contains non-zero elements.
+     * <br><br>
+     * To avoid any form of inter-thread communication this value may in the most degenerate case be recomputed for each
+     * thread.
+     */
+    private Boolean _hasImaginaryValues = null;
+    
+    /**
+     * Caches the hash code.
+     * <br><br>
+     * To avoid any form of inter-thread communication this value may in the most degenerate case be recomputed for each
+     * thread.
+     */
+    private Integer _hashCode = null;
+    
+    /**
+     * The remaining values of the buffers are used, starting at their positions. The buffers are not copied.
+     * 
+     * @param outputArrayType
+     * @param real
+     * @param imag may be {@code null}
+     * @param dimensions 
+     * @throws IllegalArgumentException if {@code outputArrayType} does not have as many dimensions as
+     * {@code dimensions}, or a buffer does not have as many remaining values as there are elements
+     */
+    DirectFullArray(Class<T> outputArrayType, DoubleBuffer real, DoubleBuffer imag, int[] dimensions)
+    {
+        if(!double.class.equals(ArrayUtils.getBaseComponentType(outputArrayType)) ||
+                ArrayUtils.getNumberOfDimensions(outputArrayType) != dimensions.length)
+        {
+            throw new IllegalArgumentException(outputArrayType.getCanonicalName() + " is not a double array of " +
+                    dimensions.length + " dimensions");
+        }
+        
+        _dimensions = dimensions.clone();
+        _numberOfElements = ArrayUtils.getNumberOfElements(_dimensions);
+        _outputArrayType = outputArrayType;
+        
+        if(real.remaining() != _numberOfElements || (imag != null && imag.remaining() != _numberOfElements))
+        {
+            throw new IllegalArgumentException("Buffers must hold " + _numberOfElements + " values\n" +
+                    "Real buffer: " + real.remaining() + "\n" +
+                    "Imaginary buffer: " + (imag == null ? "null" : imag.remaining()));
+        }
+        
+        //Slices share the values but have their own positions, so reading this array does not affect the caller's
+        _real = real.slice();
+        _imag = (imag == null) ? null : imag.slice();
+        if(_imag == null)
+        {
+            _hasImaginaryValues = false;
+        }
+    }
+    
+    double getReal(int linearIndex)
+    {
+        return _real.get(linearIndex);
+    }
+    
+    double getImaginary(int linearIndex)
+    {
+        //Without imaginary values the index is still checked, so an index out of bounds fails as for the real values
+        if(_imag == null && (linearIndex < 0 || linearIndex >= _numberOfElements))
+        {
+            throw new IndexOutOfBoundsException("[" + linearIndex + "] is out of bounds where the number of elements " +
+                    "is " + _numberOfElements);
+        }
+        
+        return _imag == null ? 0 : _imag.get(linearIndex);
+    }
+    
+    DoubleBuffer getRealBuffer()
+    {
+        return _real.asReadOnlyBuffer();
+    }
+    
+    DoubleBuffer getImaginaryBuffer()
+    {
+        return _imag == null ? null : _imag.asReadOnlyBuffer();
+    }
+    
+    @Override
+    int getNumberOfElements()
+    {
+        return _numberOfElements;
+    }
+
+    @Override
+    int getLengthOfDimension(int dimension)
+    {
+        if(dimension >= _dimensions.length || dimension < 0)
+        {
+            throw new IllegalArgumentException(dimension + " is not a dimension of this array. This array has " +
+                    getNumberOfDimensions() + " dimensions");
+        }
+        
+        return _dimensions[dimension];
+    }
+
+    @Override
+    int getNumberOfDimensions()
+    {
+        return _dimensions.length;
+    }
+
+    @Override
+    boolean isReal()
+    {
+        if(_hasImaginaryValues == null)
+        {
+            boolean contained = false;
+            for(int i = 0; i < _numberOfElements; i++)
+            {
+                if(_imag.get(i) != 0.0d)
+                {
+                    contained = true;
+                    break;
+                }
+            }
+            _hasImaginaryValues = contained;
+        }
+        
+        return !_hasImaginaryValues;
+    }
+
+    @Override
+    T toRealArray()
+    {
+        return _outputArrayType.cast(ArrayMultidimensionalizer.multidimensionalize(toLinearArray(_real), _dimensions));
+    }
+
+    @Override
+    T toImaginaryArray()
+    {
+        T array;
+        if(isReal())
+        {
+            array = _outputArrayType.cast(Array.newInstance(double.class, _dimensions));
+        }
+        else
+        {
+            array = _outputArrayType.cast(ArrayMultidimensionalizer.multidimensionalize(toLinearArray(_imag),
+                    _dimensions));
+        }
+        
+        return array;
+    }
+    
+    private static double[] toLinearArray(DoubleBuffer buffer)
+    {
+        double[] array = new double[buffer.capacity()];
+        buffer.duplicate().get(array);
+        
+        return array;
+    }
+
+    @Override
+    boolean isSparse()
+    {
+        return false;
+    }
+    
+    int getLinearIndex(int row, int column)
+    {
+        return ArrayUtils.checkedMultidimensionalIndicesToLinearIndex(_dimensions, row, column);
+    }
+    
+    int getLinearIndex(int row, int column, int page)
+    {
+        return ArrayUtils.checkedMultidimensionalIndicesToLinearIndex(_dimensions, row, column, page);
+    }
+    
+    int getLinearIndex(int row, int column, int[] pages)
+    {
+        return ArrayUtils.checkedMultidimensionalIndicesToLinearIndex(_dimensions, row, column, pages);
+    }
+    
+    @Override
+    public boolean equals(Object obj)
+    {   
+        boolean equal = false;
+        
+        //Same object
+        if(this == obj)
+        {
+            equal = true;
+        }
+        //Same class
+        else if(obj != null && this.getClass().equals(obj.getClass()))
+        {
+            DirectFullArray<?> other = (DirectFullArray<?>) obj;
+            
+            //If the two instances are equal their hashcodes must be equal (but not the converse)
+            if(this.hashCode() == other.hashCode())
+            {
+                //Both real values, or both complex values
+                if((this.isReal() && other.isReal()) || (!this.isReal() && !other.isReal()))
+                {
+                    //Same dimensions
+                    if(Arrays.equals(_dimensions, other._dimensions))
+                    {
+                        //Finally, compare the values
+                        equal = _real.equals(other._real) &&
+                                (this.isReal() || _imag.equals(other._imag));
+                    }
+                }
+            }
+        }
+        
+        return equal;
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        if(_hashCode == null)
+        {
+            int hashCode = 7;
+            
+            hashCode = 97 * hashCode + _real.hashCode();
+            hashCode = 97 * hashCode + (this.isReal() ? 0 : _imag.hashCode());
+            hashCode = 97 * hashCode + Arrays.hashCode(_dimensions);
+
+            _hashCode = hashCode;
+        }
+        
+        return _hashCode;
+    }
+}
\ No newline at end of file
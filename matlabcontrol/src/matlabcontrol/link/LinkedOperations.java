@@ -22,6 +22,8 @@ package matlabcontrol.link;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Map;
+
 import matlabcontrol.MatlabInvocationException;
 import matlabcontrol.MatlabOperations;
 import matlabcontrol.MatlabProxy;
@@ -77,6 +79,18 @@ public final class LinkedOperations implements MatlabOperations
     {
         return _delegateOperations.getVariable(variableName);
     }
+
+    @Override
+    public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+    {
+        _delegateOperations.setVariables(variables);
+    }
+
+    @Override
+    public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+    {
+        return _delegateOperations.getVariables(variableNames);
+    }
     
     /**
      * The proxy used to communicate with MATLAB.
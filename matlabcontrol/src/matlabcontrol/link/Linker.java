@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -282,6 +283,46 @@ public class Linker
                 
                 result = invokeMatlabFunction(info, false, new Object[]{ "base", args[0], args[1] }, methodReturn);
             }
+            else if(method.getName().equals("setVariables"))
+            {
+                InvocationInfo info = new InvocationInfo("assignin", null, new Class<?>[0], new Class<?>[0][0]);
+                
+                //Each variable is assigned by its own function invocation, all sent to MATLAB together
+                Map<String, Object> variables = (Map<String, Object>) args[0];
+                List<InvocationInfo> infos = new ArrayList<InvocationInfo>();
+                List<Object[]> functionArgs = new ArrayList<Object[]>();
+                for(Map.Entry<String, Object> variable : variables.entrySet())
+                {
+                    infos.add(info);
+                    functionArgs.add(new Object[]{ "base", variable.getKey(), variable.getValue() });
+                }
+                invokeMatlabFunctions(infos, functionArgs);
+                
+                result = null;
+            }
+            else if(method.getName().equals("getVariables"))
+            {
+                InvocationInfo info = new InvocationInfo("eval", null, new Class<?>[]{ Object.class }, new Class<?>[1][0]);
+                
+                //Each variable is retrieved by its own function invocation, all sent to MATLAB together
+                String[] variableNames = (String[]) args[0];
+                List<InvocationInfo> infos = new ArrayList<InvocationInfo>();
+                List<Object[]> functionArgs = new ArrayList<Object[]>();
+                for(String variableName : variableNames)
+                {
+                    infos.add(info);
+                    functionArgs.add(new Object[]{ variableName });
+                }
+                Object[][] returnValues = invokeMatlabFunctions(infos, functionArgs);
+                
+                Map<String, Object> variables = new LinkedHashMap<String, Object>();
+                for(int i = 0; i < variableNames.length; i++)
+                {
+                    variables.put(variableNames[i], returnValues[i][0]);
+                }
+                
+                result = variables;
+            }
             else
             {
                 throw new UnsupportedOperationException(method + " not supported");
@@ -328,6 +369,45 @@ public class Linker
         private Object invokeMatlabFunction(InvocationInfo info, boolean userDefined, Object[] args,
                 Class<?> methodReturn)
                 throws MatlabInvocationException
+        {
+            //Invoke function
+            FunctionResult result = _proxy.invokeAndWait(createInvocation(info, args));
+            
+            return processResult(info, userDefined, result, methodReturn);
+        }
+        
+        /**
+         * Invokes several functions, which are not user defined, one after another in a single interaction with
+         * MATLAB. If one of the functions throws an exception, those after it are not invoked.
+         * 
+         * @param infos
+         * @param args the arguments for each function
+         * @return the return values of each function
+         * @throws MatlabInvocationException 
+         */
+        private Object[][] invokeMatlabFunctions(List<InvocationInfo> infos, List<Object[]> args)
+                throws MatlabInvocationException
+        {
+            CustomFunctionInvocation[] invocations = new CustomFunctionInvocation[infos.size()];
+            for(int i = 0; i < invocations.length; i++)
+            {
+                invocations[i] = createInvocation(infos.get(i), args.get(i));
+            }
+            
+            //Invoke functions
+            FunctionResult[] results = _proxy.invokeAndWait(new MultipleFunctionInvocation(invocations));
+            
+            //If a function threw an exception it will be the last result, and processing it will throw it
+            Object[][] returnValues = new Object[results.length][];
+            for(int i = 0; i < results.length; i++)
+            {
+                returnValues[i] = (Object[]) processResult(infos.get(i), false, results[i], Object[].class);
+            }
+            
+            return returnValues;
+        }
+        
+        private CustomFunctionInvocation createInvocation(InvocationInfo info, Object[] args)
         {
             //Replace all arguments with parameters of a MatlabType subclass or a multidimensional primitive array with
             //their serialized setters
@@ -348,8 +428,12 @@ public class Linker
                 }
             }
 
-            //Invoke function
-            FunctionResult result = _proxy.invokeAndWait(new CustomFunctionInvocation(info, args));
+            return new CustomFunctionInvocation(info, args);
+        }
+        
+        private Object processResult(InvocationInfo info, boolean userDefined, FunctionResult result,
+                Class<?> methodReturn)
+        {
             if(result.thrownException != null)
             {
                 result.thrownException.fillInStackTrace();
@@ -545,6 +629,35 @@ public class Linker
         }
     }
     
+    private static class MultipleFunctionInvocation implements MatlabThreadCallable<FunctionResult[]>, Serializable
+    {
+        private final CustomFunctionInvocation[] _invocations;
+        
+        private MultipleFunctionInvocation(CustomFunctionInvocation[] invocations)
+        {
+            _invocations = invocations;
+        }
+        
+        @Override
+        public FunctionResult[] call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            List<FunctionResult> results = new ArrayList<FunctionResult>();
+            for(CustomFunctionInvocation invocation : _invocations)
+            {
+                FunctionResult result = invocation.call(proxy);
+                results.add(result);
+                
+                //Stop at the first function to throw an exception
+                if(result.thrownException != null)
+                {
+                    break;
+                }
+            }
+            
+            return results.toArray(new FunctionResult[results.size()]);
+        }
+    }
+    
     private static class CustomFunctionInvocation implements MatlabThreadCallable<FunctionResult>, Serializable
     {
         private final InvocationInfo _functionInfo;
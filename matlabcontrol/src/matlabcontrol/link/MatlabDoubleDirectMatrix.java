@@ -0,0 +1,317 @@
+package matlabcontrol.link;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.MatlabOperations;
+import matlabcontrol.MatlabProxy;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import matlabcontrol.internal.ArrayCodecAccess;
+import matlabcontrol.link.MatlabType.MatlabTypeGetter;
+
+/**
+ * A MATLAB {@code double} matrix whose values are held off the Java heap, in direct or memory-mapped buffers. Very
+ * large matrices then neither add to garbage collection nor need to be copied to be handed to native code, which can
+ * use the buffers returned by {@link #getRealBuffer()} and {@link #getImaginaryBuffer()} directly. Values are only
+ * copied onto the heap by {@link #toRealArray()} and {@link #toImaginaryArray()}.
+ * <br><br>
+ * A matrix retrieved with {@link #retrieve(MatlabProxy, String, Class)} has its values read from the connection to
+ * MATLAB, or from shared memory, straight into direct buffers without an intermediate Java array.
+ * <br><br>
+ * This class is unconditionally thread-safe so long as the values of the buffers it was created with are not modified.
+ * 
+ * @since 4.2.0
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ * 
+ * @param <T> {@code double} array type, ex. {@code double[]}, {@code double[][]}, {@code double[][][]}, ...
+ */
+public final class MatlabDoubleDirectMatrix<T> extends MatlabDoubleMatrix<T>
+{
+    private final DirectFullArray<T> _array;
+    
+    MatlabDoubleDirectMatrix(Class<T> arrayType, DoubleBuffer real, DoubleBuffer imag, int[] dimensions)
+    {
+        _array = new DirectFullArray<T>(arrayType, real, imag, dimensions);
+    }
+    
+    /**
+     * Retrieves the MATLAB variable {@code variableName} as a matrix held in direct buffers. Numeric variables of any
+     * class are converted to {@code double}.
+     * 
+     * @param <T>
+     * @param proxy
+     * @param variableName
+     * @param arrayType the type of array the matrix converts to, which must have as many dimensions as the variable
+     * @return
+     * @throws MatlabInvocationException 
+     * @throws IllegalArgumentException if {@code arrayType} is not a {@code double} array with as many dimensions as
+     * the variable
+     */
+    public static <T> MatlabDoubleDirectMatrix<T> retrieve(MatlabProxy proxy, String variableName, Class<T> arrayType)
+            throws MatlabInvocationException
+    {
+        DirectMatrixGetter getter = proxy.invokeAndWait(new RetrieveCallable(variableName));
+        
+        return getter.retrieve(arrayType);
+    }
+    
+    /**
+     * The real values in MATLAB's linear order. The buffer is read-only, and is direct if this matrix's values are
+     * held in direct or memory-mapped buffers.
+     * 
+     * @return 
+     */
+    public DoubleBuffer getRealBuffer()
+    {
+        return _array.getRealBuffer();
+    }
+    
+    /**
+     * The imaginary values in MATLAB's linear order, {@code null} if this matrix was created without imaginary values.
+     * The buffer is read-only, and is direct if this matrix's values are held in direct or memory-mapped buffers.
+     * 
+     * @return 
+     */
+    public DoubleBuffer getImaginaryBuffer()
+    {
+        return _array.getImaginaryBuffer();
+    }
+    
+    @Override
+    BaseArray<double[], T> getBaseArray()
+    {
+        return _array;
+    }
+    
+    @Override
+    public double getRealElementAtLinearIndex(int linearIndex)
+    {
+        return _array.getReal(linearIndex);
+    }
+    
+    @Override
+    public double getImaginaryElementAtLinearIndex(int linearIndex)
+    {
+        return _array.getImaginary(linearIndex);
+    }
+    
+    
+    
+    @Override
+    public double getRealElementAtIndices(int row, int column)
+    {
+        return _array.getReal(_array.getLinearIndex(row, column));
+    }
+    
+    @Override
+    public double getRealElementAtIndices(int row, int column, int page)
+    {
+        return _array.getReal(_array.getLinearIndex(row, column, page));
+    }
+    
+    @Override
+    public double getRealElementAtIndices(int row, int column, int[] pages)
+    {
+        return _array.getReal(_array.getLinearIndex(row, column, pages));
+    }
+    
+    
+    
+    @Override
+    public double getImaginaryElementAtIndices(int row, int column)
+    {
+        return _array.getImaginary(_array.getLinearIndex(row, column));
+    }
+    
+    @Override
+    public double getImaginaryElementAtIndices(int row, int column, int page)
+    {
+        return _array.getImaginary(_array.getLinearIndex(row, column, page));
+    }
+    
+    @Override
+    public double getImaginaryElementAtIndices(int row, int column, int[] pages)
+    {
+        return _array.getImaginary(_array.getLinearIndex(row, column, pages));
+    }
+    
+    
+    
+    @Override
+    public MatlabDouble getElementAtLinearIndex(int linearIndex)
+    {
+        return new MatlabDouble(_array.getReal(linearIndex), _array.getImaginary(linearIndex));
+    }
+    
+    
+    
+    @Override
+    public MatlabDouble getElementAtIndices(int row, int column)
+    {
+        int linearIndex = _array.getLinearIndex(row, column);
+        
+        return new MatlabDouble(_array.getReal(linearIndex), _array.getImaginary(linearIndex));
+    }
+    
+    @Override
+    public MatlabDouble getElementAtIndices(int row, int column, int page)
+    {
+        int linearIndex = _array.getLinearIndex(row, column, page);
+        
+        return new MatlabDouble(_array.getReal(linearIndex), _array.getImaginary(linearIndex));
+    }
+    
+    @Override
+    public MatlabDouble getElementAtIndices(int row, int column, int[] pages)
+    {
+        int linearIndex = _array.getLinearIndex(row, column, pages);
+        
+        return new MatlabDouble(_array.getReal(linearIndex), _array.getImaginary(linearIndex));
+    }
+    
+    @Override
+    public boolean equals(Object obj)
+    {
+        return (obj instanceof MatlabDoubleDirectMatrix) &&
+                _array.equals(((MatlabDoubleDirectMatrix<?>) obj)._array);
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return _array.hashCode();
+    }
+    
+    private static class RetrieveCallable implements MatlabThreadCallable<DirectMatrixGetter>, Serializable
+    {
+        private final String _variableName;
+        
+        RetrieveCallable(String variableName)
+        {
+            _variableName = variableName;
+        }
+        
+        @Override
+        public DirectMatrixGetter call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            DirectMatrixGetter getter = new DirectMatrixGetter();
+            getter.getInMatlab(proxy, _variableName);
+            
+            return getter;
+        }
+    }
+    
+    /**
+     * Retrieves the values of a variable in MATLAB. When sent from MATLAB's Java Virtual Machine, the values are
+     * deserialized directly into direct buffers.
+     */
+    static class DirectMatrixGetter implements MatlabTypeGetter
+    {
+        /**
+         * {@code double[]} in MATLAB's Java Virtual Machine, a little-endian {@link ByteBuffer} once sent.
+         */
+        private Object _real;
+        private Object _imag;
+        private int[] _lengths;
+        private boolean _retreived = false;
+        
+        @Override
+        public MatlabDoubleDirectMatrix<double[][]> retrieve()
+        {
+            return this.retrieve(double[][].class);
+        }
+        
+        <T> MatlabDoubleDirectMatrix<T> retrieve(Class<T> arrayType)
+        {
+            if(!_retreived)
+            {
+                throw new IllegalStateException("matrix has not been retrieved");
+            }
+            
+            return new MatlabDoubleDirectMatrix<T>(arrayType, toBuffer(_real), toBuffer(_imag), _lengths);
+        }
+        
+        private static DoubleBuffer toBuffer(Object values)
+        {
+            DoubleBuffer buffer;
+            if(values == null)
+            {
+                buffer = null;
+            }
+            else if(values instanceof ByteBuffer)
+            {
+                buffer = ((ByteBuffer) values).asDoubleBuffer();
+            }
+            //Retrieved without being sent, by a proxy running inside MATLAB
+            else
+            {
+                double[] array = (double[]) values;
+                buffer = ByteBuffer.allocateDirect(array.length * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+                buffer.put(array);
+                buffer.clear();
+            }
+            
+            return buffer;
+        }
+
+        @Override
+        public void getInMatlab(MatlabOperations ops, String variableName) throws MatlabInvocationException
+        {
+            double[] size = (double[]) ops.returningEval("size(" + variableName + ");", 1)[0];
+            _lengths = new int[size.length];
+            for(int i = 0; i < size.length; i++)
+            {
+                _lengths[i] = (int) size[i];
+            }
+            
+            _real = ops.returningEval("double(reshape(real(" + variableName + "), 1, []));", 1)[0];
+            
+            boolean isReal = ((boolean[]) ops.returningEval("isreal(" + variableName + ");", 1)[0])[0];
+            if(!isReal)
+            {
+                _imag = ops.returningEval("double(reshape(imag(" + variableName + "), 1, []));", 1)[0];
+            }
+            
+            _retreived = true;
+        }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_real", ArrayCodecAccess.encodeAsBuffer(_real));
+            fields.put("_imag", ArrayCodecAccess.encodeAsBuffer(_imag));
+            fields.put("_lengths", _lengths);
+            fields.put("_retreived", _retreived);
+            out.writeFields();
+        }
+    }
+}
\ No newline at end of file
@@ -22,6 +22,8 @@ package matlabcontrol.link;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.nio.DoubleBuffer;
+
 /**
  *
  * @since 4.2.0
@@ -42,6 +44,26 @@ public abstract class MatlabDoubleMatrix<T> extends MatlabNumericMatrix<double[]
         return new MatlabDoubleSparseMatrix(rowIndices, colIndices, real, imag, numRows, numCols);
     }
     
+    /**
+     * Creates a matrix whose values are held in {@code real} and {@code imag}, which are not copied. They may be direct
+     * or memory-mapped buffers, so that the values are not on the Java heap. The remaining values of each buffer, in
+     * MATLAB's linear order, are used.
+     * 
+     * @param <T>
+     * @param arrayType the type of array the matrix converts to, ex. {@code double[][]}
+     * @param real may not be {@code null}
+     * @param imag may be {@code null}
+     * @param dimensions the length of each dimension, as many as {@code arrayType} has
+     * @return 
+     * @throws IllegalArgumentException if {@code arrayType} is not a {@code double} array with as many dimensions as
+     * {@code dimensions}, or if a buffer does not have as many remaining values as the matrix has elements
+     */
+    public static <T> MatlabDoubleDirectMatrix<T> getDirect(Class<T> arrayType, DoubleBuffer real, DoubleBuffer imag,
+            int... dimensions)
+    {
+        return new MatlabDoubleDirectMatrix<T>(arrayType, real, imag, dimensions);
+    }
+    
     public abstract double getRealElementAtLinearIndex(int linearIndex);
     
     public abstract double getImaginaryElementAtLinearIndex(int linearIndex);
@@ -40,7 +40,7 @@ abstract class MatlabMatrix<L, T>
      */
     public int getNumberOfElements()
     {
-        return getBaseArray().getNumberOfDimensions();
+        return getBaseArray().getNumberOfElements();
     }
     
     /**
@@ -22,11 +22,14 @@ package matlabcontrol.link;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.lang.reflect.Array;
 import java.util.Arrays;
 
 import matlabcontrol.MatlabInvocationException;
 import matlabcontrol.MatlabOperations;
+import matlabcontrol.internal.ArrayCodecAccess;
 import matlabcontrol.link.ArrayMultidimensionalizer.PrimitiveArrayGetter;
 
 /**
@@ -509,6 +512,15 @@ abstract class MatlabNumberArray<L, T> extends MatlabType
         {
             return _imag;
         }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_real", ArrayCodecAccess.encode(_real));
+            fields.put("_imag", ArrayCodecAccess.encode(_imag));
+            fields.put("_lengths", _lengths);
+            out.writeFields();
+        }
     }
     
     static class MatlabNumberArrayGetter implements MatlabTypeGetter
@@ -589,5 +601,16 @@ abstract class MatlabNumberArray<L, T> extends MatlabType
             
             _retreived = true;
         }
+        
+        private void writeObject(ObjectOutputStream out) throws IOException
+        {
+            ObjectOutputStream.PutField fields = out.putFields();
+            fields.put("_real", ArrayCodecAccess.encode(_real));
+            fields.put("_imag", ArrayCodecAccess.encode(_imag));
+            fields.put("_lengths", _lengths);
+            fields.put("_retreived", _retreived);
+            fields.put("_keepLinear", _keepLinear);
+            out.writeFields();
+        }
     }
 }
\ No newline at end of file
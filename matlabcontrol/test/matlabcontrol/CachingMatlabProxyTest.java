@@ -0,0 +1,245 @@
+package matlabcontrol;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class CachingMatlabProxyTest
+{
+    private static class TestIdentifier implements MatlabProxy.Identifier
+    {
+        private final String _name;
+        
+        TestIdentifier(String name)
+        {
+            _name = name;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return _name;
+        }
+    }
+    
+    /**
+     * A proxy whose workspace is a map, counting how many times variables are retrieved from it.
+     */
+    private static class WorkspaceProxy extends MatlabProxy
+    {
+        private final Map<String, Object> _workspace = new HashMap<String, Object>();
+        
+        private int _retrievals = 0;
+        
+        WorkspaceProxy(String name)
+        {
+            super(new TestIdentifier(name), false);
+        }
+        
+        private final MatlabThreadProxy _threadProxy = new MatlabThreadProxy()
+        {
+            @Override
+            public void eval(String command)
+            {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public Object[] returningEval(String command, int nargout)
+            {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public void feval(String functionName, Object... args)
+            {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public Object[] returningFeval(String functionName, int nargout, Object... args)
+            {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public void setVariable(String variableName, Object value)
+            {
+                _workspace.put(variableName, value);
+            }
+            
+            @Override
+            public Object getVariable(String variableName)
+            {
+                _retrievals++;
+                
+                return _workspace.get(variableName);
+            }
+            
+            @Override
+            public void setVariables(Map<String, Object> variables)
+            {
+                _workspace.putAll(variables);
+            }
+            
+            @Override
+            public Map<String, Object> getVariables(String... variableNames)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        
+        @Override
+        public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+        {
+            return callable.call(_threadProxy);
+        }
+        
+        @Override
+        public void setVariable(String variableName, Object value) throws MatlabInvocationException
+        {
+            _threadProxy.setVariable(variableName, value);
+        }
+        
+        @Override
+        public Object getVariable(String variableName) throws MatlabInvocationException
+        {
+            return _threadProxy.getVariable(variableName);
+        }
+        
+        @Override public boolean isRunningInsideMatlab() { return false; }
+        @Override public boolean isConnected() { return true; }
+        @Override public boolean disconnect() { return true; }
+        @Override public void exit() { throw new UnsupportedOperationException(); }
+        @Override public <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Void> evalAsync(String command) { throw new UnsupportedOperationException(); }
+        @Override public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Object> getVariableAsync(String variableName)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public <T> MatlabFuture<T> invokeAsync(MatlabThreadCallable<T> callable)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public int getMatlabThreadQueueDepth(MatlabThreadPriority priority) { return 0; }
+        @Override public void eval(String command) { }
+        @Override public Object[] returningEval(String command, int nargout) { return new Object[nargout]; }
+        @Override public void feval(String functionName, Object... args) { }
+        @Override public Object[] returningFeval(String functionName, int nargout, Object... args)
+        {
+            return new Object[nargout];
+        }
+        @Override public void setVariables(Map<String, Object> variables) { _workspace.putAll(variables); }
+        @Override public Map<String, Object> getVariables(String... variableNames)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    @Test
+    public void testCachedUntilModified() throws MatlabInvocationException
+    {
+        WorkspaceProxy delegate = new WorkspaceProxy("CACHE_MODIFIED");
+        delegate._workspace.put("a", new double[] { 1, 2, 3 });
+        delegate._workspace.put("b", "text");
+        
+        CachingMatlabProxy proxy = new CachingMatlabProxy(delegate, 1024, false);
+        double[] a = (double[]) proxy.getVariable("a");
+        a[0] = 42;
+        assertEquals(1D, ((double[]) proxy.getVariable("a"))[0], 0D);
+        assertEquals("text", proxy.getVariables("b", "a").get("b"));
+        assertEquals(2, delegate._retrievals);
+        assertEquals(2L, proxy.getHitCount());
+        assertEquals(2L, proxy.getMissCount());
+        
+        //Setting a variable only invalidates that variable
+        proxy.setVariable("b", "other");
+        assertEquals("other", proxy.getVariable("b"));
+        proxy.getVariable("a");
+        assertEquals(3, delegate._retrievals);
+        
+        //Anything else could modify any variable
+        proxy.eval("a = 4;");
+        assertEquals(0, proxy.getCachedVariableCount());
+        proxy.getVariable("a");
+        assertEquals(4, delegate._retrievals);
+        proxy.disconnect();
+    }
+    
+    @Test
+    public void testLeastRecentlyRetrievedEvicted() throws MatlabInvocationException
+    {
+        WorkspaceProxy delegate = new WorkspaceProxy("CACHE_EVICTED");
+        delegate._workspace.put("a", new double[10]);
+        delegate._workspace.put("b", new double[10]);
+        delegate._workspace.put("c", new double[10]);
+        delegate._workspace.put("big", new double[100]);
+        
+        //Each double[10] is estimated at 96 bytes
+        CachingMatlabProxy proxy = new CachingMatlabProxy(delegate, 200, false);
+        proxy.getVariable("a");
+        proxy.getVariable("b");
+        proxy.getVariable("a");
+        proxy.getVariable("c");
+        assertEquals(1L, proxy.getEvictionCount());
+        assertEquals(192L, proxy.getCachedBytes());
+        
+        //b was retrieved least recently
+        proxy.getVariable("a");
+        assertEquals(3, delegate._retrievals);
+        proxy.getVariable("b");
+        assertEquals(4, delegate._retrievals);
+        
+        //Too large to ever be cached
+        proxy.getVariable("big");
+        proxy.getVariable("big");
+        assertEquals(6, delegate._retrievals);
+        proxy.disconnect();
+    }
+}
\ No newline at end of file
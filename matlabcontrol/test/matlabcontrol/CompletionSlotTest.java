@@ -0,0 +1,299 @@
+package matlabcontrol;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class CompletionSlotTest
+{
+    private static final int WARM_UP_CALLS = 50000;
+    private static final int MEASURED_CALLS = 20000;
+    
+    private static final Object[] ARGS = new Object[] { "abc" };
+    
+    /**
+     * Stands in for MATLAB's main thread, running the drainer whenever it is posted. Posting does not allocate.
+     */
+    private static class MatlabThread extends Thread implements Executor
+    {
+        private final AtomicReference<Runnable> _posted = new AtomicReference<Runnable>();
+        private volatile boolean _running = true;
+        
+        MatlabThread()
+        {
+            this.setDaemon(true);
+        }
+        
+        @Override
+        public void execute(Runnable runnable)
+        {
+            _posted.set(runnable);
+            LockSupport.unpark(this);
+        }
+        
+        @Override
+        public void run()
+        {
+            while(_running)
+            {
+                Runnable runnable = _posted.getAndSet(null);
+                if(runnable == null)
+                {
+                    LockSupport.park(this);
+                }
+                else
+                {
+                    runnable.run();
+                }
+            }
+        }
+        
+        void shutdown()
+        {
+            _running = false;
+            LockSupport.unpark(this);
+        }
+    }
+    
+    private static final Double RESULT = 4.0;
+    
+    private static final MatlabThreadCallable<Double> SCALAR_CALL = new MatlabThreadCallable<Double>()
+    {
+        @Override
+        public Double call(MatlabThreadProxy proxy)
+        {
+            return RESULT;
+        }
+    };
+    
+    private static final MatlabThreadCallable<Double> FAILING_CALL = new MatlabThreadCallable<Double>()
+    {
+        @Override
+        public Double call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            throw MatlabInvocationException.Reason.UNKNOWN.asException();
+        }
+    };
+    
+    private static final Object[] NO_RESULTS = new Object[0];
+    
+    /**
+     * Stands in for MATLAB, in which every function returns nothing.
+     */
+    private static final MatlabThreadProxy WORKSPACE = new FakeMatlabProxy.Workspace()
+    {
+        @Override
+        public Object[] returningFeval(String functionName, int nargout, Object... args)
+        {
+            return NO_RESULTS;
+        }
+    };
+    
+    private static <T> T call(MatlabThreadDispatcher dispatcher, MatlabThreadCallable<T> callable)
+            throws MatlabInvocationException
+    {
+        CompletionSlot slot = CompletionSlot.get();
+        slot.prepare(callable, WORKSPACE);
+        dispatcher.dispatch(slot, MatlabThreadPriority.NORMAL);
+        
+        return slot.await(callable);
+    }
+    
+    /**
+     * Calls a function the way {@link LocalMatlabProxy#feval(String, Object[])} does when waiting indefinitely.
+     */
+    private static Object[] feval(MatlabThreadDispatcher dispatcher, String functionName, Object[] args)
+            throws MatlabInvocationException
+    {
+        return call(dispatcher, ReusableFeval.get(functionName, 0, args));
+    }
+    
+    @Test
+    public void testResultAndException() throws Exception
+    {
+        MatlabThread matlabThread = new MatlabThread();
+        matlabThread.start();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(matlabThread);
+        
+        try
+        {
+            assertSame(RESULT, call(dispatcher, SCALAR_CALL));
+            try
+            {
+                call(dispatcher, FAILING_CALL);
+                fail("exception not rethrown");
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertEquals(MatlabInvocationException.Reason.UNKNOWN, e.getReason());
+            }
+            
+            //The slot is reused after an exception
+            assertSame(RESULT, call(dispatcher, SCALAR_CALL));
+        }
+        finally
+        {
+            matlabThread.shutdown();
+        }
+    }
+    
+    @Test
+    public void testFevalReusedOnceRun() throws Exception
+    {
+        MatlabThread matlabThread = new MatlabThread();
+        matlabThread.start();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(matlabThread);
+        
+        try
+        {
+            ReusableFeval first = ReusableFeval.get("disp", 0, ARGS);
+            assertSame(NO_RESULTS, call(dispatcher, first));
+            assertSame(first, ReusableFeval.get("disp", 0, ARGS));
+        }
+        finally
+        {
+            matlabThread.shutdown();
+        }
+    }
+    
+    @Test
+    public void testUnrunFevalIsNotReused() throws Exception
+    {
+        //Never dispatched, as though the thread had been interrupted before MATLAB ran it
+        ReusableFeval unrun = ReusableFeval.get("disp", 0, ARGS);
+        ReusableFeval next = ReusableFeval.get("pause", 0, ARGS);
+        assertFalse(unrun == next);
+        
+        final String[] called = new String[1];
+        unrun.call(new FakeMatlabProxy.Workspace()
+        {
+            @Override
+            public Object[] returningFeval(String functionName, int nargout, Object... args)
+            {
+                called[0] = functionName;
+                
+                return NO_RESULTS;
+            }
+        });
+        assertEquals("disp", called[0]);
+    }
+    
+    @Test
+    public void testSteadyStateCallDoesNotAllocate() throws Exception
+    {
+        //Measuring allocation is specific to HotSpot
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+        {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+        {
+            return;
+        }
+        
+        MatlabThread matlabThread = new MatlabThread();
+        matlabThread.start();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(matlabThread);
+        
+        try
+        {
+            for(int i = 0; i < WARM_UP_CALLS; i++)
+            {
+                call(dispatcher, SCALAR_CALL);
+            }
+            
+            long callerStart = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long matlabStart = threads.getThreadAllocatedBytes(matlabThread.getId());
+            for(int i = 0; i < MEASURED_CALLS; i++)
+            {
+                call(dispatcher, SCALAR_CALL);
+            }
+            long callerBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - callerStart;
+            long matlabBytes = threads.getThreadAllocatedBytes(matlabThread.getId()) - matlabStart;
+            
+            //Allowing for incidental allocation by the measurement itself, anything allocated per call (a queue node
+            //or future is at least 16 bytes) would far exceed this
+            assertTrue("caller allocated " + callerBytes + " bytes", callerBytes < MEASURED_CALLS);
+            assertTrue("MATLAB thread allocated " + matlabBytes + " bytes", matlabBytes < MEASURED_CALLS);
+        }
+        finally
+        {
+            matlabThread.shutdown();
+        }
+    }
+    
+    @Test
+    public void testSteadyStateFevalDoesNotAllocate() throws Exception
+    {
+        //Measuring allocation is specific to HotSpot
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+        {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+        {
+            return;
+        }
+        
+        MatlabThread matlabThread = new MatlabThread();
+        matlabThread.start();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(matlabThread);
+        
+        try
+        {
+            for(int i = 0; i < WARM_UP_CALLS; i++)
+            {
+                feval(dispatcher, "disp", ARGS);
+            }
+            
+            long callerStart = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long matlabStart = threads.getThreadAllocatedBytes(matlabThread.getId());
+            for(int i = 0; i < MEASURED_CALLS; i++)
+            {
+                feval(dispatcher, "disp", ARGS);
+            }
+            long callerBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - callerStart;
+            long matlabBytes = threads.getThreadAllocatedBytes(matlabThread.getId()) - matlabStart;
+            
+            assertTrue("caller allocated " + callerBytes + " bytes", callerBytes < MEASURED_CALLS);
+            assertTrue("MATLAB thread allocated " + matlabBytes + " bytes", matlabBytes < MEASURED_CALLS);
+        }
+        finally
+        {
+            matlabThread.shutdown();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+package matlabcontrol;
+
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class EventDispatchThreadWaiterTest
+{
+    private static final long COMPLETION_DELAY = 300L;
+    
+    /**
+     * The result of waiting on the Event Dispatch Thread.
+     */
+    private static class Wait
+    {
+        boolean done;
+        boolean eventDispatched;
+        long cpuTime;
+    }
+    
+    /**
+     * Waits on the Event Dispatch Thread for a future which is completed after {@link #COMPLETION_DELAY}, while an
+     * event is posted part way through the wait.
+     */
+    private static Wait await(EventDispatchWaitStrategy strategy, final boolean complete, final long timeout)
+            throws Exception
+    {
+        final EventDispatchThreadWaiter waiter =
+                new EventDispatchThreadWaiter(Toolkit.getDefaultToolkit().getSystemEventQueue());
+        waiter.setStrategy(strategy);
+        
+        final MatlabFutureImpl<Object> future = new MatlabFutureImpl<Object>();
+        final AtomicBoolean eventDispatched = new AtomicBoolean(false);
+        final Wait wait = new Wait();
+        
+        Thread completer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(COMPLETION_DELAY / 2);
+                    EventQueue.invokeLater(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            eventDispatched.set(true);
+                        }
+                    });
+                    Thread.sleep(COMPLETION_DELAY / 2);
+                }
+                catch(InterruptedException e) { }
+                
+                if(complete)
+                {
+                    future.complete("result");
+                }
+            }
+        };
+        completer.start();
+        
+        EventQueue.invokeAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                long start = threads.getCurrentThreadCpuTime();
+                try
+                {
+                    wait.done = waiter.await(future, timeout, TimeUnit.MILLISECONDS);
+                }
+                catch(InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+                wait.cpuTime = threads.getCurrentThreadCpuTime() - start;
+                wait.eventDispatched = eventDispatched.get();
+            }
+        });
+        completer.join();
+        
+        return wait;
+    }
+    
+    @Test
+    public void testSpin() throws Exception
+    {
+        Wait wait = await(EventDispatchWaitStrategy.SPIN, true, 0L);
+        
+        assertTrue(wait.done);
+        assertTrue(wait.eventDispatched);
+    }
+    
+    @Test
+    public void testParkDoesNotSpin() throws Exception
+    {
+        Wait wait = await(EventDispatchWaitStrategy.PARK, true, 0L);
+        
+        assertTrue(wait.done);
+        assertTrue(wait.eventDispatched);
+        assertTrue(wait.cpuTime < TimeUnit.MILLISECONDS.toNanos(COMPLETION_DELAY) / 3);
+    }
+    
+    @Test
+    public void testEventLoopDoesNotSpin() throws Exception
+    {
+        Wait wait = await(EventDispatchWaitStrategy.EVENT_LOOP, true, 0L);
+        
+        assertTrue(wait.done);
+        assertTrue(wait.eventDispatched);
+        assertTrue(wait.cpuTime < TimeUnit.MILLISECONDS.toNanos(COMPLETION_DELAY) / 3);
+    }
+    
+    @Test
+    public void testTimeout() throws Exception
+    {
+        for(EventDispatchWaitStrategy strategy : EventDispatchWaitStrategy.values())
+        {
+            Wait wait = await(strategy, false, COMPLETION_DELAY / 3);
+            
+            assertFalse(wait.done);
+            assertFalse(wait.eventDispatched);
+        }
+    }
+}
\ No newline at end of file
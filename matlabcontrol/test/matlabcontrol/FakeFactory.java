@@ -0,0 +1,69 @@
+package matlabcontrol;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Launches fake sessions, or fails to while {@code failing} is set. While {@code release} is set, launches wait for it
+ * to be counted down.
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class FakeFactory extends MatlabProxyFactory
+{
+    final List<FakeSession> launched = new CopyOnWriteArrayList<FakeSession>();
+    final AtomicInteger counter = new AtomicInteger();
+    volatile boolean failing = false;
+    volatile CountDownLatch release = null;
+    
+    @Override
+    public MatlabProxy getProxy() throws MatlabConnectionException
+    {
+        CountDownLatch latch = release;
+        if(latch != null)
+        {
+            try
+            {
+                latch.await();
+            }
+            catch(InterruptedException e)
+            {
+                throw new MatlabConnectionException("interrupted", e);
+            }
+        }
+        
+        if(failing)
+        {
+            throw new MatlabConnectionException("launch failed");
+        }
+        
+        FakeSession session = new FakeSession("SESSION_" + counter.getAndIncrement());
+        launched.add(session);
+        
+        return session;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,384 @@
+package matlabcontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import matlabcontrol.MatlabInvocationException.Reason;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * A proxy to an imitation of MATLAB provided by a test, so that code outside of this package which uses proxies can be
+ * tested without MATLAB. Operations run one at a time on a thread standing in for MATLAB's main thread, and each
+ * callable and its result are serialized and deserialized as they would be when sent between Java Virtual Machines.
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class FakeMatlabProxy extends MatlabProxy
+{
+    /**
+     * An imitation of MATLAB whose workspace holds variables. Evaluating commands and calling functions fail unless
+     * overridden by a subclass.
+     */
+    public static class Workspace implements MatlabThreadProxy
+    {
+        private final Map<String, Object> _variables =
+                Collections.synchronizedMap(new LinkedHashMap<String, Object>());
+        
+        public Map<String, Object> getVariables()
+        {
+            return _variables;
+        }
+        
+        @Override
+        public void eval(String command) throws MatlabInvocationException
+        {
+            this.returningEval(command, 0);
+        }
+        
+        @Override
+        public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
+        {
+            throw matlabError("Unsupported command: " + command);
+        }
+        
+        @Override
+        public void feval(String functionName, Object... args) throws MatlabInvocationException
+        {
+            this.returningFeval(functionName, 0, args);
+        }
+        
+        @Override
+        public Object[] returningFeval(String functionName, int nargout, Object... args)
+                throws MatlabInvocationException
+        {
+            throw matlabError("Undefined function: " + functionName);
+        }
+        
+        @Override
+        public void setVariable(String variableName, Object value) throws MatlabInvocationException
+        {
+            _variables.put(variableName, value);
+        }
+        
+        @Override
+        public Object getVariable(String variableName) throws MatlabInvocationException
+        {
+            if(!_variables.containsKey(variableName))
+            {
+                throw matlabError("Undefined variable: " + variableName);
+            }
+            
+            return _variables.get(variableName);
+        }
+        
+        @Override
+        public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+        {
+            for(Map.Entry<String, Object> entry : variables.entrySet())
+            {
+                this.setVariable(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        @Override
+        public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+        {
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            for(String name : variableNames)
+            {
+                values.put(name, this.getVariable(name));
+            }
+            
+            return values;
+        }
+    }
+    
+    private static class FakeIdentifier implements Identifier
+    {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+        
+        private final int _id = COUNTER.getAndIncrement();
+        
+        @Override
+        public String toString()
+        {
+            return "FAKE_MATLAB_" + _id;
+        }
+    }
+    
+    private final MatlabThreadProxy _matlab;
+    
+    private final ExecutorService _matlabThread = Executors.newSingleThreadExecutor(new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "Fake MATLAB Thread");
+            thread.setDaemon(true);
+            
+            return thread;
+        }
+    });
+    
+    private final AtomicInteger _invocationCount = new AtomicInteger();
+    
+    public FakeMatlabProxy(MatlabThreadProxy matlab)
+    {
+        super(new FakeIdentifier(), false);
+        
+        _matlab = matlab;
+    }
+    
+    /**
+     * An exception as thrown when MATLAB raises an error.
+     * 
+     * @param message
+     * @return 
+     */
+    public static MatlabInvocationException matlabError(String message)
+    {
+        return Reason.INTERNAL_EXCEPTION.asException(message);
+    }
+    
+    /**
+     * The number of callables which have been run, each of which would be a round trip to MATLAB.
+     * 
+     * @return 
+     */
+    public int getInvocationCount()
+    {
+        return _invocationCount.get();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T copy(T value) throws IOException, ClassNotFoundException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        try
+        {
+            return (T) in.readObject();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+    
+    @Override
+    public <T> MatlabFuture<T> invokeAsync(MatlabThreadCallable<T> callable)
+    {
+        final MatlabThreadCallable<T> sent;
+        try
+        {
+            sent = copy(callable);
+        }
+        catch(Exception e)
+        {
+            return MatlabFutureImpl.failed(Reason.MARSHAL.asException(e));
+        }
+        
+        final MatlabFutureImpl<T> future = new MatlabFutureImpl<T>();
+        _matlabThread.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if(future.start())
+                {
+                    _invocationCount.incrementAndGet();
+                    try
+                    {
+                        future.complete(copy(sent.call(_matlab)));
+                    }
+                    catch(MatlabInvocationException e)
+                    {
+                        future.fail(e);
+                    }
+                    catch(RuntimeException e)
+                    {
+                        future.fail(Reason.RUNTIME_EXCEPTION.asException(e));
+                    }
+                    catch(Exception e)
+                    {
+                        future.fail(Reason.UNMARSHAL.asException(e));
+                    }
+                }
+            }
+        });
+        
+        return future;
+    }
+    
+    @Override
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable) throws MatlabInvocationException
+    {
+        return this.invokeAsync(callable).getResult();
+    }
+    
+    @Override
+    public <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+            throws MatlabInvocationException
+    {
+        try
+        {
+            return this.invokeAsync(callable).getResult(timeout, unit);
+        }
+        catch(TimeoutException e)
+        {
+            throw Reason.TIMEOUT.asException(e);
+        }
+    }
+    
+    @Override
+    public void eval(String command) throws MatlabInvocationException
+    {
+        this.invokeAndWait(new MatlabCallables.Eval(command));
+    }
+    
+    @Override
+    public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
+    {
+        return this.invokeAndWait(new MatlabCallables.ReturningEval(command, nargout));
+    }
+    
+    @Override
+    public void feval(String functionName, Object... args) throws MatlabInvocationException
+    {
+        this.invokeAndWait(new MatlabCallables.Feval(functionName, args));
+    }
+    
+    @Override
+    public Object[] returningFeval(String functionName, int nargout, Object... args) throws MatlabInvocationException
+    {
+        return this.invokeAndWait(new MatlabCallables.ReturningFeval(functionName, nargout, args));
+    }
+    
+    @Override
+    public void setVariable(String variableName, Object value) throws MatlabInvocationException
+    {
+        this.invokeAndWait(new MatlabCallables.SetVariable(variableName, value));
+    }
+    
+    @Override
+    public Object getVariable(String variableName) throws MatlabInvocationException
+    {
+        return this.invokeAndWait(new MatlabCallables.GetVariable(variableName));
+    }
+    
+    @Override
+    public void setVariables(Map<String, Object> variables) throws MatlabInvocationException
+    {
+        this.invokeAndWait(new MatlabCallables.SetVariables(variables));
+    }
+    
+    @Override
+    public Map<String, Object> getVariables(String... variableNames) throws MatlabInvocationException
+    {
+        return this.invokeAndWait(new MatlabCallables.GetVariables(variableNames));
+    }
+    
+    @Override
+    public MatlabFuture<Void> evalAsync(String command)
+    {
+        return this.invokeAsync(new MatlabCallables.Eval(command));
+    }
+    
+    @Override
+    public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+    {
+        return this.invokeAsync(new MatlabCallables.ReturningEval(command, nargout));
+    }
+    
+    @Override
+    public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+    {
+        return this.invokeAsync(new MatlabCallables.Feval(functionName, args));
+    }
+    
+    @Override
+    public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+    {
+        return this.invokeAsync(new MatlabCallables.ReturningFeval(functionName, nargout, args));
+    }
+    
+    @Override
+    public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+    {
+        return this.invokeAsync(new MatlabCallables.SetVariable(variableName, value));
+    }
+    
+    @Override
+    public MatlabFuture<Object> getVariableAsync(String variableName)
+    {
+        return this.invokeAsync(new MatlabCallables.GetVariable(variableName));
+    }
+    
+    @Override
+    public int getMatlabThreadQueueDepth(MatlabThreadPriority priority)
+    {
+        return 0;
+    }
+    
+    @Override
+    public boolean isRunningInsideMatlab()
+    {
+        return false;
+    }
+    
+    @Override
+    public boolean isConnected()
+    {
+        return !_matlabThread.isShutdown();
+    }
+    
+    @Override
+    public boolean disconnect()
+    {
+        _matlabThread.shutdownNow();
+        
+        return true;
+    }
+    
+    @Override
+    public void exit()
+    {
+        this.disconnect();
+    }
+}
\ No newline at end of file
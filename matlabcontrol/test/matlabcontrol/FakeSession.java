@@ -0,0 +1,197 @@
+package matlabcontrol;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * A session whose health is set by a test. Calls return the session's name unless a failure has been set. Callables
+ * invoked asynchronously are run immediately, with each function they call returning the session's name.
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+class FakeSession extends MatlabProxy
+{
+    volatile boolean connected = true;
+    volatile long heartbeatDelay = 0L;
+    volatile Integer exitValue = null;
+    volatile boolean destroyed = false;
+    volatile boolean exited = false;
+    volatile MatlabInvocationException failure = null;
+    final AtomicInteger calls = new AtomicInteger();
+    
+    FakeSession(String name)
+    {
+        super(new TestIdentifier(name), false);
+    }
+    
+    private static class TestIdentifier implements Identifier
+    {
+        private final String _name;
+        
+        TestIdentifier(String name)
+        {
+            _name = name;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return _name;
+        }
+    }
+    
+    @Override
+    public boolean isConnected()
+    {
+        if(heartbeatDelay != 0L)
+        {
+            try
+            {
+                Thread.sleep(heartbeatDelay);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        return connected;
+    }
+    
+    @Override
+    Integer getExitValue()
+    {
+        return exitValue;
+    }
+    
+    @Override
+    void destroyProcess()
+    {
+        destroyed = true;
+    }
+    
+    @Override
+    public boolean disconnect()
+    {
+        connected = false;
+        
+        return true;
+    }
+    
+    @Override
+    public void exit()
+    {
+        exited = true;
+        connected = false;
+    }
+    
+    @Override
+    public Object[] returningFeval(String functionName, int nargout, Object... args)
+            throws MatlabInvocationException
+    {
+        calls.incrementAndGet();
+        if(failure != null)
+        {
+            throw failure;
+        }
+        
+        return new Object[] { this.getIdentifier().toString() };
+    }
+    
+    @Override public boolean isRunningInsideMatlab() { return false; }
+    @Override public <T> T invokeAndWait(MatlabThreadCallable<T> callable)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public MatlabFuture<Void> evalAsync(String command) { throw new UnsupportedOperationException(); }
+    @Override public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public MatlabFuture<Object> getVariableAsync(String variableName)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public <T> MatlabFuture<T> invokeAsync(MatlabThreadCallable<T> callable)
+    {
+        MatlabFutureImpl<T> future = new MatlabFutureImpl<T>();
+        future.start();
+        try
+        {
+            future.complete(callable.call(new FakeMatlabProxy.Workspace()
+            {
+                @Override
+                public Object[] returningFeval(String functionName, int nargout, Object... args)
+                        throws MatlabInvocationException
+                {
+                    return FakeSession.this.returningFeval(functionName, nargout, args);
+                }
+            }));
+        }
+        catch(MatlabInvocationException e)
+        {
+            future.fail(e);
+        }
+        
+        return future;
+    }
+    @Override public int getMatlabThreadQueueDepth(MatlabThreadPriority priority) { return 0; }
+    @Override public void eval(String command) { throw new UnsupportedOperationException(); }
+    @Override public Object[] returningEval(String command, int nargout)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public void feval(String functionName, Object... args) { throw new UnsupportedOperationException(); }
+    @Override public void setVariable(String variableName, Object value)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public Object getVariable(String variableName) { throw new UnsupportedOperationException(); }
+    @Override public void setVariables(Map<String, Object> variables)
+    {
+        throw new UnsupportedOperationException();
+    }
+    @Override public Map<String, Object> getVariables(String... variableNames)
+    {
+        throw new UnsupportedOperationException();
+    }
+}
\ No newline at end of file
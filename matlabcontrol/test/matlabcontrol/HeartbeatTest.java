@@ -0,0 +1,209 @@
+package matlabcontrol;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class HeartbeatTest
+{
+    private static class TestIdentifier implements MatlabProxy.Identifier
+    {
+        @Override
+        public String toString()
+        {
+            return "PROXY_TEST";
+        }
+    }
+    
+    /**
+     * A JMI wrapper which counts its connection checks, and which fails every call once MATLAB is made unreachable.
+     * While {@code hang} is set, connection checks block until it is counted down.
+     */
+    private static class FakeJMIWrapper implements InvocationHandler
+    {
+        final AtomicInteger connectionChecks = new AtomicInteger();
+        final AtomicBoolean reachable = new AtomicBoolean(true);
+        volatile CountDownLatch hang = null;
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            if(!reachable.get())
+            {
+                throw new ConnectException("MATLAB is unreachable");
+            }
+            if(method.getName().equals("checkConnection"))
+            {
+                connectionChecks.incrementAndGet();
+                
+                CountDownLatch latch = hang;
+                if(latch != null)
+                {
+                    latch.await();
+                }
+            }
+            
+            return null;
+        }
+        
+        JMIWrapperRemote create()
+        {
+            return (JMIWrapperRemote) Proxy.newProxyInstance(JMIWrapperRemote.class.getClassLoader(),
+                    new Class<?>[] { JMIWrapperRemote.class }, this);
+        }
+    }
+    
+    private static RemoteMatlabProxy createProxy(FakeJMIWrapper wrapper, long heartbeatPeriod)
+    {
+        RequestReceiver receiver = (RequestReceiver) Proxy.newProxyInstance(RequestReceiver.class.getClassLoader(),
+                new Class<?>[] { RequestReceiver.class }, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                return null;
+            }
+        });
+        MatlabProxyFactoryOptions options = new MatlabProxyFactoryOptions.Builder()
+                .setHeartbeatPeriod(heartbeatPeriod)
+                .build();
+        RemoteMatlabProxy proxy = new RemoteMatlabProxy(wrapper.create(), receiver,
+                new TestIdentifier(), false, null, options);
+        proxy.init();
+        
+        return proxy;
+    }
+    
+    @Test
+    public void testNoChecksWhileInUse() throws Exception
+    {
+        FakeJMIWrapper wrapper = new FakeJMIWrapper();
+        RemoteMatlabProxy proxy = createProxy(wrapper, 50L);
+        try
+        {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+            while(System.nanoTime() < end)
+            {
+                proxy.eval("x = 1;");
+                Thread.sleep(5);
+            }
+            assertEquals(0, wrapper.connectionChecks.get());
+            
+            Thread.sleep(300);
+            assertTrue(wrapper.connectionChecks.get() > 0);
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testDisconnectsWhenUnreachable() throws Exception
+    {
+        FakeJMIWrapper wrapper = new FakeJMIWrapper();
+        RemoteMatlabProxy proxy = createProxy(wrapper, 50L);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        proxy.addDisconnectionListener(new MatlabProxy.DisconnectionListener()
+        {
+            @Override
+            public void proxyDisconnected(MatlabProxy proxy)
+            {
+                disconnected.countDown();
+            }
+        });
+        
+        wrapper.reachable.set(false);
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+        assertFalse(proxy.isConnected());
+    }
+    
+    @Test
+    public void testHungCheckDoesNotDelayOthers() throws Exception
+    {
+        FakeJMIWrapper hungWrapper = new FakeJMIWrapper();
+        CountDownLatch hang = new CountDownLatch(1);
+        hungWrapper.hang = hang;
+        RemoteMatlabProxy hung = createProxy(hungWrapper, 20L);
+        
+        FakeJMIWrapper wrapper = new FakeJMIWrapper();
+        RemoteMatlabProxy proxy = createProxy(wrapper, 20L);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        proxy.addDisconnectionListener(new MatlabProxy.DisconnectionListener()
+        {
+            @Override
+            public void proxyDisconnected(MatlabProxy proxy)
+            {
+                disconnected.countDown();
+            }
+        });
+        try
+        {
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(hungWrapper.connectionChecks.get() == 0 && System.nanoTime() < end)
+            {
+                Thread.sleep(5);
+            }
+            assertEquals(1, hungWrapper.connectionChecks.get());
+            
+            //Other proxies continue to be checked while one check is blocked on MATLAB
+            int checks = wrapper.connectionChecks.get();
+            Thread.sleep(200);
+            assertTrue(wrapper.connectionChecks.get() > checks);
+            wrapper.reachable.set(false);
+            assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+            
+            //The blocked check is not run again until it completes
+            assertEquals(1, hungWrapper.connectionChecks.get());
+            hungWrapper.hang = null;
+            hang.countDown();
+            end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(hungWrapper.connectionChecks.get() == 1 && System.nanoTime() < end)
+            {
+                Thread.sleep(5);
+            }
+            assertTrue(hungWrapper.connectionChecks.get() > 1);
+        }
+        finally
+        {
+            hang.countDown();
+            hung.disconnect();
+            proxy.disconnect();
+        }
+    }
+}
\ No newline at end of file
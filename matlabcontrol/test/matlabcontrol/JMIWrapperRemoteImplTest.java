@@ -0,0 +1,133 @@
+package matlabcontrol;
+
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class JMIWrapperRemoteImplTest
+{
+    /**
+     * Records the results it is sent, optionally not returning from being sent one until released.
+     */
+    private static class TestReceiver implements CompletionReceiver
+    {
+        final Map<Long, Object> results = new ConcurrentHashMap<Long, Object>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+        
+        TestReceiver(boolean stalled)
+        {
+            release = new CountDownLatch(stalled ? 1 : 0);
+        }
+        
+        @Override
+        public void complete(long invocationID, Object result, MatlabInvocationException exception)
+        {
+            entered.countDown();
+            try
+            {
+                release.await();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            results.put(invocationID, result);
+        }
+
+        @Override
+        public void completeAll(long[] invocationIDs, Object[] results, MatlabInvocationException[] exceptions)
+        {
+            for(int i = 0; i < invocationIDs.length; i++)
+            {
+                this.complete(invocationIDs[i], results[i], exceptions[i]);
+            }
+        }
+    }
+    
+    private static MatlabFutureImpl<Object> complete(JMIWrapperRemoteImpl wrapper, long invocationID, Object result,
+            CompletionReceiver receiver)
+    {
+        MatlabFutureImpl<Object> future = new MatlabFutureImpl<Object>();
+        future.start();
+        wrapper.invokeAsync(invocationID, future, receiver);
+        future.complete(result);
+        
+        return future;
+    }
+    
+    @Test
+    public void testStalledReceiverDoesNotHoldUpOthers() throws Exception
+    {
+        JMIWrapperRemoteImpl stalledWrapper = new JMIWrapperRemoteImpl(false);
+        JMIWrapperRemoteImpl otherWrapper = new JMIWrapperRemoteImpl(false);
+        final TestReceiver stalled = new TestReceiver(true);
+        final TestReceiver other = new TestReceiver(false);
+        try
+        {
+            complete(stalledWrapper, 1L, "stalled", stalled);
+            stalled.entered.await();
+            
+            //Sent while the first receiver has yet to return
+            complete(otherWrapper, 1L, "other", other);
+            new Condition()
+            {
+                @Override
+                boolean holds()
+                {
+                    return other.results.containsKey(1L);
+                }
+            }.await();
+            assertEquals("other", other.results.get(1L));
+            assertTrue(stalled.results.isEmpty());
+            
+            //Completions queued behind the stalled send are sent once it returns
+            complete(stalledWrapper, 2L, "queued", stalled);
+            stalled.release.countDown();
+            new Condition()
+            {
+                @Override
+                boolean holds()
+                {
+                    return stalled.results.size() == 2;
+                }
+            }.await();
+            assertEquals("queued", stalled.results.get(2L));
+        }
+        finally
+        {
+            stalled.release.countDown();
+            UnicastRemoteObject.unexportObject(stalledWrapper, true);
+            UnicastRemoteObject.unexportObject(otherWrapper, true);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+package matlabcontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class LatencyRecorderTest
+{
+    private static class TestIdentifier implements MatlabProxy.Identifier
+    {
+        @Override
+        public String toString()
+        {
+            return "PROXY_TEST";
+        }
+    }
+    
+    @Test
+    public void testPhasesRecordedPerFunction()
+    {
+        LatencyRecorder recorder = new LatencyRecorder(new TestIdentifier());
+        recorder.record("sqrt", 1000L, 0L, 300L, 500L, 0L, 0L);
+        recorder.record("sqrt", 3000L, 200L, 1000L, 1000L, 100L, 300L);
+        recorder.record("eval", 10L, 0L, 0L, 10L, 0L, 0L);
+        
+        assertEquals(2, recorder.getRecordedFunctionNames().size());
+        assertNull(recorder.getHistogram("disp", LatencyPhase.TOTAL));
+        
+        LatencyHistogram total = recorder.getHistogram("sqrt", LatencyPhase.TOTAL);
+        assertEquals(2L, total.getCount());
+        assertEquals(4000L, total.getTotal(TimeUnit.NANOSECONDS));
+        assertEquals(2000D, total.getMean(TimeUnit.NANOSECONDS), 0D);
+        assertEquals(3000L, total.getMax(TimeUnit.NANOSECONDS));
+        
+        //Transport is whatever is not accounted for by the other phases
+        LatencyHistogram transport = recorder.getHistogram("sqrt", LatencyPhase.TRANSPORT);
+        assertEquals(600L, transport.getTotal(TimeUnit.NANOSECONDS));
+        assertEquals(200L, recorder.getHistogram("sqrt", LatencyPhase.CLIENT_MARSHAL).getMax(TimeUnit.NANOSECONDS));
+        assertEquals(100L, recorder.getHistogram("sqrt", LatencyPhase.RESULT_MARSHAL).getMax(TimeUnit.NANOSECONDS));
+        assertEquals(300L, recorder.getHistogram("sqrt", LatencyPhase.CLIENT_UNMARSHAL).getMax(TimeUnit.NANOSECONDS));
+        assertEquals(0L, recorder.getHistogram("eval", LatencyPhase.TRANSPORT).getMax(TimeUnit.NANOSECONDS));
+        
+        recorder.reset();
+        assertTrue(recorder.getRecordedFunctionNames().isEmpty());
+    }
+    
+    @Test
+    public void testFailuresRecordedOnlyInTotal()
+    {
+        LatencyRecorder recorder = new LatencyRecorder(new TestIdentifier());
+        recorder.record("sqrt", 1000L, 0L, 300L, 500L, 0L, 0L);
+        recorder.recordFailure("sqrt", 5000L, true);
+        recorder.recordFailure("sqrt", 2000L, false);
+        recorder.recordFailure("pause", 9000L, false);
+        
+        assertEquals(3L, recorder.getHistogram("sqrt", LatencyPhase.TOTAL).getCount());
+        assertEquals(5000L, recorder.getHistogram("sqrt", LatencyPhase.TOTAL).getMax(TimeUnit.NANOSECONDS));
+        assertEquals(1L, recorder.getHistogram("sqrt", LatencyPhase.EXECUTION).getCount());
+        assertEquals(2L, recorder.getFailureCount("sqrt"));
+        assertEquals(1L, recorder.getTimeoutCount("sqrt"));
+        
+        //A function which has only failed has only a total
+        assertEquals(1L, recorder.getHistogram("pause", LatencyPhase.TOTAL).getCount());
+        assertNull(recorder.getHistogram("pause", LatencyPhase.QUEUE_WAIT));
+        assertEquals(0L, recorder.getTimeoutCount("pause"));
+        
+        try
+        {
+            recorder.getFailureCount("disp");
+            fail("nothing was recorded for disp");
+        }
+        catch(IllegalArgumentException e) { }
+    }
+    
+    @Test
+    public void testMarshallingMeasuredInEachJvm() throws Exception
+    {
+        TimedCallable<Object> timed = new TimedCallable<Object>(new MatlabCallables.GetVariable("x"));
+        assertEquals(0L, timed.getMarshalling());
+        
+        //Sent to MATLAB's Java Virtual Machine
+        @SuppressWarnings("unchecked")
+        TimedCallable<Object> received = (TimedCallable<Object>) roundTrip(timed);
+        assertTrue(timed.getMarshalling() > 0L);
+        
+        FakeMatlabProxy.Workspace workspace = new FakeMatlabProxy.Workspace();
+        workspace.setVariable("x", new double[] { 1, 2, 3 });
+        TimedCallable.Result<Object> result = received.call(workspace);
+        assertEquals(0L, result.getMarshalling());
+        assertEquals(0L, result.getUnmarshalling());
+        
+        //Returned to the calling Java Virtual Machine
+        @SuppressWarnings("unchecked")
+        TimedCallable.Result<Object> returned = (TimedCallable.Result<Object>) roundTrip(result);
+        assertTrue(returned.getMarshalling() > 0L);
+        assertTrue(returned.getUnmarshalling() > 0L);
+        assertEquals(3, ((double[]) returned.getValue()).length);
+        assertEquals(result.getExecution(), returned.getExecution());
+    }
+    
+    private static Object roundTrip(Object object) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+    
+    @Test
+    public void testPercentileWithinBucket()
+    {
+        LatencyRecorder recorder = new LatencyRecorder(new TestIdentifier());
+        for(int i = 1; i <= 100; i++)
+        {
+            recorder.record("f", i * 1000L, 0L, 0L, 0L, 0L, 0L);
+        }
+        
+        LatencyHistogram histogram = recorder.getHistogram("f", LatencyPhase.TOTAL);
+        long median = histogram.getPercentile(50D, TimeUnit.NANOSECONDS);
+        assertTrue(median >= 50000L && median < 100000L);
+        assertEquals(100000L, histogram.getPercentile(100D, TimeUnit.NANOSECONDS));
+        
+        long counted = 0L;
+        for(long bucket : histogram.getBucketCounts())
+        {
+            counted += bucket;
+        }
+        assertEquals(100L, counted);
+    }
+    
+    @Test
+    public void testExportedOverJmx() throws Exception
+    {
+        LatencyRecorder recorder = new LatencyRecorder(new TestIdentifier());
+        recorder.record("sqrt", 2000000L, 0L, 0L, 1000000L, 0L, 0L);
+        recorder.register();
+        
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("matlabcontrol:type=MatlabProxyLatency,id=" + ObjectName.quote("PROXY_TEST"));
+        try
+        {
+            assertEquals(1L, server.invoke(name, "getCount", new Object[] { "sqrt", "execution" },
+                    new String[] { String.class.getName(), String.class.getName() }));
+        }
+        finally
+        {
+            recorder.unregister();
+        }
+        
+        assertFalse(server.isRegistered(name));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package matlabcontrol;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.atomic.AtomicReference;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class LocalHostConnectionPoolTest
+{
+    public static interface Echo extends Remote
+    {
+        public Object echo(Object value) throws RemoteException;
+    }
+    
+    private static class EchoImpl implements Echo
+    {
+        @Override
+        public Object echo(Object value)
+        {
+            return value;
+        }
+    }
+    
+    @Test
+    public void testCallsReuseConnections() throws Exception
+    {
+        LocalHostConnectionPool pool = LocalHostConnectionPool.getInstance();
+        
+        EchoImpl echo = new EchoImpl();
+        Echo stub = (Echo) LocalHostRMIHelper.exportObject(echo);
+        try
+        {
+            long opened = pool.getOpenedCount();
+            long reused = pool.getReusedCount();
+            for(int i = 0; i < 20; i++)
+            {
+                assertEquals(i, stub.echo(i));
+            }
+            
+            //Sequential calls share one connection
+            assertTrue(pool.getOpenedCount() - opened <= 1);
+            assertTrue(pool.getReusedCount() - reused >= 19);
+        }
+        finally
+        {
+            UnicastRemoteObject.unexportObject(echo, true);
+        }
+    }
+    
+    @Test
+    public void testConnectionsAreBounded() throws Exception
+    {
+        //A pool of its own, so connections other tests leave to close do not free up a slot part way through
+        final LocalHostConnectionPool pool = new LocalHostConnectionPool();
+        pool.setSettings(new LocalHostConnectionPool.Settings(50, true, true, 0, 0, 1));
+        
+        ServerSocket serverSocket = pool.createServerSocket(0, false);
+        final int port = serverSocket.getLocalPort();
+        try
+        {
+            long waits = pool.getWaitCount();
+            
+            Socket first = pool.connect(port, false);
+            final AtomicReference<Socket> second = new AtomicReference<Socket>();
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        second.set(pool.connect(port, false));
+                    }
+                    catch(Exception e) { }
+                }
+            };
+            thread.start();
+            
+            //The second connection waits until the first is closed
+            thread.join(200);
+            assertTrue(thread.isAlive());
+            first.close();
+            thread.join(5000);
+            
+            assertNotNull(second.get());
+            assertEquals(waits + 1, pool.getWaitCount());
+            second.get().close();
+        }
+        finally
+        {
+            serverSocket.close();
+        }
+    }
+}
\ No newline at end of file
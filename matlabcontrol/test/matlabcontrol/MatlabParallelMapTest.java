@@ -0,0 +1,231 @@
+package matlabcontrol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabParallelMapTest
+{
+    private static class TestIdentifier implements MatlabProxy.Identifier
+    {
+        private final String _name;
+        
+        TestIdentifier(String name)
+        {
+            _name = name;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return _name;
+        }
+    }
+    
+    /**
+     * A proxy which runs calls in order on its own thread, where calling a function returns its first argument after
+     * sleeping for a fixed delay.
+     */
+    private static class DelayingProxy extends MatlabProxy
+    {
+        private final ExecutorService _executor = Executors.newSingleThreadExecutor();
+        private final long _delay;
+        
+        DelayingProxy(String name, long delay)
+        {
+            super(new TestIdentifier(name), false);
+            
+            _delay = delay;
+        }
+        
+        private final MatlabThreadProxy _threadProxy = new MatlabThreadProxy()
+        {
+            @Override
+            public Object[] returningFeval(String functionName, int nargout, Object... args)
+                    throws MatlabInvocationException
+            {
+                try
+                {
+                    Thread.sleep(_delay);
+                }
+                catch(InterruptedException e)
+                {
+                    throw MatlabInvocationException.Reason.INTERRRUPTED.asException(e);
+                }
+                
+                return new Object[] { args[0] };
+            }
+            
+            @Override public void eval(String command) { throw new UnsupportedOperationException(); }
+            @Override public Object[] returningEval(String command, int nargout)
+            {
+                throw new UnsupportedOperationException();
+            }
+            @Override public void feval(String functionName, Object... args)
+            {
+                throw new UnsupportedOperationException();
+            }
+            @Override public void setVariable(String variableName, Object value)
+            {
+                throw new UnsupportedOperationException();
+            }
+            @Override public Object getVariable(String variableName) { throw new UnsupportedOperationException(); }
+            @Override public void setVariables(Map<String, Object> variables)
+            {
+                throw new UnsupportedOperationException();
+            }
+            @Override public Map<String, Object> getVariables(String... variableNames)
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+        
+        @Override
+        public <T> MatlabFuture<T> invokeAsync(final MatlabThreadCallable<T> callable)
+        {
+            final MatlabFutureImpl<T> future = new MatlabFutureImpl<T>();
+            _executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        future.complete(callable.call(_threadProxy));
+                    }
+                    catch(MatlabInvocationException e)
+                    {
+                        future.fail(e);
+                    }
+                }
+            });
+            
+            return future;
+        }
+        
+        @Override public boolean isRunningInsideMatlab() { return false; }
+        @Override public boolean isConnected() { return true; }
+        @Override public boolean disconnect() { _executor.shutdown(); return true; }
+        @Override public void exit() { throw new UnsupportedOperationException(); }
+        @Override public <T> T invokeAndWait(MatlabThreadCallable<T> callable)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public <T> T invokeAndWait(MatlabThreadCallable<T> callable, long timeout, TimeUnit unit)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Void> evalAsync(String command) { throw new UnsupportedOperationException(); }
+        @Override public MatlabFuture<Object[]> returningEvalAsync(String command, int nargout)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Void> fevalAsync(String functionName, Object... args)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Object[]> returningFevalAsync(String functionName, int nargout, Object... args)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Void> setVariableAsync(String variableName, Object value)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public MatlabFuture<Object> getVariableAsync(String variableName)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public int getMatlabThreadQueueDepth(MatlabThreadPriority priority) { return 0; }
+        @Override public void eval(String command) { throw new UnsupportedOperationException(); }
+        @Override public Object[] returningEval(String command, int nargout)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void feval(String functionName, Object... args) { throw new UnsupportedOperationException(); }
+        @Override public Object[] returningFeval(String functionName, int nargout, Object... args)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void setVariable(String variableName, Object value)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public Object getVariable(String variableName) { throw new UnsupportedOperationException(); }
+        @Override public void setVariables(Map<String, Object> variables)
+        {
+            throw new UnsupportedOperationException();
+        }
+        @Override public Map<String, Object> getVariables(String... variableNames)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    @Test
+    public void testSlowSessionWorkIsStolen() throws MatlabInvocationException
+    {
+        List<DelayingProxy> proxies = new ArrayList<DelayingProxy>();
+        proxies.add(new DelayingProxy("MAP_SLOW", 20));
+        proxies.add(new DelayingProxy("MAP_FAST", 0));
+        
+        List<Object[]> inputs = new ArrayList<Object[]>();
+        for(int i = 0; i < 40; i++)
+        {
+            inputs.add(new Object[] { i });
+        }
+        
+        try
+        {
+            MatlabParallelMap.Result result = new MatlabParallelMap(proxies, 2, 1).map("identity", 1, inputs);
+            
+            List<Object[]> outputs = result.getOutputs();
+            assertEquals(40, outputs.size());
+            for(int i = 0; i < 40; i++)
+            {
+                assertEquals(i, outputs.get(i)[0]);
+            }
+            assertEquals(40, result.getInputCount(0) + result.getInputCount(1));
+            assertEquals(20, result.getChunkCount(0) + result.getChunkCount(1));
+            assertTrue(result.getStolenChunkCount(1) > 0);
+            assertTrue(result.getInputCount(1) > result.getInputCount(0));
+        }
+        finally
+        {
+            for(DelayingProxy proxy : proxies)
+            {
+                proxy.disconnect();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,412 @@
+package matlabcontrol;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.ObjectName;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabProxyPoolTest
+{
+    private static FakeSession session(MatlabProxyPool pool, int index)
+    {
+        return (FakeSession) pool.getSessions().get(index).getProxy();
+    }
+    
+    private static String name(MatlabProxyPool.Lease lease)
+    {
+        return lease.getProxy().getIdentifier().toString();
+    }
+    
+    private static int registeredPools() throws Exception
+    {
+        return ManagementFactory.getPlatformMBeanServer().queryNames(
+                new ObjectName("matlabcontrol:type=MatlabProxyPool,*"), null).size();
+    }
+    
+    @Test
+    public void testLeastLoaded() throws Exception
+    {
+        MatlabProxyPool pool = new MatlabProxyPool(new FakeFactory(), 3);
+        try
+        {
+            assertEquals(3, pool.getSessionCount());
+            
+            //Each lease goes to a session which is not leased
+            MatlabProxyPool.Lease first = pool.acquire();
+            MatlabProxyPool.Lease second = pool.acquire();
+            MatlabProxyPool.Lease third = pool.acquire();
+            assertEquals(3, new HashSet<String>(Arrays.asList(name(first), name(second), name(third))).size());
+            assertTrue(pool.isLeased(name(second)));
+            
+            //Once released, that session is the only one which can be leased
+            second.release();
+            second.release();
+            assertFalse(pool.isLeased(name(second)));
+            MatlabProxyPool.Lease fourth = pool.acquire();
+            assertEquals(name(second), name(fourth));
+            
+            //Calls to the pool only go to sessions which are not leased
+            third.release();
+            for(int i = 0; i < 3; i++)
+            {
+                assertEquals(name(third), pool.returningFeval("f", 1)[0]);
+            }
+            
+            //Calls through a lease are counted
+            fourth.getProxy().returningFeval("f", 1);
+            assertEquals(1L, pool.getCallCount(name(fourth)));
+            
+            //Once released, calls go to the session which has had the fewest
+            first.release();
+            fourth.release();
+            assertEquals(name(first), pool.returningFeval("f", 1)[0]);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testWaitsWhileEverySessionIsLeased() throws Exception
+    {
+        final MatlabProxyPool pool = new MatlabProxyPool(new FakeFactory(), 1);
+        try
+        {
+            MatlabProxyPool.Lease lease = pool.acquire();
+            
+            final AtomicReference<MatlabProxyPool.Lease> waitingLease = new AtomicReference<MatlabProxyPool.Lease>();
+            final AtomicReference<Object> waitingCall = new AtomicReference<Object>();
+            Thread leaser = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        waitingLease.set(pool.acquire());
+                    }
+                    catch(MatlabInvocationException e) { }
+                }
+            };
+            Thread caller = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        waitingCall.set(pool.returningFeval("f", 1)[0]);
+                    }
+                    catch(MatlabInvocationException e) { }
+                }
+            };
+            leaser.start();
+            caller.start();
+            
+            Thread.sleep(100);
+            assertNull(waitingLease.get());
+            assertNull(waitingCall.get());
+            assertEquals(0L, pool.getCallCount(name(lease)));
+            
+            //Once released, one of them is given the session and the other waits for it again if it was leased
+            lease.release();
+            new Condition()
+            {
+                @Override
+                boolean holds()
+                {
+                    return waitingLease.get() != null;
+                }
+            }.await();
+            waitingLease.get().release();
+            caller.join(5000);
+            leaser.join(5000);
+            assertEquals(name(lease), waitingCall.get());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testWaitingEndsOnShutdownOrInterrupt() throws Exception
+    {
+        final MatlabProxyPool pool = new MatlabProxyPool(new FakeFactory(), 1);
+        pool.acquire();
+        
+        final AtomicReference<MatlabInvocationException> failure = new AtomicReference<MatlabInvocationException>();
+        Runnable acquire = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pool.acquire();
+                }
+                catch(MatlabInvocationException e)
+                {
+                    failure.set(e);
+                }
+            }
+        };
+        
+        Thread leaser = new Thread(acquire);
+        leaser.start();
+        leaser.interrupt();
+        leaser.join(5000);
+        assertEquals(MatlabInvocationException.Reason.INTERRRUPTED, failure.get().getReason());
+        
+        failure.set(null);
+        leaser = new Thread(acquire);
+        leaser.start();
+        Thread.sleep(50);
+        pool.shutdown();
+        leaser.join(5000);
+        assertEquals(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED, failure.get().getReason());
+    }
+    
+    @Test
+    public void testMapSkipsLeasedSessions() throws Exception
+    {
+        MatlabProxyPool pool = new MatlabProxyPool(new FakeFactory(), 2);
+        try
+        {
+            List<Object[]> inputs = Arrays.asList(new Object[4][]);
+            
+            //Leased before the map was constructed
+            MatlabProxyPool.Lease lease = pool.acquire();
+            MatlabParallelMap map = new MatlabParallelMap(pool, 1, 1);
+            for(Object[] output : map.map("f", 1, inputs).getOutputs())
+            {
+                assertFalse(name(lease).equals(output[0]));
+            }
+            lease.release();
+            
+            //Leased after the map was constructed
+            map = new MatlabParallelMap(pool, 1, 1);
+            lease = pool.acquire();
+            for(Object[] output : map.map("f", 1, inputs).getOutputs())
+            {
+                assertFalse(name(lease).equals(output[0]));
+            }
+            
+            MatlabProxyPool.Lease other = pool.acquire();
+            try
+            {
+                map.map("f", 1, inputs);
+                fail("every session is leased");
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertEquals(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED, e.getReason());
+            }
+            try
+            {
+                new MatlabParallelMap(pool);
+                fail("every session is leased");
+            }
+            catch(IllegalArgumentException e) { }
+            
+            lease.release();
+            other.release();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testRemovedOnDisconnect() throws Exception
+    {
+        MatlabProxyPool pool = new MatlabProxyPool(new FakeFactory(), 2);
+        try
+        {
+            FakeSession disconnected = session(pool, 0);
+            disconnected.connected = false;
+            disconnected.notifyDisconnectionListeners();
+            assertEquals(1, pool.getSessionCount());
+            assertEquals(0L, pool.getCallCount(disconnected.getIdentifier().toString()));
+            
+            //Only the remaining session is used
+            FakeSession remaining = session(pool, 0);
+            for(int i = 0; i < 3; i++)
+            {
+                assertEquals(remaining.getIdentifier().toString(), pool.returningFeval("f", 1)[0]);
+            }
+            assertEquals(0, disconnected.calls.get());
+            
+            //A session which disconnected before it was added is not kept
+            FakeSession alreadyDisconnected = new FakeSession("DISCONNECTED");
+            alreadyDisconnected.connected = false;
+            pool.add(alreadyDisconnected);
+            assertEquals(1, pool.getSessionCount());
+            
+            remaining.connected = false;
+            remaining.notifyDisconnectionListeners();
+            assertEquals(0, pool.getSessionCount());
+            try
+            {
+                pool.acquire();
+                fail();
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertEquals(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED, e.getReason());
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testShutdown() throws Exception
+    {
+        int registered = registeredPools();
+        
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 2);
+        assertEquals(registered + 1, registeredPools());
+        
+        pool.shutdown();
+        assertTrue(pool.isShutdown());
+        assertEquals(0, pool.getSessionCount());
+        assertEquals(registered, registeredPools());
+        for(FakeSession session : factory.launched)
+        {
+            assertTrue(session.exited);
+        }
+        
+        try
+        {
+            pool.returningFeval("f", 1);
+            fail();
+        }
+        catch(MatlabInvocationException e)
+        {
+            assertEquals(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED, e.getReason());
+        }
+        
+        //No effect the second time
+        pool.shutdown();
+        assertEquals(registered, registeredPools());
+    }
+    
+    @Test
+    public void testFailedLaunchExitsLaunched() throws Exception
+    {
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        FakeFactory factory = new FakeFactory()
+        {
+            @Override
+            public MatlabProxy getProxy() throws MatlabConnectionException
+            {
+                //One of the launches fails
+                if(failed.compareAndSet(false, true))
+                {
+                    throw new MatlabConnectionException("launch failed");
+                }
+                
+                return super.getProxy();
+            }
+        };
+        
+        try
+        {
+            MatlabProxyPool.launch(factory, 3);
+            fail();
+        }
+        catch(MatlabConnectionException e)
+        {
+            assertEquals("launch failed", e.getMessage());
+        }
+        
+        //The others are waited on and exited
+        assertEquals(2, factory.launched.size());
+        for(FakeSession session : factory.launched)
+        {
+            assertTrue(session.exited);
+        }
+        
+        try
+        {
+            new MatlabProxyPool(factory, 0);
+            fail();
+        }
+        catch(IllegalArgumentException e) { }
+    }
+    
+    @Test
+    public void testInterruptedLaunch() throws Exception
+    {
+        final FakeFactory factory = new FakeFactory();
+        factory.release = new CountDownLatch(1);
+        
+        Thread.currentThread().interrupt();
+        try
+        {
+            MatlabProxyPool.launch(factory, 2);
+            fail();
+        }
+        catch(MatlabConnectionException e) { }
+        finally
+        {
+            //The interrupt status is kept, and clearing it here keeps it from affecting other tests
+            assertTrue(Thread.interrupted());
+            factory.release.countDown();
+        }
+        
+        //Sessions which finish launching afterwards are exited
+        new Condition()
+        {
+            @Override
+            boolean holds()
+            {
+                boolean exited = factory.launched.size() == 2;
+                for(FakeSession session : factory.launched)
+                {
+                    exited &= session.exited;
+                }
+                
+                return exited;
+            }
+        }.await();
+    }
+}
\ No newline at end of file
@@ -1,5 +1,9 @@
 package matlabcontrol;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import static junit.framework.Assert.*;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -79,4 +83,54 @@ public class MatlabProxyTest
     {
         _proxy.eval("disp('Hello World')");
     }
+    
+    @Test
+    public void testSetGetVariables() throws MatlabInvocationException
+    {
+        Map<String, Object> variables = new LinkedHashMap<String, Object>();
+        variables.put("a", 5.0);
+        variables.put("b", "text");
+        _proxy.setVariables(variables);
+        
+        Map<String, Object> result = _proxy.getVariables("b", "a");
+        assertEquals(2, result.size());
+        assertEquals("text", result.get("b"));
+        assertEquals(5.0, ((double[]) result.get("a"))[0], 0);
+    }
+    
+    @Test
+    public void testSetGetVariableAsync() throws MatlabInvocationException
+    {
+        double expected = 5;
+        MatlabFuture<Void> set = _proxy.setVariableAsync("a", expected);
+        MatlabFuture<Object> get = _proxy.getVariableAsync("a");
+        
+        set.getResult();
+        double actual = ((double[]) get.getResult())[0];
+        assertEquals(expected, actual, 0);
+        assertTrue(set.isDone());
+    }
+    
+    @Test(expected = MatlabInvocationException.class)
+    public void testEvalAsyncFailure() throws MatlabInvocationException
+    {
+        _proxy.evalAsync("thisFunctionDoesNotExist()").getResult();
+    }
+    
+    @Test
+    public void testInvokeAndWaitTimeout() throws MatlabInvocationException
+    {
+        long timeouts = _proxy.getTimeoutCount();
+        try
+        {
+            _proxy.invokeAndWait(new MatlabCallables.Eval("pause(2)"), 100, TimeUnit.MILLISECONDS);
+            fail("Timeout did not elapse");
+        }
+        catch(MatlabInvocationException e) { }
+        
+        assertEquals(timeouts + 1, _proxy.getTimeoutCount());
+        
+        //The paused eval is still running, so this will wait for it to complete
+        _proxy.eval("disp('Finished waiting')");
+    }
 }
\ No newline at end of file
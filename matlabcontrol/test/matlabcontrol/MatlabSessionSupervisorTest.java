@@ -0,0 +1,346 @@
+package matlabcontrol;
+
+import java.util.concurrent.TimeUnit;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabSessionSupervisorTest
+{
+    private static FakeSession session(MatlabProxyPool pool, int index)
+    {
+        return (FakeSession) pool.getSessions().get(index).getProxy();
+    }
+    
+    private static void awaitSessions(final MatlabProxyPool pool, final int count) throws InterruptedException
+    {
+        new Condition()
+        {
+            @Override
+            boolean holds()
+            {
+                return pool.getSessionCount() == count;
+            }
+        }.await();
+    }
+    
+    private static void awaitFailedRelaunches(final MatlabSessionSupervisor supervisor, final long count)
+            throws InterruptedException
+    {
+        new Condition()
+        {
+            @Override
+            boolean holds()
+            {
+                return supervisor.getFailedRelaunchCount() == count;
+            }
+        }.await();
+    }
+    
+    @Test
+    public void testUnhealthySessionsEvictedAndReplaced() throws Exception
+    {
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 3);
+        MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool, 1000L, 1000L, 2);
+        try
+        {
+            FakeSession failed = session(pool, 0);
+            FakeSession disconnected = session(pool, 1);
+            FakeSession launcherExited = session(pool, 2);
+            failed.exitValue = 1;
+            disconnected.connected = false;
+            launcherExited.exitValue = 0;
+            
+            supervisor.check();
+            assertEquals(2L, supervisor.getEvictionCount());
+            assertTrue(failed.destroyed);
+            assertTrue(disconnected.destroyed);
+            assertFalse(launcherExited.destroyed);
+            assertTrue(supervisor.getLastEvictionReason().startsWith(disconnected.getIdentifier() + ": "));
+            
+            //The shortfall is replaced
+            awaitSessions(pool, 3);
+            assertEquals(5, factory.launched.size());
+            assertEquals(2L, supervisor.getRelaunchCount());
+            assertSame(launcherExited, session(pool, 0));
+        }
+        finally
+        {
+            supervisor.stop();
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testConsecutiveSlowHeartbeatsEvict() throws Exception
+    {
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 1);
+        MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool, 1000L, 10L, 2);
+        try
+        {
+            FakeSession slow = session(pool, 0);
+            
+            //A fast response resets the count; each slow heartbeat is left to finish so that the next check sends
+            //another rather than waiting on the same one
+            slow.heartbeatDelay = 30L;
+            supervisor.check();
+            Thread.sleep(50);
+            supervisor.check();
+            Thread.sleep(50);
+            slow.heartbeatDelay = 0L;
+            supervisor.check();
+            slow.heartbeatDelay = 30L;
+            supervisor.check();
+            Thread.sleep(50);
+            supervisor.check();
+            Thread.sleep(50);
+            assertEquals(0L, supervisor.getEvictionCount());
+            
+            supervisor.check();
+            assertEquals(1L, supervisor.getEvictionCount());
+            assertTrue(slow.destroyed);
+            assertTrue(supervisor.getLastEvictionReason().contains("3 times in a row"));
+        }
+        finally
+        {
+            supervisor.stop();
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testUnresponsiveSessionDoesNotHoldUpChecks() throws Exception
+    {
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 2);
+        MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool, 60000L, 50L, 2);
+        try
+        {
+            //Takes far longer to respond than the test runs for
+            FakeSession hung = session(pool, 0);
+            hung.heartbeatDelay = 60000L;
+            FakeSession disconnected = session(pool, 1);
+            disconnected.connected = false;
+            
+            //Each check waits no longer than the maximum heartbeat latency, and still checks the other session
+            long start = System.nanoTime();
+            supervisor.check();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000L);
+            assertEquals(1L, supervisor.getEvictionCount());
+            assertTrue(disconnected.destroyed);
+            
+            //Not responding counts as slow at every check, the same heartbeat is waited on rather than another sent
+            supervisor.check();
+            assertEquals(1L, supervisor.getEvictionCount());
+            supervisor.check();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000L);
+            assertEquals(2L, supervisor.getEvictionCount());
+            assertTrue(hung.destroyed);
+            assertTrue(supervisor.getLastEvictionReason().contains("not responding"));
+        }
+        finally
+        {
+            supervisor.stop();
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testDisconnectionTriggersReplacement() throws Exception
+    {
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 2);
+        final MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool, 60000L, 1000L, 2);
+        try
+        {
+            supervisor.check();
+            
+            FakeSession disconnected = session(pool, 0);
+            disconnected.connected = false;
+            disconnected.notifyDisconnectionListeners();
+            
+            new Condition()
+            {
+                @Override
+                boolean holds()
+                {
+                    return supervisor.getRelaunchCount() == 1L;
+                }
+            }.await();
+            awaitSessions(pool, 2);
+            assertEquals(1L, supervisor.getEvictionCount());
+            assertEquals(disconnected.getIdentifier() + ": disconnected", supervisor.getLastEvictionReason());
+        }
+        finally
+        {
+            supervisor.stop();
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testRelaunchBackoffDoublesUpToLimit() throws Exception
+    {
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 2);
+        MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool, 1000L, 1000L, 2, 50L, 200L);
+        try
+        {
+            factory.failing = true;
+            session(pool, 0).exitValue = 1;
+            
+            long[] expected = { 50L, 100L, 200L, 200L };
+            for(int i = 0; i < expected.length; i++)
+            {
+                supervisor.check();
+                awaitFailedRelaunches(supervisor, i + 1);
+                assertEquals(expected[i], supervisor.getRelaunchBackoffMillis());
+                
+                //No launch is attempted until the backoff has elapsed
+                if(i == expected.length - 1)
+                {
+                    supervisor.check();
+                    Thread.sleep(20);
+                    assertEquals(i + 1, supervisor.getFailedRelaunchCount());
+                }
+                Thread.sleep(expected[i] + 10);
+            }
+            
+            factory.failing = false;
+            supervisor.check();
+            awaitSessions(pool, 2);
+            assertEquals(0L, supervisor.getRelaunchBackoffMillis());
+            assertEquals(1L, supervisor.getRelaunchCount());
+        }
+        finally
+        {
+            supervisor.stop();
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testOnlyDisconnectedCallsRetried() throws Exception
+    {
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 2);
+        MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool, 1000L, 1000L, 2);
+        try
+        {
+            FakeSession first = session(pool, 0);
+            FakeSession second = session(pool, 1);
+            first.failure = MatlabInvocationException.Reason.PROXY_NOT_CONNECTED.asException();
+            
+            assertEquals(second.getIdentifier().toString(), supervisor.returningFeval("f", 1)[0]);
+            assertEquals(1L, supervisor.getRetryCount());
+            
+            //Failures other than disconnection are not retried
+            MatlabInvocationException disconnectedFailure = first.failure;
+            first.failure = MatlabInvocationException.Reason.INTERNAL_EXCEPTION.asException();
+            second.failure = first.failure;
+            int calls = first.calls.get() + second.calls.get();
+            try
+            {
+                supervisor.returningFeval("f", 1);
+                fail();
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertEquals(MatlabInvocationException.Reason.INTERNAL_EXCEPTION, e.getReason());
+            }
+            assertEquals(calls + 1, first.calls.get() + second.calls.get());
+            assertEquals(1L, supervisor.getRetryCount());
+            
+            //Retries are limited
+            first.failure = disconnectedFailure;
+            second.failure = disconnectedFailure;
+            calls = first.calls.get() + second.calls.get();
+            try
+            {
+                supervisor.returningFeval("f", 1);
+                fail();
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertEquals(MatlabInvocationException.Reason.PROXY_NOT_CONNECTED, e.getReason());
+            }
+            assertEquals(calls + 3, first.calls.get() + second.calls.get());
+            assertEquals(3L, supervisor.getRetryCount());
+        }
+        finally
+        {
+            supervisor.stop();
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void testCallsRetriedWhenSessionDiesWhileRunning() throws Exception
+    {
+        FakeFactory factory = new FakeFactory();
+        MatlabProxyPool pool = new MatlabProxyPool(factory, 2);
+        MatlabSessionSupervisor supervisor = new MatlabSessionSupervisor(pool, 1000L, 1000L, 2);
+        try
+        {
+            FakeSession first = session(pool, 0);
+            FakeSession second = session(pool, 1);
+            
+            //While connected, a result which could not be read is not retried
+            first.failure = MatlabInvocationException.Reason.UNMARSHAL.asException();
+            second.failure = first.failure;
+            try
+            {
+                supervisor.returningFeval("f", 1);
+                fail();
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertEquals(MatlabInvocationException.Reason.UNMARSHAL, e.getReason());
+            }
+            assertEquals(0L, supervisor.getRetryCount());
+            
+            //The second session has had fewer calls so is called next; MATLAB crashes while running the call, its
+            //result cannot be read and the session is then disconnected
+            assertEquals(1, first.calls.get());
+            second.failure = MatlabInvocationException.Reason.UNMARSHAL.asException();
+            second.connected = false;
+            first.failure = null;
+            
+            assertEquals(first.getIdentifier().toString(), supervisor.returningFeval("f", 1)[0]);
+            assertEquals(1, second.calls.get());
+            assertEquals(1L, supervisor.getRetryCount());
+        }
+        finally
+        {
+            supervisor.stop();
+            pool.shutdown();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package matlabcontrol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabThreadDispatcherTest
+{
+    /**
+     * Collects posted drainers instead of running them so that the test controls when MATLAB "becomes idle".
+     */
+    private static class ManualExecutor implements Executor
+    {
+        final List<Runnable> posted = new ArrayList<Runnable>();
+        
+        @Override
+        public void execute(Runnable runnable)
+        {
+            posted.add(runnable);
+        }
+        
+        void runNext()
+        {
+            posted.remove(0).run();
+        }
+    }
+    
+    private static class CountingTask implements Runnable
+    {
+        final List<Integer> order;
+        final int id;
+        
+        CountingTask(List<Integer> order, int id)
+        {
+            this.order = order;
+            this.id = id;
+        }
+        
+        @Override
+        public void run()
+        {
+            order.add(id);
+        }
+    }
+    
+    @Test
+    public void testSingleIdleCallbackForManyTasks()
+    {
+        ManualExecutor executor = new ManualExecutor();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(executor);
+        
+        List<Integer> order = new ArrayList<Integer>();
+        for(int i = 0; i < 10; i++)
+        {
+            dispatcher.dispatch(new CountingTask(order, i));
+        }
+        
+        assertEquals(1, executor.posted.size());
+        executor.runNext();
+        
+        assertEquals(10, order.size());
+        for(int i = 0; i < 10; i++)
+        {
+            assertEquals(i, order.get(i).intValue());
+        }
+        assertEquals(0, executor.posted.size());
+        assertEquals(1, dispatcher.getBatchCount());
+    }
+    
+    @Test
+    public void testBatchSizeLimit()
+    {
+        ManualExecutor executor = new ManualExecutor();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(executor);
+        dispatcher.setBatchLimits(4, 1000L);
+        
+        List<Integer> order = new ArrayList<Integer>();
+        for(int i = 0; i < 10; i++)
+        {
+            dispatcher.dispatch(new CountingTask(order, i));
+        }
+        
+        executor.runNext();
+        assertEquals(4, order.size());
+        assertEquals(1, executor.posted.size());
+        
+        executor.runNext();
+        executor.runNext();
+        assertEquals(10, order.size());
+        assertEquals(0, executor.posted.size());
+        assertEquals(10, dispatcher.getTaskCount());
+    }
+    
+    @Test
+    public void testHigherPriorityRunsFirst()
+    {
+        ManualExecutor executor = new ManualExecutor();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(executor);
+        
+        List<Integer> order = new ArrayList<Integer>();
+        dispatcher.dispatch(new CountingTask(order, 0), MatlabThreadPriority.BATCH);
+        dispatcher.dispatch(new CountingTask(order, 1), MatlabThreadPriority.NORMAL);
+        dispatcher.dispatch(new CountingTask(order, 2), MatlabThreadPriority.INTERACTIVE);
+        dispatcher.dispatch(new CountingTask(order, 3), MatlabThreadPriority.INTERACTIVE);
+        
+        assertEquals(2, dispatcher.getQueueDepth(MatlabThreadPriority.INTERACTIVE));
+        assertEquals(1, dispatcher.getQueueDepth(MatlabThreadPriority.BATCH));
+        assertEquals(4, dispatcher.getQueueDepth());
+        
+        executor.runNext();
+        assertEquals(4, order.size());
+        assertEquals(2, order.get(0).intValue());
+        assertEquals(3, order.get(1).intValue());
+        assertEquals(1, order.get(2).intValue());
+        assertEquals(0, order.get(3).intValue());
+        assertEquals(0, dispatcher.getQueueDepth(MatlabThreadPriority.INTERACTIVE));
+    }
+    
+    @Test
+    public void testLowerPriorityNotStarved()
+    {
+        ManualExecutor executor = new ManualExecutor();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(executor);
+        
+        List<Integer> order = new ArrayList<Integer>();
+        dispatcher.dispatch(new CountingTask(order, -1), MatlabThreadPriority.BATCH);
+        for(int i = 0; i < 2 * MatlabThreadDispatcher.STARVATION_LIMIT; i++)
+        {
+            dispatcher.dispatch(new CountingTask(order, i), MatlabThreadPriority.INTERACTIVE);
+        }
+        
+        executor.runNext();
+        assertEquals(MatlabThreadDispatcher.STARVATION_LIMIT, order.indexOf(-1));
+    }
+
+    @Test
+    public void testCancelledTaskNotRun()
+    {
+        ManualExecutor executor = new ManualExecutor();
+        MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(executor);
+        dispatcher.setBatchLimits(1, 1000L);
+        
+        final List<Integer> order = new ArrayList<Integer>();
+        MatlabThreadDispatcher.Task cancelled = new MatlabThreadDispatcher.Task()
+        {
+            @Override
+            public void run()
+            {
+                order.add(0);
+            }
+            
+            @Override
+            boolean isCancelled()
+            {
+                return true;
+            }
+        };
+        dispatcher.dispatch(cancelled, MatlabThreadPriority.NORMAL);
+        dispatcher.dispatch(new CountingTask(order, 1), MatlabThreadPriority.NORMAL);
+        
+        //The cancelled task does not use up the batch
+        executor.runNext();
+        assertEquals(1, order.size());
+        assertEquals(1, order.get(0).intValue());
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(1L, dispatcher.getTaskCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBatchSize()
+    {
+        new MatlabThreadDispatcher(new ManualExecutor()).setBatchLimits(0, 10L);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package matlabcontrol;
+
+import java.util.concurrent.CountDownLatch;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class PooledSessionTest
+{
+    /**
+     * A session whose calls wait for {@code release} to be counted down.
+     */
+    private static class BlockingSession extends FakeSession
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        
+        BlockingSession(String name)
+        {
+            super(name);
+        }
+        
+        @Override
+        public Object[] returningFeval(String functionName, int nargout, Object... args)
+                throws MatlabInvocationException
+        {
+            try
+            {
+                release.await();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            
+            return super.returningFeval(functionName, nargout, args);
+        }
+    }
+    
+    @Test
+    public void testLoadOrdering() throws Exception
+    {
+        PooledSession first = new PooledSession(new FakeSession("FIRST"));
+        PooledSession second = new PooledSession(new FakeSession("SECOND"));
+        assertFalse(first.isLessLoadedThan(second));
+        assertFalse(second.isLessLoadedThan(first));
+        
+        //Being leased does not make a session more loaded
+        first.lease();
+        assertTrue(first.isLeased());
+        assertFalse(second.isLessLoadedThan(first));
+        
+        //Fewer calls made
+        second.getTrackedProxy().returningFeval("f", 1);
+        second.getTrackedProxy().returningFeval("f", 1);
+        assertTrue(first.isLessLoadedThan(second));
+        
+        first.release();
+        assertFalse(first.isLeased());
+        assertTrue(first.isLessLoadedThan(second));
+        assertEquals(2L, second.getCallCount());
+        assertEquals(0L, first.getCallCount());
+    }
+    
+    @Test
+    public void testInFlightCalls() throws Exception
+    {
+        final BlockingSession blocking = new BlockingSession("BLOCKING");
+        final PooledSession busy = new PooledSession(blocking);
+        PooledSession idle = new PooledSession(new FakeSession("IDLE"));
+        idle.getTrackedProxy().returningFeval("f", 1);
+        
+        Thread caller = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    busy.getTrackedProxy().returningFeval("f", 1);
+                }
+                catch(MatlabInvocationException e) { }
+            }
+        };
+        caller.start();
+        try
+        {
+            new Condition()
+            {
+                @Override
+                boolean holds()
+                {
+                    return busy.getInFlightCount() == 1;
+                }
+            }.await();
+            
+            //A call in flight outweighs calls already made
+            assertTrue(idle.isLessLoadedThan(busy));
+            assertFalse(busy.isLessLoadedThan(idle));
+            assertEquals(1L, busy.getCallCount());
+            
+            Thread.sleep(20);
+            assertTrue(busy.getUtilization() > 0);
+            assertTrue(busy.getUtilization() > idle.getUtilization());
+        }
+        finally
+        {
+            blocking.release.countDown();
+            caller.join();
+        }
+        
+        assertEquals(0, busy.getInFlightCount());
+        assertEquals(1L, busy.getCallCount());
+        double utilization = busy.getUtilization();
+        assertTrue(utilization > 0 && utilization <= 1);
+    }
+    
+    @Test
+    public void testFailedCallsEnd() throws Exception
+    {
+        FakeSession failing = new FakeSession("FAILING");
+        failing.failure = FakeMatlabProxy.matlabError("failed");
+        PooledSession session = new PooledSession(failing);
+        
+        try
+        {
+            session.getTrackedProxy().returningFeval("f", 1);
+            fail();
+        }
+        catch(MatlabInvocationException e) { }
+        assertEquals(0, session.getInFlightCount());
+        assertEquals(1L, session.getCallCount());
+        
+        //An asynchronous call which could not be made
+        try
+        {
+            session.getTrackedProxy().evalAsync("x = 1;");
+            fail();
+        }
+        catch(UnsupportedOperationException e) { }
+        assertEquals(0, session.getInFlightCount());
+        assertEquals(2L, session.getCallCount());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package matlabcontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Compares how long a large {@code double[]} takes to serialize and deserialize when encoded by
+ * {@link PrimitiveArrayCodec} and when sent with Java's default serialization. This is not run as part of the unit
+ * tests because its results depend on the computer it runs on; run its {@code main} method directly.
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class PrimitiveArrayCodecBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        int length = (args.length > 0) ? Integer.parseInt(args[0]) : 4 * 1024 * 1024;
+        double[] array = new double[length];
+        for(int i = 0; i < array.length; i++)
+        {
+            array[i] = i * 0.5;
+        }
+        
+        long defaultTime = Long.MAX_VALUE;
+        long codecTime = Long.MAX_VALUE;
+        for(int i = 0; i < 5; i++)
+        {
+            defaultTime = Math.min(defaultTime, timeRoundTrip(array));
+            codecTime = Math.min(codecTime, timeRoundTrip(PrimitiveArrayCodec.encode(array)));
+        }
+        
+        System.out.println("double[" + length + "] round trip, best of 5");
+        System.out.println("  default serialization: " + defaultTime / 1000000.0 + " ms");
+        System.out.println("  codec:                 " + codecTime / 1000000.0 + " ms");
+    }
+    
+    /**
+     * How long it takes to write {@code value} and then read it back, excluding the time taken to copy the bytes into
+     * and out of memory as that is the same for both and is not what is being compared.
+     */
+    private static long timeRoundTrip(Object value) throws Exception
+    {
+        long start = System.nanoTime();
+        ObjectOutputStream out = new ObjectOutputStream(new OutputStream()
+        {
+            @Override
+            public void write(int b) { }
+            
+            @Override
+            public void write(byte[] b, int off, int len) { }
+        });
+        out.writeObject(value);
+        out.flush();
+        long writeTime = System.nanoTime() - start;
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream serializer = new ObjectOutputStream(bytes);
+        serializer.writeObject(value);
+        serializer.close();
+        
+        start = System.nanoTime();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        in.readObject();
+        in.close();
+        long readTime = System.nanoTime() - start;
+        
+        return writeTime + readTime;
+    }
+}
\ No newline at end of file
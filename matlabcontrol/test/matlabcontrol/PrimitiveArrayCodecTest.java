@@ -0,0 +1,231 @@
+package matlabcontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import matlabcontrol.internal.ArrayCodecAccess;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class PrimitiveArrayCodecTest
+{
+    private static byte[] serialize(Object value) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(value);
+        out.close();
+        
+        return bytes.toByteArray();
+    }
+    
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try
+        {
+            return in.readObject();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+    
+    private static Object roundTrip(Object value) throws Exception
+    {
+        return deserialize(serialize(PrimitiveArrayCodec.encode(value)));
+    }
+    
+    @Test
+    public void testRoundTripsEachPrimitiveType() throws Exception
+    {
+        //Longer than a chunk so that values span several
+        int length = 70000;
+        double[] doubles = new double[length];
+        float[] floats = new float[length];
+        long[] longs = new long[length];
+        int[] ints = new int[length];
+        short[] shorts = new short[length];
+        char[] chars = new char[length];
+        byte[] bytes = new byte[length];
+        boolean[] booleans = new boolean[length];
+        for(int i = 0; i < length; i++)
+        {
+            doubles[i] = i * Math.PI;
+            floats[i] = i / 3f;
+            longs[i] = Long.MAX_VALUE - i;
+            ints[i] = Integer.MIN_VALUE + i;
+            shorts[i] = (short) i;
+            chars[i] = (char) i;
+            bytes[i] = (byte) i;
+            booleans[i] = i % 3 == 0;
+        }
+        
+        assertTrue(Arrays.equals(doubles, (double[]) roundTrip(doubles)));
+        assertTrue(Arrays.equals(floats, (float[]) roundTrip(floats)));
+        assertTrue(Arrays.equals(longs, (long[]) roundTrip(longs)));
+        assertTrue(Arrays.equals(ints, (int[]) roundTrip(ints)));
+        assertTrue(Arrays.equals(shorts, (short[]) roundTrip(shorts)));
+        assertTrue(Arrays.equals(chars, (char[]) roundTrip(chars)));
+        assertTrue(Arrays.equals(bytes, (byte[]) roundTrip(bytes)));
+        assertTrue(Arrays.equals(booleans, (boolean[]) roundTrip(booleans)));
+        assertEquals(0, ((double[]) roundTrip(new double[0])).length);
+    }
+    
+    @Test
+    public void testRoundTripsMultidimensionalArrays() throws Exception
+    {
+        double[][][] rectangular = new double[3][4][5];
+        rectangular[2][3][4] = 7;
+        assertTrue(Arrays.deepEquals(rectangular, (double[][][]) roundTrip(rectangular)));
+        
+        int[][] jagged = new int[][] { { 1, 2, 3 }, null, { }, { 4 } };
+        assertTrue(Arrays.deepEquals(jagged, (int[][]) roundTrip(jagged)));
+    }
+    
+    @Test
+    public void testOnlyEncodesPrimitiveArrays()
+    {
+        String[] strings = { "a", "b" };
+        Object[] objects = { new double[0] };
+        assertSame(strings, PrimitiveArrayCodec.encode(strings));
+        assertSame(objects, PrimitiveArrayCodec.encode(objects));
+        assertSame("a", PrimitiveArrayCodec.encode("a"));
+        assertNull(PrimitiveArrayCodec.encode(null));
+    }
+    
+    @Test
+    public void testEncodesResults() throws Exception
+    {
+        Object[] returned = { new double[] { 1, 2 }, "a", null };
+        Object[] decoded = (Object[]) deserialize(serialize(PrimitiveArrayCodec.encodeResult(returned)));
+        assertTrue(Arrays.equals(new double[] { 1, 2 }, (double[]) decoded[0]));
+        assertEquals("a", decoded[1]);
+        assertNull(decoded[2]);
+        assertTrue(returned[0] instanceof double[]);
+        
+        Map<String, Object> variables = new LinkedHashMap<String, Object>();
+        variables.put("x", new int[][] { { 1 }, { 2, 3 } });
+        variables.put("y", "b");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> decodedVariables =
+                (Map<String, Object>) deserialize(serialize(PrimitiveArrayCodec.encodeResult(variables)));
+        assertTrue(Arrays.deepEquals(new int[][] { { 1 }, { 2, 3 } }, (int[][]) decodedVariables.get("x")));
+        assertEquals("b", decodedVariables.get("y"));
+    }
+    
+    @Test
+    public void testEncodesCallableArguments() throws Exception
+    {
+        MatlabCallables.SetVariable callable = new MatlabCallables.SetVariable("x", new float[] { 1, 2 });
+        byte[] bytes = serialize(callable);
+        assertTrue(new String(bytes, "ISO-8859-1").contains("PrimitiveArrayCodec$Encoded"));
+        assertTrue(deserialize(bytes) instanceof MatlabCallables.SetVariable);
+    }
+    
+    @Test
+    public void testDecodesIntoDirectBuffer() throws Exception
+    {
+        double[] values = new double[70000];
+        for(int i = 0; i < values.length; i++)
+        {
+            values[i] = i * Math.E;
+        }
+        
+        ByteBuffer buffer = (ByteBuffer) deserialize(serialize(PrimitiveArrayCodec.encodeAsBuffer(values)));
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+        double[] decoded = new double[values.length];
+        buffer.asDoubleBuffer().get(decoded);
+        assertTrue(Arrays.equals(values, decoded));
+        
+        assertNull(PrimitiveArrayCodec.encodeAsBuffer(null));
+    }
+    
+    @Test
+    public void testCompressesAboveThreshold() throws Exception
+    {
+        //Mostly zero, as well as a jagged array followed by another object in the same stream
+        double[] sparse = new double[200000];
+        sparse[12345] = 1;
+        Object[] values = { sparse, new int[][] { { 1, 2 }, null }, "after" };
+        
+        long previous = PayloadCompression.getThreshold();
+        PayloadCompression.setThreshold(1024);
+        try
+        {
+            PayloadCompression statistics = PayloadCompression.getStatistics();
+            long sent = statistics.getSentCount();
+            
+            byte[] bytes = serialize(PrimitiveArrayCodec.encodeElements(values));
+            assertTrue(bytes.length < sparse.length * 8 / 100);
+            assertEquals(sent + 1, statistics.getSentCount());
+            
+            Object[] decoded = (Object[]) deserialize(bytes);
+            assertTrue(Arrays.equals(sparse, (double[]) decoded[0]));
+            assertTrue(Arrays.deepEquals(new int[][] { { 1, 2 }, null }, (int[][]) decoded[1]));
+            assertEquals("after", decoded[2]);
+            assertTrue(statistics.getReceivedRatio() > 100);
+        }
+        finally
+        {
+            PayloadCompression.setThreshold(previous);
+        }
+    }
+    
+    @Test
+    public void testAccessFromOtherPackages() throws Exception
+    {
+        int[][] array = { { 1, 2, 3 }, { 4 } };
+        Object encoded = ArrayCodecAccess.encode(array);
+        assertSame(PrimitiveArrayCodec.Encoded.class, encoded.getClass());
+        assertTrue(Arrays.deepEquals(array, (int[][]) deserialize(serialize(encoded))));
+        
+        ByteBuffer buffer = (ByteBuffer) deserialize(serialize(ArrayCodecAccess.encodeAsBuffer(new double[] { 2.5 })));
+        assertEquals(2.5, buffer.order(ByteOrder.LITTLE_ENDIAN).getDouble(0));
+        
+        //Only the codec may install itself
+        try
+        {
+            ArrayCodecAccess.install(null);
+            fail();
+        }
+        catch(IllegalStateException e) { }
+    }
+}
\ No newline at end of file
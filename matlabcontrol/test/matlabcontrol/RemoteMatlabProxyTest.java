@@ -0,0 +1,267 @@
+package matlabcontrol;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class RemoteMatlabProxyTest
+{
+    private static class TestIdentifier implements MatlabProxy.Identifier
+    {
+        @Override
+        public String toString()
+        {
+            return "PROXY_TEST";
+        }
+    }
+    
+    /**
+     * A JMI wrapper which queues asynchronous invocations on a dispatcher whose drains are run by the test, cancelling
+     * and completing them the way MATLAB's JVM does.
+     */
+    private static class FakeJMIWrapper implements InvocationHandler
+    {
+        final List<Runnable> drains = new ArrayList<Runnable>();
+        volatile MatlabInvocationException failure;
+        final Map<Long, MatlabFutureImpl<Object>> pending = new ConcurrentHashMap<Long, MatlabFutureImpl<Object>>();
+        final MatlabThreadDispatcher dispatcher = new MatlabThreadDispatcher(new Executor()
+        {
+            @Override
+            public void execute(Runnable drain)
+            {
+                drains.add(drain);
+            }
+        });
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            Object result = null;
+            if(method.getName().equals("invokeAsync") && args[0] instanceof Long)
+            {
+                this.queue((Long) args[0], (MatlabProxy.MatlabThreadCallable<Object>) args[1],
+                        (CompletionReceiver) args[2]);
+            }
+            else if(method.getName().equals("invokeAndWait") && failure != null)
+            {
+                throw failure;
+            }
+            else if(method.getName().equals("cancelAsync"))
+            {
+                MatlabFutureImpl<Object> future = pending.remove((Long) args[0]);
+                result = future != null && future.cancel(false);
+            }
+            
+            return result;
+        }
+        
+        private void queue(final long invocationID, final MatlabProxy.MatlabThreadCallable<Object> callable,
+                final CompletionReceiver receiver)
+        {
+            final MatlabFutureImpl<Object> future = new MatlabFutureImpl<Object>();
+            pending.put(invocationID, future);
+            dispatcher.dispatch(new MatlabThreadDispatcher.Task()
+            {
+                @Override
+                public void run()
+                {
+                    if(future.start())
+                    {
+                        try
+                        {
+                            Object result = callable.call(null);
+                            future.complete(result);
+                            pending.remove(invocationID);
+                            receiver.complete(invocationID, result, null);
+                        }
+                        catch(Exception e)
+                        {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                }
+                
+                @Override
+                boolean isCancelled()
+                {
+                    return future.isCancelled();
+                }
+            }, MatlabThreadPriority.NORMAL);
+        }
+        
+        void drain()
+        {
+            drains.remove(0).run();
+        }
+        
+        JMIWrapperRemote create()
+        {
+            return (JMIWrapperRemote) Proxy.newProxyInstance(JMIWrapperRemote.class.getClassLoader(),
+                    new Class<?>[] { JMIWrapperRemote.class }, this);
+        }
+    }
+    
+    private static class CountingCallable implements MatlabProxy.MatlabThreadCallable<Integer>
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        
+        @Override
+        public Integer call(MatlabProxy.MatlabThreadProxy proxy)
+        {
+            return calls.incrementAndGet();
+        }
+    }
+    
+    private static RemoteMatlabProxy createProxy(FakeJMIWrapper wrapper)
+    {
+        return createProxy(wrapper, false);
+    }
+    
+    private static RemoteMatlabProxy createProxy(FakeJMIWrapper wrapper, boolean latencyInstrumentation)
+    {
+        RequestReceiver receiver = (RequestReceiver) Proxy.newProxyInstance(RequestReceiver.class.getClassLoader(),
+                new Class<?>[] { RequestReceiver.class }, new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args)
+            {
+                return null;
+            }
+        });
+        MatlabProxyFactoryOptions options = new MatlabProxyFactoryOptions.Builder()
+                .setHeartbeatPeriod(60000L)
+                .setLatencyInstrumentation(latencyInstrumentation)
+                .build();
+        RemoteMatlabProxy proxy = new RemoteMatlabProxy(wrapper.create(), receiver,
+                new TestIdentifier(), false, null, options);
+        proxy.init();
+        
+        return proxy;
+    }
+    
+    @Test
+    public void testCancelledQueuedCallNeverRuns() throws Exception
+    {
+        FakeJMIWrapper wrapper = new FakeJMIWrapper();
+        RemoteMatlabProxy proxy = createProxy(wrapper);
+        try
+        {
+            CountingCallable cancelled = new CountingCallable();
+            CountingCallable kept = new CountingCallable();
+            MatlabFuture<Integer> cancelledFuture = proxy.invokeAsync(cancelled);
+            MatlabFuture<Integer> keptFuture = proxy.invokeAsync(kept);
+            
+            assertTrue(cancelledFuture.cancel(false));
+            assertTrue(cancelledFuture.isCancelled());
+            
+            wrapper.drain();
+            assertEquals(0, cancelled.calls.get());
+            assertEquals(1, kept.calls.get());
+            assertEquals(1, keptFuture.getResult(5, TimeUnit.SECONDS).intValue());
+            assertFalse(keptFuture.cancel(false));
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testFailedCallRecordedInTotal() throws Exception
+    {
+        FakeJMIWrapper wrapper = new FakeJMIWrapper();
+        wrapper.failure = MatlabInvocationException.Reason.TIMEOUT.asException();
+        RemoteMatlabProxy proxy = createProxy(wrapper, true);
+        try
+        {
+            try
+            {
+                proxy.invokeAndWait(new CountingCallable(), 1, TimeUnit.SECONDS);
+                fail("timeout not thrown");
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertSame(wrapper.failure, e);
+            }
+            
+            String name = proxy.getLatencyFunctionNames().iterator().next();
+            assertEquals(1L, proxy.getLatencyHistogram(name, LatencyPhase.TOTAL).getCount());
+            assertNull(proxy.getLatencyHistogram(name, LatencyPhase.EXECUTION));
+            assertEquals(1L, proxy.getLatencyRecorder().getFailureCount(name));
+            assertEquals(1L, proxy.getLatencyRecorder().getTimeoutCount(name));
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testRunningCallNotCancelled() throws Exception
+    {
+        FakeJMIWrapper wrapper = new FakeJMIWrapper();
+        RemoteMatlabProxy proxy = createProxy(wrapper);
+        try
+        {
+            final AtomicReference<MatlabFuture<Boolean>> futureRef = new AtomicReference<MatlabFuture<Boolean>>();
+            final AtomicBoolean cancelledWhileRunning = new AtomicBoolean(true);
+            futureRef.set(proxy.invokeAsync(new MatlabProxy.MatlabThreadCallable<Boolean>()
+            {
+                @Override
+                public Boolean call(MatlabProxy.MatlabThreadProxy threadProxy)
+                {
+                    cancelledWhileRunning.set(futureRef.get().cancel(false));
+                    
+                    return true;
+                }
+            }));
+            
+            wrapper.drain();
+            assertFalse(cancelledWhileRunning.get());
+            assertTrue(futureRef.get().getResult(5, TimeUnit.SECONDS));
+            assertFalse(futureRef.get().isCancelled());
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package matlabcontrol;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import static junit.framework.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class SharedMemoryTransportTest
+{
+    private File _root;
+    
+    @Before
+    public void createRoot()
+    {
+        _root = new File(System.getProperty("java.io.tmpdir"), "matlabcontrol-shm-test-" + System.nanoTime());
+    }
+    
+    @After
+    public void deleteRoot()
+    {
+        File[] directories = _root.listFiles();
+        if(directories != null)
+        {
+            for(File directory : directories)
+            {
+                File[] files = directory.listFiles();
+                if(files != null)
+                {
+                    for(File file : files)
+                    {
+                        file.delete();
+                    }
+                }
+                directory.delete();
+            }
+        }
+        _root.delete();
+    }
+    
+    @Test
+    public void testLargeArraysSentThroughSharedMemory() throws Exception
+    {
+        double[][] array = new double[4][256 * 1024];
+        for(int i = 0; i < array.length; i++)
+        {
+            Arrays.fill(array[i], i + 0.5);
+        }
+        
+        long previousThreshold = SharedMemoryTransport.getThreshold();
+        SharedMemoryTransport.setThreshold(1024 * 1024);
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(PrimitiveArrayCodec.encode(array));
+            out.close();
+            
+            //Only the lengths and the location of the values are in the stream
+            assertTrue(bytes.size() < 4096);
+            
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            assertTrue(Arrays.deepEquals(array, (double[][]) in.readObject()));
+            assertEquals(0, SharedMemoryTransport.getSender().getLeasedCount());
+        }
+        finally
+        {
+            SharedMemoryTransport.setThreshold(previousThreshold);
+        }
+    }
+    
+    @Test
+    public void testConsumedRegionIsReused() throws Exception
+    {
+        SharedMemoryTransport transport = new SharedMemoryTransport(_root, TimeUnit.MINUTES.toNanos(1));
+        try
+        {
+            SharedMemoryTransport.Region region = transport.acquire(1000);
+            region.getValues().putLong(42L);
+            region.written();
+            assertEquals(1, transport.getLeasedCount());
+            
+            ByteBuffer values = SharedMemoryTransport.openForReading(region.getPath(), region.getGeneration());
+            assertTrue(values.isReadOnly());
+            assertEquals(42L, values.getLong());
+            SharedMemoryTransport.finishReading(region.getPath(), region.getGeneration());
+            assertEquals(0, transport.getLeasedCount());
+            
+            long generation = region.getGeneration();
+            assertSame(region, transport.acquire(2000));
+            assertEquals(generation + 1, region.getGeneration());
+            assertEquals(1, transport.getRegionCount());
+        }
+        finally
+        {
+            transport.close();
+        }
+    }
+    
+    @Test
+    public void testReclaimedRegionIsNotRead() throws Exception
+    {
+        //Every lease expires immediately, as though the receiver had died
+        SharedMemoryTransport transport = new SharedMemoryTransport(_root, 0L);
+        try
+        {
+            SharedMemoryTransport.Region region = transport.acquire(1000);
+            region.written();
+            String path = region.getPath();
+            long generation = region.getGeneration();
+            
+            assertSame(region, transport.acquire(1000));
+            try
+            {
+                SharedMemoryTransport.openForReading(path, generation);
+                fail("reclaimed region was read");
+            }
+            catch(StreamCorruptedException e) { }
+        }
+        finally
+        {
+            transport.close();
+        }
+    }
+    
+    @Test
+    public void testCorruptRegionIsNotRead() throws Exception
+    {
+        assertTrue(_root.mkdirs());
+        
+        //Empty, and truncated part way through the header
+        int[] lengths = { 0, SharedMemoryTransport.HEADER_SIZE - 1 };
+        for(int length : lengths)
+        {
+            File file = new File(_root, length + ".region");
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try
+            {
+                raf.setLength(length);
+            }
+            finally
+            {
+                raf.close();
+            }
+            
+            try
+            {
+                SharedMemoryTransport.openForReading(file.getAbsolutePath(), 1L);
+                fail("corrupt region of " + length + " bytes was read");
+            }
+            catch(StreamCorruptedException e) { }
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testAbandonedDirectoriesDeleted() throws Exception
+    {
+        File abandoned = new File(_root, "abandoned");
+        assertTrue(abandoned.mkdirs());
+        assertTrue(new File(abandoned, "owner.lock").createNewFile());
+        assertTrue(new File(abandoned, "1.region").createNewFile());
+        
+        SharedMemoryTransport transport = new SharedMemoryTransport(_root, 0L);
+        assertFalse(abandoned.exists());
+        
+        //A live transport's directory is left alone
+        SharedMemoryTransport other = new SharedMemoryTransport(_root, 0L);
+        assertTrue(transport.getDirectory().exists());
+        
+        other.close();
+        transport.close();
+        assertFalse(transport.getDirectory().exists());
+    }
+}
\ No newline at end of file
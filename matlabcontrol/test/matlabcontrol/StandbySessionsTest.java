@@ -0,0 +1,315 @@
+package matlabcontrol;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import matlabcontrol.MatlabProxy.Identifier;
+import matlabcontrol.MatlabProxyFactory.Request;
+import matlabcontrol.MatlabProxyFactory.RequestCallback;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class StandbySessionsTest
+{
+    private static class FakeRequest implements Request
+    {
+        volatile boolean cancelled = false;
+        
+        @Override
+        public Identifier getProxyIdentifer()
+        {
+            return null;
+        }
+        
+        @Override
+        public boolean cancel()
+        {
+            cancelled = true;
+            
+            return true;
+        }
+        
+        @Override
+        public boolean isCancelled()
+        {
+            return cancelled;
+        }
+        
+        @Override
+        public boolean isCompleted()
+        {
+            return false;
+        }
+    }
+    
+    /**
+     * Records each launch so that the test decides when, and whether, each session connects.
+     */
+    private static class FakeLauncher implements StandbySessions.Launcher
+    {
+        final List<RequestCallback> callbacks = new CopyOnWriteArrayList<RequestCallback>();
+        final List<FakeRequest> requests = new CopyOnWriteArrayList<FakeRequest>();
+        
+        @Override
+        public Request launch(RequestCallback callback) throws MatlabConnectionException
+        {
+            FakeRequest request = new FakeRequest();
+            callbacks.add(callback);
+            requests.add(request);
+            
+            return request;
+        }
+        
+        FakeSession connect(int index)
+        {
+            FakeSession session = new FakeSession("STANDBY_" + index);
+            callbacks.get(index).proxyCreated(session);
+            
+            return session;
+        }
+    }
+    
+    private static void awaitLaunches(final FakeLauncher launcher, final int count) throws InterruptedException
+    {
+        new Condition()
+        {
+            @Override
+            boolean holds()
+            {
+                return launcher.callbacks.size() == count;
+            }
+        }.await();
+    }
+    
+    @Test
+    public void testTargetLaunchedAndReplenished() throws Exception
+    {
+        FakeLauncher launcher = new FakeLauncher();
+        StandbySessions standby = new StandbySessions(launcher, 2, 60000L);
+        standby.start();
+        try
+        {
+            awaitLaunches(launcher, 2);
+            assertEquals(2, standby.getLaunchingCount());
+            
+            FakeSession first = launcher.connect(0);
+            launcher.connect(1);
+            assertEquals(2, standby.getStandbyCount());
+            assertEquals(0, standby.getLaunchingCount());
+            assertEquals(2L, standby.getLaunchCount());
+            
+            //Oldest first, replaced in the background
+            assertSame(first, standby.take());
+            assertEquals(1L, standby.getProvidedCount());
+            awaitLaunches(launcher, 3);
+            assertEquals(1, standby.getStandbyCount());
+            assertEquals(1, standby.getLaunchingCount());
+        }
+        finally
+        {
+            standby.shutdown();
+        }
+    }
+    
+    @Test
+    public void testMissWhenNoneReady() throws Exception
+    {
+        FakeLauncher launcher = new FakeLauncher();
+        StandbySessions standby = new StandbySessions(launcher, 1, 60000L);
+        standby.start();
+        try
+        {
+            awaitLaunches(launcher, 1);
+            assertNull(standby.take());
+            assertEquals(1L, standby.getMissedCount());
+            assertEquals(0L, standby.getProvidedCount());
+            
+            //The launch in progress counts towards the target
+            Thread.sleep(50);
+            assertEquals(1, launcher.callbacks.size());
+        }
+        finally
+        {
+            standby.shutdown();
+        }
+    }
+    
+    @Test
+    public void testTakeNotBlockedByLaunch() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final FakeSession ready = new FakeSession("READY");
+        StandbySessions.Launcher launcher = new StandbySessions.Launcher()
+        {
+            private boolean _first = true;
+            
+            @Override
+            public Request launch(RequestCallback callback) throws MatlabConnectionException
+            {
+                if(_first)
+                {
+                    _first = false;
+                    callback.proxyCreated(ready);
+                }
+                else
+                {
+                    //Launching MATLAB, or the connection to it, hangs
+                    blocked.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch(InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                
+                return new FakeRequest();
+            }
+        };
+        
+        final StandbySessions standby = new StandbySessions(launcher, 2, 60000L);
+        standby.start();
+        try
+        {
+            assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            
+            final MatlabProxy[] taken = new MatlabProxy[1];
+            Thread taker = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    taken[0] = standby.take();
+                }
+            };
+            taker.start();
+            taker.join(5000);
+            
+            assertFalse(taker.isAlive());
+            assertSame(ready, taken[0]);
+            assertEquals(1, standby.getLaunchingCount());
+        }
+        finally
+        {
+            release.countDown();
+            standby.shutdown();
+        }
+    }
+    
+    @Test
+    public void testDisconnectedSessionsDiscarded() throws Exception
+    {
+        FakeLauncher launcher = new FakeLauncher();
+        StandbySessions standby = new StandbySessions(launcher, 2, 60000L);
+        standby.start();
+        try
+        {
+            awaitLaunches(launcher, 2);
+            FakeSession closed = launcher.connect(0);
+            FakeSession unnoticed = launcher.connect(1);
+            
+            //Notified of the disconnection, it is replaced
+            closed.connected = false;
+            closed.notifyDisconnectionListeners();
+            assertEquals(1L, standby.getDiscardedCount());
+            assertEquals(1, standby.getStandbyCount());
+            awaitLaunches(launcher, 3);
+            
+            //Disconnected without yet notifying, it is discarded when taken
+            unnoticed.connected = false;
+            assertNull(standby.take());
+            assertEquals(2L, standby.getDiscardedCount());
+            assertEquals(1L, standby.getMissedCount());
+            assertEquals(0L, standby.getProvidedCount());
+            awaitLaunches(launcher, 4);
+        }
+        finally
+        {
+            standby.shutdown();
+        }
+    }
+    
+    @Test
+    public void testOverdueLaunchCancelled() throws Exception
+    {
+        final FakeLauncher launcher = new FakeLauncher();
+        final StandbySessions standby = new StandbySessions(launcher, 1, 10L);
+        standby.start();
+        try
+        {
+            awaitLaunches(launcher, 1);
+            Thread.sleep(20);
+            standby.maintain();
+            
+            assertTrue(launcher.requests.get(0).cancelled);
+            assertEquals(1L, standby.getFailedLaunchCount());
+            assertEquals(0, standby.getLaunchingCount());
+            
+            //No launch is retried until the failure retry delay has elapsed
+            standby.maintain();
+            assertEquals(1, launcher.callbacks.size());
+        }
+        finally
+        {
+            standby.shutdown();
+        }
+    }
+    
+    @Test
+    public void testShutdownExitsSessions() throws Exception
+    {
+        FakeLauncher launcher = new FakeLauncher();
+        StandbySessions standby = new StandbySessions(launcher, 2, 60000L);
+        standby.start();
+        
+        awaitLaunches(launcher, 2);
+        FakeSession ready = launcher.connect(0);
+        standby.shutdown();
+        
+        assertTrue(ready.exited);
+        assertTrue(launcher.requests.get(1).cancelled);
+        assertEquals(0, standby.getStandbyCount());
+        assertEquals(0, standby.getLaunchingCount());
+        assertNull(standby.take());
+        
+        //A session which connects despite the cancellation is exited
+        FakeSession late = launcher.connect(1);
+        assertTrue(late.exited);
+        assertEquals(0, standby.getStandbyCount());
+        
+        //Not replenished once shut down
+        Thread.sleep(50);
+        assertEquals(2, launcher.callbacks.size());
+        standby.shutdown();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package matlabcontrol;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Compares the round trip time of a remote method which does nothing, called on an object exported with
+ * {@link LocalHostRMIHelper} over TCP and over a Unix domain socket. This is not run as part of the unit tests because
+ * its results depend on the computer it runs on; run its {@code main} method directly, optionally passing the number
+ * of calls to time.
+ * 
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class UnixDomainSocketsBenchmark
+{
+    public static interface Echo extends Remote
+    {
+        public Object echo(Object value) throws RemoteException;
+    }
+    
+    private static class EchoImpl implements Echo
+    {
+        @Override
+        public Object echo(Object value)
+        {
+            return value;
+        }
+    }
+    
+    public static void main(String[] args) throws Exception
+    {
+        int calls = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        
+        long tcpTime = Long.MAX_VALUE;
+        long unixTime = Long.MAX_VALUE;
+        for(int i = 0; i < 5; i++)
+        {
+            tcpTime = Math.min(tcpTime, timeCalls(false, calls));
+            unixTime = Math.min(unixTime, timeCalls(true, calls));
+        }
+        
+        System.out.println("no-op remote call, mean of " + calls + " calls, best of 5");
+        System.out.println("  TCP:                 " + tcpTime / 1000.0 / calls + " us");
+        if(UnixDomainSockets.isSupported())
+        {
+            System.out.println("  Unix domain socket:  " + unixTime / 1000.0 / calls + " us");
+        }
+        else
+        {
+            System.out.println("  Unix domain socket:  " + unixTime / 1000.0 / calls + " us (not supported, used TCP)");
+        }
+    }
+    
+    /**
+     * How long it takes to make {@code calls} calls on a newly exported object, excluding exporting it and the first
+     * calls made while connections are established and code is compiled.
+     */
+    private static long timeCalls(boolean unixDomain, int calls) throws Exception
+    {
+        EchoImpl echo = new EchoImpl();
+        Echo stub = (Echo) LocalHostRMIHelper.exportObject(echo, unixDomain);
+        try
+        {
+            for(int i = 0; i < calls / 10; i++)
+            {
+                stub.echo("");
+            }
+            
+            long start = System.nanoTime();
+            for(int i = 0; i < calls; i++)
+            {
+                stub.echo("");
+            }
+            
+            return System.nanoTime() - start;
+        }
+        finally
+        {
+            UnicastRemoteObject.unexportObject(echo, true);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,194 @@
+package matlabcontrol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class UnixDomainSocketsTest
+{
+    public static interface Echo extends Remote
+    {
+        public Object echo(Object value) throws RemoteException;
+    }
+    
+    private static class EchoImpl implements Echo
+    {
+        @Override
+        public Object echo(Object value)
+        {
+            return value;
+        }
+    }
+    
+    private static void assertEchoes(boolean unixDomain) throws Exception
+    {
+        EchoImpl echo = new EchoImpl();
+        Echo stub = (Echo) LocalHostRMIHelper.exportObject(echo, unixDomain);
+        try
+        {
+            for(int i = 0; i < 100; i++)
+            {
+                assertEquals("value " + i, stub.echo("value " + i));
+            }
+        }
+        finally
+        {
+            UnicastRemoteObject.unexportObject(echo, true);
+        }
+    }
+    
+    @Test
+    public void testTcp() throws Exception
+    {
+        assertEchoes(false);
+    }
+    
+    @Test
+    public void testUnixDomainOrFallback() throws Exception
+    {
+        assertEchoes(true);
+    }
+    
+    @Test
+    public void testRegistryOnTakenPort() throws Exception
+    {
+        if(UnixDomainSockets.isSupported())
+        {
+            ServerSocket taken = new ServerSocket(0, 1, InetAddress.getByName("localhost"));
+            int port = taken.getLocalPort();
+            try
+            {
+                Registry registry = LocalHostRMIHelper.createRegistry(port, true);
+                assertTrue(UnixDomainSockets.getSocketFile(port).exists());
+                
+                EchoImpl echo = new EchoImpl();
+                registry.bind("echo", LocalHostRMIHelper.exportObject(echo, true));
+                Echo stub = (Echo) LocalHostRMIHelper.getRegistry(port, true).lookup("echo");
+                assertEquals("value", stub.echo("value"));
+                
+                UnicastRemoteObject.unexportObject(echo, true);
+                UnicastRemoteObject.unexportObject(registry, true);
+                assertFalse(UnixDomainSockets.getSocketFile(port).exists());
+            }
+            finally
+            {
+                taken.close();
+            }
+        }
+    }
+    
+    @Test
+    public void testReadTimeout() throws Exception
+    {
+        if(UnixDomainSockets.isSupported())
+        {
+            ServerSocket server = UnixDomainSockets.createServerSocket(0, 1);
+            Socket client = UnixDomainSockets.connect(server.getLocalPort());
+            Socket accepted = server.accept();
+            try
+            {
+                client.setSoTimeout(100);
+                assertEquals(100, client.getSoTimeout());
+                
+                long start = System.nanoTime();
+                try
+                {
+                    client.getInputStream().read();
+                    fail();
+                }
+                catch(SocketTimeoutException e) { }
+                assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+                
+                //The socket remains usable after a timeout, as with TCP
+                accepted.getOutputStream().write(42);
+                assertEquals(42, client.getInputStream().read());
+            }
+            finally
+            {
+                client.close();
+                accepted.close();
+                server.close();
+            }
+        }
+    }
+    
+    @Test
+    public void testCloseWakesBlockedRead() throws Exception
+    {
+        if(UnixDomainSockets.isSupported())
+        {
+            ServerSocket server = UnixDomainSockets.createServerSocket(0, 1);
+            final Socket client = UnixDomainSockets.connect(server.getLocalPort());
+            Socket accepted = server.accept();
+            try
+            {
+                final CountDownLatch failed = new CountDownLatch(1);
+                Thread reader = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            InputStream in = client.getInputStream();
+                            in.read();
+                        }
+                        catch(IOException e)
+                        {
+                            failed.countDown();
+                        }
+                    }
+                };
+                reader.start();
+                Thread.sleep(50);
+                
+                client.close();
+                assertTrue(failed.await(5, TimeUnit.SECONDS));
+            }
+            finally
+            {
+                accepted.close();
+                server.close();
+            }
+        }
+    }
+}
\ No newline at end of file
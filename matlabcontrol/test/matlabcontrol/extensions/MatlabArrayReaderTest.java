@@ -0,0 +1,398 @@
+package matlabcontrol.extensions;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import matlabcontrol.FakeMatlabProxy;
+import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabArrayReaderTest
+{
+    private static final Pattern SIZE = Pattern.compile("size\\((\\w+)\\);");
+    private static final Pattern IS_REAL = Pattern.compile("isreal\\((\\w+)\\);");
+    private static final Pattern PART = Pattern.compile("double\\((real|imag)\\((\\w+)\\((\\d+):(\\d+)\\)\\)\\);");
+    
+    /**
+     * Holds a single variable {@code x} and answers the commands the reader evaluates, recording the one-based range
+     * of each chunk of real parts requested.
+     */
+    private static class ArrayWorkspace extends FakeMatlabProxy.Workspace
+    {
+        final double[] lengths;
+        final double[] real;
+        final double[] imaginary;
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+        
+        ArrayWorkspace(double[] lengths, double[] real, double[] imaginary)
+        {
+            this.lengths = lengths;
+            this.real = real;
+            this.imaginary = imaginary;
+        }
+        
+        /**
+         * Called on MATLAB's thread as each chunk of real parts is requested.
+         */
+        void chunkRequested(int first, int last) throws MatlabInvocationException { }
+        
+        @Override
+        public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
+        {
+            Matcher matcher;
+            Object result;
+            if((matcher = SIZE.matcher(command)).matches())
+            {
+                this.checkName(matcher.group(1));
+                result = lengths.clone();
+            }
+            else if((matcher = IS_REAL.matcher(command)).matches())
+            {
+                this.checkName(matcher.group(1));
+                result = new boolean[] { imaginary == null };
+            }
+            else if((matcher = PART.matcher(command)).matches())
+            {
+                this.checkName(matcher.group(2));
+                int first = Integer.parseInt(matcher.group(3));
+                int last = Integer.parseInt(matcher.group(4));
+                if(first < 1 || last > real.length)
+                {
+                    throw FakeMatlabProxy.matlabError("Index exceeds matrix dimensions.");
+                }
+                
+                boolean isReal = matcher.group(1).equals("real");
+                if(isReal)
+                {
+                    ranges.add(first + ":" + last);
+                    this.chunkRequested(first, last);
+                }
+                result = Arrays.copyOfRange(isReal ? real : imaginary, first - 1, last);
+            }
+            else
+            {
+                return super.returningEval(command, nargout);
+            }
+            
+            return new Object[] { result };
+        }
+        
+        private void checkName(String name) throws MatlabInvocationException
+        {
+            if(!name.equals("x"))
+            {
+                throw FakeMatlabProxy.matlabError("Undefined function or variable '" + name + "'.");
+            }
+        }
+    }
+    
+    /**
+     * Records each chunk handled.
+     */
+    private static class RecordingHandler implements MatlabArrayReader.ChunkHandler
+    {
+        final List<Long> starts = new ArrayList<Long>();
+        final List<double[]> reals = new ArrayList<double[]>();
+        final List<double[]> imaginaries = new ArrayList<double[]>();
+        
+        @Override
+        public void handle(MatlabArrayReader.Chunk chunk) throws MatlabInvocationException
+        {
+            assertEquals(chunk.getReal().length, chunk.getLength());
+            
+            starts.add(chunk.getStart());
+            reals.add(chunk.getReal());
+            imaginaries.add(chunk.getImaginary());
+        }
+    }
+    
+    private static double[] sequence(int first, int length)
+    {
+        double[] values = new double[length];
+        for(int i = 0; i < length; i++)
+        {
+            values[i] = first + i;
+        }
+        
+        return values;
+    }
+    
+    @Test
+    public void testChunks() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace(new double[] { 2, 5 }, sequence(1, 10), sequence(-10, 10));
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            MatlabArrayReader reader = new MatlabArrayReader(proxy, 4);
+            assertTrue(Arrays.equals(new int[] { 2, 5 }, reader.getLengths("x")));
+            
+            RecordingHandler handler = new RecordingHandler();
+            reader.read("x", handler);
+            assertEquals(Arrays.asList(0L, 4L, 8L), handler.starts);
+            assertEquals(Arrays.asList("1:4", "5:8", "9:10"), workspace.ranges);
+            assertTrue(Arrays.equals(sequence(1, 4), handler.reals.get(0)));
+            assertTrue(Arrays.equals(sequence(9, 2), handler.reals.get(2)));
+            assertTrue(Arrays.equals(sequence(-6, 4), handler.imaginaries.get(1)));
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testRealVariable() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace(new double[] { 1, 3 }, sequence(1, 3), null);
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            //A chunk longer than the variable
+            RecordingHandler handler = new RecordingHandler();
+            new MatlabArrayReader(proxy, 100).read("x", handler);
+            assertEquals(Arrays.asList(0L), handler.starts);
+            assertTrue(Arrays.equals(sequence(1, 3), handler.reals.get(0)));
+            assertNull(handler.imaginaries.get(0));
+            
+            //Imaginary parts of a real variable are zeros
+            double[] real = new double[5];
+            double[] imaginary = { 9, 9, 9, 9, 9 };
+            assertTrue(new MatlabArrayReader(proxy, 2).read("x", 0, real, imaginary, 1, 3));
+            assertTrue(Arrays.equals(new double[] { 0, 1, 2, 3, 0 }, real));
+            assertTrue(Arrays.equals(new double[] { 9, 0, 0, 0, 9 }, imaginary));
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testRanges() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace(new double[] { 10, 1 }, sequence(0, 10), null);
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            MatlabArrayReader reader = new MatlabArrayReader(proxy, 3);
+            
+            RecordingHandler handler = new RecordingHandler();
+            reader.read("x", 3, 7, handler);
+            assertEquals(Arrays.asList(3L, 6L, 9L), handler.starts);
+            assertTrue(Arrays.equals(new double[] { 9 }, handler.reals.get(2)));
+            
+            //An empty range at the end is within the variable, and nothing is retrieved
+            workspace.ranges.clear();
+            handler = new RecordingHandler();
+            reader.read("x", 10, 0, handler);
+            assertTrue(handler.starts.isEmpty());
+            assertTrue(workspace.ranges.isEmpty());
+            
+            long[][] outside = { { 8, 3 }, { -1, 2 }, { 0, -1 }, { 11, 0 } };
+            for(long[] range : outside)
+            {
+                try
+                {
+                    reader.read("x", range[0], range[1], new RecordingHandler());
+                    fail(range[0] + ", " + range[1]);
+                }
+                catch(IndexOutOfBoundsException e) { }
+            }
+            assertTrue(workspace.ranges.isEmpty());
+            
+            //The range must also be within the arrays read into
+            try
+            {
+                reader.read("x", 0, new double[4], null, 2, 3);
+                fail();
+            }
+            catch(IndexOutOfBoundsException e) { }
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testColumns() throws Exception
+    {
+        //3 by 2 by 2, read as 3 by 4
+        ArrayWorkspace workspace = new ArrayWorkspace(new double[] { 3, 2, 2 }, sequence(0, 12), null);
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            //Chunks hold whole columns even when a column is longer than the chunk length
+            RecordingHandler handler = new RecordingHandler();
+            new MatlabArrayReader(proxy, 2).readColumns("x", 1, 3, handler);
+            assertEquals(Arrays.asList(3L, 6L, 9L), handler.starts);
+            assertTrue(Arrays.equals(sequence(6, 3), handler.reals.get(1)));
+            
+            handler = new RecordingHandler();
+            new MatlabArrayReader(proxy, 7).readColumns("x", 0, 4, handler);
+            assertEquals(Arrays.asList(0L, 6L), handler.starts);
+            assertEquals(6, handler.reals.get(1).length);
+            
+            try
+            {
+                new MatlabArrayReader(proxy, 7).readColumns("x", 2, 3, new RecordingHandler());
+                fail();
+            }
+            catch(IndexOutOfBoundsException e) { }
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    /**
+     * Holds MATLAB's thread until released; static so that it is not serialized along with the callable.
+     */
+    private static final CountDownLatch RELEASE = new CountDownLatch(1);
+    
+    private static class Block implements MatlabThreadCallable<Void>, Serializable
+    {
+        @Override
+        public Void call(MatlabThreadProxy proxy)
+        {
+            try
+            {
+                RELEASE.await();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            
+            return null;
+        }
+    }
+    
+    @Test
+    public void testPrefetchedChunkCancelledWhenHandlerFails() throws Exception
+    {
+        final FakeMatlabProxy[] proxy = new FakeMatlabProxy[1];
+        ArrayWorkspace workspace = new ArrayWorkspace(new double[] { 1, 9 }, sequence(0, 9), null)
+        {
+            @Override
+            void chunkRequested(int first, int last)
+            {
+                //Keep MATLAB busy so that the next chunk is still waiting to run when the handler fails
+                if(first == 1)
+                {
+                    proxy[0].invokeAsync(new Block());
+                }
+            }
+        };
+        proxy[0] = new FakeMatlabProxy(workspace);
+        try
+        {
+            final MatlabInvocationException failure = FakeMatlabProxy.matlabError("handler failed");
+            try
+            {
+                new MatlabArrayReader(proxy[0], 3).read("x", new MatlabArrayReader.ChunkHandler()
+                {
+                    @Override
+                    public void handle(MatlabArrayReader.Chunk chunk) throws MatlabInvocationException
+                    {
+                        throw failure;
+                    }
+                });
+                fail();
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertSame(failure, e);
+            }
+            
+            //The next chunk was requested before the handler ran, but never retrieved
+            RELEASE.countDown();
+            proxy[0].invokeAndWait(new Block());
+            assertEquals(Arrays.asList("1:3"), workspace.ranges);
+        }
+        finally
+        {
+            RELEASE.countDown();
+            proxy[0].disconnect();
+        }
+    }
+    
+    @Test
+    public void testStopsWhenChunkFails() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace(new double[] { 1, 9 }, sequence(0, 9), null)
+        {
+            @Override
+            void chunkRequested(int first, int last) throws MatlabInvocationException
+            {
+                if(first == 4)
+                {
+                    throw FakeMatlabProxy.matlabError("Out of memory.");
+                }
+            }
+        };
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            RecordingHandler handler = new RecordingHandler();
+            try
+            {
+                new MatlabArrayReader(proxy, 3).read("x", handler);
+                fail();
+            }
+            catch(MatlabInvocationException e) { }
+            
+            //The chunk before the failure was handled, none after it were requested
+            assertEquals(Arrays.asList(0L), handler.starts);
+            proxy.getVariables();
+            assertEquals(Arrays.asList("1:3", "4:6"), workspace.ranges);
+            
+            try
+            {
+                new MatlabArrayReader(proxy, 3).read("y", handler);
+                fail();
+            }
+            catch(MatlabInvocationException e) { }
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,354 @@
+package matlabcontrol.extensions;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import matlabcontrol.FakeMatlabProxy;
+import matlabcontrol.MatlabInvocationException;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabArrayWriterTest
+{
+    private static final Pattern ZEROS = Pattern.compile("(\\w+) = zeros\\(([\\d, ]+)\\);");
+    private static final Pattern GENVARNAME = Pattern.compile("genvarname\\('(\\w+)', who\\);");
+    private static final Pattern ASSIGN = Pattern.compile("(\\w+)\\((\\d+):(\\d+)\\) = (\\w+);");
+    private static final Pattern CLEAR = Pattern.compile("clear (\\w+);");
+    
+    /**
+     * Answers the commands the writer evaluates, recording the one-based range of each block assigned and each
+     * variable cleared.
+     */
+    private static class ArrayWorkspace extends FakeMatlabProxy.Workspace
+    {
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> cleared = Collections.synchronizedList(new ArrayList<String>());
+        volatile boolean failClear = false;
+        
+        double[] get(String name)
+        {
+            return (double[]) this.getVariables().get(name);
+        }
+        
+        @Override
+        public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
+        {
+            Matcher matcher;
+            Object result = null;
+            if((matcher = ZEROS.matcher(command)).matches())
+            {
+                int numberOfElements = 1;
+                for(String length : matcher.group(2).split(", "))
+                {
+                    numberOfElements *= Integer.parseInt(length);
+                }
+                this.getVariables().put(matcher.group(1), new double[numberOfElements]);
+            }
+            else if((matcher = GENVARNAME.matcher(command)).matches())
+            {
+                result = matcher.group(1);
+            }
+            else if((matcher = ASSIGN.matcher(command)).matches())
+            {
+                double[] variable = this.get(matcher.group(1));
+                double[] block = this.get(matcher.group(4));
+                int first = Integer.parseInt(matcher.group(2));
+                int last = Integer.parseInt(matcher.group(3));
+                if(first < 1 || last > variable.length || last - first + 1 != block.length)
+                {
+                    throw FakeMatlabProxy.matlabError("Subscripted assignment dimension mismatch.");
+                }
+                ranges.add(first + ":" + last);
+                System.arraycopy(block, 0, variable, first - 1, block.length);
+            }
+            else if((matcher = CLEAR.matcher(command)).matches())
+            {
+                cleared.add(matcher.group(1));
+                if(failClear)
+                {
+                    throw FakeMatlabProxy.matlabError("clear failed");
+                }
+                this.getVariables().remove(matcher.group(1));
+            }
+            else
+            {
+                return super.returningEval(command, nargout);
+            }
+            
+            return new Object[] { result };
+        }
+    }
+    
+    /**
+     * Provides {@code values} a block at a time.
+     */
+    private static class ArraySource implements MatlabArrayWriter.BlockSource
+    {
+        private final double[] _values;
+        private int _position = 0;
+        
+        ArraySource(double[] values)
+        {
+            _values = values;
+        }
+        
+        @Override
+        public int fill(double[] block) throws MatlabInvocationException
+        {
+            int count = -1;
+            if(_position < _values.length)
+            {
+                count = Math.min(block.length, _values.length - _position);
+                System.arraycopy(_values, _position, block, 0, count);
+                _position += count;
+            }
+            
+            return count;
+        }
+    }
+    
+    private static double[] sequence(int first, int length)
+    {
+        double[] values = new double[length];
+        for(int i = 0; i < length; i++)
+        {
+            values[i] = first + i;
+        }
+        
+        return values;
+    }
+    
+    @Test
+    public void testBlockSource() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            new MatlabArrayWriter(proxy, 5).write("x", new int[] { 3, 4 }, new ArraySource(sequence(1, 12)));
+            assertTrue(Arrays.equals(sequence(1, 12), workspace.get("x")));
+            assertEquals(Arrays.asList("1:5", "6:10", "11:12"), workspace.ranges);
+            
+            //The variable the blocks were sent as is gone
+            assertEquals(Arrays.asList("x_block"), workspace.cleared);
+            assertEquals(Collections.singleton("x"), workspace.getVariables().keySet());
+            
+            //A block longer than the variable, and an empty variable
+            new MatlabArrayWriter(proxy).write("y", new int[] { 2, 1, 2 }, new ArraySource(sequence(5, 4)));
+            assertTrue(Arrays.equals(sequence(5, 4), workspace.get("y")));
+            new MatlabArrayWriter(proxy).write("z", new int[] { 0, 3 }, new ArraySource(new double[0]));
+            assertEquals(0, workspace.get("z").length);
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testIterator() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            //Blocks are sent as provided, empty ones are skipped
+            List<double[]> blocks = Arrays.asList(sequence(0, 4), new double[0], sequence(4, 1), sequence(5, 3));
+            new MatlabArrayWriter(proxy, 2).write("x", new int[] { 4, 2 }, blocks.iterator());
+            assertTrue(Arrays.equals(sequence(0, 8), workspace.get("x")));
+            assertEquals(Arrays.asList("1:4", "5:5", "6:8"), workspace.ranges);
+            assertEquals(Arrays.asList("x_block"), workspace.cleared);
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testDoubleBuffer() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            DoubleBuffer values = ByteBuffer.allocateDirect(8 * 10).asDoubleBuffer();
+            values.put(sequence(0, 10));
+            values.position(3);
+            
+            new MatlabArrayWriter(proxy, 4).write("x", new int[] { 1, 7 }, values);
+            assertTrue(Arrays.equals(sequence(3, 7), workspace.get("x")));
+            assertEquals(Arrays.asList("1:4", "5:7"), workspace.ranges);
+            assertFalse(values.hasRemaining());
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testWrongNumberOfValues() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            MatlabArrayWriter writer = new MatlabArrayWriter(proxy, 4);
+            double[][] wrong = { sequence(0, 5), sequence(0, 7) };
+            for(double[] values : wrong)
+            {
+                try
+                {
+                    writer.write("x", new int[] { 2, 3 }, new ArraySource(values));
+                    fail();
+                }
+                catch(IllegalArgumentException e) { }
+                
+                try
+                {
+                    writer.write("x", new int[] { 2, 3 }, Arrays.asList(values).iterator());
+                    fail();
+                }
+                catch(IllegalArgumentException e) { }
+            }
+            
+            //The variable the blocks were sent as is cleared regardless
+            assertEquals(4, workspace.cleared.size());
+            assertEquals(Collections.singleton("x"), workspace.getVariables().keySet());
+            
+            //A source claiming more values than fit in the block
+            try
+            {
+                writer.write("x", new int[] { 2, 3 }, new MatlabArrayWriter.BlockSource()
+                {
+                    @Override
+                    public int fill(double[] block)
+                    {
+                        return block.length + 1;
+                    }
+                });
+                fail();
+            }
+            catch(IllegalArgumentException e) { }
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testInvalidLengths() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            int[][] invalid = { { 6 }, { 2, -3 } };
+            for(int[] lengths : invalid)
+            {
+                try
+                {
+                    new MatlabArrayWriter(proxy).write("x", lengths, new ArraySource(sequence(0, 6)));
+                    fail(Arrays.toString(lengths));
+                }
+                catch(IllegalArgumentException e) { }
+            }
+            
+            //Nothing was created in MATLAB
+            assertTrue(workspace.getVariables().isEmpty());
+            
+            try
+            {
+                new MatlabArrayWriter(proxy, 0);
+                fail();
+            }
+            catch(IllegalArgumentException e) { }
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testFailedClearDoesNotMaskFailure() throws Exception
+    {
+        ArrayWorkspace workspace = new ArrayWorkspace();
+        workspace.failClear = true;
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            final MatlabInvocationException failure = FakeMatlabProxy.matlabError("source failed");
+            try
+            {
+                new MatlabArrayWriter(proxy, 2).write("x", new int[] { 2, 2 }, new MatlabArrayWriter.BlockSource()
+                {
+                    @Override
+                    public int fill(double[] block) throws MatlabInvocationException
+                    {
+                        throw failure;
+                    }
+                });
+                fail();
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertSame(failure, e);
+            }
+            assertEquals(Arrays.asList("x_block"), workspace.cleared);
+            
+            try
+            {
+                new MatlabArrayWriter(proxy, 2).write("x", new int[] { 2, 2 }, new ArraySource(sequence(0, 3)));
+                fail();
+            }
+            catch(IllegalArgumentException e) { }
+            
+            //With nothing else to report, the failure to clear is thrown
+            try
+            {
+                new MatlabArrayWriter(proxy, 2).write("x", new int[] { 2, 2 }, new ArraySource(sequence(0, 4)));
+                fail();
+            }
+            catch(MatlabInvocationException e) { }
+            assertTrue(Arrays.equals(sequence(0, 4), workspace.get("x")));
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,258 @@
+package matlabcontrol.extensions;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import matlabcontrol.FakeMatlabProxy;
+import matlabcontrol.MatlabInvocationException;
+import matlabcontrol.MatlabProxy.MatlabThreadCallable;
+import matlabcontrol.MatlabProxy.MatlabThreadProxy;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabBatchTest
+{
+    /**
+     * Records each command and function called. The command {@code "fail"} and the function {@code "error"} raise an
+     * error, and the function {@code "sum"} adds its arguments.
+     */
+    private static class RecordingWorkspace extends FakeMatlabProxy.Workspace
+    {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+        
+        @Override
+        public Object[] returningEval(String command, int nargout) throws MatlabInvocationException
+        {
+            calls.add(command);
+            if(command.equals("fail"))
+            {
+                throw FakeMatlabProxy.matlabError(command);
+            }
+            
+            return new Object[nargout];
+        }
+        
+        @Override
+        public Object[] returningFeval(String functionName, int nargout, Object... args)
+                throws MatlabInvocationException
+        {
+            calls.add(functionName);
+            if(functionName.equals("error"))
+            {
+                throw FakeMatlabProxy.matlabError(functionName);
+            }
+            
+            double sum = 0;
+            for(Object arg : args)
+            {
+                for(double value : (double[]) arg)
+                {
+                    sum += value;
+                }
+            }
+            
+            return new Object[] { new double[] { sum } };
+        }
+    }
+    
+    private static class Length implements MatlabThreadCallable<Integer>, Serializable
+    {
+        private final String _variableName;
+        
+        Length(String variableName)
+        {
+            _variableName = variableName;
+        }
+        
+        @Override
+        public Integer call(MatlabThreadProxy proxy) throws MatlabInvocationException
+        {
+            return ((double[]) proxy.getVariable(_variableName)).length;
+        }
+    }
+    
+    @Test
+    public void testOperationsRunInOneCall() throws Exception
+    {
+        RecordingWorkspace workspace = new RecordingWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            MatlabBatch batch = new MatlabBatch();
+            MatlabBatch.Handle<Void> set = batch.setVariable("a", new double[] { 1, 2, 3 });
+            MatlabBatch.Handle<Void> eval = batch.eval("b = a;");
+            MatlabBatch.Handle<Object[]> returningEval = batch.returningEval("c = b;", 2);
+            MatlabBatch.Handle<Void> feval = batch.feval("sum", new double[] { 1 });
+            MatlabBatch.Handle<Object[]> sum = batch.returningFeval("sum", 1, new double[] { 1, 2 }, new double[] { 4 });
+            MatlabBatch.Handle<Object> get = batch.getVariable("a");
+            MatlabBatch.Handle<Integer> length = batch.invoke(new Length("a"));
+            assertEquals(7, batch.size());
+            
+            MatlabBatch.Results results = batch.execute(proxy);
+            assertEquals(1, proxy.getInvocationCount());
+            assertTrue(results.isSuccessful());
+            assertEquals(Arrays.asList("b = a;", "c = b;", "sum", "sum"), workspace.calls);
+            
+            assertNull(results.get(set));
+            assertNull(results.get(eval));
+            assertEquals(2, results.get(returningEval).length);
+            assertNull(results.get(feval));
+            assertTrue(Arrays.equals(new double[] { 7 }, (double[]) results.get(sum)[0]));
+            assertTrue(Arrays.equals(new double[] { 1, 2, 3 }, (double[]) results.get(get)));
+            assertEquals(Integer.valueOf(3), results.get(length));
+            assertTrue(results.wasRun(length));
+            assertNull(results.getException(length));
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testStopMode() throws Exception
+    {
+        RecordingWorkspace workspace = new RecordingWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            MatlabBatch batch = new MatlabBatch();
+            MatlabBatch.Handle<Void> before = batch.eval("before");
+            MatlabBatch.Handle<Void> failed = batch.eval("fail");
+            MatlabBatch.Handle<Void> after = batch.eval("after");
+            
+            MatlabBatch.Results results = batch.execute(proxy);
+            assertFalse(results.isSuccessful());
+            assertEquals(Arrays.asList("before", "fail"), workspace.calls);
+            
+            assertTrue(results.wasRun(before));
+            assertNull(results.get(before));
+            
+            assertTrue(results.wasRun(failed));
+            assertNotNull(results.getException(failed));
+            try
+            {
+                results.get(failed);
+                fail();
+            }
+            catch(MatlabInvocationException e)
+            {
+                assertSame(results.getException(failed).getClass(), e.getClass());
+            }
+            
+            assertFalse(results.wasRun(after));
+            assertNull(results.getException(after));
+            try
+            {
+                results.get(after);
+                fail();
+            }
+            catch(IllegalStateException e) { }
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testContinueMode() throws Exception
+    {
+        RecordingWorkspace workspace = new RecordingWorkspace();
+        FakeMatlabProxy proxy = new FakeMatlabProxy(workspace);
+        try
+        {
+            MatlabBatch batch = new MatlabBatch(MatlabBatch.ErrorMode.CONTINUE);
+            MatlabBatch.Handle<Object[]> failed = batch.returningFeval("error", 1);
+            MatlabBatch.Handle<Object> missing = batch.getVariable("missing");
+            MatlabBatch.Handle<Void> after = batch.eval("after");
+            
+            MatlabBatch.Results results = batch.execute(proxy);
+            assertFalse(results.isSuccessful());
+            assertEquals(Arrays.asList("error", "after"), workspace.calls);
+            assertNotNull(results.getException(failed));
+            assertNotNull(results.getException(missing));
+            assertTrue(results.wasRun(after));
+            assertNull(results.get(after));
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+    
+    @Test
+    public void testHandles() throws Exception
+    {
+        FakeMatlabProxy proxy = new FakeMatlabProxy(new RecordingWorkspace());
+        try
+        {
+            MatlabBatch batch = new MatlabBatch();
+            MatlabBatch.Handle<Void> first = batch.eval("first");
+            MatlabBatch.Results results = batch.execute(proxy);
+            
+            //Recorded after the batch was executed
+            MatlabBatch.Handle<Void> second = batch.eval("second");
+            try
+            {
+                results.wasRun(second);
+                fail();
+            }
+            catch(IllegalArgumentException e) { }
+            
+            //Created by another batch
+            MatlabBatch.Handle<Void> other = new MatlabBatch().eval("other");
+            try
+            {
+                results.get(other);
+                fail();
+            }
+            catch(IllegalArgumentException e) { }
+            
+            //Executing again runs every operation recorded
+            MatlabBatch.Results again = batch.execute(proxy);
+            assertTrue(again.wasRun(first));
+            assertTrue(again.wasRun(second));
+            assertEquals(2, proxy.getInvocationCount());
+            
+            try
+            {
+                batch.invoke(null);
+                fail();
+            }
+            catch(NullPointerException e) { }
+        }
+        finally
+        {
+            proxy.disconnect();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package matlabcontrol.link;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import static junit.framework.Assert.*;
+import org.junit.Test;
+
+/*
+ * Copyright (c) 2013, Joshua Kaplan
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *  - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *  - Neither the name of matlabcontrol nor the names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ *
+ * @author <a href="mailto:nonother@gmail.com">Joshua Kaplan</a>
+ */
+public class MatlabDoubleDirectMatrixTest
+{
+    private static DoubleBuffer direct(double[] values, ByteOrder order)
+    {
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(values.length * 8).order(order).asDoubleBuffer();
+        buffer.put(values);
+        buffer.clear();
+        
+        return buffer;
+    }
+    
+    private static DoubleBuffer direct(double[] values)
+    {
+        return direct(values, ByteOrder.nativeOrder());
+    }
+    
+    private static double[] sequence(int first, int length)
+    {
+        double[] values = new double[length];
+        for(int i = 0; i < length; i++)
+        {
+            values[i] = first + i;
+        }
+        
+        return values;
+    }
+    
+    /**
+     * 2 by 3 by 2, with real values {@code 0} to {@code 11} and imaginary values {@code 100} to {@code 111} in linear
+     * order.
+     */
+    private static MatlabDoubleDirectMatrix<double[][][]> getComplex()
+    {
+        return MatlabDoubleMatrix.getDirect(double[][][].class, direct(sequence(0, 12)), direct(sequence(100, 12)),
+                2, 3, 2);
+    }
+    
+    @Test
+    public void testLinearIndexing()
+    {
+        MatlabDoubleDirectMatrix<double[][][]> matrix = getComplex();
+        assertEquals(12, matrix.getNumberOfElements());
+        assertEquals(3, matrix.getNumberOfDimensions());
+        assertEquals(3, matrix.getLengthOfDimension(1));
+        
+        for(int i = 0; i < 12; i++)
+        {
+            assertEquals((double) i, matrix.getRealElementAtLinearIndex(i));
+            assertEquals(100.0 + i, matrix.getImaginaryElementAtLinearIndex(i));
+        }
+        assertEquals(new MatlabDouble(7, 107), matrix.getElementAtLinearIndex(7));
+    }
+    
+    @Test
+    public void testMultidimensionalIndexing()
+    {
+        //Column-major, as in MATLAB
+        MatlabDoubleDirectMatrix<double[][][]> matrix = getComplex();
+        assertEquals(0.0, matrix.getRealElementAtIndices(0, 0, 0));
+        assertEquals(1.0, matrix.getRealElementAtIndices(1, 0, 0));
+        assertEquals(4.0, matrix.getRealElementAtIndices(0, 2, 0));
+        assertEquals(11.0, matrix.getRealElementAtIndices(1, 2, 1));
+        assertEquals(109.0, matrix.getImaginaryElementAtIndices(1, 1, 1));
+        assertEquals(new MatlabDouble(8, 108), matrix.getElementAtIndices(0, 1, 1));
+        assertEquals(11.0, matrix.getRealElementAtIndices(1, 2, new int[] { 1 }));
+        
+        MatlabDoubleDirectMatrix<double[][]> twoDimensional = MatlabDoubleMatrix.getDirect(double[][].class,
+                direct(sequence(0, 12)), null, 3, 4);
+        assertEquals(7.0, twoDimensional.getRealElementAtIndices(1, 2));
+        assertEquals(0.0, twoDimensional.getImaginaryElementAtIndices(1, 2));
+        assertEquals(new MatlabDouble(11, 0), twoDimensional.getElementAtIndices(2, 3));
+        
+        //Four dimensions, 2 by 1 by 2 by 3
+        MatlabDoubleDirectMatrix<double[][][][]> fourDimensional = MatlabDoubleMatrix.getDirect(double[][][][].class,
+                direct(sequence(0, 12)), null, 2, 1, 2, 3);
+        assertEquals(11.0, fourDimensional.getRealElementAtIndices(1, 0, new int[] { 1, 2 }));
+        assertEquals(5.0, fourDimensional.getRealElementAtIndices(1, 0, new int[] { 0, 1 }));
+    }
+    
+    @Test
+    public void testOutOfBounds()
+    {
+        MatlabDoubleDirectMatrix<double[][][]> complex = getComplex();
+        MatlabDoubleDirectMatrix<double[][][]> real = MatlabDoubleMatrix.getDirect(double[][][].class,
+                direct(sequence(0, 12)), null, 2, 3, 2);
+        
+        int[] linearIndices = { -1, 12 };
+        for(int linearIndex : linearIndices)
+        {
+            for(MatlabDoubleDirectMatrix<double[][][]> matrix : Arrays.asList(complex, real))
+            {
+                try
+                {
+                    matrix.getRealElementAtLinearIndex(linearIndex);
+                    fail();
+                }
+                catch(IndexOutOfBoundsException e) { }
+                
+                try
+                {
+                    matrix.getImaginaryElementAtLinearIndex(linearIndex);
+                    fail();
+                }
+                catch(IndexOutOfBoundsException e) { }
+                
+                try
+                {
+                    matrix.getElementAtLinearIndex(linearIndex);
+                    fail();
+                }
+                catch(IndexOutOfBoundsException e) { }
+            }
+        }
+        
+        int[][] indices = { { 2, 0, 0 }, { 0, 3, 0 }, { 0, 0, 2 } };
+        for(int[] index : indices)
+        {
+            try
+            {
+                complex.getRealElementAtIndices(index[0], index[1], index[2]);
+                fail(Arrays.toString(index));
+            }
+            catch(IndexOutOfBoundsException e) { }
+            
+            try
+            {
+                real.getImaginaryElementAtIndices(index[0], index[1], index[2]);
+                fail(Arrays.toString(index));
+            }
+            catch(IndexOutOfBoundsException e) { }
+        }
+        
+        //The wrong number of indices
+        try
+        {
+            complex.getElementAtIndices(0, 0, new int[] { 0, 0 });
+            fail();
+        }
+        catch(IllegalArgumentException e) { }
+    }
+    
+    @Test
+    public void testInvalidConstruction()
+    {
+        try
+        {
+            MatlabDoubleMatrix.getDirect(double[][].class, direct(sequence(0, 12)), null, 2, 3, 2);
+            fail();
+        }
+        catch(IllegalArgumentException e) { }
+        
+        try
+        {
+            MatlabDoubleMatrix.getDirect(float[][].class, direct(sequence(0, 6)), null, 2, 3);
+            fail();
+        }
+        catch(IllegalArgumentException e) { }
+        
+        try
+        {
+            MatlabDoubleMatrix.getDirect(double[][].class, direct(sequence(0, 6)), direct(sequence(0, 5)), 2, 3);
+            fail();
+        }
+        catch(IllegalArgumentException e) { }
+    }
+    
+    @Test
+    public void testEqualsAndHashCode()
+    {
+        MatlabDoubleDirectMatrix<double[][][]> matrix = getComplex();
+        assertEquals(matrix, matrix);
+        
+        //Equal regardless of byte order, whether the buffers are direct, or the position the values start at
+        DoubleBuffer real = DoubleBuffer.allocate(15);
+        real.position(3);
+        real.put(sequence(0, 12));
+        real.position(3);
+        MatlabDoubleDirectMatrix<double[][][]> same = MatlabDoubleMatrix.getDirect(double[][][].class, real,
+                direct(sequence(100, 12), ByteOrder.BIG_ENDIAN), 2, 3, 2);
+        assertEquals(matrix, same);
+        assertEquals(same, matrix);
+        assertEquals(matrix.hashCode(), same.hashCode());
+        
+        //Different values, dimensions, and a real matrix
+        assertFalse(matrix.equals(MatlabDoubleMatrix.getDirect(double[][][].class, direct(sequence(0, 12)),
+                direct(sequence(101, 12)), 2, 3, 2)));
+        assertFalse(matrix.equals(MatlabDoubleMatrix.getDirect(double[][][].class, direct(sequence(0, 12)),
+                direct(sequence(100, 12)), 3, 2, 2)));
+        assertFalse(matrix.equals(MatlabDoubleMatrix.getDirect(double[][][].class, direct(sequence(0, 12)), null,
+                2, 3, 2)));
+        assertFalse(matrix.equals(null));
+        assertFalse(matrix.equals(MatlabDoubleMatrix.getFull(matrix.toRealArray(), matrix.toImaginaryArray())));
+        
+        //Imaginary values of zero are the same as none
+        MatlabDoubleDirectMatrix<double[][]> withoutImaginary = MatlabDoubleMatrix.getDirect(double[][].class,
+                direct(sequence(0, 6)), null, 2, 3);
+        MatlabDoubleDirectMatrix<double[][]> zeroImaginary = MatlabDoubleMatrix.getDirect(double[][].class,
+                direct(sequence(0, 6)), direct(new double[6]), 2, 3);
+        assertTrue(zeroImaginary.isReal());
+        assertEquals(withoutImaginary, zeroImaginary);
+        assertEquals(withoutImaginary.hashCode(), zeroImaginary.hashCode());
+    }
+    
+    @Test
+    public void testToArrays()
+    {
+        MatlabDoubleDirectMatrix<double[][][]> matrix = getComplex();
+        assertFalse(matrix.isReal());
+        
+        double[][][] real = matrix.toRealArray();
+        assertTrue(Arrays.deepEquals(new double[][][] {
+                    { { 0, 6 }, { 2, 8 }, { 4, 10 } },
+                    { { 1, 7 }, { 3, 9 }, { 5, 11 } }
+                }, real));
+        double[][][] imaginary = matrix.toImaginaryArray();
+        assertEquals(109.0, imaginary[1][1][1]);
+        assertEquals(104.0, imaginary[0][2][0]);
+        
+        //Each conversion is a new copy
+        real[0][0][0] = -1;
+        assertEquals(0.0, matrix.toRealArray()[0][0][0]);
+        assertEquals(0.0, matrix.getRealElementAtLinearIndex(0));
+        
+        MatlabDoubleDirectMatrix<double[]> vector = MatlabDoubleMatrix.getDirect(double[].class,
+                direct(sequence(0, 4)), null, 4);
+        assertTrue(vector.isReal());
+        assertTrue(Arrays.equals(sequence(0, 4), vector.toRealArray()));
+        assertTrue(Arrays.equals(new double[4], vector.toImaginaryArray()));
+    }
+    
+    @Test
+    public void testBuffers()
+    {
+        DoubleBuffer real = direct(sequence(0, 12));
+        MatlabDoubleDirectMatrix<double[][][]> matrix = MatlabDoubleMatrix.getDirect(double[][][].class, real, null,
+                2, 3, 2);
+        matrix.toRealArray();
+        
+        //Reading the matrix does not move the buffer it was created with
+        assertEquals(0, real.position());
+        assertNull(matrix.getImaginaryBuffer());
+        
+        DoubleBuffer values = matrix.getRealBuffer();
+        assertTrue(values.isDirect());
+        assertTrue(values.isReadOnly());
+        assertEquals(12, values.remaining());
+        try
+        {
+            values.put(0, 1);
+            fail();
+        }
+        catch(ReadOnlyBufferException e) { }
+    }
+}